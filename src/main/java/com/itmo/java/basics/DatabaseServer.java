@@ -8,14 +8,29 @@ import com.itmo.java.basics.initialization.impl.InitializationContextImpl;
 import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Сервер выполняет команды в {@link com.itmo.java.basics.config.DatabaseConfig#getCommandLanes()} потоках.
+ * Поток команды выбирается по хешу базы, таблицы и ключа (см {@link DatabaseCommands#getRoutingArgs()}), поэтому
+ * команды одного ключа выполняются по порядку в одном потоке, а команды разных ключей, даже одной таблицы, -
+ * параллельно. Создание таблицы (см {@link DatabaseCommands#isBarrier()}) занимает все потоки: оно выполняется
+ * после всех принятых до него команд и до всех следующих, поэтому команды ключей не обгоняют создание их таблицы.
+ * <p>
+ * Создание базы данных упорядочено только с другими командами базы: команды ее таблиц могут выполниться раньше,
+ * поэтому клиент должен дождаться ответа на CREATE_DATABASE, прежде чем обращаться к таблицам этой базы
+ */
 public class DatabaseServer {
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final List<ExecutorService> lanes;
     private final ExecutionEnvironment env;
 
     /**
@@ -40,21 +55,101 @@ public class DatabaseServer {
 
     private DatabaseServer(ExecutionEnvironment env) {
         this.env = env;
+        int laneCount = env.getConfig().getCommandLanes();
+        List<ExecutorService> lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            String name = "command-lane-" + i;
+            lanes.add(Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name)));
+        }
+        this.lanes = List.copyOf(lanes);
     }
 
+    /**
+     * Команды одного потока запускаются по очереди, но поток не ждет чтений с диска: команда возвращает
+     * незавершенный результат (см {@link DatabaseCommand#executeAsync()}), и поток переходит к следующей
+     */
     public CompletableFuture<DatabaseCommandResult> executeNextCommand(RespArray message) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<RespObject> commandArgs = message.getObjects();
-            return DatabaseCommands.valueOf(commandArgs.get(DatabaseCommandArgPositions.COMMAND_NAME.getPositionIndex()).asString())
-                    .getCommand(env, commandArgs).execute();
-        }, executorService);
+        List<RespObject> commandArgs = message.getObjects();
+        Supplier<CompletableFuture<DatabaseCommandResult>> command = () ->
+                DatabaseCommands.valueOf(commandArgs.get(DatabaseCommandArgPositions.COMMAND_NAME.getPositionIndex()).asString())
+                        .getCommand(env, commandArgs).executeAsync();
+        if (isBarrier(commandArgs)) {
+            return executeOnAllLanes(command);
+        }
+        return CompletableFuture.supplyAsync(command, laneOf(commandArgs)).thenCompose(Function.identity());
     }
 
+    /**
+     * Аргументы готовой команды неизвестны, поэтому она выполняется в первом потоке
+     */
     public CompletableFuture<DatabaseCommandResult> executeNextCommand(DatabaseCommand command) {
-        return CompletableFuture.supplyAsync(command::execute, executorService);
+        return CompletableFuture.supplyAsync(command::executeAsync, lanes.get(0)).thenCompose(Function.identity());
     }
 
     public ExecutionEnvironment getEnv() {
         return env;
     }
+
+    /**
+     * Ставит команду в очередь каждого потока. Потоки, дошедшие до нее, ждут, а последний выполняет команду
+     * и отпускает остальных. Очереди заполняются под блокировкой, чтобы две такие команды стояли во всех потоках
+     * в одном порядке и не ждали друг друга
+     */
+    private CompletableFuture<DatabaseCommandResult> executeOnAllLanes(
+            Supplier<CompletableFuture<DatabaseCommandResult>> command) {
+        CompletableFuture<DatabaseCommandResult> result = new CompletableFuture<>();
+        CompletableFuture<Void> executed = new CompletableFuture<>();
+        AtomicInteger waiting = new AtomicInteger(lanes.size());
+        synchronized (lanes) {
+            for (ExecutorService lane : lanes) {
+                lane.execute(() -> {
+                    if (waiting.decrementAndGet() > 0) {
+                        executed.join();
+                        return;
+                    }
+                    try {
+                        command.get().whenComplete((value, ex) -> {
+                            if (ex != null) {
+                                result.completeExceptionally(ex);
+                            } else {
+                                result.complete(value);
+                            }
+                        });
+                    } catch (RuntimeException ex) {
+                        result.completeExceptionally(ex);
+                    } finally {
+                        executed.complete(null);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private static boolean isBarrier(List<RespObject> commandArgs) {
+        try {
+            return DatabaseCommands.valueOf(commandArgs.get(DatabaseCommandArgPositions.COMMAND_NAME
+                    .getPositionIndex()).asString()).isBarrier();
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Команда, которую не удалось разобрать, идет в первый поток: ошибку разбора вернет сама команда
+     */
+    private ExecutorService laneOf(List<RespObject> commandArgs) {
+        int hash = 0;
+        try {
+            int routingArgs = DatabaseCommands.valueOf(commandArgs.get(DatabaseCommandArgPositions.COMMAND_NAME
+                    .getPositionIndex()).asString()).getRoutingArgs();
+            int first = DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex();
+            for (int i = first; i < Math.min(first + routingArgs, commandArgs.size()); i++) {
+                hash = 31 * hash + Objects.hashCode(commandArgs.get(i).asString());
+            }
+        } catch (RuntimeException ex) {
+            return lanes.get(0);
+        }
+        return lanes.get(Math.floorMod(hash, lanes.size()));
+    }
 }
\ No newline at end of file
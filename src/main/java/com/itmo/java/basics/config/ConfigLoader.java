@@ -28,7 +28,12 @@ public class ConfigLoader {
      * Если не удалось считать из заданного фойла, или какого-то конкретно значения не оказалось,
      * то используют дефолтные значения из {@link DatabaseConfig} и {@link ServerConfig}
      * <br/>
-     * Читаются: "kvs.workingPath", "kvs.host", "kvs.port" (но в конфигурационном файле допустимы и другие проперти
+     * Читаются: "kvs.workingPath", "kvs.host", "kvs.port", "kvs.storageMode", "kvs.maxMappedBytes",
+     * "kvs.segmentSize", "kvs.preallocateSegments", "kvs.compactionThreshold", "kvs.compactionRateLimit",
+     * "kvs.initializationThreads", "kvs.durability", "kvs.fsyncInterval",
+     * "kvs.bloomFalsePositiveRate", "kvs.sortedSegments", "kvs.segmentIndexType", "kvs.expirationInterval",
+     * "kvs.commandLanes", "kvs.cacheBytes"
+     * (но в конфигурационном файле допустимы и другие проперти
      */
     public DatabaseServerConfig readConfig() {
         DatabaseServerConfig dvSrvConfig;
@@ -59,7 +64,62 @@ public class ConfigLoader {
             else {
                 port = Integer.parseInt(portStr);
             }
-            DatabaseConfig dbConfig = new DatabaseConfig(workingPath);
+            String storageModeStr = properties.getProperty("kvs.storageMode");
+            StorageMode storageMode = storageModeStr == null ?
+                    DatabaseConfig.DEFAULT_STORAGE_MODE : StorageMode.valueOf(storageModeStr.trim().toUpperCase());
+            String maxMappedBytesStr = properties.getProperty("kvs.maxMappedBytes");
+            long maxMappedBytes = maxMappedBytesStr == null ?
+                    DatabaseConfig.DEFAULT_MAX_MAPPED_BYTES : Long.parseLong(maxMappedBytesStr.trim());
+            String segmentSizeStr = properties.getProperty("kvs.segmentSize");
+            long segmentSize = segmentSizeStr == null ?
+                    DatabaseConfig.DEFAULT_SEGMENT_SIZE : Long.parseLong(segmentSizeStr.trim());
+            boolean preallocateSegments = Boolean.parseBoolean(properties.getProperty("kvs.preallocateSegments"));
+            String compactionThresholdStr = properties.getProperty("kvs.compactionThreshold");
+            long compactionThreshold = compactionThresholdStr == null ?
+                    DatabaseConfig.DEFAULT_COMPACTION_THRESHOLD : Long.parseLong(compactionThresholdStr.trim());
+            String compactionRateLimitStr = properties.getProperty("kvs.compactionRateLimit");
+            long compactionRateLimit = compactionRateLimitStr == null ? 0 : Long.parseLong(compactionRateLimitStr.trim());
+            String initializationThreadsStr = properties.getProperty("kvs.initializationThreads");
+            int initializationThreads = initializationThreadsStr == null ?
+                    0 : Integer.parseInt(initializationThreadsStr.trim());
+            String durabilityStr = properties.getProperty("kvs.durability");
+            Durability durability = durabilityStr == null ?
+                    DatabaseConfig.DEFAULT_DURABILITY : Durability.valueOf(durabilityStr.trim().toUpperCase());
+            String fsyncIntervalStr = properties.getProperty("kvs.fsyncInterval");
+            long fsyncInterval = fsyncIntervalStr == null ?
+                    DatabaseConfig.DEFAULT_FSYNC_INTERVAL : Long.parseLong(fsyncIntervalStr.trim());
+            String bloomFalsePositiveRateStr = properties.getProperty("kvs.bloomFalsePositiveRate");
+            double bloomFalsePositiveRate = bloomFalsePositiveRateStr == null ?
+                    DatabaseConfig.DEFAULT_BLOOM_FALSE_POSITIVE_RATE : Double.parseDouble(bloomFalsePositiveRateStr.trim());
+            boolean sortedSegments = Boolean.parseBoolean(properties.getProperty("kvs.sortedSegments"));
+            String segmentIndexTypeStr = properties.getProperty("kvs.segmentIndexType");
+            SegmentIndexType segmentIndexType = segmentIndexTypeStr == null ?
+                    DatabaseConfig.DEFAULT_SEGMENT_INDEX_TYPE : SegmentIndexType.valueOf(segmentIndexTypeStr.trim().toUpperCase());
+            String expirationIntervalStr = properties.getProperty("kvs.expirationInterval");
+            long expirationInterval = expirationIntervalStr == null ?
+                    DatabaseConfig.DEFAULT_EXPIRATION_INTERVAL : Long.parseLong(expirationIntervalStr.trim());
+            String commandLanesStr = properties.getProperty("kvs.commandLanes");
+            int commandLanes = commandLanesStr == null ? 0 : Integer.parseInt(commandLanesStr.trim());
+            String cacheBytesStr = properties.getProperty("kvs.cacheBytes");
+            long cacheBytes = cacheBytesStr == null ? DatabaseConfig.DEFAULT_CACHE_BYTES : Long.parseLong(cacheBytesStr.trim());
+            DatabaseConfig dbConfig = DatabaseConfig.builder()
+                    .workingPath(workingPath)
+                    .storageMode(storageMode)
+                    .maxMappedBytes(maxMappedBytes)
+                    .segmentSize(segmentSize)
+                    .preallocateSegments(preallocateSegments)
+                    .compactionThreshold(compactionThreshold)
+                    .compactionRateLimit(compactionRateLimit)
+                    .initializationThreads(initializationThreads)
+                    .durability(durability)
+                    .fsyncInterval(fsyncInterval)
+                    .bloomFalsePositiveRate(bloomFalsePositiveRate)
+                    .sortedSegments(sortedSegments)
+                    .segmentIndexType(segmentIndexType)
+                    .expirationInterval(expirationInterval)
+                    .commandLanes(commandLanes)
+                    .cacheBytes(cacheBytes)
+                    .build();
             ServerConfig srvConfig = new ServerConfig(host, port);
             dvSrvConfig = DatabaseServerConfig.builder()
                     .dbConfig(dbConfig)
@@ -1,18 +1,201 @@
 package com.itmo.java.basics.config;
 
+import lombok.Builder;
+
 public class  DatabaseConfig {
     public static final String DEFAULT_WORKING_PATH = "db_files";
+    public static final StorageMode DEFAULT_STORAGE_MODE = StorageMode.CHANNEL;
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 1L << 30;
+    public static final long DEFAULT_SEGMENT_SIZE = 100_000;
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 16L << 20;
+    public static final Durability DEFAULT_DURABILITY = Durability.NONE;
+    public static final long DEFAULT_FSYNC_INTERVAL = 1000;
+    public static final double DEFAULT_BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    public static final SegmentIndexType DEFAULT_SEGMENT_INDEX_TYPE = SegmentIndexType.HASH_MAP;
+    public static final long DEFAULT_EXPIRATION_INTERVAL = 1000;
+    public static final long DEFAULT_CACHE_BYTES = 16L << 20;
+    public static final int DEFAULT_READER_THREADS = 16;
     final private String workingPath;
+    private final StorageMode storageMode;
+    private final long maxMappedBytes;
+    private final long segmentSize;
+    private final boolean preallocateSegments;
+    private final long compactionThreshold;
+    private final long compactionRateLimit;
+    private final int initializationThreads;
+    private final Durability durability;
+    private final long fsyncInterval;
+    private final double bloomFalsePositiveRate;
+    private final boolean sortedSegments;
+    private final SegmentIndexType segmentIndexType;
+    private final long expirationInterval;
+    private final int commandLanes;
+    private final long cacheBytes;
+    private final int readerThreads;
 
+    /**
+     * Настройки по умолчанию с указанной рабочей директорией
+     */
     public DatabaseConfig(String workingPath) {
-        this.workingPath = workingPath.equals("") ?
-                System.getProperty("user.dir").concat('/' + DEFAULT_WORKING_PATH) : workingPath;
+        this(builder().workingPath(workingPath).build());
     }
     public DatabaseConfig() {
-        this.workingPath = System.getProperty("user.dir").concat('/' + DEFAULT_WORKING_PATH);
+        this("");
+    }
+
+    private DatabaseConfig(DatabaseConfig other) {
+        this.workingPath = other.workingPath;
+        this.storageMode = other.storageMode;
+        this.maxMappedBytes = other.maxMappedBytes;
+        this.segmentSize = other.segmentSize;
+        this.preallocateSegments = other.preallocateSegments;
+        this.compactionThreshold = other.compactionThreshold;
+        this.compactionRateLimit = other.compactionRateLimit;
+        this.initializationThreads = other.initializationThreads;
+        this.durability = other.durability;
+        this.fsyncInterval = other.fsyncInterval;
+        this.bloomFalsePositiveRate = other.bloomFalsePositiveRate;
+        this.sortedSegments = other.sortedSegments;
+        this.segmentIndexType = other.segmentIndexType;
+        this.expirationInterval = other.expirationInterval;
+        this.commandLanes = other.commandLanes;
+        this.cacheBytes = other.cacheBytes;
+        this.readerThreads = other.readerThreads;
+    }
+
+    /**
+     * @param workingPath    путь до директории с базами данных, пустая строка - директория по умолчанию
+     * @param storageMode    способ чтения read-only сегментов, {@code null} - {@link #DEFAULT_STORAGE_MODE}
+     * @param maxMappedBytes сколько байт сегментов суммарно можно отобразить в память, {@code <= 0} - значение по умолчанию
+     * @param segmentSize    размер сегмента для таблиц, которым он не задан явно, {@code <= 0} - {@link #DEFAULT_SEGMENT_SIZE}
+     * @param preallocateSegments создавать ли файл сегмента сразу полного размера для таблиц, которым это не задано явно
+     * @param compactionThreshold сколько байт устаревших записей в read-only сегментах таблицы, где перекрыта
+     *                            большая часть записей, запускает их сжатие, {@code <= 0} - {@link #DEFAULT_COMPACTION_THRESHOLD}
+     * @param compactionRateLimit сколько байт в секунду может записывать сжатие, {@code <= 0} - без ограничения
+     * @param initializationThreads сколько потоков читают базы при старте, {@code <= 0} - по числу процессоров
+     * @param durability     режим сброса на диск для таблиц, которым он не задан явно, {@code null} - {@link #DEFAULT_DURABILITY}
+     * @param fsyncInterval  период сброса в миллисекундах для режима {@link Durability#INTERVAL},
+     *                       {@code <= 0} - {@link #DEFAULT_FSYNC_INTERVAL}
+     * @param bloomFalsePositiveRate вероятность ложного срабатывания фильтров Блума read-only сегментов таблиц LSM,
+     *                               вне интервала (0, 1) - {@link #DEFAULT_BLOOM_FALSE_POSITIVE_RATE}
+     * @param sortedSegments переписывать ли read-only сегменты отсортированными для таблиц, которым это не задано явно
+     * @param segmentIndexType реализация индекса ключей сегментов, {@code null} - {@link #DEFAULT_SEGMENT_INDEX_TYPE}
+     * @param expirationInterval период фонового удаления истекших ключей в миллисекундах,
+     *                           {@code <= 0} - {@link #DEFAULT_EXPIRATION_INTERVAL}
+     * @param commandLanes   на сколько потоков сервер распределяет команды по хешу ключа,
+     *                       {@code <= 0} - по числу процессоров
+     * @param cacheBytes     сколько байт ключей и значений хранит кэш одной таблицы, {@code <= 0} - {@link #DEFAULT_CACHE_BYTES}
+     * @param readerThreads  сколько чтений с диска одна база может выполнять одновременно,
+     *                       {@code <= 0} - {@link #DEFAULT_READER_THREADS}
+     */
+    @Builder
+    public DatabaseConfig(String workingPath, StorageMode storageMode, long maxMappedBytes, long segmentSize,
+                          boolean preallocateSegments, long compactionThreshold, long compactionRateLimit,
+                          int initializationThreads, Durability durability, long fsyncInterval,
+                          double bloomFalsePositiveRate, boolean sortedSegments, SegmentIndexType segmentIndexType,
+                          long expirationInterval, int commandLanes, long cacheBytes,
+                          int readerThreads) {
+        this.workingPath = workingPath == null || workingPath.equals("") ?
+                System.getProperty("user.dir").concat('/' + DEFAULT_WORKING_PATH) : workingPath;
+        this.storageMode = storageMode == null ? DEFAULT_STORAGE_MODE : storageMode;
+        this.maxMappedBytes = maxMappedBytes <= 0 ? DEFAULT_MAX_MAPPED_BYTES : maxMappedBytes;
+        this.segmentSize = segmentSize <= 0 ? DEFAULT_SEGMENT_SIZE : segmentSize;
+        this.preallocateSegments = preallocateSegments;
+        this.compactionThreshold = compactionThreshold <= 0 ? DEFAULT_COMPACTION_THRESHOLD : compactionThreshold;
+        this.compactionRateLimit = Math.max(compactionRateLimit, 0);
+        this.initializationThreads = initializationThreads <= 0 ?
+                Runtime.getRuntime().availableProcessors() : initializationThreads;
+        this.durability = durability == null ? DEFAULT_DURABILITY : durability;
+        this.fsyncInterval = fsyncInterval <= 0 ? DEFAULT_FSYNC_INTERVAL : fsyncInterval;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate > 0 && bloomFalsePositiveRate < 1 ?
+                bloomFalsePositiveRate : DEFAULT_BLOOM_FALSE_POSITIVE_RATE;
+        this.sortedSegments = sortedSegments;
+        this.segmentIndexType = segmentIndexType == null ? DEFAULT_SEGMENT_INDEX_TYPE : segmentIndexType;
+        this.expirationInterval = expirationInterval <= 0 ? DEFAULT_EXPIRATION_INTERVAL : expirationInterval;
+        this.commandLanes = commandLanes <= 0 ? Runtime.getRuntime().availableProcessors() : commandLanes;
+        this.cacheBytes = cacheBytes <= 0 ? DEFAULT_CACHE_BYTES : cacheBytes;
+        this.readerThreads = readerThreads <= 0 ? DEFAULT_READER_THREADS : readerThreads;
     }
 
     public String getWorkingPath() {
         return workingPath;
     }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public long getMaxMappedBytes() {
+        return maxMappedBytes;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public boolean isPreallocateSegments() {
+        return preallocateSegments;
+    }
+
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * @return ограничение скорости записи сжатия в байтах в секунду, {@code 0} - без ограничения
+     */
+    public long getCompactionRateLimit() {
+        return compactionRateLimit;
+    }
+
+    public int getInitializationThreads() {
+        return initializationThreads;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public double getBloomFalsePositiveRate() {
+        return bloomFalsePositiveRate;
+    }
+
+    public boolean isSortedSegments() {
+        return sortedSegments;
+    }
+
+    public SegmentIndexType getSegmentIndexType() {
+        return segmentIndexType;
+    }
+
+    public long getExpirationInterval() {
+        return expirationInterval;
+    }
+
+    /**
+     * @return сколько потоков выполняют команды сервера (см {@link com.itmo.java.basics.DatabaseServer})
+     */
+    public int getCommandLanes() {
+        return commandLanes;
+    }
+
+    /**
+     * @return сколько байт ключей и значений вместе с накладными расходами хранит кэш одной таблицы
+     * (см {@link com.itmo.java.basics.logic.impl.DatabaseCacheImpl})
+     */
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /**
+     * @return размер пула потоков, которые читают сегменты базы для асинхронных GET
+     * (см {@link com.itmo.java.basics.logic.Database#readAsync(String, String)})
+     */
+    public int getReaderThreads() {
+        return readerThreads;
+    }
 }
@@ -0,0 +1,19 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Когда записанные в сегмент данные сбрасываются на диск
+ */
+public enum Durability {
+    /**
+     * Данные остаются в кэше ОС, на диск их сбрасывает ОС
+     */
+    NONE,
+    /**
+     * Данные сбрасываются на диск в фоне раз в {@link TableConfig#getFsyncInterval()} миллисекунд
+     */
+    INTERVAL,
+    /**
+     * Команда завершается только после сброса данных на диск. Одновременные команды ждут одного общего сброса
+     */
+    ALWAYS
+}
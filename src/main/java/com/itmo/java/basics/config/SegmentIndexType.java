@@ -0,0 +1,17 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Реализация индексов ключей: индекса таблицы (см {@link com.itmo.java.basics.index.impl.TableIndex})
+ * и индекса текущего сегмента
+ */
+public enum SegmentIndexType {
+    /**
+     * {@link com.itmo.java.basics.index.impl.MapBasedKvsIndex}: объекты ключей и смещений в хеш-таблице
+     */
+    HASH_MAP,
+    /**
+     * {@link com.itmo.java.basics.index.impl.OpenAddressingTableIndex}: примитивные массивы с открытой адресацией,
+     * в несколько раз меньше памяти на ключ
+     */
+    OPEN_ADDRESSING
+}
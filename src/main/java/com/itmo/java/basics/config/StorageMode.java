@@ -0,0 +1,15 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Способ чтения неизменяемых (read-only) сегментов
+ */
+public enum StorageMode {
+    /**
+     * Позиционное чтение через {@link java.nio.channels.FileChannel}
+     */
+    CHANNEL,
+    /**
+     * Чтение из отображенного в память файла. Если лимит отображенных байт исчерпан - чтение через канал
+     */
+    MMAP
+}
@@ -0,0 +1,294 @@
+package com.itmo.java.basics.config;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Настройки отдельной таблицы. Задаются при создании таблицы (см {@link #fromOptions(List, DatabaseConfig)}),
+ * хранятся в директории таблицы в файле {@link #FILE_NAME} и читаются оттуда при инициализации.
+ * Не заданные для таблицы значения берутся из {@link DatabaseConfig}
+ */
+public class TableConfig {
+    public static final String FILE_NAME = "table.properties";
+    public static final String SEGMENT_SIZE = "segmentSize";
+    public static final String PREALLOCATE = "preallocate";
+    public static final String DURABILITY = "durability";
+    public static final String FSYNC_INTERVAL = "fsyncInterval";
+    public static final String CHECKSUMS = "checksums";
+    public static final String SORTED = "sorted";
+    public static final String ENGINE = "engine";
+    public static final String SHARDS = "shards";
+    public static final String ORDERED = "ordered";
+    private static final Set<String> OPTIONS = Set.of(SEGMENT_SIZE, PREALLOCATE, DURABILITY, FSYNC_INTERVAL, CHECKSUMS,
+            SORTED, ENGINE, SHARDS, ORDERED);
+
+    private final DatabaseConfig databaseConfig;
+    private final long segmentSize;
+    private final boolean preallocate;
+    private final Durability durability;
+    private final long fsyncInterval;
+    private final boolean checksums;
+    private final boolean sorted;
+    private final TableEngine engine;
+    private final int shards;
+    private final boolean ordered;
+    /**
+     * Не хранится в настройках таблицы, а берется из {@link DatabaseConfig#getCacheBytes()}
+     */
+    private final long cacheBytes;
+
+    private TableConfig(DatabaseConfig databaseConfig, long segmentSize, boolean preallocate, Durability durability,
+                        long fsyncInterval, boolean checksums, boolean sorted, TableEngine engine, int shards,
+                        boolean ordered, long cacheBytes) {
+        this.databaseConfig = databaseConfig;
+        this.segmentSize = segmentSize;
+        this.preallocate = preallocate;
+        this.durability = durability;
+        this.fsyncInterval = fsyncInterval;
+        this.checksums = checksums;
+        this.sorted = sorted;
+        this.engine = engine;
+        this.shards = shards;
+        this.ordered = ordered;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * Настройки таблицы по умолчанию
+     */
+    public static TableConfig defaults(DatabaseConfig databaseConfig) {
+        return new TableConfig(databaseConfig, databaseConfig.getSegmentSize(), databaseConfig.isPreallocateSegments(),
+                databaseConfig.getDurability(), databaseConfig.getFsyncInterval(), true, databaseConfig.isSortedSegments(),
+                TableEngine.LOG, 1, false, databaseConfig.getCacheBytes());
+    }
+
+    /**
+     * @return те же настройки для одной части таблицы, разбитой на части (см {@link #getShards()}).
+     * Кэш таблицы делится между частями поровну
+     */
+    public TableConfig forShard() {
+        return new TableConfig(databaseConfig, segmentSize, preallocate, durability, fsyncInterval, checksums, sorted,
+                engine, 1, ordered, Math.max(cacheBytes / shards, 1));
+    }
+
+    /**
+     * Разбирает опции таблицы вида "имя=значение", например "segmentSize=1048576" или "durability=always".
+     * Сегменты таблицы {@link TableEngine#LSM} всегда отсортированы
+     *
+     * @throws DatabaseException если опция неизвестна или значение некорректно
+     */
+    public static TableConfig fromOptions(List<String> options, DatabaseConfig databaseConfig) throws DatabaseException {
+        Properties properties = new Properties();
+        for (String option : options) {
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new DatabaseException("Table option " + option + " is not of the form name=value.");
+            }
+            properties.setProperty(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+        }
+        return fromProperties(properties, databaseConfig);
+    }
+
+    /**
+     * Читает настройки из директории таблицы. Если файла нет - настройки по умолчанию.
+     * Таблицы, созданные до появления контрольных сумм, не содержат {@link #CHECKSUMS} и продолжают писать записи без них
+     *
+     * @throws DatabaseException если файл не удалось прочитать или он содержит некорректные значения
+     */
+    public static TableConfig load(Path tablePath, DatabaseConfig databaseConfig) throws DatabaseException {
+        Path file = tablePath.resolve(FILE_NAME);
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+            } catch (IOException ex) {
+                throw new DatabaseException("Error while reading table config " + file + ".", ex);
+            }
+        }
+        if (properties.getProperty(CHECKSUMS) == null) {
+            properties.setProperty(CHECKSUMS, String.valueOf(false));
+        }
+        return fromProperties(properties, databaseConfig);
+    }
+
+    /**
+     * Сохраняет настройки в директорию таблицы. Файл подменяется атомарно
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    public void store(Path tablePath) throws DatabaseException {
+        Properties properties = toProperties();
+        Path tmp = tablePath.resolve(FILE_NAME + ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(tmp)) {
+                properties.store(output, null);
+            }
+            Files.move(tmp, tablePath.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing table config into " + tablePath + ".", ex);
+        }
+    }
+
+    private static TableConfig fromProperties(Properties properties, DatabaseConfig databaseConfig) throws DatabaseException {
+        TableConfig defaults = defaults(databaseConfig);
+        for (String name : properties.stringPropertyNames()) {
+            if (!OPTIONS.contains(name)) {
+                throw new DatabaseException("Unknown table option " + name + ".");
+            }
+        }
+        long segmentSize;
+        try {
+            String segmentSizeStr = properties.getProperty(SEGMENT_SIZE);
+            segmentSize = segmentSizeStr == null ? defaults.segmentSize : Long.parseLong(segmentSizeStr);
+        } catch (NumberFormatException ex) {
+            throw new DatabaseException("Segment size must be a number.", ex);
+        }
+        if (segmentSize <= 0) {
+            throw new DatabaseException("Segment size must be positive.");
+        }
+        String preallocateStr = properties.getProperty(PREALLOCATE);
+        boolean preallocate = preallocateStr == null ? defaults.preallocate : Boolean.parseBoolean(preallocateStr);
+        Durability durability;
+        try {
+            String durabilityStr = properties.getProperty(DURABILITY);
+            durability = durabilityStr == null ? defaults.durability : Durability.valueOf(durabilityStr.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new DatabaseException("Durability must be one of none, interval, always.", ex);
+        }
+        long fsyncInterval;
+        try {
+            String fsyncIntervalStr = properties.getProperty(FSYNC_INTERVAL);
+            fsyncInterval = fsyncIntervalStr == null ? defaults.fsyncInterval : Long.parseLong(fsyncIntervalStr);
+        } catch (NumberFormatException ex) {
+            throw new DatabaseException("Fsync interval must be a number.", ex);
+        }
+        if (fsyncInterval <= 0) {
+            throw new DatabaseException("Fsync interval must be positive.");
+        }
+        String checksumsStr = properties.getProperty(CHECKSUMS);
+        boolean checksums = checksumsStr == null ? defaults.checksums : Boolean.parseBoolean(checksumsStr);
+        String sortedStr = properties.getProperty(SORTED);
+        boolean sorted = sortedStr == null ? defaults.sorted : Boolean.parseBoolean(sortedStr);
+        TableEngine engine;
+        try {
+            String engineStr = properties.getProperty(ENGINE);
+            engine = engineStr == null ? defaults.engine : TableEngine.valueOf(engineStr.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new DatabaseException("Engine must be one of log, lsm.", ex);
+        }
+        int shards;
+        try {
+            String shardsStr = properties.getProperty(SHARDS);
+            shards = shardsStr == null ? defaults.shards : Integer.parseInt(shardsStr);
+        } catch (NumberFormatException ex) {
+            throw new DatabaseException("Number of shards must be a number.", ex);
+        }
+        if (shards <= 0) {
+            throw new DatabaseException("Number of shards must be positive.");
+        }
+        String orderedStr = properties.getProperty(ORDERED);
+        boolean ordered = orderedStr == null ? defaults.ordered : Boolean.parseBoolean(orderedStr);
+        return new TableConfig(databaseConfig, segmentSize, preallocate, durability, fsyncInterval, checksums,
+                sorted || engine == TableEngine.LSM, engine, shards, ordered, databaseConfig.getCacheBytes());
+    }
+
+    private Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty(SEGMENT_SIZE, String.valueOf(segmentSize));
+        properties.setProperty(PREALLOCATE, String.valueOf(preallocate));
+        properties.setProperty(DURABILITY, durability.name().toLowerCase());
+        properties.setProperty(FSYNC_INTERVAL, String.valueOf(fsyncInterval));
+        properties.setProperty(CHECKSUMS, String.valueOf(checksums));
+        properties.setProperty(SORTED, String.valueOf(sorted));
+        properties.setProperty(ENGINE, engine.name().toLowerCase());
+        properties.setProperty(SHARDS, String.valueOf(shards));
+        properties.setProperty(ORDERED, String.valueOf(ordered));
+        return properties;
+    }
+
+    public DatabaseConfig getDatabaseConfig() {
+        return databaseConfig;
+    }
+
+    /**
+     * @return размер, после превышения которого сегмент становится read-only
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return {@code true} - если файл нового сегмента сразу создается размером {@link #getSegmentSize()}
+     */
+    public boolean isPreallocate() {
+        return preallocate;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return период сброса на диск в миллисекундах для режима {@link Durability#INTERVAL}
+     */
+    public long getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    /**
+     * @return {@code true} - если после каждой записи сегмента хранится ее контрольная сумма
+     */
+    public boolean isChecksums() {
+        return checksums;
+    }
+
+    /**
+     * @return {@code true} - если read-only сегменты переписываются отсортированными по ключу
+     * и ищутся по разреженному индексу (см {@link com.itmo.java.basics.index.impl.SparseSegmentIndex})
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * @return устройство таблицы. Для {@link TableEngine#LSM} {@link #getSegmentSize()} - размер таблицы в памяти
+     */
+    public TableEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return на сколько частей по хешу ключа разбита таблица (см {@link com.itmo.java.basics.logic.impl.ShardedTable}).
+     * У каждой части свои сегменты, индекс и кэш
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return {@code true} - если индекс таблицы дополнительно хранит ключи упорядоченными, и обход диапазона
+     * (см {@link com.itmo.java.basics.logic.Table#scan(String, boolean, String, int)}) идет сразу с начала диапазона.
+     * Иначе каждая страница обхода просматривает весь индекс. Таблицы {@link TableEngine#LSM} обходятся
+     * по своим отсортированным сегментам, и для них настройка не действует
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @return сколько байт хранит кэш таблицы (см {@link DatabaseConfig#getCacheBytes()})
+     */
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+}
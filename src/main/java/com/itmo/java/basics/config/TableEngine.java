@@ -0,0 +1,17 @@
+package com.itmo.java.basics.config;
+
+/**
+ * Устройство таблицы, задается при ее создании
+ */
+public enum TableEngine {
+    /**
+     * {@link com.itmo.java.basics.logic.impl.TableImpl}: записи дописываются в сегменты, все ключи таблицы
+     * лежат в индексе в памяти
+     */
+    LOG,
+    /**
+     * {@link com.itmo.java.basics.logic.impl.LsmTableImpl}: записи копятся в отсортированной таблице в памяти
+     * и сбрасываются отсортированными сегментами, в памяти только разреженные индексы и фильтры Блума сегментов
+     */
+    LSM
+}
@@ -17,8 +17,10 @@ import com.itmo.java.protocol.RespWriter;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -30,9 +32,10 @@ import java.util.concurrent.Executors;
 public class JavaSocketServerConnector implements Closeable {
 
     /**
-     * Экзекьютор для выполнения ClientTask
+     * Экзекьютор для выполнения ClientTask. У каждого клиента свой поток, чтобы команды клиентов попадали на сервер
+     * одновременно: пока один клиент ждет чтения с диска, сервер выполняет команды остальных
      */
-    private final ExecutorService clientIOWorkers = Executors.newSingleThreadExecutor();
+    private final ExecutorService clientIOWorkers = Executors.newCachedThreadPool();
     private final ServerSocket serverSocket;
     private final ExecutorService connectionAcceptorExecutor = Executors.newSingleThreadExecutor();
     private final DatabaseServer databaseServer;
@@ -40,11 +43,20 @@ public class JavaSocketServerConnector implements Closeable {
     /**
      * Стартует сервер. По аналогии с сокетом открывает коннекшн в конструкторе.
      * <p>
-     * Начинает слушать заданный порт, начинает аксептить клиентские сокеты. На каждый из них начинает клиентскую таску
+     * Начинает слушать заданный порт, начинает аксептить клиентские сокеты. На каждый из них начинает клиентскую таску.
+     * Сокет слушается через {@link ServerSocketChannel}, чтобы у клиентских сокетов был канал: в него большие значения
+     * передаются прямо из файлов сегментов
      */
     public JavaSocketServerConnector(DatabaseServer databaseServer, ServerConfig config) throws IOException {
         this.databaseServer = databaseServer;
-        this.serverSocket = new ServerSocket(config.getPort());
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(config.getPort()));
+        } catch (IOException ex) {
+            serverChannel.close();
+            throw ex;
+        }
+        this.serverSocket = serverChannel.socket();
     }
 
     public void start() {
@@ -100,6 +112,9 @@ public class JavaSocketServerConnector implements Closeable {
         private final CommandReader clientReader;
         private final RespWriter clientWriter;
         /**
+         * Ответ большой строки уходит несколькими записями в сокет (см {@link RespWriter}), поэтому алгоритм Нейгла
+         * для клиентского сокета выключен: иначе хвост ответа ждал бы подтверждения от клиента
+         *
          * @param client клиентский сокет
          * @param server сервер, на котором исполняется задача
          */
@@ -107,8 +122,9 @@ public class JavaSocketServerConnector implements Closeable {
             try {
                 this.client = client;
                 this.server = server;
+                client.setTcpNoDelay(true);
                 this.clientReader = new CommandReader(new RespReader(client.getInputStream()), server.getEnv());
-                this.clientWriter = new RespWriter(client.getOutputStream());
+                this.clientWriter = new RespWriter(client.getOutputStream(), client.getChannel());
             } catch (IOException ex) {
                 throw new RuntimeException("Error while initializing client task: ioexception.", ex);
             }
@@ -1,5 +1,7 @@
 package com.itmo.java.basics.console;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface DatabaseCommand {
     /**
      * Запускает команду.
@@ -7,4 +9,13 @@ public interface DatabaseCommand {
      * @return Сообщение о выполнении результата команды.
      */
     DatabaseCommandResult execute();
+
+    /**
+     * Запускает команду, не дожидаясь диска в вызывающем потоке. По умолчанию выполняет {@link #execute()} сразу
+     *
+     * @return Сообщение о выполнении результата команды, когда оно будет готово.
+     */
+    default CompletableFuture<DatabaseCommandResult> executeAsync() {
+        return CompletableFuture.completedFuture(execute());
+    }
 }
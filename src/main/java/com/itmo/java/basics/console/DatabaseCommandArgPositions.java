@@ -3,6 +3,11 @@ package com.itmo.java.basics.console;
 /**
  * Описывает порядок аргументов.
  * Например, используется для парсинга следующих конструкций: "1 CREATE_DATABASE db1" или "1 SET_KEY db1 table1 key"
+ * <p>
+ * Необязательное время жизни значения в миллисекундах в "1 SET_KEY db1 table1 key value 60000" стоит на позиции {@link #TTL}
+ * <p>
+ * Опции таблицы в "1 CREATE_TABLE db1 table1 segmentSize=1048576" начинаются с позиции {@link #TABLE_OPTIONS},
+ * опции обхода в "1 SCAN db1 table1 prefix=user:" - с позиции {@link #SCAN_OPTIONS}
  */
 public enum DatabaseCommandArgPositions {
     COMMAND_ID(0),
@@ -10,7 +15,10 @@ public enum DatabaseCommandArgPositions {
     DATABASE_NAME(2),
     TABLE_NAME(3),
     KEY(4),
-    VALUE(5);
+    VALUE(5),
+    TTL(6),
+    TABLE_OPTIONS(4),
+    SCAN_OPTIONS(4);
 
     private final int positionIndex;
 
@@ -1,10 +1,16 @@
 package com.itmo.java.basics.console;
 
 import com.itmo.java.basics.console.impl.FailedDatabaseCommandResult;
+import com.itmo.java.basics.console.impl.ScanDatabaseCommandResult;
+import com.itmo.java.basics.console.impl.StreamedDatabaseCommandResult;
 import com.itmo.java.basics.console.impl.SuccessDatabaseCommandResult;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface DatabaseCommandResult extends DatabaseApiSerializable {
 
@@ -18,6 +24,41 @@ public interface DatabaseCommandResult extends DatabaseApiSerializable {
         return new SuccessDatabaseCommandResult(result);
     }
 
+    /**
+     * Формирует успешный результат, значение которого передается клиенту частями.
+     *
+     * @param result значение результата, закрывается после передачи
+     * @return успешный результат выполнения команды, который был сформирован
+     */
+    static DatabaseCommandResult stream(StreamedValue result) {
+        return new StreamedDatabaseCommandResult(result);
+    }
+
+    /**
+     * Формирует успешный результат команды, возвращающей страницу пар ключ - значение.
+     *
+     * @param cursor  курсор следующей страницы, null - если страниц больше нет
+     * @param entries пары ключ - значение страницы
+     * @return успешный результат выполнения команды, который был сформирован
+     */
+    static DatabaseCommandResult page(String cursor, List<Map.Entry<String, byte[]>> entries) {
+        return new ScanDatabaseCommandResult(cursor, entries);
+    }
+
+    /**
+     * Формирует успешный результат из прочитанного значения: значение, которое уже в памяти, передается
+     * одной bulk строкой, остальные - частями.
+     *
+     * @param result значение результата, пустое - если значения нет
+     * @return успешный результат выполнения команды, который был сформирован
+     */
+    static DatabaseCommandResult success(Optional<StreamedValue> result) {
+        if (result.isEmpty()) {
+            return success((byte[]) null);
+        }
+        return result.get().inMemory().map(DatabaseCommandResult::success).orElseGet(() -> stream(result.get()));
+    }
+
     /**
      * Формирует зафейленный результат команды, при выполнении которой произошла ошибка.
      *
@@ -12,39 +12,84 @@ import java.util.List;
  */
 public enum DatabaseCommands {
 
-    CREATE_DATABASE {
+    CREATE_DATABASE(1) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
-            return new CreateDatabaseCommand(env, DatabaseImpl::create, commandArgs);
+            return new CreateDatabaseCommand(env,
+                    (dbName, dbRoot) -> DatabaseImpl.create(dbName, dbRoot, env.getConfig()), commandArgs);
         }
     },
-    CREATE_TABLE {
+    CREATE_TABLE(2, true) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new CreateTableCommand(env, commandArgs);
         }
     },
-    SET_KEY {
+    SET_KEY(3) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new SetKeyCommand(env, commandArgs);
 
         }
     },
-    GET_KEY {
+    GET_KEY(3) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
             return new GetKeyCommand(env, commandArgs);
 
         }
     },
-    DELETE_KEY {
+    DELETE_KEY(3) {
         @Override
         public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
            return new DeleteKeyCommand(env, commandArgs);
         }
+    },
+    SCAN(2) {
+        @Override
+        public DatabaseCommand getCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+            return new ScanCommand(env, commandArgs);
+        }
     };
 
+    private final int routingArgs;
+    private final boolean barrier;
+
+    /**
+     * @param routingArgs сколько аргументов, начиная с имени базы данных, определяют поток сервера, в котором
+     *                    выполняется команда: база для команд базы, база и таблица для обхода таблицы,
+     *                    база, таблица и ключ для команд ключей
+     */
+    DatabaseCommands(int routingArgs) {
+        this(routingArgs, false);
+    }
+
+    /**
+     * @param barrier выполняется ли команда после всех команд, принятых до нее, и до всех следующих во всех потоках
+     *                сервера. Так создание таблицы не обгонят команды ее ключей, которые идут в разные потоки
+     */
+    DatabaseCommands(int routingArgs, boolean barrier) {
+        this.routingArgs = routingArgs;
+        this.barrier = barrier;
+    }
+
+    /**
+     * Команды с одинаковыми значениями этих аргументов выполняются в одном потоке сервера и по порядку
+     * (см {@link com.itmo.java.basics.DatabaseServer})
+     *
+     * @return сколько аргументов, начиная с {@link DatabaseCommandArgPositions#DATABASE_NAME}, определяют поток команды
+     */
+    public int getRoutingArgs() {
+        return routingArgs;
+    }
+
+    /**
+     * @return {@code true} - если команда упорядочена со всеми командами всех потоков сервера
+     */
+    public boolean isBarrier() {
+        return barrier;
+    }
+
     /**
      * Возвращает созданную команду. Каждый элемент перечисления создается со своей реализацией этого метода
      */
@@ -1,5 +1,6 @@
 package com.itmo.java.basics.console;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.logic.Database;
 
 import java.nio.file.Path;
@@ -11,6 +12,11 @@ public interface ExecutionEnvironment {
      */
     Path getWorkingPath();
 
+    /**
+     * @return настройки хранения, с которыми создаются и инициализируются базы данных
+     */
+    DatabaseConfig getConfig();
+
     /**
      * Возвращает {@code Optional<Database>} или {@code Optional#EMPTY}.
      *
@@ -1,5 +1,6 @@
 package com.itmo.java.basics.console.impl;
 
+import com.itmo.java.basics.config.TableConfig;
 import com.itmo.java.basics.console.DatabaseCommand;
 import com.itmo.java.basics.console.DatabaseCommandArgPositions;
 import com.itmo.java.basics.console.DatabaseCommandResult;
@@ -10,12 +11,13 @@ import com.itmo.java.protocol.model.RespObject;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Команда для создания базы таблицы
  */
 public class CreateTableCommand implements DatabaseCommand {
-    private final static int REQUIRED_ARGS_NUM = 4;
+    private final static int MIN_ARGS_NUM = 4;
     private final ExecutionEnvironment env;
     private final List<RespObject> commandArgs;
 
@@ -26,7 +28,8 @@ public class CreateTableCommand implements DatabaseCommand {
      *
      * @param env         env
      * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
-     *                    Id команды, имя команды, имя бд, имя таблицы
+     *                    Id команды, имя команды, имя бд, имя таблицы и необязательные опции таблицы вида
+     *                    "имя=значение" (см {@link TableConfig})
      * @throws IllegalArgumentException если передано неправильное количество аргументов
      */
     public CreateTableCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
@@ -35,7 +38,7 @@ public class CreateTableCommand implements DatabaseCommand {
         }
         this.env = env;
         this.commandArgs = commandArgs;
-        if (commandArgs.size() != REQUIRED_ARGS_NUM) {
+        if (commandArgs.size() < MIN_ARGS_NUM) {
             throw new IllegalArgumentException("Error while creating table cmd in server: incorrect number of args.");
         }
     }
@@ -53,8 +56,16 @@ public class CreateTableCommand implements DatabaseCommand {
         if (db.isEmpty()) {
             return DatabaseCommandResult.error("Error while executing CreateTableCommand: no db called - " + databaseName + ".");
         }
+        TableConfig tableConfig;
         try {
-            db.get().createTableIfNotExists(tableName);
+            tableConfig = TableConfig.fromOptions(commandArgs.subList(DatabaseCommandArgPositions.TABLE_OPTIONS.getPositionIndex(),
+                    commandArgs.size()).stream().map(RespObject::asString).collect(Collectors.toList()), env.getConfig());
+        }
+        catch (DatabaseException ex) {
+            return DatabaseCommandResult.error("Error while executing CreateTableCommand: " + ex.getMessage());
+        }
+        try {
+            db.get().createTableIfNotExists(tableName, tableConfig);
         }
         catch (DatabaseException ex) {
             return DatabaseCommandResult.error("Error while executing CreateTableCommand: there is table called - " + tableName +
@@ -5,16 +5,18 @@ import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.logic.Database;
 
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
     private final Path workingPath;
-    private final Map<String, Database> databases = new HashMap<String, Database>();
+    private final DatabaseConfig config;
+    private final Map<String, Database> databases = new ConcurrentHashMap<>();
 
     public ExecutionEnvironmentImpl(DatabaseConfig config) {
         workingPath = Path.of(config.getWorkingPath());
+        this.config = config;
     }
 
     @Override
@@ -22,13 +24,21 @@ public class ExecutionEnvironmentImpl implements ExecutionEnvironment {
        return Optional.ofNullable(databases.get(name));
     }
 
+    /**
+     * Уже добавленная база с тем же именем не заменяется
+     */
     @Override
     public void addDatabase(Database db) {
-        databases.put(db.getName(), db);
+        databases.putIfAbsent(db.getName(), db);
     }
 
     @Override
     public Path getWorkingPath() {
         return workingPath;
     }
+
+    @Override
+    public DatabaseConfig getConfig() {
+        return config;
+    }
 }
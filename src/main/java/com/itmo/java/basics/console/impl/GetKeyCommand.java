@@ -6,10 +6,12 @@ import com.itmo.java.basics.console.DatabaseCommandResult;
 import com.itmo.java.basics.console.ExecutionEnvironment;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.protocol.model.RespObject;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Команда для чтения данных по ключу
@@ -44,7 +46,8 @@ public class GetKeyCommand implements DatabaseCommand {
     /**
      * Читает значение по ключу
      *
-     * @return {@link DatabaseCommandResult#success(byte[])} с прочитанным значением. Например, "previous". Null, если такого нет
+     * @return {@link DatabaseCommandResult#success(byte[])} с прочитанным значением. Например, "previous". Null, если такого нет.
+     * Большие значения передаются частями прямо из файла (см {@link DatabaseCommandResult#stream(StreamedValue)})
      */
     @Override
     public DatabaseCommandResult execute() {
@@ -55,14 +58,42 @@ public class GetKeyCommand implements DatabaseCommand {
         if (db.isEmpty()) {
             return DatabaseCommandResult.error("Error while executing GetKeyCommand: no db called - " + databaseName + ".");
         }
-        Optional<byte[]> res;
+        Optional<StreamedValue> res;
         try {
-            res = db.get().read(tableName, key);
+            res = db.get().readStreamed(tableName, key);
         }
         catch (DatabaseException ex) {
             return DatabaseCommandResult.error("Error while executing GetKeyCommand: no table called - " + tableName +
                     " in database " + databaseName + ".");
         }
-        return DatabaseCommandResult.success(res.isEmpty() ? null : res.get());
+        return DatabaseCommandResult.success(res);
+    }
+
+    /**
+     * Читает значение по ключу: попадание в кэш возвращается сразу, чтение с диска идет в пуле потоков чтения
+     * сегментов (см {@link Database#readAsync(String, String)})
+     */
+    @Override
+    public CompletableFuture<DatabaseCommandResult> executeAsync() {
+        String databaseName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
+        String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
+        String key = commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asString();
+        Optional<Database> db = env.getDatabase(databaseName);
+        if (db.isEmpty()) {
+            return CompletableFuture.completedFuture(DatabaseCommandResult.error(
+                    "Error while executing GetKeyCommand: no db called - " + databaseName + "."));
+        }
+        CompletableFuture<Optional<StreamedValue>> res;
+        try {
+            res = db.get().readAsync(tableName, key);
+        }
+        catch (DatabaseException ex) {
+            return CompletableFuture.completedFuture(DatabaseCommandResult.error(
+                    "Error while executing GetKeyCommand: no table called - " + tableName + " in database "
+                            + databaseName + "."));
+        }
+        return res.handle((value, ex) -> ex == null ? DatabaseCommandResult.success(value)
+                : DatabaseCommandResult.error("Error while executing GetKeyCommand: cannot read key " + key
+                + " from table " + tableName + "."));
     }
 }
@@ -0,0 +1,141 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommand;
+import com.itmo.java.basics.console.DatabaseCommandArgPositions;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Команда для постраничного обхода ключей таблицы по возрастанию.
+ * Например, "1 SCAN db1 table1 prefix=user: limit=100" или "2 SCAN db1 table1 start=a end=m cursor=user:42"
+ */
+public class ScanCommand implements DatabaseCommand {
+    public static final String START = "start";
+    public static final String END = "end";
+    public static final String PREFIX = "prefix";
+    public static final String CURSOR = "cursor";
+    public static final String LIMIT = "limit";
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * Больше пар за раз сервер не отдает, чтобы страница не превращалась в выгрузку всей таблицы
+     */
+    public static final int MAX_LIMIT = 10_000;
+    private final static int MIN_ARGS_NUM = 4;
+    private final ExecutionEnvironment env;
+    private final List<RespObject> commandArgs;
+
+    /**
+     * Создает команду.
+     * <br/>
+     * Обратите внимание, что в конструкторе нет логики проверки валидности данных. Не проверяется, можно ли исполнить команду. Только формальные признаки (например, количество переданных значений или ненуловость объектов
+     *
+     * @param env         env
+     * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
+     *                    Id команды, имя команды, имя бд, таблицы и необязательные опции вида "имя=значение":
+     *                    {@link #START} (включается), {@link #END} (не включается) или {@link #PREFIX},
+     *                    {@link #CURSOR} из ответа на предыдущую страницу и {@link #LIMIT}
+     * @throws IllegalArgumentException если передано неправильное количество аргументов
+     */
+    public ScanCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
+        this.env = env;
+        this.commandArgs = commandArgs;
+        if (commandArgs.size() < MIN_ARGS_NUM) {
+            throw new IllegalArgumentException("Error while creating scan cmd in server: incorrect number of args.");
+        }
+    }
+
+    /**
+     * Читает одну страницу диапазона. Курсор - последний просмотренный таблицей ключ (см {@link ScanPage#getResumeKey()}):
+     * следующая страница начинается сразу после него. Страница может быть короче limit и при непройденном диапазоне
+     *
+     * @return {@link DatabaseCommandResult#page(String, List)} с курсором следующей страницы
+     * (null, если диапазон пройден) и парами ключ - значение
+     */
+    @Override
+    public DatabaseCommandResult execute() {
+        String databaseName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
+        String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
+        String start = null;
+        String end = null;
+        String prefix = null;
+        String cursor = null;
+        int limit = DEFAULT_LIMIT;
+        for (RespObject arg : commandArgs.subList(DatabaseCommandArgPositions.SCAN_OPTIONS.getPositionIndex(),
+                commandArgs.size())) {
+            String option = arg.asString();
+            int separator = option == null ? -1 : option.indexOf('=');
+            if (separator <= 0) {
+                return DatabaseCommandResult.error("Error while executing ScanCommand: option " + option
+                        + " is not of the form name=value.");
+            }
+            String value = option.substring(separator + 1);
+            switch (option.substring(0, separator)) {
+                case START:
+                    start = value;
+                    break;
+                case END:
+                    end = value;
+                    break;
+                case PREFIX:
+                    prefix = value;
+                    break;
+                case CURSOR:
+                    cursor = value;
+                    break;
+                case LIMIT:
+                    try {
+                        limit = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        limit = 0;
+                    }
+                    if (limit <= 0 || limit > MAX_LIMIT) {
+                        return DatabaseCommandResult.error("Error while executing ScanCommand: limit must be from 1 to "
+                                + MAX_LIMIT + ".");
+                    }
+                    break;
+                default:
+                    return DatabaseCommandResult.error("Error while executing ScanCommand: unknown option " + option + ".");
+            }
+        }
+        if (prefix != null) {
+            if (start != null || end != null) {
+                return DatabaseCommandResult.error("Error while executing ScanCommand: prefix cannot be combined with start or end.");
+            }
+            start = prefix;
+            end = prefixEnd(prefix);
+        }
+        Optional<Database> db = env.getDatabase(databaseName);
+        if (db.isEmpty()) {
+            return DatabaseCommandResult.error("Error while executing ScanCommand: no db called - " + databaseName + ".");
+        }
+        boolean fromInclusive = cursor == null || (start != null && cursor.compareTo(start) < 0);
+        String from = fromInclusive ? start : cursor;
+        ScanPage page;
+        try {
+            page = db.get().scan(tableName, from, fromInclusive, end, limit);
+        } catch (DatabaseException ex) {
+            return DatabaseCommandResult.error("Error while executing ScanCommand: " + ex.getMessage());
+        }
+        return DatabaseCommandResult.page(page.getResumeKey(), page.getEntries());
+    }
+
+    /**
+     * @return наименьшая строка, большая всех строк с этим префиксом, или null, если такой нет
+     */
+    private static String prefixEnd(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char last = prefix.charAt(i);
+            if (last != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (last + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат успешной команды {@link ScanCommand}: курсор следующей страницы и пары ключ - значение
+ */
+public class ScanDatabaseCommandResult implements DatabaseCommandResult {
+
+    private final String cursor;
+    private final List<Map.Entry<String, byte[]>> entries;
+
+    public ScanDatabaseCommandResult(String cursor, List<Map.Entry<String, byte[]>> entries) {
+        this.cursor = cursor;
+        this.entries = entries;
+    }
+
+    @Override
+    public String getPayLoad() {
+        return serialize().asString();
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return true;
+    }
+
+    /**
+     * Сериализуется в {@link RespArray}: курсор ({@link RespBulkString#NULL_STRING}, если диапазон пройден),
+     * затем ключи и значения вперемешку
+     */
+    @Override
+    public RespObject serialize() {
+        RespObject[] objects = new RespObject[1 + 2 * entries.size()];
+        objects[0] = cursor == null ? RespBulkString.NULL_STRING : new RespBulkString(cursor.getBytes(StandardCharsets.UTF_8));
+        int i = 1;
+        for (Map.Entry<String, byte[]> entry : entries) {
+            objects[i++] = new RespBulkString(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            objects[i++] = new RespBulkString(entry.getValue());
+        }
+        return new RespArray(objects);
+    }
+}
@@ -4,10 +4,18 @@ import com.itmo.java.basics.console.DatabaseCommand;
 import com.itmo.java.basics.console.DatabaseCommandArgPositions;
 import com.itmo.java.basics.console.DatabaseCommandResult;
 import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.protocol.model.RespObject;
+import com.itmo.java.protocol.model.RespStreamedBulkString;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,7 +34,8 @@ public class SetKeyCommand implements DatabaseCommand {
      *
      * @param env         env
      * @param commandArgs аргументы для создания (порядок - {@link DatabaseCommandArgPositions}.
-     *                    Id команды, имя команды, имя бд, таблицы, ключ, значение
+     *                    Id команды, имя команды, имя бд, таблицы, ключ, значение и необязательное
+     *                    время жизни значения в миллисекундах
      * @throws IllegalArgumentException если передано неправильное количество аргументов
      */
     public SetKeyCommand(ExecutionEnvironment env, List<RespObject> commandArgs) {
@@ -35,7 +44,7 @@ public class SetKeyCommand implements DatabaseCommand {
         }
         this.env = env;
         this.commandArgs = commandArgs;
-        if (commandArgs.size() != REQUIRED_ARGS_NUM) {
+        if (commandArgs.size() != REQUIRED_ARGS_NUM && commandArgs.size() != REQUIRED_ARGS_NUM + 1) {
             throw new IllegalArgumentException("Error while creating table cmd in server: incorrect number of args.");
         }
     }
@@ -43,26 +52,94 @@ public class SetKeyCommand implements DatabaseCommand {
     /**
      * Записывает значение
      *
-     * @return {@link DatabaseCommandResult#success(byte[])} c предыдущим значением. Например, "previous" или null, если такого не было
+     * @return {@link DatabaseCommandResult#success(byte[])} c предыдущим значением. Например, "previous" или null, если такого не было.
+     * Значение, которое {@link com.itmo.java.protocol.RespReader} переписал во временный файл, пишется в таблицу частями
      */
     @Override
     public DatabaseCommandResult execute() {
         String databaseName = commandArgs.get(DatabaseCommandArgPositions.DATABASE_NAME.getPositionIndex()).asString();
         String tableName = commandArgs.get(DatabaseCommandArgPositions.TABLE_NAME.getPositionIndex()).asString();
         String key = commandArgs.get(DatabaseCommandArgPositions.KEY.getPositionIndex()).asString();
-        String value = commandArgs.get(DatabaseCommandArgPositions.VALUE.getPositionIndex()).asString();
+        RespObject value = commandArgs.get(DatabaseCommandArgPositions.VALUE.getPositionIndex());
+        try {
+            return execute(databaseName, tableName, key, value);
+        } finally {
+            if (value instanceof RespStreamedBulkString) {
+                release((RespStreamedBulkString) value, key);
+            }
+        }
+    }
+
+    private DatabaseCommandResult execute(String databaseName, String tableName, String key, RespObject value) {
+        long expiresAt = KeyExpiry.NEVER;
+        if (commandArgs.size() > DatabaseCommandArgPositions.TTL.getPositionIndex()) {
+            long ttl;
+            try {
+                ttl = Long.parseLong(commandArgs.get(DatabaseCommandArgPositions.TTL.getPositionIndex()).asString());
+            } catch (NumberFormatException ex) {
+                ttl = 0;
+            }
+            if (ttl <= 0) {
+                return DatabaseCommandResult.error("Error while executing SetKeyCommand: ttl must be a positive number of milliseconds.");
+            }
+            expiresAt = System.currentTimeMillis() + ttl;
+        }
         Optional<Database> db = env.getDatabase(databaseName);
         if (db.isEmpty()) {
             return DatabaseCommandResult.error("Error while executing SetKeyCommand: no db called - " + databaseName + ".");
         }
-        Optional<byte[]> res;
+        Optional<StreamedValue> res = Optional.empty();
         try {
-            res = db.get().read(tableName, key);
-            db.get().write(tableName, key, value.getBytes());
+            res = db.get().readStreamed(tableName, key);
+            if (value instanceof RespStreamedBulkString) {
+                db.get().write(tableName, key, new BulkStringValue((RespStreamedBulkString) value), expiresAt);
+            } else {
+                db.get().write(tableName, key, value.asString().getBytes(StandardCharsets.UTF_8), expiresAt);
+            }
         }
         catch (DatabaseException ex) {
+            res.ifPresent(previous -> release(previous, key));
             return DatabaseCommandResult.error("Error while executing SetKeyCommand.");
         }
-        return DatabaseCommandResult.success(res.isEmpty() ? null : res.get());
+        return DatabaseCommandResult.success(res);
+    }
+
+    private static void release(Closeable value, String key) {
+        try {
+            value.close();
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while releasing value of key " + key, ex);
+        }
+    }
+
+    /**
+     * Значение команды, которое {@link com.itmo.java.protocol.RespReader} не стал собирать в массив
+     */
+    private static final class BulkStringValue implements StreamedValue {
+        private final RespStreamedBulkString string;
+
+        private BulkStringValue(RespStreamedBulkString string) {
+            this.string = string;
+        }
+
+        @Override
+        public long getSize() {
+            return string.getSize();
+        }
+
+        @Override
+        public Optional<byte[]> inMemory() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void transferTo(OutputStream out) throws IOException {
+            string.writeContent(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            string.close();
+        }
     }
 }
@@ -0,0 +1,60 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.logic.StreamedValue;
+import com.itmo.java.protocol.model.RespObject;
+import com.itmo.java.protocol.model.RespStreamedBulkString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Результат успешной команды, значение которого передается клиенту прямо из файла сегмента
+ */
+public class StreamedDatabaseCommandResult implements DatabaseCommandResult {
+
+    private final StreamedValue value;
+
+    public StreamedDatabaseCommandResult(StreamedValue value) {
+        this.value = value;
+    }
+
+    /**
+     * Собирает значение в строку целиком, после чего передать его еще раз нельзя
+     */
+    @Override
+    public String getPayLoad() {
+        try (value) {
+            return new String(value.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error while reading streamed result.", ex);
+        }
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return true;
+    }
+
+    /**
+     * Сериализуется в {@link RespStreamedBulkString}, которая закрывает значение после передачи. Если у сокета
+     * есть канал, значение передается в него напрямую (см {@link StreamedValue#transferTo(WritableByteChannel)})
+     */
+    @Override
+    public RespObject serialize() {
+        return new RespStreamedBulkString(value.getSize(), new RespStreamedBulkString.Content() {
+            @Override
+            public void writeTo(OutputStream os) throws IOException {
+                value.transferTo(os);
+            }
+
+            @Override
+            public void writeTo(WritableByteChannel channel) throws IOException {
+                value.transferTo(channel);
+            }
+        }, value);
+    }
+}
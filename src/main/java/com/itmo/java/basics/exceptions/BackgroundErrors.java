@@ -0,0 +1,41 @@
+package com.itmo.java.basics.exceptions;
+
+/**
+ * Единое место, куда сообщают об ошибках, которые некому вернуть: ошибки фоновых потоков (сброс на диск, сжатие,
+ * истечение ключей) и необязательных шагов вроде записи подсказок. По умолчанию они печатаются в {@link System#err},
+ * обработчик можно заменить (см {@link #setHandler(Handler)})
+ */
+public final class BackgroundErrors {
+
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param message что делалось, когда произошла ошибка
+         * @param cause   ошибка, {@code null} - сообщение о восстановлении без исключения
+         */
+        void onError(String message, Throwable cause);
+    }
+
+    private static final Handler STDERR = (message, cause) ->
+            System.err.println(cause == null ? message : message + ": " + cause.getMessage());
+
+    private static volatile Handler handler = STDERR;
+
+    private BackgroundErrors() {
+    }
+
+    public static void report(String message, Throwable cause) {
+        try {
+            handler.onError(message, cause);
+        } catch (RuntimeException ex) {
+            STDERR.onError(message, cause);
+        }
+    }
+
+    /**
+     * @param handler новый обработчик, {@code null} - печать в {@link System#err}
+     */
+    public static void setHandler(Handler handler) {
+        BackgroundErrors.handler = handler == null ? STDERR : handler;
+    }
+}
@@ -2,4 +2,25 @@ package com.itmo.java.basics.index;
 
 public interface SegmentOffsetInfo {
     long getOffset();
+
+    /**
+     * @return размер записи в байтах
+     */
+    long getSize();
+
+    /**
+     * @return смещение значения в файле, чтобы прочитать запись одним чтением ровно {@link #getSize()} байт
+     * и сразу взять из нее значение
+     */
+    long getValueOffset();
+
+    /**
+     * @return {@code true} - если запись является удалением ключа
+     */
+    boolean isRemoved();
+
+    /**
+     * @return время истечения значения (см {@link com.itmo.java.basics.logic.KeyExpiry})
+     */
+    long getExpiresAt();
 }
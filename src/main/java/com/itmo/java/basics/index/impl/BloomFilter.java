@@ -0,0 +1,82 @@
+package com.itmo.java.basics.index.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Фильтр Блума по ключам сегмента. Если {@link #mightContain(String)} вернул {@code false}, ключа в сегменте точно нет,
+ * и сегмент можно не читать
+ */
+public class BloomFilter {
+    private static final long SECOND_SEED = 0x9E3779B97F4A7C15L;
+
+    private final long[] bits;
+    private final int numHashes;
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Создает пустой фильтр, рассчитанный на {@code expectedKeys} ключей с заданной вероятностью ложного срабатывания
+     */
+    public static BloomFilter create(long expectedKeys, double falsePositiveRate) {
+        long keys = Math.max(1, expectedKeys);
+        long numBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int numLongs = Math.toIntExact(Math.max(1, (numBits + Long.SIZE - 1) / Long.SIZE));
+        int numHashes = (int) Math.max(1, Math.round((double) numLongs * Long.SIZE / keys * Math.log(2)));
+        return new BloomFilter(new long[numLongs], numHashes);
+    }
+
+    public void put(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long h1 = KeyHash.of(bytes, 0);
+        long h2 = KeyHash.of(bytes, SECOND_SEED) | 1;
+        long numBits = (long) bits.length * Long.SIZE;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long h1 = KeyHash.of(bytes, 0);
+        long h2 = KeyHash.of(bytes, SECOND_SEED) | 1;
+        long numBits = (long) bits.length * Long.SIZE;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(numHashes);
+        output.writeInt(bits.length);
+        for (long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * @throws IOException если данные не похожи на фильтр или оборваны
+     */
+    public static BloomFilter readFrom(DataInput input) throws IOException {
+        int numHashes = input.readInt();
+        int numLongs = input.readInt();
+        if (numHashes <= 0 || numLongs <= 0) {
+            throw new IOException("Bloom filter header is corrupted.");
+        }
+        long[] bits = new long[numLongs];
+        for (int i = 0; i < numLongs; i++) {
+            bits[i] = input.readLong();
+        }
+        return new BloomFilter(bits, numHashes);
+    }
+}
@@ -0,0 +1,55 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.Segment;
+
+/**
+ * Результат поиска в индексе таблицы без создания объектов (см {@link TableIndex#searchForKey(String, IndexLookup)}).
+ * Поток переиспользует один объект для многих поисков, поэтому сохранять его или отдавать в другой поток нельзя
+ */
+public final class IndexLookup implements SegmentOffsetInfo {
+    private Segment segment;
+    private long offset;
+    private long size;
+    private long valueOffset;
+    private boolean removed;
+    private long expiresAt;
+
+    void set(Segment segment, long offset, long size, long valueOffset, boolean removed, long expiresAt) {
+        this.segment = segment;
+        this.offset = offset;
+        this.size = size;
+        this.valueOffset = valueOffset;
+        this.removed = removed;
+        this.expiresAt = expiresAt;
+    }
+
+    public Segment getSegment() {
+        return segment;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getValueOffset() {
+        return valueOffset;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @Override
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
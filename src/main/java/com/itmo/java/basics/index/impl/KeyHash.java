@@ -0,0 +1,23 @@
+package com.itmo.java.basics.index.impl;
+
+/**
+ * 64-битный хеш байтов ключа: FNV-1a с перемешиванием результата (финализатор MurmurHash3)
+ */
+final class KeyHash {
+    private KeyHash() {
+    }
+
+    static long of(byte[] bytes, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (byte b : bytes) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -2,20 +2,31 @@ package com.itmo.java.basics.index.impl;
 
 import com.itmo.java.basics.index.KvsIndex;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 public class MapBasedKvsIndex<K, V> implements KvsIndex<K, V> {
-    private final Map<K, V> index = new HashMap<>(200);
+    private final Map<K, V> index = new ConcurrentHashMap<>(200);
 
     @Override
     public void onIndexedEntityUpdated(K key, V value) {
         index.put(key, value);
     }
 
+    @Override
+    public void onIndexedEntityRemoved(K key) {
+        index.remove(key);
+    }
+
     @Override
     public Optional<V> searchForKey(K key) {
         return Optional.ofNullable(index.get(key));
     }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        index.forEach(action);
+    }
 }
@@ -0,0 +1,367 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Индекс ключей на примитивных массивах с открытой адресацией (линейное пробирование).
+ * <p>
+ * Для каждого ключа хранятся хеш, ссылка на байты ключа, владелец записи (например сегмент), смещение, размер записи
+ * и время истечения значения - около 44 байт в ячейке таблицы плюс байты ключа в общих страницах. В {@link MapBasedKvsIndex} тот же ключ стоит
+ * больше 100 байт в нескольких объектах, которые к тому же обходит сборщик мусора. Объекты ключей и значений
+ * создаются только при чтении из индекса. Смещение значения не хранится, а вычисляется по смещению записи
+ * и длине ключа.
+ * <p>
+ * Поиск ключей идет под общей блокировкой чтения, поэтому читающие потоки не ждут друг друга,
+ * изменения индекса - под исключительной блокировкой. Искомый ключ не кодируется в байты: хеш берется от строки,
+ * а символы сравниваются с байтами ключа в странице на месте (см {@link #keyEquals(int, String)}).
+ * {@link #searchForKey(String, IndexLookup)} к тому же не создает объект результата
+ */
+abstract class OpenAddressingIndex<V extends SegmentOffsetInfo> implements KvsIndex<String, V> {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final long REMOVED_FLAG = Long.MIN_VALUE;
+    /**
+     * Хеш пустой ячейки. Хеши ключей, совпавшие с ним, заменяются на {@code 1}
+     */
+    private static final int EMPTY = 0;
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    /**
+     * Номер страницы (старшие 32 бита) и смещение в ней (младшие 32 бита) байтов ключа
+     */
+    private long[] keyRefs = new long[INITIAL_CAPACITY];
+    private int[] keyLengths = new int[INITIAL_CAPACITY];
+    private Object[] owners = new Object[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    /**
+     * Размер записи, старший бит - признак удаления
+     */
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] expiries = new long[INITIAL_CAPACITY];
+    private int count = 0;
+    /**
+     * Байты ключей подряд. Ключ длиннее страницы получает отдельную страницу своего размера, следующий ключ
+     * начинает новую страницу.
+     * Байты удаленных из индекса ключей остаются в страницах, пока их не наберется больше живых
+     * (см {@link #compactPages()})
+     */
+    private final List<byte[]> pages = new ArrayList<>();
+    private int pagePosition = PAGE_SIZE;
+    /**
+     * Сколько байт ключей записано в страницы и сколько из них принадлежит удаленным ключам
+     */
+    private long storedKeyBytes = 0;
+    private long deadKeyBytes = 0;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void onIndexedEntityUpdated(String key, V value) {
+        int hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            update(key, hash, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void update(String key, int hash, V value) {
+        int slot = find(key, hash);
+        if (slot < 0) {
+            if ((count + 1) * 4L > hashes.length * 3L) {
+                resize();
+                slot = find(key, hash);
+            }
+            slot = -slot - 1;
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            hashes[slot] = hash;
+            keyRefs[slot] = storeKey(bytes, 0, bytes.length);
+            keyLengths[slot] = bytes.length;
+            count++;
+        }
+        owners[slot] = ownerOf(value);
+        offsets[slot] = value.getOffset();
+        sizes[slot] = value.isRemoved() ? value.getSize() | REMOVED_FLAG : value.getSize();
+        expiries[slot] = value.getExpiresAt();
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(String key) {
+        int hash = hash(key);
+        lock.writeLock().lock();
+        try {
+            remove(key, hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String key, int hash) {
+        int slot = find(key, hash);
+        if (slot < 0) {
+            return;
+        }
+        deadKeyBytes += keyLengths[slot];
+        int mask = hashes.length - 1;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; hashes[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            boolean reachable = gap <= next ? home <= gap || home > next : home <= gap && home > next;
+            if (reachable) {
+                move(next, gap);
+                gap = next;
+            }
+        }
+        hashes[gap] = EMPTY;
+        owners[gap] = null;
+        count--;
+        if (deadKeyBytes > PAGE_SIZE && deadKeyBytes * 2 > storedKeyBytes) {
+            compactPages();
+        }
+    }
+
+    /**
+     * Переписывает байты живых ключей в новые страницы, а старые отдает сборщику мусора. Запускается, когда
+     * байты удаленных ключей занимают больше половины страниц, поэтому каждый байт ключа переписывается
+     * в среднем не больше одного раза
+     */
+    private void compactPages() {
+        List<byte[]> oldPages = new ArrayList<>(pages);
+        pages.clear();
+        pagePosition = PAGE_SIZE;
+        storedKeyBytes = 0;
+        deadKeyBytes = 0;
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != EMPTY) {
+                keyRefs[slot] = storeKey(oldPages.get((int) (keyRefs[slot] >>> 32)), (int) keyRefs[slot],
+                        keyLengths[slot]);
+            }
+        }
+    }
+
+    @Override
+    public Optional<V> searchForKey(String key) {
+        int hash = hash(key);
+        lock.readLock().lock();
+        try {
+            int slot = find(key, hash);
+            return slot < 0 ? Optional.empty() : Optional.of(valueAt(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Копирует запись ключа в into, ничего не создавая. Владелец записи должен быть сегментом
+     * (см {@link OpenAddressingTableIndex})
+     *
+     * @return {@code true} - если ключ есть в индексе
+     */
+    boolean searchForKey(String key, IndexLookup into) {
+        int hash = hash(key);
+        lock.readLock().lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            into.set((Segment) owners[slot], offsets[slot], sizes[slot] & ~REMOVED_FLAG,
+                    DatabaseOutputStream.valueOffset(offsets[slot], keyLengths[slot]), sizes[slot] < 0, expiries[slot]);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обходит индекс под блокировкой чтения: действие не должно менять этот же индекс
+     */
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < hashes.length; slot++) {
+                if (hashes[slot] != EMPTY) {
+                    byte[] page = pages.get((int) (keyRefs[slot] >>> 32));
+                    action.accept(new String(page, (int) keyRefs[slot], keyLengths[slot], StandardCharsets.UTF_8),
+                            valueAt(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return сколько страниц занимают байты ключей (см {@link #compactPages()})
+     */
+    int getPageCount() {
+        lock.readLock().lock();
+        try {
+            return pages.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return владелец записи, который хранится в индексе вместе со смещением и размером
+     */
+    protected abstract Object ownerOf(V value);
+
+    protected abstract V toValue(Object owner, long offset, long size, long valueOffset, boolean removed, long expiresAt);
+
+    /**
+     * @return номер ячейки с ключом или {@code -(номер свободной ячейки) - 1}, если ключа нет
+     */
+    private int find(String key, int hash) {
+        int mask = hashes.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (hashes[slot] == EMPTY) {
+                return -slot - 1;
+            }
+            if (hashes[slot] == hash && keyEquals(slot, key)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Сравнивает символы ключа с байтами ключа ячейки, кодируя их в UTF-8 по одному, как {@link String#getBytes}:
+     * одиночные суррогаты кодируются как {@code '?'}
+     */
+    private boolean keyEquals(int slot, String key) {
+        int length = keyLengths[slot];
+        if (length < key.length() || length > key.length() * 3L) {
+            return false;
+        }
+        byte[] page = pages.get((int) (keyRefs[slot] >>> 32));
+        int position = (int) keyRefs[slot];
+        int end = position + length;
+        for (int i = 0; i < key.length(); i++) {
+            int codePoint = key.charAt(i);
+            if (codePoint < 0x80) {
+                if (position == end || page[position++] != codePoint) {
+                    return false;
+                }
+                continue;
+            }
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < key.length()
+                    && Character.isLowSurrogate(key.charAt(i + 1))) {
+                codePoint = Character.toCodePoint((char) codePoint, key.charAt(++i));
+            } else if (Character.isSurrogate((char) codePoint)) {
+                codePoint = '?';
+            }
+            int bytes = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (end - position < bytes) {
+                return false;
+            }
+            int lead = bytes == 1 ? codePoint : (0xFF00 >> bytes) & 0xFF | codePoint >>> 6 * (bytes - 1);
+            if (page[position++] != (byte) lead) {
+                return false;
+            }
+            for (int shift = 6 * (bytes - 2); shift >= 0; shift -= 6) {
+                if (page[position++] != (byte) (0x80 | codePoint >>> shift & 0x3F)) {
+                    return false;
+                }
+            }
+        }
+        return position == end;
+    }
+
+    /**
+     * @return ссылка на байты ключа (см {@link #keyRefs})
+     */
+    private long storeKey(byte[] key, int from, int length) {
+        storedKeyBytes += length;
+        if (length > PAGE_SIZE) {
+            pages.add(Arrays.copyOfRange(key, from, from + length));
+            pagePosition = PAGE_SIZE;
+            return (long) (pages.size() - 1) << 32;
+        }
+        if (pagePosition + length > PAGE_SIZE) {
+            pages.add(new byte[PAGE_SIZE]);
+            pagePosition = 0;
+        }
+        System.arraycopy(key, from, pages.get(pages.size() - 1), pagePosition, length);
+        long ref = (long) (pages.size() - 1) << 32 | pagePosition;
+        pagePosition += length;
+        return ref;
+    }
+
+    private V valueAt(int slot) {
+        return toValue(owners[slot], offsets[slot], sizes[slot] & ~REMOVED_FLAG,
+                DatabaseOutputStream.valueOffset(offsets[slot], keyLengths[slot]), sizes[slot] < 0, expiries[slot]);
+    }
+
+    private void move(int from, int to) {
+        hashes[to] = hashes[from];
+        keyRefs[to] = keyRefs[from];
+        keyLengths[to] = keyLengths[from];
+        owners[to] = owners[from];
+        offsets[to] = offsets[from];
+        sizes[to] = sizes[from];
+        expiries[to] = expiries[from];
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        long[] oldKeyRefs = keyRefs;
+        int[] oldKeyLengths = keyLengths;
+        Object[] oldOwners = owners;
+        long[] oldOffsets = offsets;
+        long[] oldSizes = sizes;
+        long[] oldExpiries = expiries;
+        int capacity = oldHashes.length * 2;
+        hashes = new int[capacity];
+        keyRefs = new long[capacity];
+        keyLengths = new int[capacity];
+        owners = new Object[capacity];
+        offsets = new long[capacity];
+        sizes = new long[capacity];
+        expiries = new long[capacity];
+        int mask = capacity - 1;
+        for (int from = 0; from < oldHashes.length; from++) {
+            if (oldHashes[from] == EMPTY) {
+                continue;
+            }
+            int to = oldHashes[from] & mask;
+            while (hashes[to] != EMPTY) {
+                to = (to + 1) & mask;
+            }
+            hashes[to] = oldHashes[from];
+            keyRefs[to] = oldKeyRefs[from];
+            keyLengths[to] = oldKeyLengths[from];
+            owners[to] = oldOwners[from];
+            offsets[to] = oldOffsets[from];
+            sizes[to] = oldSizes[from];
+            expiries[to] = oldExpiries[from];
+        }
+    }
+
+    /**
+     * Перемешанный {@link String#hashCode()}: строка кэширует его, поэтому повторный поиск того же ключа
+     * не проходит по его символам
+     */
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
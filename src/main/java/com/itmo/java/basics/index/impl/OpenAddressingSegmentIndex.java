@@ -0,0 +1,19 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+
+/**
+ * Индекс ключей сегмента на примитивных массивах (см {@link OpenAddressingIndex})
+ */
+public class OpenAddressingSegmentIndex extends OpenAddressingIndex<SegmentOffsetInfo> {
+    @Override
+    protected Object ownerOf(SegmentOffsetInfo value) {
+        return null;
+    }
+
+    @Override
+    protected SegmentOffsetInfo toValue(Object owner, long offset, long size, long valueOffset, boolean removed,
+                                        long expiresAt) {
+        return new SegmentOffsetInfoImpl(offset, size, valueOffset, removed, expiresAt);
+    }
+}
@@ -0,0 +1,20 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.logic.Segment;
+
+/**
+ * Индекс ключей таблицы на примитивных массивах (см {@link OpenAddressingIndex}). Сегмент записи хранится ссылкой
+ * в общем массиве, отдельного объекта на ключ нет
+ */
+public class OpenAddressingTableIndex extends OpenAddressingIndex<TableIndexEntry> {
+    @Override
+    protected Object ownerOf(TableIndexEntry value) {
+        return value.getSegment();
+    }
+
+    @Override
+    protected TableIndexEntry toValue(Object owner, long offset, long size, long valueOffset, boolean removed,
+                                      long expiresAt) {
+        return new TableIndexEntry((Segment) owner, offset, size, valueOffset, removed, expiresAt);
+    }
+}
@@ -1,6 +1,43 @@
 package com.itmo.java.basics.index.impl;
 
+import com.itmo.java.basics.config.SegmentIndexType;
+import com.itmo.java.basics.index.KvsIndex;
 import com.itmo.java.basics.index.SegmentOffsetInfo;
 
-public class SegmentIndex extends MapBasedKvsIndex<String, SegmentOffsetInfo> {
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Индекс ключей сегмента. Реализация выбирается при старте (см {@link SegmentIndexType})
+ */
+public class SegmentIndex implements KvsIndex<String, SegmentOffsetInfo> {
+    private final KvsIndex<String, SegmentOffsetInfo> index;
+
+    public SegmentIndex() {
+        this(SegmentIndexType.HASH_MAP);
+    }
+
+    public SegmentIndex(SegmentIndexType type) {
+        this.index = type == SegmentIndexType.OPEN_ADDRESSING ? new OpenAddressingSegmentIndex() : new MapBasedKvsIndex<>();
+    }
+
+    @Override
+    public void onIndexedEntityUpdated(String key, SegmentOffsetInfo value) {
+        index.onIndexedEntityUpdated(key, value);
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(String key) {
+        index.onIndexedEntityRemoved(key);
+    }
+
+    @Override
+    public Optional<SegmentOffsetInfo> searchForKey(String key) {
+        return index.searchForKey(key);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super SegmentOffsetInfo> action) {
+        index.forEach(action);
+    }
 }
@@ -1,16 +1,53 @@
 package com.itmo.java.basics.index.impl;
 
 import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.KeyExpiry;
 
 public class SegmentOffsetInfoImpl implements SegmentOffsetInfo {
     private final long offset;
+    private final long size;
+    private final long valueOffset;
+    private final boolean removed;
+    private final long expiresAt;
 
     public SegmentOffsetInfoImpl(long offset) {
+        this(offset, 0, offset, false);
+    }
+
+    public SegmentOffsetInfoImpl(long offset, long size, long valueOffset, boolean removed) {
+        this(offset, size, valueOffset, removed, KeyExpiry.NEVER);
+    }
+
+    public SegmentOffsetInfoImpl(long offset, long size, long valueOffset, boolean removed, long expiresAt) {
         this.offset = offset;
+        this.size = size;
+        this.valueOffset = valueOffset;
+        this.removed = removed;
+        this.expiresAt = expiresAt;
     }
 
     @Override
     public long getOffset() {
         return this.offset;
     }
+
+    @Override
+    public long getSize() {
+        return this.size;
+    }
+
+    @Override
+    public long getValueOffset() {
+        return this.valueOffset;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return this.removed;
+    }
+
+    @Override
+    public long getExpiresAt() {
+        return this.expiresAt;
+    }
 }
@@ -0,0 +1,87 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Разреженный индекс отсортированного по ключу сегмента: первый ключ и смещение каждого блока записей
+ * размером около {@link #BLOCK_SIZE} байт. Занимает память по числу блоков, а не по числу ключей.
+ * Запись никогда не разрывается между блоками, поэтому блок с ключом можно прочитать и разобрать целиком
+ */
+public class SparseSegmentIndex {
+    public static final int BLOCK_SIZE = 4096;
+
+    private final String[] firstKeys;
+    private final long[] offsets;
+    private final long size;
+    private final long keyCount;
+
+    private SparseSegmentIndex(String[] firstKeys, long[] offsets, long size, long keyCount) {
+        this.firstKeys = firstKeys;
+        this.offsets = offsets;
+        this.size = size;
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * Строит разреженный индекс по полному индексу сегмента
+     *
+     * @param index индекс сегмента
+     * @param size  размер сегмента
+     * @return индекс, или пустой Optional, если записи в файле не упорядочены по ключу
+     * или ключ встречается в сегменте несколько раз
+     */
+    public static Optional<SparseSegmentIndex> build(KvsIndex<String, SegmentOffsetInfo> index, long size) {
+        List<Map.Entry<String, SegmentOffsetInfo>> entries = new ArrayList<>();
+        index.forEach((key, info) -> entries.add(Map.entry(key, info)));
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().getOffset()));
+        List<String> firstKeys = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        long liveBytes = 0;
+        String previous = null;
+        for (var entry : entries) {
+            if (previous != null && previous.compareTo(entry.getKey()) >= 0) {
+                return Optional.empty();
+            }
+            long offset = entry.getValue().getOffset();
+            if (offsets.isEmpty() || offset - offsets.get(offsets.size() - 1) >= BLOCK_SIZE) {
+                firstKeys.add(entry.getKey());
+                offsets.add(offset);
+            }
+            liveBytes += entry.getValue().getSize();
+            previous = entry.getKey();
+        }
+        if (liveBytes != size) {
+            return Optional.empty();
+        }
+        return Optional.of(new SparseSegmentIndex(firstKeys.toArray(new String[0]),
+                offsets.stream().mapToLong(Long::longValue).toArray(), size, entries.size()));
+    }
+
+    /**
+     * @return номер блока, в котором может лежать ключ, или {@code -1}, если ключ меньше всех ключей сегмента
+     */
+    public int searchForBlock(String key) {
+        int position = Arrays.binarySearch(firstKeys, key);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    public long getBlockStart(int block) {
+        return offsets[block];
+    }
+
+    public long getBlockEnd(int block) {
+        return block + 1 < offsets.length ? offsets[block + 1] : size;
+    }
+
+    public long getKeyCount() {
+        return keyCount;
+    }
+}
@@ -1,6 +1,108 @@
 package com.itmo.java.basics.index.impl;
 
-import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.config.SegmentIndexType;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.index.KvsIndex;
 
-public class TableIndex extends MapBasedKvsIndex<String, Segment> {
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Индекс ключей таблицы: для каждого ключа - сегмент, смещение и размер его последней записи.
+ * Чтение находит запись одним поиском по этому индексу. Реализация выбирается при старте (см {@link SegmentIndexType}).
+ * Для упорядоченных таблиц (см {@link TableConfig#isOrdered()}) ключи дополнительно хранятся упорядоченными
+ * для обхода диапазонов (см {@link #keysFrom(String, boolean)}): это еще один узел на ключ в памяти
+ */
+public class TableIndex implements KvsIndex<String, TableIndexEntry> {
+    private final KvsIndex<String, TableIndexEntry> index;
+    /**
+     * {@code null} - ключи не упорядочены
+     */
+    private final NavigableSet<String> keys;
+
+    public TableIndex() {
+        this(SegmentIndexType.HASH_MAP, false);
+    }
+
+    /**
+     * @param ordered хранить ли ключи упорядоченными (см {@link #keysFrom(String, boolean)})
+     */
+    public TableIndex(SegmentIndexType type, boolean ordered) {
+        this.index = type == SegmentIndexType.OPEN_ADDRESSING ? new OpenAddressingTableIndex() : new MapBasedKvsIndex<>();
+        this.keys = ordered ? new ConcurrentSkipListSet<>() : null;
+    }
+
+    /**
+     * @return пустой индекс таблицы с указанными настройками
+     */
+    public static TableIndex forTable(TableConfig config) {
+        return new TableIndex(config.getDatabaseConfig().getSegmentIndexType(), config.isOrdered());
+    }
+
+    @Override
+    public void onIndexedEntityUpdated(String key, TableIndexEntry value) {
+        index.onIndexedEntityUpdated(key, value);
+        if (keys != null) {
+            keys.add(key);
+        }
+    }
+
+    @Override
+    public void onIndexedEntityRemoved(String key) {
+        index.onIndexedEntityRemoved(key);
+        if (keys != null) {
+            keys.remove(key);
+        }
+    }
+
+    @Override
+    public Optional<TableIndexEntry> searchForKey(String key) {
+        return index.searchForKey(key);
+    }
+
+    /**
+     * Поиск без создания объектов для горячих путей чтения. Индекс на {@link java.util.HashMap} копирует найденную
+     * запись в into
+     *
+     * @param into куда записывается найденная запись
+     * @return {@code true} - если ключ есть в индексе
+     */
+    public boolean searchForKey(String key, IndexLookup into) {
+        if (index instanceof OpenAddressingTableIndex) {
+            return ((OpenAddressingTableIndex) index).searchForKey(key, into);
+        }
+        var entry = index.searchForKey(key);
+        entry.ifPresent(found -> into.set(found.getSegment(), found.getOffset(), found.getSize(),
+                found.getValueOffset(), found.isRemoved(), found.getExpiresAt()));
+        return entry.isPresent();
+    }
+
+    /**
+     * @return {@code true} - если ключи хранятся упорядоченными и доступен {@link #keysFrom(String, boolean)}
+     */
+    public boolean isOrdered() {
+        return keys != null;
+    }
+
+    /**
+     * @param fromKey   ключ, с которого начинается обход, {@code null} - с самого первого
+     * @param inclusive входит ли сам ключ
+     * @return ключи индекса по возрастанию, начиная с fromKey. Представление меняется вместе с индексом
+     * @throws IllegalStateException если ключи не упорядочены (см {@link #isOrdered()})
+     */
+    public NavigableSet<String> keysFrom(String fromKey, boolean inclusive) {
+        if (keys == null) {
+            throw new IllegalStateException("Keys of the index are not ordered.");
+        }
+        return fromKey == null ? Collections.unmodifiableNavigableSet(keys)
+                : Collections.unmodifiableNavigableSet(keys.tailSet(fromKey, inclusive));
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super TableIndexEntry> action) {
+        index.forEach(action);
+    }
 }
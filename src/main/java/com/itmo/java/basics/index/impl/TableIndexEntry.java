@@ -0,0 +1,27 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.Segment;
+
+/**
+ * Положение последней записи ключа в таблице: сегмент, смещение и размер записи в нем, смещение значения
+ * и время истечения значения
+ */
+public class TableIndexEntry extends SegmentOffsetInfoImpl {
+    private final Segment segment;
+
+    public TableIndexEntry(Segment segment, long offset, long size, long valueOffset, boolean removed,
+                           long expiresAt) {
+        super(offset, size, valueOffset, removed, expiresAt);
+        this.segment = segment;
+    }
+
+    public TableIndexEntry(Segment segment, SegmentOffsetInfo offsetInfo) {
+        this(segment, offsetInfo.getOffset(), offsetInfo.getSize(), offsetInfo.getValueOffset(),
+                offsetInfo.isRemoved(), offsetInfo.getExpiresAt());
+    }
+
+    public Segment getSegment() {
+        return segment;
+    }
+}
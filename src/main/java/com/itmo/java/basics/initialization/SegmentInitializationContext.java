@@ -33,4 +33,12 @@ public interface SegmentInitializationContext {
      */
     long getCurrentSize();
     void updateCurrentSize(long currentSize);
+
+    /**
+     * Возвращает объем записей сегмента, перекрытых более новыми записями того же сегмента.
+     *
+     * @return объем устаревших записей в байтах
+     */
+    long getDeadBytes();
+    void updateDeadBytes(long deadBytes);
 }
@@ -1,9 +1,11 @@
 package com.itmo.java.basics.initialization;
 
+import com.itmo.java.basics.config.TableConfig;
 import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.logic.Segment;
 
 import java.nio.file.Path;
+import java.util.List;
 
 public interface TableInitializationContext {
     /**
@@ -27,6 +29,27 @@ public interface TableInitializationContext {
      */
     TableIndex getTableIndex();
 
+    /**
+     * Возвращает настройки инициализируемой таблицы.
+     *
+     * @return настройки инициализируемой таблицы
+     */
+    TableConfig getTableConfig();
+
+    /**
+     * Возвращает номер, с которым будет создан следующий сегмент таблицы.
+     *
+     * @return номер следующего сегмента
+     */
+    long getNextSegmentId();
+
+    /**
+     * Обновляет номер следующего сегмента.
+     *
+     * @param segmentId номер следующего сегмента
+     */
+    void updateNextSegmentId(long segmentId);
+
     /**
      * Возвращает текущий активный сегмент для инициализируемой таблицы.
      *
@@ -40,4 +63,11 @@ public interface TableInitializationContext {
      * @param segment новый сегмент
      */
     void updateCurrentSegment(Segment segment);
+
+    /**
+     * Возвращает все инициализированные сегменты таблицы в порядке их создания.
+     *
+     * @return сегменты таблицы, последний из них - текущий
+     */
+    List<Segment> getSegments();
 }
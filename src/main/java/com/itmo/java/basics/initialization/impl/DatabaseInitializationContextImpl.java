@@ -33,7 +33,7 @@ public class DatabaseInitializationContextImpl implements DatabaseInitialization
     }
 
     @Override
-    public void addTable(Table table) {
+    public synchronized void addTable(Table table) {
         if (tables.containsValue(table)) {
             throw new RuntimeException("Error while creating table in database initialization context. The table, " +
                     "called " + table.getName() + ", exists already.");
@@ -1,5 +1,6 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.TableConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.InitializationContext;
@@ -8,6 +9,9 @@ import com.itmo.java.basics.initialization.TableInitializationContext;
 import com.itmo.java.basics.logic.impl.DatabaseImpl;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseInitializer implements Initializer {
     private final TableInitializer tableInitializer;
@@ -18,7 +22,7 @@ public class DatabaseInitializer implements Initializer {
 
     /**
      * Добавляет в контекст информацию об инициализируемой бд.
-     * Запускает инициализацию всех таблиц это базы
+     * Запускает инициализацию всех таблиц это базы, таблицы инициализируются параллельно
      *
      * @param initialContext контекст с информацией об инициализируемой бд и об окружении
      * @throws DatabaseException если в контексте лежит неправильный путь к базе, невозможно прочитать содержимого папки,
@@ -33,17 +37,23 @@ public class DatabaseInitializer implements Initializer {
                 throw new DatabaseException(initialContext.currentDbContext().getDatabasePath() +
                         " does not denote a directory, or an I/O error occurred.");
             }
+            List<InitializationTasks.Task> tasks = new ArrayList<>();
             for (String tableName : tableNames) {
+                Path databasePath = initialContext.currentDbContext().getDatabasePath();
+                TableConfig tableConfig = TableConfig.load(databasePath.resolve(tableName),
+                        initialContext.executionEnvironment().getConfig());
                 TableInitializationContext tableInitContext = new TableInitializationContextImpl(tableName,
-                        initialContext.currentDbContext().getDatabasePath() , new TableIndex());
+                        databasePath, TableIndex.forTable(tableConfig), tableConfig);
                 InitializationContext downstreamContext = InitializationContextImpl.builder()
                         .executionEnvironment(initialContext.executionEnvironment())
                         .currentDatabaseContext(initialContext.currentDbContext())
                         .currentTableContext(tableInitContext)
                         .build();
-                tableInitializer.perform(downstreamContext);
+                tasks.add(() -> tableInitializer.perform(downstreamContext));
             }
-            initialContext.executionEnvironment().addDatabase(DatabaseImpl.initializeFromContext(initialContext.currentDbContext()));
+            InitializationTasks.invokeAll(tasks);
+            initialContext.executionEnvironment().addDatabase(DatabaseImpl.initializeFromContext(initialContext.currentDbContext(),
+                    initialContext.executionEnvironment().getConfig()));
         } catch (Exception ex) {
             throw new DatabaseException("Error database initialization. Error while reading database, called - "
                     + initialContext.currentDbContext().getDbName() + ".", ex);
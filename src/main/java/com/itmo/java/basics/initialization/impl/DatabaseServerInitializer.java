@@ -5,6 +5,8 @@ import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseServerInitializer implements Initializer {
     private final DatabaseInitializer databaseInitializer;
@@ -15,7 +17,9 @@ public class DatabaseServerInitializer implements Initializer {
 
     /**
      * Если заданная в окружении директория не существует - создает ее
-     * Добавляет информацию о существующих в директории базах, начинает их инициализацию
+     * Добавляет информацию о существующих в директории базах, начинает их инициализацию.
+     * Базы, таблицы и сегменты читаются параллельно в пуле из
+     * {@link com.itmo.java.basics.config.DatabaseConfig#getInitializationThreads()} потоков
      *
      * @param context контекст, содержащий информацию об окружении
      * @throws DatabaseException если произошла ошибка при создании директории, ее обходе или ошибка инициализации бд
@@ -32,6 +36,7 @@ public class DatabaseServerInitializer implements Initializer {
                     throw new DatabaseException(context.executionEnvironment().getWorkingPath() +
                             " does not denote a directory, or an I/O error occurred.");
                 }
+                List<InitializationTasks.Task> tasks = new ArrayList<>();
                 for (var databaseName : databaseNames) {
                     var databaseInitContext = new DatabaseInitializationContextImpl(databaseName,
                             context.executionEnvironment().getWorkingPath());
@@ -39,8 +44,10 @@ public class DatabaseServerInitializer implements Initializer {
                             .executionEnvironment(context.executionEnvironment())
                             .currentDatabaseContext(databaseInitContext)
                             .build();
-                    databaseInitializer.perform(downstreamContext);
+                    tasks.add(() -> databaseInitializer.perform(downstreamContext));
                 }
+                InitializationTasks.runInPool(context.executionEnvironment().getConfig().getInitializationThreads(),
+                        () -> InitializationTasks.invokeAll(tasks));
             }
         }
         catch (Exception ex) {
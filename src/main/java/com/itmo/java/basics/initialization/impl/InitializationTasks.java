@@ -0,0 +1,69 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Параллельное выполнение шагов инициализации. Задачи выполняются в том {@link ForkJoinPool}, в котором
+ * работает вызывающий поток (см {@link DatabaseServerInitializer}), или в общем пуле, если вызов идет не из пула
+ */
+final class InitializationTasks {
+    @FunctionalInterface
+    interface Task {
+        void run() throws DatabaseException;
+    }
+
+    private InitializationTasks() {
+    }
+
+    /**
+     * Запускает задачи и дожидается завершения всех
+     *
+     * @throws DatabaseException первая ошибка, возникшая в задачах
+     */
+    static void invokeAll(List<Task> tasks) throws DatabaseException {
+        List<ForkJoinTask<?>> forkJoinTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            forkJoinTasks.add(adapt(task));
+        }
+        try {
+            ForkJoinTask.invokeAll(forkJoinTasks);
+        } catch (RuntimeException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Выполняет задачу в отдельном пуле из {@code parallelism} потоков. Вложенные {@link #invokeAll} используют этот пул
+     */
+    static void runInPool(int parallelism, Task task) throws DatabaseException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(adapt(task));
+        } catch (RuntimeException ex) {
+            throw unwrap(ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ForkJoinTask<?> adapt(Task task) {
+        return ForkJoinTask.adapt(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static DatabaseException unwrap(RuntimeException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DatabaseException) {
+                return (DatabaseException) cause;
+            }
+        }
+        return new DatabaseException("Error while running initialization tasks.", ex);
+    }
+}
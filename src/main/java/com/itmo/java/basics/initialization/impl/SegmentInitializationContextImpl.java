@@ -9,6 +9,7 @@ public class SegmentInitializationContextImpl implements SegmentInitializationCo
     private final String segmentName;
     private final Path segmentPath;
     private long currentSize;
+    private long deadBytes = 0;
     private final SegmentIndex index;
 
     public SegmentInitializationContextImpl(String segmentName, Path segmentPath, long currentSize, SegmentIndex index) {
@@ -58,5 +59,14 @@ public class SegmentInitializationContextImpl implements SegmentInitializationCo
          this.currentSize = currentSize;
     }
 
+    @Override
+    public long getDeadBytes() {
+        return deadBytes;
+    }
+
+    @Override
+    public void updateDeadBytes(long deadBytes) {
+        this.deadBytes = deadBytes;
+    }
 
 }
@@ -1,64 +1,167 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.exceptions.BackgroundErrors;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.index.impl.TableIndexEntry;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
-import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.initialization.SegmentInitializationContext;
 import com.itmo.java.basics.logic.Segment;
 import com.itmo.java.basics.logic.impl.SegmentImpl;
+import com.itmo.java.basics.logic.io.CorruptedRecordException;
 import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.RecordHeader;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
 import java.util.Optional;
 
 public class SegmentInitializer implements Initializer {
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
 
     /**
      * Добавляет в контекст информацию об инициализируемом сегменте.
-     * Составляет индекс сегмента
-     * Обновляет инфу в индексе таблицы
+     * Составляет индекс сегмента (см {@link #load}) и регистрирует сегмент в таблице (см {@link #register})
      *
      * @param context контекст с информацией об инициализируемой бд и об окружении
      * @throws DatabaseException если в контексте лежит неправильный путь к сегменту, невозможно прочитать содержимое. Ошибка в содержании
      */
     @Override
     public void perform(InitializationContext context) throws DatabaseException {
-        Path path = context.currentSegmentContext().getSegmentPath();
-        var keys = new ArrayList<String>();
+        load(context, false);
+        register(context);
+    }
+
+    /**
+     * Составляет индекс сегмента и считает объем перекрытых записей. Если у сегмента есть действительный файл подсказок
+     * (см {@link SegmentHints}), индекс берется из него, иначе все записи сегмента читаются одним последовательным проходом.
+     * Таблицу не трогает, поэтому сегменты одной таблицы можно загружать параллельно.
+     * <p>
+     * Сегмент, который мог быть не дописан или не сброшен на диск при падении, обрезается по первой поврежденной записи
+     *
+     * @param context   контекст с инициализируемым сегментом и его таблицей
+     * @param mayBeTorn {@code true} - если хвост сегмента мог остаться недописанным: это текущий сегмент
+     *                  или закрытый сегмент, который еще не был сброшен на диск
+     * @throws DatabaseException если путь к сегменту неправильный, содержимое невозможно прочитать
+     * или повреждена запись в сегменте, который уже был сброшен на диск
+     */
+    public void load(InitializationContext context, boolean mayBeTorn) throws DatabaseException {
+        SegmentInitializationContext segmentContext = context.currentSegmentContext();
+        Path path = segmentContext.getSegmentPath();
         try {
-            try (var inStream = new DatabaseInputStream(new BufferedInputStream(new FileInputStream(String.valueOf(path))))) {
-                while (context.currentSegmentContext().getCurrentSize() < Files.size(path)) {
-                    Optional<DatabaseRecord> record = inStream.readDbUnit();
-                    if (record.isEmpty()) {
-                        break;
-                    }
-                    var keyString = new String(record.get().getKey(), StandardCharsets.UTF_8);
-                    context.currentSegmentContext().getIndex().onIndexedEntityUpdated(keyString,
-                            new SegmentOffsetInfoImpl(context.currentSegmentContext().getCurrentSize()));
-                    long offset = context.currentSegmentContext().getCurrentSize() + record.get().size();
-                    context.currentSegmentContext().updateCurrentSize(offset);
-                    keys.add(keyString);
-                 }
-                Segment segment = SegmentImpl.initializeFromContext(context.currentSegmentContext());
-                for (String key : keys) {
-                    context.currentTableContext().getTableIndex().onIndexedEntityUpdated(key, segment);
+            long segmentSize = Files.size(path);
+            var hints = SegmentHints.read(path, segmentSize);
+            if (hints.isPresent()) {
+                loadHints(segmentContext, hints.get(), segmentSize);
+                return;
+            }
+            SegmentHints.delete(path);
+            var corruption = scanRecords(segmentContext, context.currentTableContext().getTableConfig().isChecksums(),
+                    segmentSize);
+            if (corruption.isPresent()) {
+                if (!mayBeTorn) {
+                    throw new DatabaseException("Segment " + segmentContext.getSegmentName() + " is corrupted at offset "
+                            + segmentContext.getCurrentSize() + ".", corruption.get());
                 }
-                 context.currentTableContext().updateCurrentSegment(segment);
+                try (var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(segmentContext.getCurrentSize());
+                }
+                BackgroundErrors.report("Segment " + segmentContext.getSegmentName() + " is truncated to "
+                        + segmentContext.getCurrentSize() + " bytes", corruption.get());
             }
         } catch (FileNotFoundException ex) {
             throw new DatabaseException("Cannot find segment with path - " + path.toString() + " in segment initialization.", ex);
         } catch (IOException ex) {
-            throw new DatabaseException("Error while reading segment, called " + context.currentSegmentContext().getSegmentName() + " in segment initialization.", ex);
+            throw new DatabaseException("Error while reading segment, called " + segmentContext.getSegmentName() + " in segment initialization.", ex);
         }
     }
-}
 
+    /**
+     * Открывает загруженный сегмент и обновляет инфу в индексе таблицы, оповещая сегменты, чьи записи перекрыты.
+     * Сегменты таблицы должны регистрироваться строго в порядке их создания
+     *
+     * @param context контекст с загруженным сегментом и его таблицей
+     */
+    public void register(InitializationContext context) {
+        register(context, true);
+    }
+
+    /**
+     * @param active {@code true} - если это последний (текущий) сегмент таблицы. Остальные сегменты открываются read-only
+     * @see #register(InitializationContext)
+     */
+    public void register(InitializationContext context, boolean active) {
+        Segment segment = SegmentImpl.initializeFromContext(context.currentSegmentContext(),
+                context.currentTableContext().getTableConfig(), active);
+        var tableIndex = context.currentTableContext().getTableIndex();
+        context.currentSegmentContext().getIndex().forEach((key, offsetInfo) -> {
+            tableIndex.searchForKey(key)
+                    .ifPresent(superseded -> superseded.getSegment().onRecordSuperseded(superseded.getSize()));
+            tableIndex.onIndexedEntityUpdated(key, new TableIndexEntry(segment, offsetInfo));
+        });
+        context.currentTableContext().updateCurrentSegment(segment);
+    }
 
+    /**
+     * Восстанавливает индекс сегмента из файла подсказок, не читая сам сегмент
+     */
+    private void loadHints(SegmentInitializationContext segmentContext, Map<String, SegmentOffsetInfo> hints,
+                           long segmentSize) {
+        long liveBytes = 0;
+        for (var hint : hints.entrySet()) {
+            segmentContext.getIndex().onIndexedEntityUpdated(hint.getKey(), hint.getValue());
+            liveBytes += hint.getValue().getSize();
+        }
+        segmentContext.updateCurrentSize(segmentSize);
+        segmentContext.updateDeadBytes(segmentSize - liveBytes);
+    }
+
+    /**
+     * Читает все записи сегмента подряд. Используется для текущего сегмента и для сегментов без подсказок.
+     * Останавливается на конце файла, незаписанном хвосте или первой поврежденной записи. Значения в память
+     * не читаются: для индекса достаточно положения записи
+     *
+     * @return ошибка, на которой остановилось чтение, если запись оказалась повреждена
+     */
+    private Optional<CorruptedRecordException> scanRecords(SegmentInitializationContext segmentContext, boolean checksums,
+                                                           long segmentSize) throws IOException {
+        Path path = segmentContext.getSegmentPath();
+        try (var inStream = new DatabaseInputStream(new BufferedInputStream(new FileInputStream(String.valueOf(path)),
+                SCAN_BUFFER_SIZE), checksums, segmentSize)) {
+            while (true) {
+                Optional<RecordHeader> record;
+                try {
+                    record = inStream.readHeader();
+                } catch (CorruptedRecordException ex) {
+                    return Optional.of(ex);
+                }
+                if (record.isEmpty()) {
+                    return Optional.empty();
+                }
+                var keyString = new String(record.get().getKey(), StandardCharsets.UTF_8);
+                var previous = segmentContext.getIndex().searchForKey(keyString);
+                if (previous.isPresent()) {
+                    segmentContext.updateDeadBytes(segmentContext.getDeadBytes() + previous.get().getSize());
+                }
+                long offset = inStream.getPosition();
+                segmentContext.getIndex().onIndexedEntityUpdated(keyString,
+                        new SegmentOffsetInfoImpl(segmentContext.getCurrentSize(), offset - segmentContext.getCurrentSize(),
+                                DatabaseOutputStream.valueOffset(segmentContext.getCurrentSize(), record.get().getKey().length),
+                                !record.get().isValuePresented(), record.get().getExpiresAt()));
+                segmentContext.updateCurrentSize(offset);
+            }
+        }
+    }
+}
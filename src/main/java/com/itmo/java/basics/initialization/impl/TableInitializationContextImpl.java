@@ -1,21 +1,34 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
 import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.TableInitializationContext;
 import com.itmo.java.basics.logic.Segment;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TableInitializationContextImpl implements TableInitializationContext {
     private final String tableName;
     private final Path tablePath;
     private final TableIndex tableIndex;
+    private final TableConfig tableConfig;
+    private final List<Segment> segments = new ArrayList<>();
     private Segment currentSegment = null;
+    private long nextSegmentId = 1;
 
     public TableInitializationContextImpl(String tableName, Path databasePath, TableIndex tableIndex) {
+        this(tableName, databasePath, tableIndex, TableConfig.defaults(new DatabaseConfig()));
+    }
+
+    public TableInitializationContextImpl(String tableName, Path databasePath, TableIndex tableIndex,
+                                          TableConfig tableConfig) {
         this.tableName = tableName;
         this.tablePath = databasePath.resolve(tableName);
         this.tableIndex = tableIndex;
+        this.tableConfig = tableConfig;
     }
 
     @Override
@@ -33,6 +46,21 @@ public class TableInitializationContextImpl implements TableInitializationContex
         return tableIndex;
     }
 
+    @Override
+    public TableConfig getTableConfig() {
+        return tableConfig;
+    }
+
+    @Override
+    public long getNextSegmentId() {
+        return nextSegmentId;
+    }
+
+    @Override
+    public void updateNextSegmentId(long segmentId) {
+        nextSegmentId = segmentId;
+    }
+
     @Override
     public Segment getCurrentSegment() {
         return currentSegment;
@@ -41,5 +69,11 @@ public class TableInitializationContextImpl implements TableInitializationContex
     @Override
     public void updateCurrentSegment(Segment segment) {
         currentSegment = segment;
+        segments.add(segment);
+    }
+
+    @Override
+    public List<Segment> getSegments() {
+        return segments;
     }
 }
@@ -1,14 +1,37 @@
 package com.itmo.java.basics.initialization.impl;
 
+import com.itmo.java.basics.config.SegmentIndexType;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.config.TableEngine;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.InitializationContext;
 import com.itmo.java.basics.initialization.Initializer;
 import com.itmo.java.basics.initialization.SegmentInitializationContext;
+import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.impl.LsmTableImpl;
+import com.itmo.java.basics.logic.impl.SegmentImpl;
+import com.itmo.java.basics.logic.impl.ShardedTable;
 import com.itmo.java.basics.logic.impl.TableImpl;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.TableManifest;
 
 import java.io.File;
-import java.io.FilenameFilter;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 public class TableInitializer implements Initializer {
@@ -20,7 +43,12 @@ public class TableInitializer implements Initializer {
 
     /**
      * Добавляет в контекст информацию об инициализируемой таблице.
-     * Запускает инициализацию всех сегментов в порядке их создания (из имени)
+     * Список сегментов берется из манифеста таблицы (см {@link TableManifest}), а если его нет - из директории
+     * таблицы в порядке номеров сегментов. Загружает индексы всех сегментов параллельно, затем регистрирует
+     * сегменты по порядку, чтобы в индексе таблицы осталась самая новая запись по ключу.
+     * Недописанные файлы и файлы уже сжатых сегментов удаляются, манифест сохраняется заново.
+     * Таблица {@link TableEngine#LSM} открывается только по манифесту (см {@link #performLsm}),
+     * таблица, разбитая на части, - по частям (см {@link #performSharded})
      *
      * @param context контекст с информацией об инициализируемой бд, окружении, таблицы
      * @throws DatabaseException если в контексте лежит неправильный путь к таблице, невозможно прочитать содержимого папки,
@@ -29,33 +57,223 @@ public class TableInitializer implements Initializer {
     @Override
     public void perform(InitializationContext context) throws DatabaseException {
         try {
-            File tableDir = new File(String.valueOf(context.currentTableContext().getTablePath()));
-            File[] segmentDirs = tableDir.listFiles(new FilenameFilter() {
-                @Override
-                public boolean accept(File f, String name) {
-                    return name.startsWith(context.currentTableContext().getTableName());
+            TableInitializationContext tableContext = context.currentTableContext();
+            Path tablePath = tableContext.getTablePath();
+            if (tableContext.getTableConfig().getShards() > 1) {
+                performSharded(context);
+                return;
+            }
+            Files.deleteIfExists(tablePath.resolve(TableManifest.FILE_NAME + ".tmp"));
+            Optional<TableManifest> manifest = TableManifest.read(tablePath);
+            if (tableContext.getTableConfig().getEngine() == TableEngine.LSM) {
+                if (manifest.isEmpty()) {
+                    throw new DatabaseException("Manifest of table " + tableContext.getTableName()
+                            + " is missing or corrupted.");
+                }
+                tableContext.updateNextSegmentId(manifest.get().getNextSegmentId());
+                performLsm(context, openManifest(tablePath, manifest.get()));
+                return;
+            }
+            List<Path> segments = new ArrayList<>();
+            boolean lastActive;
+            if (manifest.isPresent()) {
+                for (var entry : openManifest(tablePath, manifest.get())) {
+                    segments.add(tablePath.resolve(entry.getSegmentName()));
                 }
-            });
-            if (segmentDirs == null) {
-                throw new DatabaseException(context.currentTableContext().getTablePath() +
-                        " does not denote a directory, or an I/O error occurred.");
-            }
-            Arrays.sort(segmentDirs);
-            for (var segment : segmentDirs) {
-                SegmentInitializationContext segmentInitContext = new SegmentInitializationContextImpl(segment.getName(), segment.toPath().getParent());
-                InitializationContext downstreamContext = InitializationContextImpl.builder()
-                        .executionEnvironment(context.executionEnvironment())
-                        .currentDatabaseContext(context.currentDbContext())
-                        .currentTableContext(context.currentTableContext())
-                        .currentSegmentContext(segmentInitContext)
-                        .build();
-                segmentInitializer.perform(downstreamContext);
-            }
-            context.currentDbContext().addTable(TableImpl.initializeFromContext(context.currentTableContext()));
+                var entries = manifest.get().getEntries();
+                lastActive = !entries.isEmpty() && entries.get(entries.size() - 1).getState() == TableManifest.State.ACTIVE;
+                tableContext.updateNextSegmentId(manifest.get().getNextSegmentId());
+            } else {
+                segments = listSegments(tableContext);
+                lastActive = true;
+            }
+            List<InitializationContext> downstreamContexts = new ArrayList<>();
+            List<InitializationTasks.Task> tasks = new ArrayList<>();
+            int unsynced = firstUnsynced(segments, lastActive);
+            for (int i = 0; i < segments.size(); i++) {
+                boolean mayBeTorn = i >= unsynced;
+                InitializationContext downstreamContext = segmentContext(context, segments.get(i));
+                downstreamContexts.add(downstreamContext);
+                tasks.add(() -> segmentInitializer.load(downstreamContext, mayBeTorn));
+            }
+            InitializationTasks.invokeAll(tasks);
+            for (int i = 0; i < downstreamContexts.size(); i++) {
+                segmentInitializer.register(downstreamContexts.get(i), lastActive && i == downstreamContexts.size() - 1);
+            }
+            List<TableManifest.Entry> entries = new ArrayList<>();
+            for (Segment segment : tableContext.getSegments()) {
+                entries.add(TableManifest.Entry.of(segment));
+            }
+            new TableManifest(tableContext.getNextSegmentId(), entries).write(tablePath);
+            context.currentDbContext().addTable(TableImpl.initializeFromContext(tableContext));
         }
         catch (Exception ex) {
             throw new DatabaseException("Error in table initialization. Error while reading table, called - "
                     + context.currentTableContext().getTableName() + ".", ex);
         }
     }
+
+    /**
+     * Закрытый сегмент сбрасывается на диск до того, как для него пишется файл подсказок (см {@link SegmentHints}),
+     * а сегменты закрываются по порядку. Поэтому недописанными после падения могут оказаться только текущий сегмент
+     * и идущие перед ним закрытые сегменты без подсказок
+     *
+     * @param segments   сегменты таблицы от старых к новым
+     * @param lastActive является ли последний сегмент текущим
+     * @return номер первого сегмента, который мог остаться недописанным
+     */
+    private static int firstUnsynced(List<Path> segments, boolean lastActive) {
+        int first = lastActive ? segments.size() - 1 : segments.size();
+        while (first > 0 && !Files.exists(SegmentHints.hintPath(segments.get(first - 1)))) {
+            first--;
+        }
+        return Math.max(first, 0);
+    }
+
+    /**
+     * Загружает отсортированные сегменты и журналы таблицы {@link TableEngine#LSM} параллельно. Журналы
+     * (сегменты в состоянии {@link TableManifest.State#ACTIVE}) обрезаются по первой поврежденной записи,
+     * их записи переносит в таблицу {@link LsmTableImpl#initializeFromContext}
+     *
+     * @param entries существующие сегменты и журналы из манифеста от старых к новым
+     */
+    private void performLsm(InitializationContext context, List<TableManifest.Entry> entries) throws DatabaseException {
+        TableInitializationContext tableContext = context.currentTableContext();
+        List<InitializationContext> downstreamContexts = new ArrayList<>();
+        List<InitializationTasks.Task> tasks = new ArrayList<>();
+        for (var entry : entries) {
+            boolean log = entry.getState() == TableManifest.State.ACTIVE;
+            InitializationContext downstreamContext = segmentContext(context,
+                    tableContext.getTablePath().resolve(entry.getSegmentName()));
+            downstreamContexts.add(downstreamContext);
+            tasks.add(() -> segmentInitializer.load(downstreamContext, log));
+        }
+        InitializationTasks.invokeAll(tasks);
+        List<Segment> segments = new ArrayList<>();
+        List<SegmentInitializationContext> logs = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            var segmentContext = downstreamContexts.get(i).currentSegmentContext();
+            if (entries.get(i).getState() == TableManifest.State.ACTIVE) {
+                logs.add(segmentContext);
+            } else {
+                segments.add(SegmentImpl.initializeFromContext(segmentContext, tableContext.getTableConfig(), false));
+            }
+        }
+        context.currentDbContext().addTable(LsmTableImpl.initializeFromContext(tableContext, segments, logs));
+    }
+
+    /**
+     * Инициализирует части таблицы (см {@link ShardedTable}) параллельно, как отдельные таблицы,
+     * для которых директория таблицы - директория базы. Настройки частей совпадают с настройками таблицы
+     * (см {@link TableConfig#forShard()})
+     *
+     * @throws DatabaseException если директории части нет или ее не удалось инициализировать
+     */
+    private void performSharded(InitializationContext context) throws DatabaseException {
+        TableInitializationContext tableContext = context.currentTableContext();
+        var shardsContext = new DatabaseInitializationContextImpl(tableContext.getTableName(),
+                tableContext.getTablePath().getParent());
+        List<InitializationTasks.Task> tasks = new ArrayList<>();
+        for (int shard = 0; shard < tableContext.getTableConfig().getShards(); shard++) {
+            String shardName = ShardedTable.shardName(tableContext.getTableName(), shard);
+            Path shardPath = tableContext.getTablePath().resolve(shardName);
+            if (!Files.isDirectory(shardPath)) {
+                throw new DatabaseException("Shard " + shardName + " of table " + tableContext.getTableName()
+                        + " is missing.");
+            }
+            TableConfig shardConfig = tableContext.getTableConfig().forShard();
+            TableInitializationContext shardContext = new TableInitializationContextImpl(shardName,
+                    tableContext.getTablePath(), TableIndex.forTable(shardConfig), shardConfig);
+            InitializationContext downstreamContext = InitializationContextImpl.builder()
+                    .executionEnvironment(context.executionEnvironment())
+                    .currentDatabaseContext(shardsContext)
+                    .currentTableContext(shardContext)
+                    .build();
+            tasks.add(() -> perform(downstreamContext));
+        }
+        InitializationTasks.invokeAll(tasks);
+        List<Table> shards = new ArrayList<>();
+        for (int shard = 0; shard < tableContext.getTableConfig().getShards(); shard++) {
+            shards.add(shardsContext.getTables().get(ShardedTable.shardName(tableContext.getTableName(), shard)));
+        }
+        context.currentDbContext().addTable(ShardedTable.initializeFromContext(tableContext.getTableName(), shards));
+    }
+
+    private InitializationContext segmentContext(InitializationContext context, Path segmentPath) {
+        SegmentIndexType indexType = context.currentTableContext().getTableConfig().getDatabaseConfig()
+                .getSegmentIndexType();
+        SegmentInitializationContext segmentInitContext = new SegmentInitializationContextImpl(
+                segmentPath.getFileName().toString(), segmentPath, 0, new SegmentIndex(indexType));
+        return InitializationContextImpl.builder()
+                .executionEnvironment(context.executionEnvironment())
+                .currentDatabaseContext(context.currentDbContext())
+                .currentTableContext(context.currentTableContext())
+                .currentSegmentContext(segmentInitContext)
+                .build();
+    }
+
+    /**
+     * Удаляет недописанные файлы сегментов из манифеста, файлы уже сжатых сегментов и результатов сжатия или сброса,
+     * которые не успели заменить исходные сегменты. Все такие файлы известны по именам из манифеста
+     *
+     * @return существующие сегменты от старых к новым
+     */
+    private List<TableManifest.Entry> openManifest(Path tablePath, TableManifest manifest) throws IOException {
+        List<TableManifest.Entry> segments = new ArrayList<>();
+        for (var entry : manifest.getEntries()) {
+            Path segmentPath = tablePath.resolve(entry.getSegmentName());
+            Files.deleteIfExists(tmpPath(segmentPath));
+            Files.deleteIfExists(tmpPath(SegmentHints.hintPath(segmentPath)));
+            Files.deleteIfExists(tmpPath(BloomFilterFile.bloomPath(segmentPath)));
+            if (entry.getState() == TableManifest.State.OBSOLETE || entry.getState() == TableManifest.State.PENDING) {
+                deleteSegmentFiles(segmentPath);
+            } else if (Files.exists(segmentPath)) {
+                segments.add(entry);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Ищет сегменты в директории таблицы, у которой еще нет манифеста, и удаляет недописанные файлы.
+     * Следующий сегмент получит номер больше всех найденных
+     *
+     * @return пути к сегментам от старых к новым
+     */
+    private List<Path> listSegments(TableInitializationContext tableContext) throws DatabaseException, IOException {
+        File tableDir = tableContext.getTablePath().toFile();
+        Pattern segmentName = Pattern.compile(Pattern.quote(tableContext.getTableName()) + "_(\\d+)(_c\\d*)?");
+        File[] segmentFiles = tableDir.listFiles((f, name) -> segmentName.matcher(name).matches());
+        if (segmentFiles == null) {
+            throw new DatabaseException(tableContext.getTablePath() +
+                    " does not denote a directory, or an I/O error occurred.");
+        }
+        File[] leftovers = tableDir.listFiles((f, name) -> name.endsWith(".tmp"));
+        if (leftovers != null) {
+            for (var leftover : leftovers) {
+                Files.deleteIfExists(leftover.toPath());
+            }
+        }
+        Map<Path, Long> ids = new HashMap<>();
+        for (File segmentFile : segmentFiles) {
+            Matcher matcher = segmentName.matcher(segmentFile.getName());
+            matcher.matches();
+            ids.put(segmentFile.toPath(), Long.parseLong(matcher.group(1)));
+        }
+        List<Path> segments = new ArrayList<>(ids.keySet());
+        segments.sort(Comparator.<Path>comparingLong(ids::get).thenComparing(Path::getFileName));
+        long nextSegmentId = ids.values().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        tableContext.updateNextSegmentId(Math.max(nextSegmentId, tableContext.getNextSegmentId()));
+        return segments;
+    }
+
+    private static Path tmpPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    private static void deleteSegmentFiles(Path segmentPath) throws IOException {
+        SegmentHints.delete(segmentPath);
+        BloomFilterFile.delete(segmentPath);
+        Files.deleteIfExists(segmentPath);
+    }
 }
@@ -1,8 +1,12 @@
 package com.itmo.java.basics.logic;
 
+import com.itmo.java.basics.config.TableConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface Database {
     /**
@@ -20,6 +24,15 @@ public interface Database {
      */
     void createTableIfNotExists(String tableName) throws DatabaseException;
 
+    /**
+     * Создает таблицу с указанным именем и настройками, если это имя еще не занято.
+     *
+     * @param tableName имя таблицы
+     * @param tableConfig настройки таблицы, например размер сегмента
+     * @throws DatabaseException если таблица с данным именем уже существует или если произошла ошибка ввода-вывода
+     */
+    void createTableIfNotExists(String tableName, TableConfig tableConfig) throws DatabaseException;
+
     /**
      * Записывает значение в указанную таблицу по переданному ключу.
      *
@@ -30,6 +43,30 @@ public interface Database {
      */
     void write(String tableName, String objectKey, byte[] objectValue) throws DatabaseException;
 
+    /**
+     * Записывает в указанную таблицу значение, которое после указанного момента считается удаленным.
+     *
+     * @param tableName таблица, в которую нужно записать значение
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     * @throws DatabaseException если указанная таблица не была найдена, не поддерживает истечение ключей
+     *                           или если произошла ошибка ввода-вывода
+     */
+    void write(String tableName, String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException;
+
+    /**
+     * Записывает в указанную таблицу значение, которое передается частями (см {@link Table#write(String, StreamedValue, long)}).
+     *
+     * @param tableName таблица, в которую нужно записать значение
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @param expiresAt время истечения значения (см {@link KeyExpiry}), {@link KeyExpiry#NEVER} - бессрочное
+     * @throws DatabaseException если указанная таблица не была найдена, не поддерживает истечение ключей
+     *                           или если произошла ошибка ввода-вывода
+     */
+    void write(String tableName, String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException;
+
     /**
      * Считывает значение из указанной таблицы по заданному ключу.
      *
@@ -40,5 +77,50 @@ public interface Database {
      */
     Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException;
 
+    /**
+     * Считывает значение из указанной таблицы так, чтобы его можно было передать дальше частями
+     * (см {@link Table#readStreamed(String)}).
+     *
+     * @param tableName таблица, из которой нужно считать значение
+     * @param objectKey ключ, по которому нужно получить значение
+     * @return значение, которое находится по ключу
+     * @throws DatabaseException если не была найдена указанная таблица, или произошла ошибка ввода-вывода
+     */
+    Optional<StreamedValue> readStreamed(String tableName, String objectKey) throws DatabaseException;
+
+    /**
+     * Считывает значение по ключу из указанной таблицы, не дожидаясь диска в вызывающем потоке
+     * (см {@link Table#readAsync(String, java.util.concurrent.Executor)}). Диск читает пул потоков этой базы.
+     *
+     * @param tableName таблица, из которой нужно считать значение
+     * @param objectKey ключ, по которому нужно получить значение
+     * @return значение, которое находится по ключу. При ошибке ввода-вывода завершается с {@link DatabaseException}
+     * @throws DatabaseException если не была найдена указанная таблица
+     */
+    CompletableFuture<Optional<StreamedValue>> readAsync(String tableName, String objectKey) throws DatabaseException;
+
+    /**
+     * Записывает пакет значений в указанную таблицу.
+     *
+     * @param tableName таблица, в которую нужно записать значения
+     * @param entries пары ключ - значение в порядке записи
+     * @throws DatabaseException если указанная таблица не была найдена или если произошла ошибка ввода-вывода
+     */
+    void writeBatch(String tableName, List<Map.Entry<String, byte[]>> entries) throws DatabaseException;
+
+    /**
+     * Возвращает одну страницу ключей указанной таблицы из диапазона (см {@link Table#scan(String, boolean, String, int)}).
+     *
+     * @param tableName     таблица, ключи которой нужно обойти
+     * @param fromKey       начало диапазона, {@code null} - с первого ключа таблицы
+     * @param fromInclusive входит ли начало диапазона
+     * @param toKey         конец диапазона (не включается), {@code null} - до последнего ключа таблицы
+     * @param limit         наибольшее число пар на странице
+     * @return пары ключ - значение по возрастанию ключей и ключ, с которого продолжить обход
+     * @throws DatabaseException если указанная таблица не была найдена или если произошла ошибка ввода-вывода
+     */
+    ScanPage scan(String tableName, String fromKey, boolean fromInclusive, String toKey, int limit)
+            throws DatabaseException;
+
     void delete(String tableName, String objectKey) throws DatabaseException;
 }
\ No newline at end of file
@@ -5,5 +5,12 @@ public interface DatabaseCache {
 
     void set(String key, byte[] value);
 
+    /**
+     * Кладет в кэш значение, которое после указанного момента больше не возвращается
+     *
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     */
+    void set(String key, byte[] value, long expiresAt);
+
     void delete(String key);
 }
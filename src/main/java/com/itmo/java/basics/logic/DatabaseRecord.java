@@ -23,5 +23,10 @@ public interface DatabaseRecord {
      * Индикатор, есть ли значение
      */
     boolean isValuePresented();
+
+    /**
+     * Возвращает время истечения значения (см {@link KeyExpiry}), у удалений - {@link KeyExpiry#NEVER}
+     */
+    long getExpiresAt();
 }
 
@@ -0,0 +1,19 @@
+package com.itmo.java.basics.logic;
+
+/**
+ * Время истечения ключа - момент в миллисекундах от эпохи ({@link System#currentTimeMillis()}),
+ * после которого значение считается удаленным. {@link #NEVER} - ключ бессрочный
+ */
+public final class KeyExpiry {
+    public static final long NEVER = 0;
+
+    private KeyExpiry() {
+    }
+
+    /**
+     * Проверка без создания объектов, чтобы ее можно было делать при каждом чтении
+     */
+    public static boolean isExpired(long expiresAt, long now) {
+        return expiresAt != NEVER && expiresAt <= now;
+    }
+}
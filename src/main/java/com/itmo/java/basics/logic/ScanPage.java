@@ -0,0 +1,37 @@
+package com.itmo.java.basics.logic;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Страница обхода диапазона (см {@link Table#scan(String, boolean, String, int)}): пары ключ - значение
+ * по возрастанию ключей и ключ, после которого начинается следующая страница.
+ * <p>
+ * Страница может оказаться короче limit, а диапазон при этом не пройден: таблица просматривает за страницу
+ * ограниченное число ключей, включая удаленные и истекшие. Конец диапазона определяется только по
+ * {@link #getResumeKey()}
+ */
+public final class ScanPage {
+    private final List<Map.Entry<String, byte[]>> entries;
+    private final String resumeKey;
+
+    /**
+     * @param entries   пары ключ - значение по возрастанию ключей
+     * @param resumeKey последний просмотренный ключ, {@code null} - диапазон пройден
+     */
+    public ScanPage(List<Map.Entry<String, byte[]>> entries, String resumeKey) {
+        this.entries = entries;
+        this.resumeKey = resumeKey;
+    }
+
+    public List<Map.Entry<String, byte[]>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return ключ, после которого (не включая его) начинается следующая страница, {@code null} - диапазон пройден
+     */
+    public String getResumeKey() {
+        return resumeKey;
+    }
+}
@@ -1,7 +1,13 @@
 package com.itmo.java.basics.logic;
 
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Сегмент - append-only файл, хранящий пары ключ-значение, разделенные специальным символом.
@@ -28,6 +34,49 @@ public interface Segment {
      */
     boolean write(String objectKey, byte[] objectValue) throws IOException;
 
+    /**
+     * Записывает значение по указанному ключу в сегмент и возвращает положение записи.
+     *
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @return положение записи в сегменте, {@link Optional#empty()} - если сегмент read-only
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    Optional<SegmentOffsetInfo> writeRecord(String objectKey, byte[] objectValue) throws IOException;
+
+    /**
+     * Записывает значение, которое после указанного момента считается удаленным.
+     *
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     * @return положение записи в сегменте, {@link Optional#empty()} - если сегмент read-only
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    Optional<SegmentOffsetInfo> writeRecord(String objectKey, byte[] objectValue, long expiresAt) throws IOException;
+
+    /**
+     * Записывает значение, которое передается частями и не собирается в памяти целиком.
+     *
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     * @return положение записи в сегменте, {@link Optional#empty()} - если сегмент read-only
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    Optional<SegmentOffsetInfo> writeRecord(String objectKey, StreamedValue objectValue, long expiresAt)
+            throws IOException;
+
+    /**
+     * Записывает пакет значений одним обращением к файлу. Записывается столько первых записей пакета, сколько
+     * поместится: последняя записанная может, как и при одиночной записи, переполнить сегмент.
+     *
+     * @param entries пары ключ - значение
+     * @return положения записанных записей в порядке пакета, пустой список - если сегмент read-only
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    List<SegmentOffsetInfo> writeRecords(List<Map.Entry<String, byte[]>> entries) throws IOException;
+
     /**
      * Считывает значение из сегмента по переданному ключу.
      *
@@ -37,6 +86,37 @@ public interface Segment {
      */
     Optional<byte[]> read(String objectKey) throws IOException;
 
+    /**
+     * Считывает значение записи, положение которой уже известно (см {@link #writeRecord}), одним чтением
+     * ровно {@link SegmentOffsetInfo#getSize()} байт
+     *
+     * @param offsetInfo положение записи в сегменте
+     * @return значение записи, {@link Optional#empty()} - если запись - удаление или значение истекло
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<byte[]> readRecord(SegmentOffsetInfo offsetInfo) throws IOException;
+
+    /**
+     * Считывает значение записи, как {@link #readRecord(SegmentOffsetInfo)}, но в пуле потоков чтения сегментов:
+     * вызывающий поток не ждет диска. Файл, из которого читается запись, выбирается в момент вызова
+     *
+     * @param offsetInfo положение записи в сегменте
+     * @param readers    пул потоков чтения сегментов
+     * @return значение записи, {@link Optional#empty()} - если запись - удаление или значение истекло.
+     * При ошибке ввода-вывода завершается с {@link IOException}, если сегмент закрыли до чтения -
+     * с {@link java.nio.channels.ClosedChannelException}
+     */
+    CompletableFuture<Optional<byte[]>> readRecordAsync(SegmentOffsetInfo offsetInfo, Executor readers);
+
+    /**
+     * Открывает значение записи, положение которой уже известно, для чтения частями прямо из файла
+     *
+     * @param offsetInfo положение записи в сегменте
+     * @return значение записи, {@link Optional#empty()} - если запись - удаление или значение истекло
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    Optional<StreamedValue> readStreamed(SegmentOffsetInfo offsetInfo) throws IOException;
+
     /**
      * Возвращает {@code true} - если данный сегмент открыт только на чтение, {@code false} - если данный сегмент открыт на чтение и запись.
      *
@@ -45,4 +125,42 @@ public interface Segment {
     boolean isReadOnly();
 
     boolean delete(String objectKey) throws IOException;
+
+    /**
+     * Записывает удаление ключа в сегмент и возвращает положение записи.
+     *
+     * @param objectKey ключ, который нужно удалить
+     * @return положение записи в сегменте, {@link Optional#empty()} - если сегмент read-only
+     * @throws IOException если произошла ошибка ввода-вывода.
+     */
+    Optional<SegmentOffsetInfo> deleteRecord(String objectKey) throws IOException;
+
+    /**
+     * Дожидается, пока записи, сделанные до вызова, будут сброшены на диск, если этого требуют настройки таблицы
+     * (см {@link com.itmo.java.basics.config.Durability}).
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void awaitDurable() throws IOException;
+
+    /**
+     * Возвращает размер записанных в сегмент данных.
+     *
+     * @return размер сегмента в байтах
+     */
+    long getSize();
+
+    /**
+     * Возвращает, сколько байт сегмента занято записями, которые перекрыты более новыми записями.
+     *
+     * @return объем устаревших записей в байтах
+     */
+    long getDeadBytes();
+
+    /**
+     * Оповещает сегмент, что одна из его записей перекрыта более новой записью по тому же ключу.
+     *
+     * @param recordSize размер перекрытой записи
+     */
+    void onRecordSuperseded(long recordSize);
 }
\ No newline at end of file
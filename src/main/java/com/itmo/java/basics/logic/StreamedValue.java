@@ -0,0 +1,96 @@
+package com.itmo.java.basics.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+
+/**
+ * Значение, которое передается частями по {@link #CHUNK_SIZE} байт и не собирается целиком в памяти.
+ * Передать его можно один раз, после этого значение нужно закрыть
+ */
+public interface StreamedValue extends Closeable {
+    /**
+     * Размер части, которой значение передается между файлом сегмента и сокетом
+     */
+    int CHUNK_SIZE = 64 * 1024;
+    /**
+     * Записи больше этого размера не читаются в память целиком, а копируются частями
+     */
+    int IN_MEMORY_LIMIT = 1024 * 1024;
+    /**
+     * Значения больше этого размера таблица отдает ссылкой на файл сегмента, и они передаются в сокет без копирования
+     * в память (см {@link #transferTo(WritableByteChannel)}), меньшие - одним массивом (см {@link Table#readStreamed(String)})
+     */
+    int TRANSFER_THRESHOLD = 64 * 1024;
+
+    /**
+     * @return размер значения в байтах
+     */
+    long getSize();
+
+    /**
+     * @return значение одним массивом, если оно уже в памяти
+     */
+    Optional<byte[]> inMemory();
+
+    /**
+     * Передает значение в поток частями
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    void transferTo(OutputStream out) throws IOException;
+
+    /**
+     * Передает значение прямо в канал. По умолчанию - частями через поток поверх канала
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default void transferTo(WritableByteChannel target) throws IOException {
+        transferTo(Channels.newOutputStream(target));
+    }
+
+    /**
+     * Собирает значение в один массив. Нужно только там, где значение все равно хранится в памяти целиком
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default byte[] readAllBytes() throws IOException {
+        Optional<byte[]> bytes = inMemory();
+        if (bytes.isPresent()) {
+            return bytes.get();
+        }
+        var out = new ByteArrayOutputStream(Math.toIntExact(getSize()));
+        transferTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return значение, которое уже лежит в памяти
+     */
+    static StreamedValue of(byte[] value) {
+        return new StreamedValue() {
+            @Override
+            public long getSize() {
+                return value.length;
+            }
+
+            @Override
+            public Optional<byte[]> inMemory() {
+                return Optional.of(value);
+            }
+
+            @Override
+            public void transferTo(OutputStream out) throws IOException {
+                out.write(value);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -2,7 +2,11 @@ package com.itmo.java.basics.logic;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Таблица - логическая сущность, представляющая собой набор файлов-сегментов, которые объединены одним
@@ -30,6 +34,35 @@ public interface Table {
      */
     void write(String objectKey, byte[] objectValue) throws DatabaseException;
 
+    /**
+     * Записывает значение, которое после указанного момента считается удаленным.
+     *
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     * @throws DatabaseException если произошла ошибка ввода-вывода или таблица не поддерживает истечение ключей
+     */
+    void write(String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException;
+
+    /**
+     * Записывает значение, которое передается частями и не собирается в памяти целиком.
+     *
+     * @param objectKey ключ, по которому нужно записать значение
+     * @param objectValue значение, которое нужно записать. Закрывает его вызывающий
+     * @param expiresAt время истечения значения (см {@link KeyExpiry}), {@link KeyExpiry#NEVER} - бессрочное
+     * @throws DatabaseException если произошла ошибка ввода-вывода или таблица не поддерживает истечение ключей
+     */
+    void write(String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException;
+
+    /**
+     * Возвращает время истечения текущего значения ключа.
+     *
+     * @param objectKey ключ
+     * @return время истечения (см {@link KeyExpiry}), {@link KeyExpiry#NEVER} - если ключ бессрочный или его нет
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    long getExpiresAt(String objectKey) throws DatabaseException;
+
     /**
      * Считывает значение из таблицы по заданному ключу.
      *
@@ -39,6 +72,55 @@ public interface Table {
      */
     Optional<byte[]> read(String objectKey) throws DatabaseException;
 
+    /**
+     * Считывает значение по ключу так, чтобы его можно было передать дальше частями. Значения не больше
+     * {@link StreamedValue#TRANSFER_THRESHOLD} возвращаются уже прочитанными в память.
+     *
+     * @param objectKey ключ, по которому нужно получить значение
+     * @return значение, которое находится по ключу. Закрывает его вызывающий
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    Optional<StreamedValue> readStreamed(String objectKey) throws DatabaseException;
+
+    /**
+     * Считывает значение по ключу, как {@link #readStreamed(String)}, но чтение с диска идет в пуле потоков чтения
+     * базы, а не в вызывающем потоке. Значения, которые есть в памяти, возвращаются уже завершенными.
+     *
+     * @param objectKey ключ, по которому нужно получить значение
+     * @param readers   пул потоков чтения сегментов базы (см {@link com.itmo.java.basics.config.DatabaseConfig#getReaderThreads()})
+     * @return значение, которое находится по ключу. Закрывает его вызывающий.
+     * При ошибке ввода-вывода завершается с {@link DatabaseException}
+     */
+    CompletableFuture<Optional<StreamedValue>> readAsync(String objectKey, Executor readers);
+
+    /**
+     * Записывает в таблицу пакет значений. Записи пакета идут в сегменты одним обращением к файлу на сегмент.
+     *
+     * @param entries пары ключ - значение в порядке записи
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void writeBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException;
+
+    /**
+     * Возвращает одну страницу ключей из диапазона по возрастанию вместе с их значениями. Удаленные ключи пропускаются.
+     *
+     * @param fromKey       начало диапазона, {@code null} - с первого ключа таблицы
+     * @param fromInclusive входит ли начало диапазона
+     * @param toKey         конец диапазона (не включается), {@code null} - до последнего ключа таблицы
+     * @param limit         наибольшее число пар на странице
+     * @return не больше limit пар и ключ, с которого продолжить обход (см {@link ScanPage})
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    ScanPage scan(String fromKey, boolean fromInclusive, String toKey, int limit)
+            throws DatabaseException;
+
     void delete(String objectKey) throws DatabaseException;
+
+    /**
+     * Останавливает фоновые задачи таблицы, чтобы их планировщик больше не ссылался на нее.
+     * Записанные данные остаются на диске
+     */
+    default void close() {
+    }
 }
 
@@ -1,18 +1,54 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.basics.logic.Table;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Кэш общий для потоков команд и потоков чтения сегментов (см {@link #readAsync(String)}). Сам кэш потокобезопасен
+ * (см {@link DatabaseCacheImpl}), поэтому попадания не берут блокировок. Изменения кэша идут под блокировкой
+ * группы ключей (см {@link #stripeOf(String)}): запись ключа и заполнение кэша прочитанным значением
+ * не должны обогнать друг друга, а ключи разных групп друг другу не мешают
+ */
 public class CachingTable implements Table {
     Table table;
     DatabaseCache cache;
+    /**
+     * Число групп ключей, степень двойки
+     */
+    private static final int STRIPES = 1024;
+
+    /**
+     * Версии групп ключей: сколько раз ключи группы начинали или заканчивали меняться. Чтение кладет значение
+     * в кэш, только если за время чтения группа не менялась, иначе оно могло бы вернуть в кэш уже
+     * перезаписанное значение. Меняются и читаются под блокировкой группы
+     */
+    private final long[] versions = new long[STRIPES];
+    private final Object[] locks = new Object[STRIPES];
 
     public CachingTable(Table table) {
+        this(table, DatabaseConfig.DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param cacheBytes размер кэша в байтах (см {@link DatabaseCacheImpl#DatabaseCacheImpl(long)})
+     */
+    public CachingTable(Table table, long cacheBytes) {
         this.table = table;
-        this.cache = new DatabaseCacheImpl();
+        this.cache = new DatabaseCacheImpl(cacheBytes);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     @Override
@@ -22,24 +58,178 @@ public class CachingTable implements Table {
 
     @Override
     public void write(String objectKey, byte[] objectValue) throws DatabaseException {
-        cache.set(objectKey, objectValue);
-        table.write(objectKey, objectValue);
+        write(objectKey, objectValue, KeyExpiry.NEVER);
+    }
+
+    /**
+     * Значение кладется в кэш после записи в таблицу. Если за время записи ключи группы менял кто-то еще,
+     * порядок записей в таблицу неизвестен, и значение ключа из кэша удаляется
+     */
+    @Override
+    public void write(String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException {
+        long version = beginWrite(objectKey);
+        try {
+            if (expiresAt == KeyExpiry.NEVER) {
+                table.write(objectKey, objectValue);
+            } else {
+                table.write(objectKey, objectValue, expiresAt);
+            }
+        } catch (DatabaseException | RuntimeException ex) {
+            invalidate(objectKey);
+            throw ex;
+        }
+        endWrite(objectKey, objectValue, expiresAt, version);
+    }
+
+    /**
+     * Значение, передаваемое частями, в кэш не кладется, прежнее значение ключа из кэша удаляется
+     */
+    @Override
+    public void write(String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException {
+        table.write(objectKey, objectValue, expiresAt);
+        invalidate(objectKey);
+    }
+
+    @Override
+    public long getExpiresAt(String objectKey) throws DatabaseException {
+        return table.getExpiresAt(objectKey);
+    }
+
+    @Override
+    public void close() {
+        table.close();
+    }
+
+    /**
+     * Значения пакета не кладутся в кэш, чтобы массовая загрузка не вытесняла из него читаемые ключи.
+     * Прежние значения ключей пакета из кэша удаляются
+     */
+    @Override
+    public void writeBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        table.writeBatch(entries);
+        for (Map.Entry<String, byte[]> entry : entries) {
+            invalidate(entry.getKey());
+        }
     }
 
     @Override
     public Optional<byte[]> read(String objectKey) throws DatabaseException {
-        Optional<byte[]> value = Optional.ofNullable(cache.get(objectKey));
-        if (value.isEmpty()) {
-            value = table.read(objectKey);
-            value.ifPresent(bytes -> cache.set(objectKey, bytes));
+        byte[] cached = cache.get(objectKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long versionBefore = versionOf(objectKey);
+        Optional<byte[]> value = table.read(objectKey);
+        value.ifPresent(bytes -> cacheIfUnchanged(objectKey, bytes, versionBefore));
+        return value;
+    }
+
+    /**
+     * В кэш кладутся только значения, которые таблица вернула уже прочитанными в память
+     */
+    @Override
+    public Optional<StreamedValue> readStreamed(String objectKey) throws DatabaseException {
+        byte[] cached = cache.get(objectKey);
+        if (cached != null) {
+            return Optional.of(StreamedValue.of(cached));
+        }
+        long versionBefore = versionOf(objectKey);
+        Optional<StreamedValue> value = table.readStreamed(objectKey);
+        if (value.isPresent() && value.get().inMemory().isPresent()) {
+            cacheIfUnchanged(objectKey, value.get().inMemory().get(), versionBefore);
         }
         return value;
     }
 
+    /**
+     * Попадание в кэш возвращается уже завершенным. Прочитанное с диска значение кладется в кэш в потоке чтения
+     */
+    @Override
+    public CompletableFuture<Optional<StreamedValue>> readAsync(String objectKey, Executor readers) {
+        byte[] cached = cache.get(objectKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(StreamedValue.of(cached)));
+        }
+        long versionBefore = versionOf(objectKey);
+        return table.readAsync(objectKey, readers).thenApply(value -> {
+            if (value.isPresent() && value.get().inMemory().isPresent()) {
+                cacheIfUnchanged(objectKey, value.get().inMemory().get(), versionBefore);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Обход диапазона идет мимо кэша и не заполняет его
+     */
+    @Override
+    public ScanPage scan(String fromKey, boolean fromInclusive, String toKey, int limit) throws DatabaseException {
+        return table.scan(fromKey, fromInclusive, toKey, limit);
+    }
+
     @Override
     public void delete(String objectKey) throws DatabaseException {
         table.delete(objectKey);
-        cache.delete(objectKey);
+        invalidate(objectKey);
+    }
+
+    private void invalidate(String objectKey) {
+        int stripe = stripeOf(objectKey);
+        synchronized (locks[stripe]) {
+            versions[stripe]++;
+            cache.delete(objectKey);
+        }
+    }
+
+    /**
+     * @return версия группы ключа сразу после начала записи
+     */
+    private long beginWrite(String objectKey) {
+        int stripe = stripeOf(objectKey);
+        synchronized (locks[stripe]) {
+            return ++versions[stripe];
+        }
+    }
+
+    private void endWrite(String objectKey, byte[] value, long expiresAt, long version) {
+        int stripe = stripeOf(objectKey);
+        synchronized (locks[stripe]) {
+            if (versions[stripe] == version) {
+                cache.set(objectKey, value, expiresAt);
+            } else {
+                cache.delete(objectKey);
+            }
+            versions[stripe]++;
+        }
+    }
+
+    private long versionOf(String objectKey) {
+        int stripe = stripeOf(objectKey);
+        synchronized (locks[stripe]) {
+            return versions[stripe];
+        }
     }
-}
 
+    private void cacheIfUnchanged(String objectKey, byte[] value, long versionBefore) {
+        long expiresAt;
+        try {
+            expiresAt = table.getExpiresAt(objectKey);
+        } catch (DatabaseException ex) {
+            return;
+        }
+        int stripe = stripeOf(objectKey);
+        synchronized (locks[stripe]) {
+            if (versions[stripe] == versionBefore) {
+                cache.set(objectKey, value, expiresAt);
+            }
+        }
+    }
+
+    /**
+     * Группа выбирается по хешу ключа, старшие биты хеша подмешиваются к младшим, как в {@link java.util.HashMap}
+     */
+    private static int stripeOf(String objectKey) {
+        int hash = objectKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
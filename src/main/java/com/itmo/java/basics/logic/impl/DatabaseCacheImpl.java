@@ -1,44 +1,197 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
 import com.itmo.java.basics.logic.DatabaseCache;
+import com.itmo.java.basics.logic.KeyExpiry;
 
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Кэш, ограниченный суммарным размером ключей и значений (см {@link #weight(String, byte[])}), а не числом записей.
+ * Потокобезопасен без общей блокировки: записи лежат в {@link ConcurrentHashMap}, а вытеснение устроено как CLOCK.
+ * Попадание только отмечает запись использованной, не перемещая ее, поэтому одновременные чтения не пишут
+ * в общую структуру. Вытесняет запись тот, кто превысил размер кэша: он обходит очередь записей
+ * и дает отмеченным второй шанс, снимая отметку
+ */
 public class DatabaseCacheImpl implements DatabaseCache {
-    private static final int CAPACITY = 5_000;
-    Map<String, byte[]> cache;
+    /**
+     * Примерные накладные расходы на запись: узел хеш-таблицы, запись кэша, ее значение, объект и массив ключа,
+     * заголовок массива значения и узел очереди
+     */
+    static final int ENTRY_OVERHEAD = 160;
+    /**
+     * Сколько удаленных записей может лежать в очереди сверх числа записей кэша, прежде чем очередь будет очищена
+     */
+    private static final int STALE_SLACK = 1024;
 
+    /**
+     * Значение и время его истечения. Подменяется целиком, чтобы чтение не увидело значение с чужим временем истечения
+     */
+    private static final class Slot {
+        final byte[] value;
+        final long expiresAt;
+        final long weight;
+
+        Slot(byte[] value, long expiresAt, long weight) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        volatile Slot slot;
+        /**
+         * Бит CLOCK: запись читали с тех пор, как вытеснение проходило мимо нее
+         */
+        volatile boolean referenced = false;
+        /**
+         * Запись уже удалена из кэша, но еще может лежать в очереди
+         */
+        volatile boolean removed = false;
+
+        Entry(String key, Slot slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+    }
+
+    private final long capacity;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * Записи в порядке добавления. Вытеснение берет записи из головы, отмеченные возвращает в хвост
+     */
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicInteger stale = new AtomicInteger();
 
     public DatabaseCacheImpl() {
-        this.cache = new LinkedHashMap<>(CAPACITY);
+        this(DatabaseConfig.DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * @param capacity сколько байт ключей и значений вместе с накладными расходами хранит кэш
+     */
+    public DatabaseCacheImpl(long capacity) {
+        this.capacity = capacity;
     }
 
+    /**
+     * Истекшее значение удаляется из кэша и не возвращается
+     */
     @Override
     public byte[] get(String key) {
-        byte[] value =  cache.get(key);
-        if (value != null) {
-            cache.remove(key);
-            cache.put(key, value);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Slot slot = entry.slot;
+        if (slot.expiresAt != KeyExpiry.NEVER && KeyExpiry.isExpired(slot.expiresAt, System.currentTimeMillis())) {
+            if (entries.remove(key, entry)) {
+                onRemoved(entry);
+            }
+            return null;
         }
-        return value;
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return slot.value;
     }
 
     @Override
     public void set(String key, byte[] value) {
-        if (cache.containsKey(key)) {
-            cache.remove(key);
-        } else if (cache.size() == CAPACITY) {
-            Iterator<String> it = cache.keySet().iterator();
-            it.next();
-            it.remove();
+        set(key, value, KeyExpiry.NEVER);
+    }
+
+    /**
+     * Значение больше всего кэша не кладется, а прежнее значение ключа удаляется
+     */
+    @Override
+    public void set(String key, byte[] value, long expiresAt) {
+        Slot slot = new Slot(value, expiresAt, weight(key, value));
+        if (slot.weight > capacity) {
+            delete(key);
+            return;
+        }
+        long[] added = {slot.weight};
+        entries.compute(key, (k, entry) -> {
+            if (entry == null) {
+                Entry created = new Entry(k, slot);
+                clock.offer(created);
+                return created;
+            }
+            added[0] -= entry.slot.weight;
+            entry.slot = slot;
+            return entry;
+        });
+        if (size.addAndGet(added[0]) > capacity) {
+            evict();
         }
-        cache.put(key, value);
     }
 
     @Override
     public void delete(String key) {
-        cache.remove(key);
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            onRemoved(entry);
+        }
+    }
+
+    /**
+     * @return сколько байт кэша занимает запись
+     */
+    static long weight(String key, byte[] value) {
+        return ENTRY_OVERHEAD + 2L * key.length() + value.length;
+    }
+
+    private void onRemoved(Entry entry) {
+        entry.removed = true;
+        size.addAndGet(-entry.slot.weight);
+        if (stale.incrementAndGet() > entries.size() + STALE_SLACK) {
+            purgeRemoved();
+        }
+    }
+
+    /**
+     * Убирает из очереди удаленные записи, чтобы очередь не росла, пока кэш не заполнен и вытеснение не идет
+     */
+    private synchronized void purgeRemoved() {
+        if (stale.get() > entries.size() + STALE_SLACK) {
+            clock.removeIf(entry -> entry.removed);
+            stale.set(0);
+        }
+    }
+
+    /**
+     * Вытесняет записи, пока кэш не уложится в свой размер. Если отметки записей все время ставятся заново,
+     * после двух проходов по очереди вытесняются и отмеченные записи
+     */
+    private synchronized void evict() {
+        long budget = 2L * entries.size() + stale.get() + 1;
+        while (size.get() > capacity) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entry.removed) {
+                stale.decrementAndGet();
+                continue;
+            }
+            if (entry.referenced && budget-- > 0) {
+                entry.referenced = false;
+                clock.offer(entry);
+                continue;
+            }
+            if (entries.remove(entry.key, entry)) {
+                entry.removed = true;
+                size.addAndGet(-entry.slot.weight);
+            }
+        }
     }
 }
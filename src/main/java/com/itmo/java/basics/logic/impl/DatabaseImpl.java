@@ -1,40 +1,87 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.config.TableEngine;
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.index.impl.TableIndex;
 import com.itmo.java.basics.initialization.DatabaseInitializationContext;
 import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.basics.logic.Table;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Команды сервера выполняются в нескольких потоках (см {@link com.itmo.java.basics.DatabaseServer}), поэтому таблицы
+ * хранятся в {@link ConcurrentHashMap}, а создание таблицы идет под блокировкой базы.
+ * Асинхронные чтения всех таблиц базы выполняет один пул размером {@link DatabaseConfig#getReaderThreads()}
+ */
 public class DatabaseImpl implements Database {
+    private static final long READER_KEEP_ALIVE_SECONDS = 60;
+    private static final AtomicInteger READER_IDS = new AtomicInteger();
 
     private final String dbName;
     private final Path databaseRoot;
     private final Map<String, Table> tables;
+    private final DatabaseConfig config;
+    private final ExecutorService readers;
 
-    private DatabaseImpl (String dbName, Path databaseRoot) {
+    private DatabaseImpl (String dbName, Path databaseRoot, DatabaseConfig config) {
         this.dbName = dbName;
         this.databaseRoot = databaseRoot;
-        this.tables = new HashMap<String, Table>();
+        this.tables = new ConcurrentHashMap<>();
+        this.config = config;
+        this.readers = createReaders(config.getReaderThreads());
     }
 
-    private DatabaseImpl (String dbName, Path databaseRoot, Map<String, Table> tables) {
+    private DatabaseImpl (String dbName, Path databaseRoot, Map<String, Table> tables, DatabaseConfig config) {
         this.dbName = dbName;
         this.databaseRoot = databaseRoot;
-        this.tables = tables;
+        this.tables = new ConcurrentHashMap<>(tables);
+        this.config = config;
+        this.readers = createReaders(config.getReaderThreads());
+    }
+
+    /**
+     * Потоки простаивающей базы завершаются, поэтому пул не держит потоки баз, которые никто не читает
+     */
+    private static ExecutorService createReaders(int threads) {
+        var pool = new ThreadPoolExecutor(threads, threads, READER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "segment-reader-" + READER_IDS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     public static Database initializeFromContext(DatabaseInitializationContext context) {
-        return new DatabaseImpl(context.getDbName(), context.getDatabasePath().getParent(), context.getTables());
+        return initializeFromContext(context, new DatabaseConfig());
+    }
+
+    public static Database initializeFromContext(DatabaseInitializationContext context, DatabaseConfig config) {
+        return new DatabaseImpl(context.getDbName(), context.getDatabasePath().getParent(), context.getTables(), config);
     }
 
     public static Database create(String dbName, Path databaseRoot) throws DatabaseException {
+        return create(dbName, databaseRoot, new DatabaseConfig());
+    }
+
+    public static Database create(String dbName, Path databaseRoot, DatabaseConfig config) throws DatabaseException {
         File dbDir = new File (databaseRoot.toString(), dbName);
         if (dbDir.exists()) {
             throw new DatabaseException("Database " + dbName + " already exists!");
@@ -42,7 +89,7 @@ public class DatabaseImpl implements Database {
         if (!dbDir.mkdir()) {
             throw new DatabaseException("Impossible to create " + dbName + " database.");
         }
-        return new DatabaseImpl(dbName, databaseRoot);
+        return new DatabaseImpl(dbName, databaseRoot, config);
     }
 
     @Override
@@ -52,11 +99,25 @@ public class DatabaseImpl implements Database {
 
     @Override
     public void createTableIfNotExists(String tableName) throws DatabaseException {
+        createTableIfNotExists(tableName, TableConfig.defaults(config));
+    }
+
+    @Override
+    public synchronized void createTableIfNotExists(String tableName, TableConfig tableConfig) throws DatabaseException {
         if (tables.containsKey(tableName)) {
             throw new DatabaseException("Table " + tableName + " already exists!");
         }
-        TableIndex index = new TableIndex();
-        tables.put(tableName, TableImpl.create(tableName, Path.of(databaseRoot.toString(), dbName), index));
+        Path databasePath = Path.of(databaseRoot.toString(), dbName);
+        if (tableConfig.getShards() > 1) {
+            tables.put(tableName, ShardedTable.create(tableName, databasePath, tableConfig));
+            return;
+        }
+        if (tableConfig.getEngine() == TableEngine.LSM) {
+            tables.put(tableName, LsmTableImpl.create(tableName, databasePath, tableConfig));
+            return;
+        }
+        TableIndex index = TableIndex.forTable(tableConfig);
+        tables.put(tableName, TableImpl.create(tableName, databasePath, index, tableConfig));
     }
 
     @Override
@@ -66,6 +127,28 @@ public class DatabaseImpl implements Database {
         table.write(objectKey, objectValue);
     }
 
+    @Override
+    public void write(String tableName, String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        table.write(objectKey, objectValue, expiresAt);
+    }
+
+    @Override
+    public void write(String tableName, String objectKey, StreamedValue objectValue, long expiresAt)
+            throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        table.write(objectKey, objectValue, expiresAt);
+    }
+
+    @Override
+    public void writeBatch(String tableName, List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        table.writeBatch(entries);
+    }
+
     @Override
     public Optional<byte[]> read(String tableName, String objectKey) throws DatabaseException {
         var table = Optional.ofNullable(tables.get(tableName)).
@@ -73,6 +156,29 @@ public class DatabaseImpl implements Database {
         return table.read(objectKey);
     }
 
+    @Override
+    public Optional<StreamedValue> readStreamed(String tableName, String objectKey) throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        return table.readStreamed(objectKey);
+    }
+
+    @Override
+    public CompletableFuture<Optional<StreamedValue>> readAsync(String tableName, String objectKey)
+            throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        return table.readAsync(objectKey, readers);
+    }
+
+    @Override
+    public ScanPage scan(String tableName, String fromKey, boolean fromInclusive, String toKey, int limit)
+            throws DatabaseException {
+        var table = Optional.ofNullable(tables.get(tableName)).
+                orElseThrow(() -> new DatabaseException("Cannot find the table, called - " + tableName + "."));
+        return table.scan(fromKey, fromInclusive, toKey, limit);
+    }
+
     @Override
     public void delete(String tableName, String objectKey) throws DatabaseException {
         var table = Optional.ofNullable(tables.get(tableName)).
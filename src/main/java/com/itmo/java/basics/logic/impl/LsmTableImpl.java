@@ -0,0 +1,857 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.initialization.SegmentInitializationContext;
+import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.StreamedValue;
+import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.DatabaseChannelReader;
+import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.TableManifest;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Таблица в виде LSM-дерева. Записи копятся в отсортированной таблице в памяти и одновременно дописываются в журнал -
+ * обычный сегмент, который восстанавливается после падения. Когда журнал заполняется
+ * ({@link TableConfig#getSegmentSize()}), таблица в памяти в фоне сбрасывается в отсортированный read-only сегмент,
+ * а журнал удаляется. Ключи сегментов в памяти не хранятся: сегмент ищется по фильтру Блума и разреженному индексу.
+ * <p>
+ * Сегменты сжимаются по уровням размера: как только {@link #TIER_FAN_IN} самых новых сегментов оказываются одного
+ * уровня (размер с точностью до раза в {@link #TIER_FAN_IN}), они сливаются в один сегмент следующего уровня.
+ * Удаления отбрасываются, только если в слияние вошел самый старый сегмент таблицы.
+ * Список сегментов хранится в манифесте таблицы (см {@link TableManifest}), журналы в нем в состоянии
+ * {@link TableManifest.State#ACTIVE}
+ * <p>
+ * Время истечения значения (см {@link KeyExpiry}) хранится в таблице в памяти и в записях журналов и сегментов.
+ * Отдельного потока удаления истекших ключей нет: истекшее значение не читается, а выбрасывается слиянием
+ * вместе с удалениями
+ */
+public class LsmTableImpl implements Table {
+    private static final int TIER_FAN_IN = 4;
+    /**
+     * Значение удаленного ключа в таблице в памяти. Сравнивается по ссылке
+     */
+    private static final ExpiringValue TOMBSTONE = new ExpiringValue(null, KeyExpiry.NEVER);
+    private static final ExecutorService FLUSHER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "memtable-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tableName;
+    private final Path tablePath;
+    private final TableConfig config;
+    private ConcurrentSkipListMap<String, ExpiringValue> memtable = new ConcurrentSkipListMap<>();
+    private SegmentImpl log = null;
+    /**
+     * Заполненная таблица в памяти, которая сейчас сбрасывается в сегмент, и ее журнал
+     */
+    private NavigableMap<String, ExpiringValue> flushingMemtable = null;
+    private SegmentImpl flushingLog = null;
+    private String flushingSegmentName = null;
+    private DatabaseException flushFailure = null;
+    /**
+     * Отсортированные сегменты от старых к новым
+     */
+    private final List<SegmentImpl> segments = new ArrayList<>();
+    /**
+     * Имена сжатых сегментов и сброшенных журналов, файлы которых еще не удалены
+     */
+    private final List<String> obsoleteSegments = new ArrayList<>();
+    /**
+     * Имена сегментов, которые пишутся сбросом или сжатием. Попадают в манифест до создания файла
+     */
+    private final List<String> pendingSegments = new ArrayList<>();
+    private long nextSegmentId = 1;
+    private boolean compacting = false;
+
+    private LsmTableImpl(String tableName, Path tablePath, TableConfig config) {
+        this.tableName = tableName;
+        this.tablePath = tablePath;
+        this.config = config;
+    }
+
+    /**
+     * Открывает таблицу. Записи журналов, оставшихся после прошлого запуска, сразу сбрасываются в новый сегмент
+     *
+     * @param context  контекст таблицы
+     * @param segments загруженные отсортированные сегменты от старых к новым
+     * @param logs     загруженные журналы от старых к новым
+     * @throws DatabaseException если журналы не удалось прочитать или сбросить
+     */
+    public static Table initializeFromContext(TableInitializationContext context, List<Segment> segments,
+                                              List<SegmentInitializationContext> logs) throws DatabaseException {
+        var table = new LsmTableImpl(context.getTableName(), context.getTablePath(), context.getTableConfig());
+        table.nextSegmentId = context.getNextSegmentId();
+        for (Segment segment : segments) {
+            table.segments.add((SegmentImpl) segment);
+        }
+        try {
+            for (SegmentInitializationContext logContext : logs) {
+                table.replay(logContext);
+                table.obsoleteSegments.add(logContext.getSegmentName());
+            }
+            if (!table.memtable.isEmpty()) {
+                table.writeSorted(table.createSegmentName(), table.memtable).ifPresent(table.segments::add);
+                table.memtable = new ConcurrentSkipListMap<>();
+            }
+            table.storeManifest();
+            for (SegmentInitializationContext logContext : logs) {
+                Files.deleteIfExists(logContext.getSegmentPath());
+            }
+            table.obsoleteSegments.clear();
+            synchronized (table) {
+                table.storeManifest();
+                table.compactIfNeeded();
+            }
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while recovering memtable of table " + table.tableName + ".", ex);
+        }
+        return new CachingTable(table, table.config.getCacheBytes());
+    }
+
+    /**
+     * Создает директорию таблицы, сохраняет в нее настройки таблицы и пустой манифест
+     */
+    public static Table create(String tableName, Path pathToDatabaseRoot, TableConfig config) throws DatabaseException {
+        File tableDir = new File(pathToDatabaseRoot.toString(), tableName);
+        if (tableDir.exists()) {
+            throw new DatabaseException("Table " + tableName + " already exists!");
+        }
+        if (!tableDir.mkdir()) {
+            throw new DatabaseException("Impossible to create " + tableName + " table.");
+        }
+        config.store(tableDir.toPath());
+        var table = new LsmTableImpl(tableName, tableDir.toPath(), config);
+        synchronized (table) {
+            table.storeManifest();
+        }
+        return new CachingTable(table, table.config.getCacheBytes());
+    }
+
+    @Override
+    public String getName() {
+        return tableName;
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        write(objectKey, objectValue, KeyExpiry.NEVER);
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException {
+        awaitDurable(append(objectKey, new ExpiringValue(objectValue, expiresAt)));
+    }
+
+    /**
+     * Таблица в памяти хранит значения массивами, поэтому значение собирается в памяти целиком
+     */
+    @Override
+    public void write(String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException {
+        byte[] value;
+        try {
+            value = objectValue.readAllBytes();
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while receiving value of key " + objectKey + ".", ex);
+        }
+        write(objectKey, value, expiresAt);
+    }
+
+    @Override
+    public long getExpiresAt(String objectKey) throws DatabaseException {
+        try {
+            ExpiringValue latest = findLatest(snapshot(), objectKey);
+            return latest == null || latest == TOMBSTONE ? KeyExpiry.NEVER : latest.expiresAt;
+        } catch (ClosedChannelException | NoSuchFileException ex) {
+            return getExpiresAt(objectKey);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while reading a segment.", ex);
+        }
+    }
+
+    /**
+     * Пакет дописывается в журнал одним обращением к файлу, если журнал заполнился посередине пакета -
+     * остаток идет в новый журнал
+     */
+    @Override
+    public void writeBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        for (Segment segment : appendBatch(entries)) {
+            awaitDurable(segment);
+        }
+    }
+
+    private synchronized List<Segment> appendBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        List<Segment> written = new ArrayList<>();
+        int next = 0;
+        try {
+            while (next < entries.size()) {
+                if (log == null) {
+                    startLog();
+                } else if (log.isReadOnly()) {
+                    rotate();
+                }
+                var offsets = log.writeRecords(entries.subList(next, entries.size()));
+                if (offsets.isEmpty()) {
+                    throw new DatabaseException("Log " + log.getName() + " is read-only.");
+                }
+                for (int i = 0; i < offsets.size(); i++) {
+                    var entry = entries.get(next++);
+                    memtable.put(entry.getKey(), new ExpiringValue(entry.getValue(), KeyExpiry.NEVER));
+                }
+                written.add(log);
+                if (log.isReadOnly()) {
+                    rotate();
+                }
+            }
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing data into log.", ex);
+        }
+        return written;
+    }
+
+    /**
+     * Значение может лежать в таблице в памяти, поэтому всегда возвращается массивом
+     */
+    @Override
+    public Optional<StreamedValue> readStreamed(String objectKey) throws DatabaseException {
+        return read(objectKey).map(StreamedValue::of);
+    }
+
+    /**
+     * Ищет ключ в таблице в памяти, затем в сбрасываемой таблице, затем в сегментах от новых к старым.
+     * Первая найденная запись - последняя запись ключа. Под блокировкой таблицы берется только снимок
+     * (см {@link #snapshot()}), сегменты читаются без нее. Если сегмент из снимка успели сжать и закрыть,
+     * чтение начинается заново
+     */
+    @Override
+    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+        try {
+            return valueOf(findLatest(snapshot(), objectKey));
+        } catch (ClosedChannelException | NoSuchFileException ex) {
+            return read(objectKey);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while reading a segment.", ex);
+        }
+    }
+
+    /**
+     * Таблицы в памяти проверяются сразу, сегменты ищутся в пуле потоков чтения сегментов по снимку, как в
+     * {@link #read(String)}
+     */
+    @Override
+    public CompletableFuture<Optional<StreamedValue>> readAsync(String objectKey, Executor readers) {
+        Snapshot snapshot = snapshot();
+        ExpiringValue value = snapshot.findInMemory(objectKey);
+        if (value != null) {
+            return CompletableFuture.completedFuture(valueOf(value).map(StreamedValue::of));
+        }
+        return SegmentImpl.retryIfClosed(SegmentImpl.submitRead(() -> valueOf(findInSegments(snapshot.segments,
+                objectKey)).map(StreamedValue::of), readers), () -> readAsync(objectKey, readers));
+    }
+
+    /**
+     * Таблицы в памяти и список сегментов на один момент. Сбрасываемая таблица больше не меняется,
+     * а файлы отсортированных сегментов неизменны, поэтому снимок читается без блокировки таблицы
+     */
+    private static final class Snapshot {
+        final NavigableMap<String, ExpiringValue> memtable;
+        final NavigableMap<String, ExpiringValue> flushingMemtable;
+        /**
+         * Сегменты от старых к новым
+         */
+        final List<SegmentImpl> segments;
+
+        Snapshot(NavigableMap<String, ExpiringValue> memtable, NavigableMap<String, ExpiringValue> flushingMemtable,
+                 List<SegmentImpl> segments) {
+            this.memtable = memtable;
+            this.flushingMemtable = flushingMemtable;
+            this.segments = segments;
+        }
+
+        /**
+         * @return значение из таблиц в памяти, {@link #TOMBSTONE} - ключ удален, {@code null} - ключа в памяти нет
+         */
+        ExpiringValue findInMemory(String objectKey) {
+            ExpiringValue value = memtable.get(objectKey);
+            if (value == null && flushingMemtable != null) {
+                value = flushingMemtable.get(objectKey);
+            }
+            return value;
+        }
+    }
+
+    private synchronized Snapshot snapshot() {
+        return new Snapshot(memtable, flushingMemtable, List.copyOf(segments));
+    }
+
+    /**
+     * @return последняя запись ключа, {@link #TOMBSTONE} - ключ удален, {@code null} - ключа нет
+     */
+    private static ExpiringValue findLatest(Snapshot snapshot, String objectKey) throws IOException {
+        ExpiringValue value = snapshot.findInMemory(objectKey);
+        return value != null ? value : findInSegments(snapshot.segments, objectKey);
+    }
+
+    /**
+     * Ищет ключ в сегментах от новых к старым
+     *
+     * @param segments сегменты от старых к новым
+     * @return последняя запись ключа, {@link #TOMBSTONE} - ключ удален, {@code null} - ключа нет
+     */
+    private static ExpiringValue findInSegments(List<SegmentImpl> segments, String objectKey) throws IOException {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Optional<DatabaseRecord> record = segments.get(i).findRecord(objectKey);
+            if (record.isPresent()) {
+                return record.get().isValuePresented()
+                        ? new ExpiringValue(record.get().getValue(), record.get().getExpiresAt()) : TOMBSTONE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return значение последней записи ключа, если она не удаление и не истекла
+     */
+    private static Optional<byte[]> valueOf(ExpiringValue latest) {
+        return latest == null || latest == TOMBSTONE || latest.isExpired(System.currentTimeMillis())
+                ? Optional.empty() : Optional.of(latest.value);
+    }
+
+    /**
+     * Сливает по ключу таблицу в памяти, сбрасываемую таблицу и сегменты, как при слиянии сегментов: из записей
+     * одного ключа берется самая новая. Сегменты читаются с блока начала диапазона по разреженному индексу.
+     * Обход идет по снимку (см {@link #snapshot()}) без блокировки таблицы: записи, сделанные во время обхода
+     * в таблицу в памяти, могут попасть в страницу, а могут и не попасть. Если файл сегмента из снимка
+     * успели удалить после сжатия, обход начинается заново. Страница, встретившая
+     * {@link TableImpl#MAX_SCAN_SKIPPED} удаленных ключей, возвращается неполной
+     */
+    @Override
+    public ScanPage scan(String fromKey, boolean fromInclusive, String toKey, int limit) throws DatabaseException {
+        Snapshot snapshot = snapshot();
+        try {
+            return scan(snapshot, fromKey, fromInclusive, toKey, limit);
+        } catch (NoSuchFileException ex) {
+            return scan(fromKey, fromInclusive, toKey, limit);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while scanning table " + tableName + ".", ex);
+        }
+    }
+
+    private ScanPage scan(Snapshot snapshot, String fromKey, boolean fromInclusive, String toKey, int limit)
+            throws IOException {
+        List<SegmentImpl> segments = snapshot.segments;
+        PriorityQueue<ScanCursor> queue = new PriorityQueue<>(Comparator.comparing((ScanCursor cursor) -> cursor.key)
+                .thenComparing(cursor -> -cursor.age));
+        List<DatabaseInputStream> streams = new ArrayList<>();
+        List<Map.Entry<String, byte[]>> page = new ArrayList<>();
+        String resumeKey = null;
+        int skipped = 0;
+        try {
+            for (int age = 0; age < segments.size(); age++) {
+                var inStream = segments.get(age).openStream(fromKey);
+                streams.add(inStream);
+                addCursor(queue, new ScanCursor(new MergeCursor(inStream, age), age), fromKey, fromInclusive);
+            }
+            if (snapshot.flushingMemtable != null) {
+                addCursor(queue, new ScanCursor(tailOf(snapshot.flushingMemtable, fromKey, fromInclusive),
+                        segments.size()), fromKey, fromInclusive);
+            }
+            addCursor(queue, new ScanCursor(tailOf(snapshot.memtable, fromKey, fromInclusive), segments.size() + 1),
+                    fromKey, fromInclusive);
+            while (!queue.isEmpty()) {
+                ScanCursor newest = queue.poll();
+                String key = newest.key;
+                if (toKey != null && key.compareTo(toKey) >= 0) {
+                    break;
+                }
+                if (newest.value != null) {
+                    page.add(Map.entry(key, newest.value));
+                    if (page.size() >= limit) {
+                        resumeKey = key;
+                        break;
+                    }
+                } else if (++skipped >= TableImpl.MAX_SCAN_SKIPPED) {
+                    resumeKey = key;
+                    break;
+                }
+                if (newest.advance()) {
+                    queue.add(newest);
+                }
+                while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+                    ScanCursor older = queue.poll();
+                    if (older.advance()) {
+                        queue.add(older);
+                    }
+                }
+            }
+        } finally {
+            for (DatabaseInputStream stream : streams) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                    BackgroundErrors.report("Error while closing segment stream of table " + tableName, ex);
+                }
+            }
+        }
+        return new ScanPage(page, resumeKey);
+    }
+
+    private static Iterator<Map.Entry<String, ExpiringValue>> tailOf(NavigableMap<String, ExpiringValue> records,
+                                                                    String fromKey, boolean fromInclusive) {
+        return (fromKey == null ? records : records.tailMap(fromKey, fromInclusive)).entrySet().iterator();
+    }
+
+    /**
+     * Пропускает записи курсора до начала диапазона и, если курсор не закончился, добавляет его в очередь
+     */
+    private static void addCursor(PriorityQueue<ScanCursor> queue, ScanCursor cursor, String fromKey,
+                                  boolean fromInclusive) throws IOException {
+        while (cursor.advance()) {
+            int comparison = fromKey == null ? 1 : cursor.key.compareTo(fromKey);
+            if (comparison > 0 || (comparison == 0 && fromInclusive)) {
+                queue.add(cursor);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Наличие ключа проверяется по снимку без блокировки таблицы, так что сегменты читаются без нее. Если ключ
+     * удалят между проверкой и записью, удаление просто запишется еще раз
+     */
+    @Override
+    public void delete(String objectKey) throws DatabaseException {
+        if (read(objectKey).isEmpty()) {
+            throw new DatabaseException("Table - " + tableName + ". No such a key " + objectKey + ".");
+        }
+        awaitDurable(append(objectKey, TOMBSTONE));
+    }
+
+    /**
+     * Дописывает запись в журнал и в таблицу в памяти. Если журнал заполнился, начинает новый,
+     * а заполненную таблицу отдает на сброс
+     *
+     * @param objectValue значение, {@link #TOMBSTONE} - удаление ключа
+     * @return журнал, в который попала запись
+     */
+    private synchronized Segment append(String objectKey, ExpiringValue objectValue) throws DatabaseException {
+        try {
+            if (log == null) {
+                startLog();
+            } else if (log.isReadOnly()) {
+                rotate();
+            }
+            var offsetInfo = objectValue == TOMBSTONE ? log.deleteRecord(objectKey)
+                    : log.writeRecord(objectKey, objectValue.value, objectValue.expiresAt);
+            if (offsetInfo.isEmpty()) {
+                throw new DatabaseException("Log " + log.getName() + " is read-only.");
+            }
+            memtable.put(objectKey, objectValue);
+            Segment written = log;
+            if (log.isReadOnly()) {
+                rotate();
+            }
+            return written;
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing data into log.", ex);
+        }
+    }
+
+    private void awaitDurable(Segment segment) throws DatabaseException {
+        try {
+            segment.awaitDurable();
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while syncing log " + segment.getName() + " to disk.", ex);
+        }
+    }
+
+    private void startLog() throws DatabaseException {
+        log = (SegmentImpl) SegmentImpl.create(createSegmentName(), tablePath, config);
+        storeManifest();
+    }
+
+    /**
+     * Отдает заполненную таблицу в памяти на сброс. Если предыдущая еще сбрасывается, ждет ее: так в памяти
+     * никогда не бывает больше двух таблиц, а запись замедляется до скорости сброса.
+     * Ожидание идет в {@link #wait()} и отпускает монитор таблицы, поэтому чтения (см {@link #snapshot()}) и поток
+     * сброса не блокируются. Записи, которые за это время застали заполненный журнал, тоже ждут здесь:
+     * журнал сменит первый проснувшийся, остальные увидят новый журнал и сразу вернутся
+     */
+    private void rotate() throws DatabaseException {
+        try {
+            while (flushingMemtable != null && log.isReadOnly()) {
+                if (flushFailure != null) {
+                    DatabaseException failure = flushFailure;
+                    flushFailure = null;
+                    FLUSHER.execute(this::flush);
+                    throw new DatabaseException("Error while flushing memtable of table " + tableName + ".", failure);
+                }
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for memtable flush of table " + tableName + ".", ex);
+        }
+        if (!log.isReadOnly()) {
+            return;
+        }
+        flushingMemtable = memtable;
+        flushingLog = log;
+        flushingSegmentName = createSegmentName();
+        pendingSegments.add(flushingSegmentName);
+        memtable = new ConcurrentSkipListMap<>();
+        startLog();
+        FLUSHER.execute(this::flush);
+    }
+
+    /**
+     * Выполняется в потоке сброса. Файл сегмента пишется без блокировки таблицы, журнал удаляется только после того,
+     * как манифест стал ссылаться на новый сегмент
+     */
+    private void flush() {
+        NavigableMap<String, ExpiringValue> flushed;
+        SegmentImpl flushedLog;
+        String segmentName;
+        synchronized (this) {
+            flushed = flushingMemtable;
+            flushedLog = flushingLog;
+            segmentName = flushingSegmentName;
+        }
+        try {
+            Optional<SegmentImpl> segment = writeSorted(segmentName, flushed);
+            synchronized (this) {
+                segment.ifPresent(segments::add);
+                flushingMemtable = null;
+                flushingLog = null;
+                pendingSegments.remove(segmentName);
+                obsoleteSegments.add(flushedLog.getName());
+                storeManifest();
+                notifyAll();
+                compactIfNeeded();
+            }
+            flushedLog.close();
+            Files.deleteIfExists(flushedLog.getPath());
+            synchronized (this) {
+                obsoleteSegments.remove(flushedLog.getName());
+            }
+        } catch (Exception ex) {
+            BackgroundErrors.report("Error while flushing memtable of table " + tableName, ex);
+            synchronized (this) {
+                if (flushingMemtable == flushed) {
+                    flushFailure = new DatabaseException("Error while flushing memtable into " + segmentName + ".", ex);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private Optional<SegmentImpl> writeSorted(String segmentName, NavigableMap<String, ExpiringValue> records)
+            throws IOException, DatabaseException {
+        try (var writer = new SortedSegmentWriter(segmentName, tablePath.resolve(segmentName), config)) {
+            for (Map.Entry<String, ExpiringValue> entry : records.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                ExpiringValue value = entry.getValue();
+                WritableDatabaseRecord record = value == TOMBSTONE ? new RemoveDatabaseRecord(key)
+                        : new SetDatabaseRecord(key, value.value, value.expiresAt);
+                writer.append(entry.getKey(), record);
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Запускает слияние самой новой серии из хотя бы {@link #TIER_FAN_IN} идущих подряд сегментов одного уровня.
+     * Сливаются только соседние сегменты, иначе запись из сегмента между ними оказалась бы старше слитой.
+     * Вызывается под блокировкой
+     */
+    private void compactIfNeeded() {
+        if (compacting) {
+            return;
+        }
+        int end = segments.size();
+        int first = end;
+        while (end - first < TIER_FAN_IN) {
+            if (first == 0) {
+                return;
+            }
+            if (first < end && tierOf(segments.get(first - 1)) != tierOf(segments.get(end - 1))) {
+                end = first;
+            }
+            first--;
+        }
+        int tier = tierOf(segments.get(first));
+        while (first > 0 && tierOf(segments.get(first - 1)) == tier) {
+            first--;
+        }
+        List<SegmentImpl> inputs = new ArrayList<>(segments.subList(first, end));
+        boolean dropRemoved = first == 0;
+        String outputName = createSegmentName();
+        pendingSegments.add(outputName);
+        compacting = true;
+        SegmentCompactor.submit(() -> compact(inputs, outputName, dropRemoved));
+    }
+
+    private int tierOf(SegmentImpl segment) {
+        long ratio = Math.max(1, segment.getSize() / config.getSegmentSize());
+        return (63 - Long.numberOfLeadingZeros(ratio)) / Integer.numberOfTrailingZeros(TIER_FAN_IN);
+    }
+
+    /**
+     * Выполняется в потоке сжатия. Блокировка таблицы берется только на время подмены сегментов
+     */
+    private void compact(List<SegmentImpl> inputs, String outputName, boolean dropRemoved) {
+        List<String> obsolete = new ArrayList<>();
+        try {
+            synchronized (this) {
+                storeManifest();
+            }
+            Optional<SegmentImpl> output;
+            try (var writer = new SortedSegmentWriter(outputName, tablePath.resolve(outputName), config)) {
+                merge(inputs, writer, dropRemoved);
+                output = writer.finish();
+            }
+            synchronized (this) {
+                int position = segments.indexOf(inputs.get(0));
+                segments.removeAll(inputs);
+                output.ifPresent(segment -> segments.add(position, segment));
+                pendingSegments.remove(outputName);
+                for (SegmentImpl input : inputs) {
+                    obsolete.add(input.getName());
+                }
+                obsoleteSegments.addAll(obsolete);
+                storeManifest();
+            }
+            for (SegmentImpl input : inputs) {
+                input.close();
+                SegmentHints.delete(input.getPath());
+                BloomFilterFile.delete(input.getPath());
+                Files.deleteIfExists(input.getPath());
+            }
+            synchronized (this) {
+                obsoleteSegments.removeAll(obsolete);
+                storeManifest();
+                compacting = false;
+                compactIfNeeded();
+            }
+        } catch (Exception ex) {
+            BackgroundErrors.report("Error while compacting segments of table " + tableName, ex);
+            synchronized (this) {
+                pendingSegments.remove(outputName);
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Сливает отсортированные сегменты одним проходом по каждому. Из записей одного ключа остается запись
+     * самого нового сегмента. Истекшие значения отбрасываются вместе с удалениями
+     */
+    private void merge(List<SegmentImpl> inputs, SortedSegmentWriter writer, boolean dropRemoved) throws IOException {
+        long now = System.currentTimeMillis();
+        PriorityQueue<MergeCursor> queue = new PriorityQueue<>(Comparator.comparing((MergeCursor cursor) -> cursor.key)
+                .thenComparing(cursor -> -cursor.age));
+        List<DatabaseInputStream> streams = new ArrayList<>();
+        try {
+            for (int age = 0; age < inputs.size(); age++) {
+                Path path = inputs.get(age).getPath();
+                var inStream = new DatabaseInputStream(new BufferedInputStream(Files.newInputStream(path)),
+                        config.isChecksums(), Files.size(path));
+                streams.add(inStream);
+                var cursor = new MergeCursor(inStream, age);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            while (!queue.isEmpty()) {
+                MergeCursor newest = queue.poll();
+                String key = newest.key;
+                if (!dropRemoved || (newest.record.isValuePresented()
+                        && !KeyExpiry.isExpired(newest.record.getExpiresAt(), now))) {
+                    writer.append(key, (WritableDatabaseRecord) newest.record);
+                }
+                if (newest.advance()) {
+                    queue.add(newest);
+                }
+                while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+                    MergeCursor older = queue.poll();
+                    if (older.advance()) {
+                        queue.add(older);
+                    }
+                }
+            }
+        } finally {
+            for (DatabaseInputStream inStream : streams) {
+                inStream.close();
+            }
+        }
+    }
+
+    /**
+     * Переносит в таблицу в памяти последние записи ключей журнала
+     */
+    private void replay(SegmentInitializationContext logContext) throws IOException {
+        List<Map.Entry<String, SegmentOffsetInfo>> entries = new ArrayList<>();
+        logContext.getIndex().forEach((key, offsetInfo) -> entries.add(Map.entry(key, offsetInfo)));
+        try (var reader = new DatabaseChannelReader(FileChannel.open(logContext.getSegmentPath(), StandardOpenOption.READ),
+                config.isChecksums())) {
+            for (var entry : entries) {
+                SegmentOffsetInfo offsetInfo = entry.getValue();
+                memtable.put(entry.getKey(), offsetInfo.isRemoved() ? TOMBSTONE : reader.readValue(offsetInfo)
+                        .map(value -> new ExpiringValue(value, offsetInfo.getExpiresAt())).orElse(TOMBSTONE));
+            }
+        }
+    }
+
+    private String createSegmentName() {
+        return SegmentImpl.createSegmentName(tableName, nextSegmentId++);
+    }
+
+    /**
+     * Сохраняет список сегментов и журналов таблицы. Вызывается под блокировкой таблицы
+     */
+    private void storeManifest() throws DatabaseException {
+        List<TableManifest.Entry> entries = new ArrayList<>();
+        for (String segmentName : obsoleteSegments) {
+            entries.add(TableManifest.Entry.obsolete(segmentName));
+        }
+        for (String segmentName : pendingSegments) {
+            entries.add(TableManifest.Entry.pending(segmentName));
+        }
+        for (SegmentImpl segment : segments) {
+            entries.add(TableManifest.Entry.of(segment));
+        }
+        for (SegmentImpl segment : new SegmentImpl[]{flushingLog, log}) {
+            if (segment != null) {
+                entries.add(new TableManifest.Entry(segment.getName(), TableManifest.State.ACTIVE, segment.getSize(),
+                        segment.getSize()));
+            }
+        }
+        try {
+            new TableManifest(nextSegmentId, entries).write(tablePath);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing manifest of table " + tableName + ".", ex);
+        }
+    }
+
+    /**
+     * Значение ключа в таблице в памяти вместе с временем истечения (см {@link KeyExpiry})
+     */
+    private static final class ExpiringValue {
+        private final byte[] value;
+        private final long expiresAt;
+
+        private ExpiringValue(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return KeyExpiry.isExpired(expiresAt, now);
+        }
+    }
+
+    /**
+     * Курсор обхода диапазона по таблице в памяти или по сегменту. Значение {@code null} - удаление ключа
+     * или истекшее значение
+     */
+    private static final class ScanCursor {
+        private final Iterator<Map.Entry<String, ExpiringValue>> entries;
+        private final MergeCursor segmentCursor;
+        /**
+         * Чем больше, тем новее источник
+         */
+        private final int age;
+        private String key;
+        private byte[] value;
+
+        private ScanCursor(Iterator<Map.Entry<String, ExpiringValue>> entries, int age) {
+            this.entries = entries;
+            this.segmentCursor = null;
+            this.age = age;
+        }
+
+        private ScanCursor(MergeCursor segmentCursor, int age) {
+            this.entries = null;
+            this.segmentCursor = segmentCursor;
+            this.age = age;
+        }
+
+        private boolean advance() throws IOException {
+            if (entries != null) {
+                if (!entries.hasNext()) {
+                    return false;
+                }
+                var entry = entries.next();
+                key = entry.getKey();
+                value = valueOf(entry.getValue()).orElse(null);
+                return true;
+            }
+            if (!segmentCursor.advance()) {
+                return false;
+            }
+            key = segmentCursor.key;
+            DatabaseRecord record = segmentCursor.record;
+            value = KeyExpiry.isExpired(record.getExpiresAt(), System.currentTimeMillis()) ? null : record.getValue();
+            return true;
+        }
+    }
+
+    private static final class MergeCursor {
+        private final DatabaseInputStream inStream;
+        /**
+         * Чем больше, тем новее сегмент
+         */
+        private final int age;
+        private DatabaseRecord record;
+        private String key;
+
+        private MergeCursor(DatabaseInputStream inStream, int age) {
+            this.inStream = inStream;
+            this.age = age;
+        }
+
+        private boolean advance() throws IOException {
+            Optional<DatabaseRecord> next = inStream.readDbUnit();
+            if (next.isEmpty()) {
+                return false;
+            }
+            record = next.get();
+            key = new String(record.getKey(), StandardCharsets.UTF_8);
+            return true;
+        }
+    }
+}
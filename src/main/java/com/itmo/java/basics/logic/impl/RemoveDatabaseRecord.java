@@ -1,6 +1,7 @@
 package com.itmo.java.basics.logic.impl;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.KeyExpiry;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 
 public class RemoveDatabaseRecord implements WritableDatabaseRecord {
@@ -24,6 +25,11 @@ public class RemoveDatabaseRecord implements WritableDatabaseRecord {
         return null;
     }
 
+    @Override
+    public long getExpiresAt() {
+        return KeyExpiry.NEVER;
+    }
+
     @Override
     public long size() {
         return 4 * 2 + getKeySize();
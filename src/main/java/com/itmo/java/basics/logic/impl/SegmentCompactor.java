@@ -0,0 +1,516 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.index.impl.TableIndexEntry;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.io.DatabaseInputStream;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.RecordHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сжатие read-only сегментов таблицы. Таблица выбирает сегменты, в которых много перекрытых записей
+ * (см {@link TableImpl}). Записи, на которые еще указывает {@link TableIndex}, переписываются в новые сегменты,
+ * перекрытые записи пропускаются. Новый сегмент закрывается, как только достигнет {@link TableConfig#getSegmentSize()},
+ * и следующие записи пишутся в еще один. Новые сегменты занимают в таблице место самого нового из сжатых
+ * и получают имена по его номеру (см {@link SegmentImpl#createCompactedSegmentName(String, int)}).
+ * <p>
+ * Актуальное удаление можно пропустить, только если все более старые сегменты таблицы тоже сжимаются: иначе
+ * при запуске удаленное значение снова появилось бы из старого сегмента. По той же причине только тогда
+ * пропускаются и истекшие значения (см {@link KeyExpiry}), их ключи уходят из индекса таблицы. Остальные удаления
+ * и истекшие значения переписываются как есть.
+ * Для таблиц с {@link TableConfig#isSorted()} записи новых сегментов упорядочиваются по ключу слиянием
+ * отсортированных сегментов: в памяти держится по одной записи каждого из них.
+ * <p>
+ * Файлы читаются и пишутся в фоновом потоке без блокировки таблицы. Имя каждого нового сегмента попадает
+ * в манифест таблицы до создания файла (см {@link OutputReservation}). Файлы новых сегментов занимают свое место,
+ * а индекс таблицы подменяется в {@link #swap()}, который таблица вызывает под своей блокировкой.
+ */
+final class SegmentCompactor {
+    /**
+     * Новый сегмент, в который переписываются записи
+     */
+    private static final class Output {
+        final String name;
+        final Path path;
+        final Path tmpPath;
+        final SegmentIndex index;
+        long size = 0;
+
+        Output(String name, Path path, TableConfig config) {
+            this.name = name;
+            this.path = path;
+            this.tmpPath = path.resolveSibling(name + ".tmp");
+            this.index = new SegmentIndex(config.getDatabaseConfig().getSegmentIndexType());
+        }
+    }
+
+    /**
+     * Актуальные записи сегмента в порядке их следования в файле (или по ключу, см {@link #sortedCursor(SegmentImpl)}).
+     * Значения в память не читаются, записи потом переписываются байтами (см {@link SegmentImpl#copyRecord})
+     */
+    private interface LiveRecordCursor extends Closeable {
+        /**
+         * @return нашлась ли следующая актуальная запись
+         */
+        boolean advance() throws IOException;
+
+        String key();
+
+        SegmentOffsetInfo offsetInfo();
+    }
+
+    /**
+     * Записывает имя нового сегмента в манифест таблицы до создания его файла
+     */
+    @FunctionalInterface
+    interface OutputReservation {
+        void reserve(String segmentName) throws DatabaseException;
+    }
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Сжимаемые сегменты, от старых к новым
+     */
+    private final List<SegmentImpl> inputs;
+    /**
+     * Сколько самых старых сжимаемых сегментов идут в таблице подряд с начала: из них удаления пропускаются
+     */
+    private final int completePrefix;
+    private final TableIndex tableIndex;
+    private final TableConfig config;
+    private final SegmentImpl last;
+    private final OutputReservation reservation;
+    private final List<Output> outputs = new ArrayList<>();
+    /**
+     * Ключи пропущенных удалений и истекших значений
+     */
+    private final List<String> dropped = new ArrayList<>();
+    private long written = 0;
+
+    /**
+     * @param inputs         сжимаемые сегменты от старых к новым
+     * @param completePrefix сколько первых из них - самые старые сегменты таблицы, без пропусков
+     * @param reservation    вызывается перед созданием файла каждого нового сегмента
+     */
+    SegmentCompactor(List<SegmentImpl> inputs, int completePrefix, TableIndex tableIndex, TableConfig config,
+                     OutputReservation reservation) {
+        this.inputs = inputs;
+        this.completePrefix = completePrefix;
+        this.tableIndex = tableIndex;
+        this.config = config;
+        this.last = inputs.get(inputs.size() - 1);
+        this.reservation = reservation;
+    }
+
+    static void submit(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    List<SegmentImpl> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return имена новых сегментов, для которых уже создавались файлы
+     */
+    List<String> getOutputNames() {
+        List<String> names = new ArrayList<>();
+        for (Output output : outputs) {
+            names.add(output.name);
+        }
+        return names;
+    }
+
+    /**
+     * Переписывает актуальные записи во временные файлы. Если актуальных записей не осталось, файлы не создаются
+     *
+     * @throws DatabaseException если произошла ошибка ввода-вывода
+     */
+    void merge() throws DatabaseException {
+        long startNanos = System.nanoTime();
+        OutputWriter writer = new OutputWriter(startNanos);
+        try (writer) {
+            if (config.isSorted()) {
+                copySortedLiveRecords(writer);
+            } else {
+                for (int i = 0; i < inputs.size(); i++) {
+                    try (var cursor = new FileOrderCursor(inputs.get(i), i < completePrefix)) {
+                        while (cursor.advance()) {
+                            writer.copy(cursor.key(), cursor.input, cursor.offsetInfo());
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            for (Output output : outputs) {
+                try {
+                    Files.deleteIfExists(output.tmpPath);
+                } catch (IOException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+            }
+            throw new DatabaseException("Error while compacting segments into " + last.getName() + ".", ex);
+        }
+    }
+
+    /**
+     * Атомарно переименовывает временные файлы в файлы новых сегментов и переключает индекс таблицы на них.
+     * Ключи, перезаписанные или удаленные во время сжатия, остаются в более новых сегментах.
+     * Вызывается под блокировкой таблицы
+     *
+     * @return новые сегменты по порядку. Пусто, если в сжатых сегментах не осталось актуальных записей
+     * @throws DatabaseException если файл не удалось переименовать или новый сегмент не удалось открыть
+     */
+    List<Segment> swap() throws DatabaseException {
+        List<Segment> segments = new ArrayList<>();
+        if (!outputs.isEmpty()) {
+            int renamed = 0;
+            try {
+                for (Output output : outputs) {
+                    Files.move(output.tmpPath, output.path, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    renamed++;
+                }
+            } catch (IOException ex) {
+                for (int i = 0; i < outputs.size(); i++) {
+                    try {
+                        Files.deleteIfExists(i < renamed ? outputs.get(i).path : outputs.get(i).tmpPath);
+                    } catch (IOException suppressed) {
+                        ex.addSuppressed(suppressed);
+                    }
+                }
+                throw new DatabaseException("Error while compacting segments into " + last.getName() + ".", ex);
+            }
+            for (Output output : outputs) {
+                SegmentImpl segment = SegmentImpl.openCompacted(output.name, output.path, output.index, output.size,
+                        config);
+                output.index.forEach((key, offsetInfo) -> {
+                    if (isIndexedInInputs(key)) {
+                        tableIndex.onIndexedEntityUpdated(key, new TableIndexEntry(segment, offsetInfo));
+                    } else {
+                        segment.onRecordSuperseded(offsetInfo.getSize());
+                    }
+                });
+                segments.add(segment);
+            }
+        }
+        for (String key : dropped) {
+            if (isIndexedInInputs(key)) {
+                tableIndex.onIndexedEntityRemoved(key);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Сохраняет подсказки новых сегментов (см {@link SegmentHints}). Вызывается после {@link #swap()} без блокировки
+     * таблицы: без подсказок сегмент при запуске просто читается целиком, поэтому ошибка записи не прерывает сжатие
+     */
+    void writeHints() {
+        for (Output output : outputs) {
+            try {
+                SegmentHints.write(output.path, output.size, output.index);
+            } catch (IOException ex) {
+                BackgroundErrors.report("Error while writing hints for segment " + output.name, ex);
+            }
+        }
+    }
+
+    /**
+     * Закрывает и удаляет сжатые сегменты, начиная со старых. Если процесс упадет посередине, в оставшихся
+     * более новых сегментах сохранятся удаления, которые могли бы воскресить значения из уже удаленных файлов
+     *
+     * @throws DatabaseException если сегмент не удалось закрыть или удалить
+     */
+    void deleteInputs() throws DatabaseException {
+        for (SegmentImpl input : inputs) {
+            try {
+                input.close();
+                SegmentHints.delete(input.getPath());
+                BloomFilterFile.delete(input.getPath());
+                Files.deleteIfExists(input.getPath());
+            } catch (IOException ex) {
+                throw new DatabaseException("Error while deleting compacted segment " + input.getName() + ".", ex);
+            }
+        }
+    }
+
+    /**
+     * Сливает курсоры сегментов по ключу. Актуальная запись ключа лежит только в одном сегменте, поэтому
+     * одинаковых ключей у курсоров не бывает. Отсортированные сегменты читаются потоком, остальные сортируются
+     * по одному в памяти (см {@link #sortedCursor(SegmentImpl)})
+     */
+    private void copySortedLiveRecords(OutputWriter writer) throws IOException {
+        PriorityQueue<LiveRecordCursor> queue = new PriorityQueue<>(Comparator.comparing(LiveRecordCursor::key));
+        Map<LiveRecordCursor, SegmentImpl> owners = new IdentityHashMap<>();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                SegmentImpl input = inputs.get(i);
+                LiveRecordCursor cursor = input.isSortedByKey() ? new FileOrderCursor(input, i < completePrefix)
+                        : sortedCursor(input, i < completePrefix);
+                owners.put(cursor, input);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            while (!queue.isEmpty()) {
+                LiveRecordCursor cursor = queue.poll();
+                writer.copy(cursor.key(), owners.get(cursor), cursor.offsetInfo());
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (LiveRecordCursor cursor : owners.keySet()) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Собирает актуальные записи неотсортированного сегмента (например, записанного до включения сортировки)
+     * и упорядочивает их по ключу. В памяти оказываются положения записей только этого сегмента
+     */
+    private LiveRecordCursor sortedCursor(SegmentImpl input, boolean dropRemoved) throws IOException {
+        List<Map.Entry<String, SegmentOffsetInfo>> records = new ArrayList<>();
+        try (var cursor = new FileOrderCursor(input, dropRemoved)) {
+            while (cursor.advance()) {
+                records.add(Map.entry(cursor.key(), cursor.offsetInfo()));
+            }
+        }
+        records.sort(Map.Entry.comparingByKey());
+        Iterator<Map.Entry<String, SegmentOffsetInfo>> iterator = records.iterator();
+        return new LiveRecordCursor() {
+            private Map.Entry<String, SegmentOffsetInfo> current;
+
+            @Override
+            public boolean advance() {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return current != null;
+            }
+
+            @Override
+            public String key() {
+                return current.getKey();
+            }
+
+            @Override
+            public SegmentOffsetInfo offsetInfo() {
+                return current.getValue();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Обходит актуальные записи сегмента в порядке их следования в файле. Пропускаемые удаления и истекшие значения
+     * не передаются дальше, а запоминаются в {@link #dropped}
+     */
+    private final class FileOrderCursor implements LiveRecordCursor {
+        private final SegmentImpl input;
+        private final boolean dropRemoved;
+        private final DatabaseInputStream inStream;
+        private final long now = System.currentTimeMillis();
+        private String key;
+        private SegmentOffsetInfo offsetInfo;
+
+        FileOrderCursor(SegmentImpl input, boolean dropRemoved) throws IOException {
+            this.input = input;
+            this.dropRemoved = dropRemoved;
+            this.inStream = new DatabaseInputStream(new BufferedInputStream(Files.newInputStream(input.getPath())),
+                    config.isChecksums(), Files.size(input.getPath()));
+        }
+
+        @Override
+        public boolean advance() throws IOException {
+            Optional<RecordHeader> record;
+            long offset = inStream.getPosition();
+            while ((record = inStream.readHeader()).isPresent()) {
+                String recordKey = new String(record.get().getKey(), StandardCharsets.UTF_8);
+                long recordOffset = offset;
+                offset = inStream.getPosition();
+                if (!isLive(input, recordKey, recordOffset)) {
+                    continue;
+                }
+                boolean removed = !record.get().isValuePresented();
+                if (dropRemoved && (removed || KeyExpiry.isExpired(record.get().getExpiresAt(), now))) {
+                    dropped.add(recordKey);
+                    continue;
+                }
+                key = recordKey;
+                offsetInfo = new SegmentOffsetInfoImpl(recordOffset, offset - recordOffset,
+                        DatabaseOutputStream.valueOffset(recordOffset, record.get().getKey().length), removed,
+                        record.get().getExpiresAt());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public SegmentOffsetInfo offsetInfo() {
+            return offsetInfo;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inStream.close();
+        }
+    }
+
+    /**
+     * Пишет записи в новые сегменты по очереди: следующий начинается, когда текущий достиг размера сегмента таблицы
+     */
+    private final class OutputWriter implements Closeable {
+        private final long startNanos;
+        private FileChannel channel;
+        private DatabaseOutputStream outStream;
+        private Output output;
+        private int nextOutputNumber = 0;
+
+        OutputWriter(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void copy(String key, SegmentImpl input, SegmentOffsetInfo offsetInfo) throws IOException {
+            if (output == null || output.size >= config.getSegmentSize()) {
+                finishOutput();
+                startOutput();
+            }
+            long size = offsetInfo.getSize();
+            input.copyRecord(offsetInfo, outStream);
+            output.index.onIndexedEntityUpdated(key, new SegmentOffsetInfoImpl(output.size, size,
+                    output.size + offsetInfo.getValueOffset() - offsetInfo.getOffset(), offsetInfo.isRemoved(),
+                    offsetInfo.getExpiresAt()));
+            output.size += size;
+            written += size;
+            throttle(startNanos);
+        }
+
+        private void startOutput() throws IOException {
+            String name;
+            do {
+                name = SegmentImpl.createCompactedSegmentName(last.getName(), nextOutputNumber++);
+            } while (isTaken(name));
+            output = new Output(name, last.getPath().resolveSibling(name), config);
+            outputs.add(output);
+            try {
+                reservation.reserve(name);
+            } catch (DatabaseException ex) {
+                throw new IOException("Could not reserve segment " + name + " in the manifest.", ex);
+            }
+            channel = FileChannel.open(output.tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            outStream = new DatabaseOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)),
+                    config.isChecksums());
+        }
+
+        /**
+         * Сбрасывает текущий новый сегмент на диск и закрывает его файл
+         */
+        private void finishOutput() throws IOException {
+            if (outStream == null) {
+                return;
+            }
+            try (var closedChannel = channel; var closedStream = outStream) {
+                outStream = null;
+                channel = null;
+                closedStream.flush();
+                closedChannel.force(true);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finishOutput();
+        }
+    }
+
+    /**
+     * Новый сегмент не занимает файл сжимаемого: если процесс упадет до подмены, при запуске новые файлы
+     * удалятся по манифесту, а сжимаемые останутся целыми
+     */
+    private boolean isTaken(String name) {
+        return Files.exists(last.getPath().resolveSibling(name));
+    }
+
+    /**
+     * Последняя запись ключа все еще в одном из сжатых сегментов, то есть ключ не перезаписывали во время сжатия
+     */
+    private boolean isIndexedInInputs(String key) {
+        return tableIndex.searchForKey(key).map(entry -> inputs.contains(entry.getSegment())).orElse(false);
+    }
+
+    /**
+     * Запись актуальна, если индекс таблицы указывает на нее
+     */
+    private boolean isLive(SegmentImpl input, String key, long offset) {
+        return tableIndex.searchForKey(key)
+                .map(entry -> entry.getSegment() == input && entry.getOffset() == offset)
+                .orElse(false);
+    }
+
+    /**
+     * Засыпает, если записано больше, чем позволяет {@link com.itmo.java.basics.config.DatabaseConfig#getCompactionRateLimit()}
+     */
+    private void throttle(long startNanos) throws IOException {
+        long rateLimit = config.getDatabaseConfig().getCompactionRateLimit();
+        if (rateLimit <= 0) {
+            return;
+        }
+        long aheadNanos = (long) (written * 1e9 / rateLimit) - (System.nanoTime() - startNanos);
+        if (aheadNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compaction was interrupted.", ex);
+        }
+    }
+}
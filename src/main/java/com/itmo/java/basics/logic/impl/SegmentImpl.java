@@ -1,59 +1,219 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.StorageMode;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.config.TableEngine;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.BloomFilter;
 import com.itmo.java.basics.index.impl.SegmentIndex;
 import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.index.impl.SparseSegmentIndex;
 import com.itmo.java.basics.initialization.SegmentInitializationContext;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.KeyExpiry;
 import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.StreamedValue;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.DatabaseChannelReader;
 import com.itmo.java.basics.logic.io.DatabaseInputStream;
 import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.DatabaseRecordReader;
+import com.itmo.java.basics.logic.io.FileRegionValue;
+import com.itmo.java.basics.logic.io.MappedDatabaseReader;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.SegmentSyncer;
+import com.itmo.java.basics.logic.io.TableManifest;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
-public class SegmentImpl implements Segment, AutoCloseable {
-    private final String segmentName;
-    private SegmentIndex segmentIndex;
-    private final DatabaseInputStream inStream;
-    private final DatabaseOutputStream outStream;
-    private long curOffset = 0;
+public class SegmentImpl implements Segment, Closeable {
+    /**
+     * Суффикс имени сегмента, полученного сжатием. Такой сегмент идет сразу после последнего из сжатых сегментов.
+     * Если сжатие дало несколько сегментов, за суффиксом идет номер: "_c", "_c1", "_c2"...
+     */
+    static final String COMPACTED_SUFFIX = "_c";
+    private static final Pattern COMPACTED_NAME = Pattern.compile("_\\d+" + COMPACTED_SUFFIX + "\\d*$");
+    /**
+     * Чтение, которое выполняется в пуле потоков чтения сегментов
+     */
+    @FunctionalInterface
+    interface SegmentRead<T> {
+        T read() throws IOException;
+    }
 
-    public static final int maxSize = 100_000;
+    /**
+     * Переводит индекс таблицы на положение записи в отсортированной копии сегмента (см {@link #replaceWithSorted(SortedCopy, Relocator)})
+     */
+    @FunctionalInterface
+    interface Relocator {
+        void relocate(String key, SegmentImpl sorted, SegmentOffsetInfo offsetInfo);
+    }
 
-    private SegmentImpl (String segmentName, DatabaseInputStream inStream, DatabaseOutputStream outStream) {
-        this.segmentName = segmentName;
-        this.inStream = inStream;
-        this.outStream = outStream;
-        this.segmentIndex = new SegmentIndex();
+    /**
+     * Отсортированная копия файла read-only сегмента, еще не подменившая его (см {@link #finishSealing()})
+     */
+    static final class SortedCopy {
+        private final Path path;
+        private final SegmentIndex index;
+        private final long size;
+
+        private SortedCopy(Path path, SegmentIndex index, long size) {
+            this.path = path;
+            this.index = index;
+            this.size = size;
+        }
     }
 
-    private SegmentImpl (String segmentName, DatabaseInputStream inStream, DatabaseOutputStream outStream,
-                         SegmentIndex segmentIndex, long curOffset) {
+    private final String segmentName;
+    private final Path segmentPath;
+    /**
+     * Индекс ключей сегмента. Нужен, пока сегмент дописывается, и при закрытии его на запись (подсказки, фильтр Блума,
+     * сортировка), после чего освобождается: положения записей хранит индекс таблицы
+     */
+    private volatile SegmentIndex segmentIndex;
+    /**
+     * Разреженный индекс отсортированного read-only сегмента для поиска по ключу (см {@link #read(String)})
+     */
+    private volatile SparseSegmentIndex sparseIndex = null;
+    private final FileChannel readChannel;
+    private final DatabaseChannelReader channelReader;
+    /**
+     * Читатель отображенного в память файла. Появляется, когда сегмент становится read-only
+     * и выбран {@link StorageMode#MMAP}
+     */
+    private volatile DatabaseRecordReader mappedReader = null;
+    /**
+     * Фильтр Блума по ключам сегмента. Появляется, когда read-only становится сегмент таблицы {@link TableEngine#LSM},
+     * и позволяет не обращаться к сегменту за ключами, которых в нем нет. Таблица {@link TableEngine#LOG} ищет ключи
+     * в своем индексе, а не в сегментах, поэтому ее сегментам фильтр не нужен
+     */
+    private volatile BloomFilter bloomFilter = null;
+    /**
+     * Файл, открытый на запись. Запись ведется с позиции {@link #curOffset}, а не в конец файла,
+     * так как файл может быть заранее расширен до размера сегмента
+     */
+    private final RandomAccessFile outFile;
+    private final DatabaseOutputStream outStream;
+    private final SegmentSyncer syncer;
+    private final TableConfig config;
+    private final long maxSize;
+    private long curOffset = 0;
+    private volatile boolean readOnly;
+    /**
+     * Объем записей, перекрытых более новыми записями в этом или других сегментах (см {@link #onRecordSuperseded}).
+     * Запись в таблицу и сжатие перекрывают записи сегмента из разных потоков
+     */
+    private final AtomicLong deadBytes = new AtomicLong();
+    /**
+     * Файл сегмента вот-вот подменят или удалят. Значения по пути файла (см {@link #readStreamed}) больше не открываются:
+     * по тем же смещениям в новом файле лежат другие записи
+     */
+    private volatile boolean retired = false;
+
+    private SegmentImpl (String segmentName, Path segmentPath, FileChannel readChannel, RandomAccessFile outFile,
+                         SegmentIndex segmentIndex, long curOffset, TableConfig config) throws IOException {
         this.segmentName = segmentName;
-        this.inStream = inStream;
-        this.outStream = outStream;
+        this.segmentPath = segmentPath;
+        this.readChannel = readChannel;
+        this.channelReader = new DatabaseChannelReader(readChannel, config.isChecksums());
+        this.outFile = outFile;
         this.segmentIndex = segmentIndex;
         this.curOffset = curOffset;
+        this.config = config;
+        this.maxSize = config.getSegmentSize();
+        this.readOnly = outFile == null || curOffset >= maxSize;
+        if (outFile != null) {
+            outFile.seek(curOffset);
+            this.outStream = new DatabaseOutputStream(Channels.newOutputStream(outFile.getChannel()),
+                    config.isChecksums());
+            this.syncer = new SegmentSyncer(outFile.getChannel(), curOffset, config.getDurability(),
+                    config.getFsyncInterval());
+        } else {
+            this.outStream = null;
+            this.syncer = null;
+        }
     }
 
     public static Segment initializeFromContext(SegmentInitializationContext context) {
+        return initializeFromContext(context, TableConfig.defaults(new DatabaseConfig()));
+    }
+
+    public static Segment initializeFromContext(SegmentInitializationContext context, TableConfig config) {
+        return initializeFromContext(context, config, true);
+    }
+
+    /**
+     * Открывает сегмент, записи которого уже прочитаны в контекст. Файл текущего сегмента, обрезанный при восстановлении,
+     * снова расширяется до размера сегмента, если для таблицы включен {@link TableConfig#isPreallocate()}.
+     * Все сегменты, кроме текущего, открываются read-only: отсортированный сегмент может быть меньше размера сегмента
+     *
+     * @param active {@code true} - если это последний (текущий) сегмент таблицы
+     */
+    public static Segment initializeFromContext(SegmentInitializationContext context, TableConfig config, boolean active) {
         Path segmentPath = context.getSegmentPath();
         String segmentName = context.getSegmentName();
         SegmentImpl segment;
         try {
-        var outStream = context.getCurrentSize() < maxSize ?
-                new DatabaseOutputStream(new FileOutputStream(segmentPath.toString(), true)) : null;
-            segment = new SegmentImpl(segmentName,
-                    new DatabaseInputStream(new BufferedInputStream(new FileInputStream(segmentPath.toString()))),
-                    outStream, context.getIndex(), context.getCurrentSize());
+            var outFile = new RandomAccessFile(segmentPath.toFile(), "rw");
+            if (!active || context.getCurrentSize() >= config.getSegmentSize() || isCompactedSegmentName(segmentName)) {
+                if (outFile.length() > context.getCurrentSize()) {
+                    outFile.setLength(context.getCurrentSize());
+                }
+                outFile.close();
+                outFile = null;
+            } else if (config.isPreallocate() && outFile.length() < config.getSegmentSize()) {
+                outFile.setLength(config.getSegmentSize());
+            }
+            segment = new SegmentImpl(segmentName, segmentPath, FileChannel.open(segmentPath, StandardOpenOption.READ),
+                    outFile, context.getIndex(), context.getCurrentSize(), config);
+            segment.deadBytes.set(context.getDeadBytes());
+            if (segment.isReadOnly()) {
+                if (!Files.exists(SegmentHints.hintPath(segmentPath))) {
+                    segment.writeHints();
+                }
+                segment.releaseIndex(true);
+            }
         } catch (FileNotFoundException ex) {
             throw new Error(segmentName + " is not found.", ex);
+        } catch (IOException ex) {
+            throw new Error("Error while opening " + segmentName + ".", ex);
         }
         return segment;
     }
 
     public static Segment create(String segmentName, Path tableRootPath) throws DatabaseException {
+        return create(segmentName, tableRootPath, TableConfig.defaults(new DatabaseConfig()));
+    }
+
+    /**
+     * Создает файл сегмента. Если для таблицы включен {@link TableConfig#isPreallocate()}, файл сразу расширяется
+     * до размера сегмента, и дописывание записей не меняет размер файла
+     */
+    public static Segment create(String segmentName, Path tableRootPath, TableConfig config) throws DatabaseException {
         File segmentFile = new File(tableRootPath.toString(), segmentName);
         try {
             segmentFile.createNewFile();
@@ -62,23 +222,93 @@ public class SegmentImpl implements Segment, AutoCloseable {
         }
         SegmentImpl segment;
         try {
-            segment = new SegmentImpl(segmentName,
-                    new DatabaseInputStream(new BufferedInputStream(new FileInputStream(segmentFile))),
-                    new DatabaseOutputStream(new FileOutputStream(segmentFile, true)));
+            var outFile = new RandomAccessFile(segmentFile, "rw");
+            if (config.isPreallocate()) {
+                outFile.setLength(config.getSegmentSize());
+            }
+            segment = new SegmentImpl(segmentName, segmentFile.toPath(),
+                    FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ), outFile,
+                    new SegmentIndex(config.getDatabaseConfig().getSegmentIndexType()), 0, config);
         } catch (FileNotFoundException ex) {
             throw new DatabaseException(segmentName + " is not found.", ex);
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while opening " + segmentName + ".", ex);
         }
         return segment;
     }
 
-    static String createSegmentName(String tableName) {
+    /**
+     * Открывает уже записанный сжатием или сбросом таблицы в памяти сегмент. Такой сегмент сразу read-only
+     */
+    static SegmentImpl openCompacted(String segmentName, Path segmentPath, SegmentIndex segmentIndex, long size,
+                                     TableConfig config) throws DatabaseException {
         try {
-            Thread.sleep(1);
-        }
-        catch (InterruptedException ex ) {
-            throw new Error("Error while creating segment name.", ex);
+            SegmentImpl segment = new SegmentImpl(segmentName, segmentPath,
+                    FileChannel.open(segmentPath, StandardOpenOption.READ), null, segmentIndex, size, config);
+            segment.releaseIndex(false);
+            return segment;
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while opening compacted segment " + segmentName + ".", ex);
         }
-        return tableName + "_" + System.currentTimeMillis();
+    }
+
+    /**
+     * Выполняет чтение в пуле потоков чтения сегментов
+     */
+    static <T> CompletableFuture<T> submitRead(SegmentRead<T> read, Executor readers) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        readers.execute(() -> {
+            try {
+                future.complete(read.read());
+            } catch (IOException | RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Если файл сегмента закрыли раньше, чем до него дошло чтение (сегмент переписан или сжат), чтение повторяется
+     * с поиска ключа заново. Остальные ошибки передаются как {@link DatabaseException}
+     *
+     * @param read  начатое чтение
+     * @param retry начинает чтение заново
+     */
+    static <T> CompletableFuture<T> retryIfClosed(CompletableFuture<T> read, Supplier<CompletableFuture<T>> retry) {
+        return read.handle((value, ex) -> {
+            if (ex == null) {
+                return CompletableFuture.completedFuture(value);
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof ClosedChannelException) {
+                return retry.get();
+            }
+            return CompletableFuture.<T>failedFuture(cause instanceof DatabaseException
+                    ? cause : new DatabaseException("Error while reading a segment.", cause));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * @param segmentId номер сегмента, следующий за номерами всех сегментов таблицы (см {@link TableManifest})
+     */
+    static String createSegmentName(String tableName, long segmentId) {
+        return tableName + "_" + segmentId;
+    }
+
+    /**
+     * Имя сегмента, в который сжимаются сегменты вплоть до {@code lastSegmentName}. Номер у него тот же,
+     * что у последнего сжатого, поэтому и без манифеста он встает после всех сжатых сегментов и перед более новыми
+     *
+     * @param n порядковый номер сегмента среди полученных одним сжатием
+     */
+    public static String createCompactedSegmentName(String lastSegmentName, int n) {
+        String base = isCompactedSegmentName(lastSegmentName)
+                ? lastSegmentName.substring(0, lastSegmentName.lastIndexOf(COMPACTED_SUFFIX)) : lastSegmentName;
+        return base + COMPACTED_SUFFIX + (n == 0 ? "" : String.valueOf(n));
+    }
+
+    public static boolean isCompactedSegmentName(String segmentName) {
+        return COMPACTED_NAME.matcher(segmentName).find();
     }
 
     @Override
@@ -88,68 +318,613 @@ public class SegmentImpl implements Segment, AutoCloseable {
 
     @Override
     public boolean write(String objectKey, byte[] objectValue) throws IOException {
+        return writeRecord(objectKey, objectValue).isPresent();
+    }
+
+    @Override
+    public Optional<SegmentOffsetInfo> writeRecord(String objectKey, byte[] objectValue) throws IOException {
+        return writeRecord(objectKey, objectValue, KeyExpiry.NEVER);
+    }
+
+    @Override
+    public Optional<SegmentOffsetInfo> writeRecord(String objectKey, byte[] objectValue, long expiresAt)
+            throws IOException {
         if (isReadOnly()) {
-            return false;
+            return Optional.empty();
         }
         SetDatabaseRecord record;
         try {
-            record = new SetDatabaseRecord(objectKey.getBytes(), objectValue);
+            record = new SetDatabaseRecord(objectKey.getBytes(StandardCharsets.UTF_8), objectValue, expiresAt);
         } catch (DatabaseException ex) {
             throw new IOException("Error while converting data into record.", ex);
         }
-        segmentIndex.onIndexedEntityUpdated(objectKey, new SegmentOffsetInfoImpl(curOffset));
-        curOffset += outStream.write(record);
+        return Optional.of(append(objectKey, record));
+    }
+
+    /**
+     * Если значение не удалось передать целиком, недописанная запись стирается (см {@link #rewind(IOException)})
+     */
+    @Override
+    public Optional<SegmentOffsetInfo> writeRecord(String objectKey, StreamedValue objectValue, long expiresAt)
+            throws IOException {
+        if (isReadOnly()) {
+            return Optional.empty();
+        }
+        byte[] key = objectKey.getBytes(StandardCharsets.UTF_8);
+        long size;
+        try {
+            size = outStream.write(key, objectValue, expiresAt);
+        } catch (IOException ex) {
+            throw rewind(ex);
+        }
+        return Optional.of(onAppended(objectKey, new SegmentOffsetInfoImpl(curOffset, size,
+                DatabaseOutputStream.valueOffset(curOffset, key.length), false, expiresAt)));
+    }
+
+    /**
+     * Записи пакета пишутся одним вызовом. Если он не удался, недописанные записи стираются
+     * (см {@link #rewind(IOException)}), и ни одна запись пакета не попадает в индекс
+     */
+    @Override
+    public List<SegmentOffsetInfo> writeRecords(List<Map.Entry<String, byte[]>> entries) throws IOException {
         if (isReadOnly()) {
-            outStream.close();
+            return List.of();
+        }
+        List<SetDatabaseRecord> records = new ArrayList<>();
+        long end = curOffset;
+        try {
+            for (var entry : entries) {
+                var record = new SetDatabaseRecord(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+                records.add(record);
+                end += outStream.sizeOf(record);
+                if (end >= maxSize) {
+                    break;
+                }
+            }
+        } catch (DatabaseException ex) {
+            throw new IOException("Error while converting data into record.", ex);
+        }
+        long[] sizes;
+        try {
+            sizes = outStream.write(records);
+        } catch (IOException ex) {
+            throw rewind(ex);
+        }
+        List<SegmentOffsetInfo> offsets = new ArrayList<>(records.size());
+        for (int i = 0; i < sizes.length; i++) {
+            SegmentOffsetInfo offsetInfo = new SegmentOffsetInfoImpl(curOffset, sizes[i],
+                    DatabaseOutputStream.valueOffset(curOffset, records.get(i).getKeySize()), false,
+                    records.get(i).getExpiresAt());
+            segmentIndex.onIndexedEntityUpdated(entries.get(i).getKey(), offsetInfo);
+            offsets.add(offsetInfo);
+            curOffset += sizes[i];
+        }
+        syncer.onAppended(curOffset);
+        if (curOffset >= maxSize) {
+            seal();
         }
-        return true;
+        return offsets;
     }
 
+    /**
+     * Таблица читает записи по положению из своего индекса (см {@link #readRecord(SegmentOffsetInfo)}).
+     * Поиск по ключу использует индекс текущего сегмента или разреженный индекс отсортированного, а файл
+     * неотсортированного read-only сегмента просматривает целиком. Истекшее значение не возвращается
+     */
     @Override
     public Optional<byte[]> read(String objectKey) throws IOException {
-        var offset = segmentIndex.searchForKey(objectKey);
+        return findRecord(objectKey)
+                .filter(record -> !KeyExpiry.isExpired(record.getExpiresAt(), System.currentTimeMillis()))
+                .flatMap(record -> Optional.ofNullable(record.getValue()));
+    }
+
+    /**
+     * Ищет последнюю запись ключа. В отличие от {@link #read(String)} отличает удаление ключа от его отсутствия
+     */
+    Optional<DatabaseRecord> findRecord(String objectKey) throws IOException {
+        var filter = bloomFilter;
+        if (filter != null && !filter.mightContain(objectKey)) {
+            return Optional.empty();
+        }
+        var sparse = sparseIndex;
+        if (sparse != null) {
+            return readFromBlock(sparse, objectKey);
+        }
+        var index = segmentIndex;
+        if (index == null) {
+            return scanForKey(objectKey);
+        }
+        var offset = index.searchForKey(objectKey);
         if (offset.isEmpty()) {
             return Optional.empty();
         }
-        inStream.mark(Integer.MAX_VALUE);
-        var skip = inStream.skipBytes((int) offset.get().getOffset());
-        if (skip < offset.get().getOffset()) {
-            throw new IOException("Could not get to the position in the file.");
+        return readRecord(offset.get().getOffset());
+    }
+
+    /**
+     * Открывает поток записей отсортированного сегмента, начиная с блока, в котором может лежать ключ.
+     * Записи с меньшими ключами из начала блока пропускает вызывающий
+     *
+     * @param fromKey ключ, с которого нужен поток, {@code null} - с начала файла
+     */
+    DatabaseInputStream openStream(String fromKey) throws IOException {
+        long start = 0;
+        var sparse = sparseIndex;
+        if (fromKey != null && sparse != null) {
+            int block = sparse.searchForBlock(fromKey);
+            if (block > 0) {
+                start = sparse.getBlockStart(block);
+            }
         }
-        var record = inStream.readDbUnit();
-        inStream.reset();
-        if (record.isEmpty()) {
+        var channel = FileChannel.open(segmentPath, StandardOpenOption.READ);
+        try {
+            channel.position(start);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return new DatabaseInputStream(new BufferedInputStream(Channels.newInputStream(channel)),
+                config.isChecksums(), curOffset - start);
+    }
+
+    @Override
+    public Optional<byte[]> readRecord(SegmentOffsetInfo offsetInfo) throws IOException {
+        if (offsetInfo.isRemoved() || KeyExpiry.isExpired(offsetInfo.getExpiresAt(), System.currentTimeMillis())) {
             return Optional.empty();
         }
-        return Optional.ofNullable(record.get().getValue());
+        var mapped = mappedReader;
+        return (mapped != null ? mapped : channelReader).readValue(offsetInfo);
+    }
+
+    /**
+     * Читатель берется в момент вызова, поэтому смещение никогда не применяется к файлу, переписанному отсортированным.
+     * Если старый файл к моменту чтения уже закрыт, чтение завершается с {@link ClosedChannelException}
+     */
+    @Override
+    public CompletableFuture<Optional<byte[]>> readRecordAsync(SegmentOffsetInfo offsetInfo, Executor readers) {
+        if (offsetInfo.isRemoved() || KeyExpiry.isExpired(offsetInfo.getExpiresAt(), System.currentTimeMillis())) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        var mapped = mappedReader;
+        DatabaseRecordReader reader = mapped != null ? mapped : channelReader;
+        return submitRead(() -> reader.readValue(offsetInfo), readers);
+    }
+
+    /**
+     * Размер значения вычисляется по размеру записи: после значения могут идти только время истечения
+     * и контрольная сумма. Файл открывается по пути, поэтому после открытия еще раз проверяется, что его не успели
+     * подменить. Файл подмененного или удаленного сегмента не открывается, чтение завершается с {@link ClosedChannelException}
+     */
+    @Override
+    public Optional<StreamedValue> readStreamed(SegmentOffsetInfo offsetInfo) throws IOException {
+        if (offsetInfo.isRemoved() || KeyExpiry.isExpired(offsetInfo.getExpiresAt(), System.currentTimeMillis())) {
+            return Optional.empty();
+        }
+        long valueSize = offsetInfo.getOffset() + offsetInfo.getSize() - offsetInfo.getValueOffset()
+                - (offsetInfo.getExpiresAt() != KeyExpiry.NEVER ? Long.BYTES : 0)
+                - (config.isChecksums() ? Integer.BYTES : 0);
+        if (retired) {
+            throw new ClosedChannelException();
+        }
+        var value = FileRegionValue.open(segmentPath, offsetInfo.getValueOffset(), valueSize);
+        if (retired) {
+            value.close();
+            throw new ClosedChannelException();
+        }
+        return Optional.of(value);
     }
 
     @Override
     public boolean isReadOnly() {
-        return curOffset >= maxSize;
+        return readOnly;
     }
 
     @Override
     public boolean delete(String objectKey) throws IOException {
+        return deleteRecord(objectKey).isPresent();
+    }
+
+    @Override
+    public Optional<SegmentOffsetInfo> deleteRecord(String objectKey) throws IOException {
         if (isReadOnly()) {
-            return false;
+            return Optional.empty();
         }
         RemoveDatabaseRecord record;
         try {
-            record =  new RemoveDatabaseRecord(objectKey.getBytes());
+            record =  new RemoveDatabaseRecord(objectKey.getBytes(StandardCharsets.UTF_8));
         } catch (DatabaseException ex) {
             throw new IOException("Error while converting data into record.", ex);
         }
-        segmentIndex.onIndexedEntityUpdated(objectKey, new SegmentOffsetInfoImpl(curOffset));
-        curOffset += outStream.write(record);
-        if (isReadOnly()) {
-            outStream.close();
+        return Optional.of(append(objectKey, record));
+    }
+
+    @Override
+    public void awaitDurable() throws IOException {
+        if (syncer != null) {
+            syncer.awaitDurable();
         }
-        return true;
     }
 
     @Override
-    public void close() throws Exception {
-        inStream.close();
+    public long getSize() {
+        return curOffset;
+    }
+
+    @Override
+    public long getDeadBytes() {
+        return deadBytes.get();
+    }
+
+    @Override
+    public void onRecordSuperseded(long recordSize) {
+        deadBytes.addAndGet(recordSize);
+    }
+
+    /**
+     * Доводит до конца закрытие сегмента на запись после того, как таблица перешла к следующему сегменту.
+     * Вызывается без блокировки таблицы. Без {@link TableConfig#isSorted()} сбрасывает файл на диск при любой
+     * {@link TableConfig#getDurability()}, сохраняет подсказки и фильтр Блума и освобождает индекс ключей сегмента.
+     * Иначе только пишет рядом отсортированную копию файла: подставить ее нужно под блокировкой таблицы
+     * (см {@link #replaceWithSorted(SortedCopy, Relocator)}). Повторный вызов ничего не делает
+     *
+     * @return отсортированная копия файла, если ее удалось записать
+     * @throws IOException если файл не удалось отобразить в память
+     */
+    Optional<SortedCopy> finishSealing() throws IOException {
+        if (!readOnly || segmentIndex == null) {
+            return Optional.empty();
+        }
+        if (config.isSorted()) {
+            try {
+                return Optional.of(writeSortedCopy());
+            } catch (IOException ex) {
+                BackgroundErrors.report("Error while sorting segment " + segmentName, ex);
+            }
+        }
+        finishUnsorted();
+        return Optional.empty();
+    }
+
+    /**
+     * Подменяет файл сегмента отсортированной копией и переводит индекс таблицы на ее записи. Вызывается
+     * под блокировкой таблицы, чтобы чтение, повторенное под ней после подмены файла (см {@link #retired}),
+     * уже видело индекс на новом сегменте. Если подменить файл не удалось, сегмент доводится до конца неотсортированным.
+     * Подсказки и фильтр Блума нового сегмента сохраняет {@link #retire(SegmentImpl)} уже без блокировки
+     *
+     * @param relocator переводит индекс таблицы на записи нового сегмента
+     * @return новый сегмент, если файл был подменен. Он заменяет этот сегмент в таблице
+     * @throws IOException если файл не удалось отобразить в память
+     */
+    Optional<SegmentImpl> replaceWithSorted(SortedCopy copy, Relocator relocator) throws IOException {
+        FileChannel sortedChannel;
+        try {
+            sortedChannel = FileChannel.open(copy.path, StandardOpenOption.READ);
+            retired = true;
+            try {
+                Files.move(copy.path, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                retired = false;
+                sortedChannel.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while sorting segment " + segmentName, ex);
+            Files.deleteIfExists(copy.path);
+            finishUnsorted();
+            return Optional.empty();
+        }
+        SegmentImpl sorted = new SegmentImpl(segmentName, segmentPath, sortedChannel, null, copy.index, copy.size,
+                config);
+        copy.index.forEach((key, offsetInfo) -> relocator.relocate(key, sorted, offsetInfo));
+        segmentIndex = null;
+        return Optional.of(sorted);
+    }
+
+    /**
+     * Завершает подмену сегмента отсортированным (см {@link #replaceWithSorted(SortedCopy, Relocator)}) без блокировки
+     * таблицы: сохраняет подсказки и фильтр Блума нового сегмента и закрывает этот. Индекс таблицы к этому времени
+     * на этот сегмент уже не указывает
+     *
+     * @throws IOException если файл нового сегмента не удалось отобразить в память
+     */
+    void retire(SegmentImpl sorted) throws IOException {
+        sorted.writeHints();
+        sorted.releaseIndex(false);
+        try {
+            close();
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while closing segment " + segmentName, ex);
+        }
+    }
+
+    private void finishUnsorted() throws IOException {
+        if (syncSealed()) {
+            writeHints();
+        }
+        releaseIndex(false);
+    }
+
+    /**
+     * Подсказки пишутся только для сброшенного на диск сегмента: по их наличию при запуске видно, что хвост сегмента
+     * не мог потеряться (см {@link com.itmo.java.basics.initialization.impl.SegmentInitializer#load})
+     *
+     * @return удалось ли сбросить файл на диск
+     */
+    private boolean syncSealed() {
+        try {
+            readChannel.force(false);
+            return true;
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while syncing sealed segment " + segmentName, ex);
+            return false;
+        }
+    }
+
+    Optional<DatabaseRecord> readRecord(long offset) throws IOException {
+        var mapped = mappedReader;
+        return (mapped != null ? mapped : channelReader).readDbUnit(offset);
+    }
+
+    Path getPath() {
+        return segmentPath;
+    }
+
+    /**
+     * @return {@code true} - если записи файла упорядочены по ключу и у сегмента есть разреженный индекс
+     */
+    boolean isSortedByKey() {
+        return sparseIndex != null;
+    }
+
+    /**
+     * Закрывает файл сегмента на чтение и, если сегмент еще пишется, на запись
+     */
+    @Override
+    public void close() throws IOException {
+        retired = true;
+        try {
+            if (syncer != null) {
+                syncer.close();
+            }
+            var mapped = mappedReader;
+            if (mapped != null) {
+                mapped.close();
+            }
+            channelReader.close();
+        } finally {
+            if (outFile != null) {
+                outFile.close();
+            }
+        }
+    }
+
+    /**
+     * Дописывает запись и обновляет индекс сегмента
+     *
+     * @return положение записи
+     */
+    private SegmentOffsetInfo append(String objectKey, WritableDatabaseRecord record) throws IOException {
+        long size;
+        try {
+            size = outStream.write(record);
+        } catch (IOException ex) {
+            throw rewind(ex);
+        }
+        return onAppended(objectKey, new SegmentOffsetInfoImpl(curOffset, size,
+                DatabaseOutputStream.valueOffset(curOffset, record.getKeySize()), !record.isValuePresented(),
+                record.getExpiresAt()));
+    }
+
+    /**
+     * Стирает то, что успело записаться после конца последней записи: обрезает файл до {@link #curOffset}
+     * (заранее выделенный файл снова дополняется нулями) и возвращает туда позицию записи. Иначе при восстановлении
+     * недописанная запись могла бы быть прочитана как настоящая
+     *
+     * @param cause ошибка записи
+     * @return ту же ошибку, к которой добавлена ошибка стирания, если стереть не удалось
+     */
+    private IOException rewind(IOException cause) {
+        try {
+            outFile.setLength(curOffset);
+            if (config.isPreallocate()) {
+                outFile.setLength(config.getSegmentSize());
+            }
+            outFile.seek(curOffset);
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+        }
+        return cause;
+    }
+
+    /**
+     * Обновляет индекс сегмента после того, как запись дописана в файл
+     *
+     * @return положение записи
+     */
+    private SegmentOffsetInfo onAppended(String objectKey, SegmentOffsetInfo offsetInfo) throws IOException {
+        segmentIndex.onIndexedEntityUpdated(objectKey, offsetInfo);
+        curOffset += offsetInfo.getSize();
+        syncer.onAppended(curOffset);
+        if (curOffset >= maxSize) {
+            seal();
+        }
+        return offsetInfo;
+    }
+
+    /**
+     * Обрезает заранее выделенный хвост файла и закрывает его на запись. Остальное делает {@link #finishSealing()}
+     */
+    private void seal() throws IOException {
+        readOnly = true;
+        if (outFile.length() > curOffset) {
+            outFile.setLength(curOffset);
+        }
+        syncer.close();
+        outStream.close();
+    }
+
+    /**
+     * Переписывает байты записи как есть: формат записи не зависит от ее смещения в файле.
+     * Записи больше {@link StreamedValue#IN_MEMORY_LIMIT} копируются частями
+     *
+     * @param offsetInfo положение записи в этом сегменте
+     * @param out        куда переписать запись
+     */
+    void copyRecord(SegmentOffsetInfo offsetInfo, OutputStream out) throws IOException {
+        if (offsetInfo.getSize() <= StreamedValue.IN_MEMORY_LIMIT) {
+            var mapped = mappedReader;
+            out.write((mapped != null ? mapped : channelReader).readBytes(offsetInfo.getOffset(),
+                    (int) offsetInfo.getSize()));
+            return;
+        }
+        try (var record = FileRegionValue.open(segmentPath, offsetInfo.getOffset(), offsetInfo.getSize())) {
+            record.transferTo(out);
+        }
+    }
+
+    /**
+     * Записывает рядом с файлом сегмента его отсортированную копию: остаются только последние записи ключей,
+     * упорядоченные по ключу. Записи копируются байтами, без разбора (см {@link #copyRecord(SegmentOffsetInfo, OutputStream)}).
+     * Копия сбрасывается на диск до того, как подменит файл сегмента
+     */
+    private SortedCopy writeSortedCopy() throws IOException {
+        List<Map.Entry<String, SegmentOffsetInfo>> entries = new ArrayList<>();
+        segmentIndex.forEach((key, info) -> entries.add(Map.entry(key, info)));
+        entries.sort(Map.Entry.comparingByKey());
+        Path tmpPath = segmentPath.resolveSibling(segmentName + ".tmp");
+        SegmentIndex sortedIndex = new SegmentIndex(config.getDatabaseConfig().getSegmentIndexType());
+        long size = 0;
+        try (var channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             var sortedStream = new DatabaseOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)),
+                     config.isChecksums())) {
+            for (var entry : entries) {
+                SegmentOffsetInfo info = entry.getValue();
+                copyRecord(info, sortedStream);
+                sortedIndex.onIndexedEntityUpdated(entry.getKey(), new SegmentOffsetInfoImpl(size, info.getSize(),
+                        size + info.getValueOffset() - info.getOffset(), info.isRemoved(), info.getExpiresAt()));
+                size += info.getSize();
+            }
+            sortedStream.flush();
+            channel.force(true);
+        } catch (IOException ex) {
+            Files.deleteIfExists(tmpPath);
+            throw ex;
+        }
+        return new SortedCopy(tmpPath, sortedIndex, size);
+    }
+
+    /**
+     * Строит по индексу read-only сегмента фильтр Блума для таблицы {@link TableEngine#LSM} и, если таблица хранит
+     * сегменты отсортированными, разреженный индекс, после чего освобождает индекс сегмента.
+     * Разреженный индекс строится, только если записи действительно упорядочены по ключу:
+     * сегменты, записанные до включения опции, не упорядочены
+     *
+     * @param persistedBloomFilter искать ли уже сохраненный фильтр Блума
+     */
+    private void releaseIndex(boolean persistedBloomFilter) throws IOException {
+        if (config.getEngine() == TableEngine.LSM) {
+            initBloomFilter(persistedBloomFilter);
+        }
+        if (config.isSorted()) {
+            SparseSegmentIndex.build(segmentIndex, curOffset).ifPresent(index -> sparseIndex = index);
+        }
+        segmentIndex = null;
+        onSealed();
+    }
+
+    /**
+     * Ищет последнюю запись ключа, просматривая файл сегмента целиком
+     */
+    private Optional<DatabaseRecord> scanForKey(String objectKey) throws IOException {
+        byte[] key = objectKey.getBytes(StandardCharsets.UTF_8);
+        Optional<DatabaseRecord> latest = Optional.empty();
+        try (var inStream = new DatabaseInputStream(new BufferedInputStream(Files.newInputStream(segmentPath)),
+                config.isChecksums(), curOffset)) {
+            Optional<DatabaseRecord> record;
+            while ((record = inStream.readDbUnit()).isPresent()) {
+                if (Arrays.equals(record.get().getKey(), key)) {
+                    latest = record;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Ищет ключ в отсортированном сегменте: читает единственный блок, в котором он может лежать, и просматривает его
+     */
+    private Optional<DatabaseRecord> readFromBlock(SparseSegmentIndex sparse, String objectKey) throws IOException {
+        int block = sparse.searchForBlock(objectKey);
+        if (block < 0) {
+            return Optional.empty();
+        }
+        long start = sparse.getBlockStart(block);
+        var mapped = mappedReader;
+        byte[] bytes = (mapped != null ? mapped : channelReader).readBytes(start,
+                Math.toIntExact(sparse.getBlockEnd(block) - start));
+        try (var inStream = new DatabaseInputStream(new ByteArrayInputStream(bytes), config.isChecksums(), bytes.length)) {
+            Optional<DatabaseRecord> record;
+            while ((record = inStream.readDbUnit()).isPresent()) {
+                int comparison = new String(record.get().getKey(), StandardCharsets.UTF_8).compareTo(objectKey);
+                if (comparison == 0) {
+                    return record;
+                }
+                if (comparison > 0) {
+                    break;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Сохраняет подсказки для быстрого старта (см {@link SegmentHints}). Без них сегмент при старте читается целиком,
+     * поэтому ошибка записи подсказок не прерывает работу
+     */
+    private void writeHints() {
+        try {
+            SegmentHints.write(segmentPath, curOffset, segmentIndex);
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while writing hints for segment " + segmentName, ex);
+        }
+    }
+
+    /**
+     * Загружает сохраненный фильтр Блума (см {@link BloomFilterFile}) или строит его по индексу сегмента и сохраняет.
+     * Без фильтра сегмент просто читается по индексу, поэтому ошибка сохранения не прерывает работу
+     *
+     * @param persisted искать ли уже сохраненный фильтр
+     */
+    private void initBloomFilter(boolean persisted) {
+        try {
+            if (persisted) {
+                var persistedFilter = BloomFilterFile.read(segmentPath, curOffset);
+                if (persistedFilter.isPresent()) {
+                    bloomFilter = persistedFilter.get();
+                    return;
+                }
+            }
+            long[] keys = {0};
+            segmentIndex.forEach((key, info) -> keys[0]++);
+            BloomFilter filter = BloomFilter.create(keys[0], config.getDatabaseConfig().getBloomFalsePositiveRate());
+            segmentIndex.forEach((key, info) -> filter.put(key));
+            bloomFilter = filter;
+            BloomFilterFile.write(segmentPath, curOffset, filter);
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while writing bloom filter for segment " + segmentName, ex);
+        }
+    }
+
+    /**
+     * Файл read-only сегмента больше не меняется, поэтому в режиме {@link StorageMode#MMAP} его можно отобразить в память.
+     * Если лимит отображенных байт исчерпан, чтение продолжается через канал
+     */
+    private void onSealed() throws IOException {
+        if (config.getDatabaseConfig().getStorageMode() != StorageMode.MMAP) {
+            return;
+        }
+        MappedDatabaseReader.map(readChannel, curOffset, config.getDatabaseConfig().getMaxMappedBytes(), config.isChecksums())
+                .ifPresent(reader -> mappedReader = reader);
     }
 }
\ No newline at end of file
@@ -1,14 +1,23 @@
 package com.itmo.java.basics.logic.impl;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.KeyExpiry;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 
 public class SetDatabaseRecord implements WritableDatabaseRecord {
 
     private final byte[] key;
     private final byte[] value;
+    private final long expiresAt;
 
     public SetDatabaseRecord (byte[] key, byte[] value) throws DatabaseException {
+        this(key, value, KeyExpiry.NEVER);
+    }
+
+    /**
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     */
+    public SetDatabaseRecord (byte[] key, byte[] value, long expiresAt) throws DatabaseException {
         if (key == null) {
             throw new DatabaseException("Cannot create database record without key.");
         }
@@ -19,6 +28,7 @@ public class SetDatabaseRecord implements WritableDatabaseRecord {
             this.value = null;
         }
         this.key = key;
+        this.expiresAt = this.value == null ? KeyExpiry.NEVER : expiresAt;
     }
 
     @Override
@@ -31,9 +41,18 @@ public class SetDatabaseRecord implements WritableDatabaseRecord {
         return value;
     }
 
+    @Override
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Время истечения хранится после значения (см {@link com.itmo.java.basics.logic.io.DatabaseOutputStream})
+     */
     @Override
     public long size() {
-        return  4 * 2 + getKeySize() + (getValueSize() == -1 ? 0 : getValueSize());
+        return  4 * 2 + getKeySize() + (getValueSize() == -1 ? 0 : getValueSize())
+                + (expiresAt == KeyExpiry.NEVER ? 0 : Long.BYTES);
     }
 
     @Override
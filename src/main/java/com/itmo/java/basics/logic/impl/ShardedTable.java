@@ -0,0 +1,214 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.config.TableEngine;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.StreamedValue;
+import com.itmo.java.basics.logic.Table;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Таблица, разбитая на {@link TableConfig#getShards()} частей по хешу ключа. Каждая часть - обычная таблица
+ * ({@link TableImpl} или {@link LsmTableImpl}) со своими сегментами, индексом и кэшем в поддиректории таблицы
+ * (см {@link #shardName(String, int)}). Части пишутся под своими блокировками и ждут сброса на диск независимо,
+ * поэтому запись в разные ключи одной таблицы идет параллельно.
+ * <p>
+ * Число частей задается при создании таблицы и хранится в ее настройках: от него зависит, в какой части лежит ключ
+ */
+public class ShardedTable implements Table {
+    private static final AtomicInteger WRITER_IDS = new AtomicInteger();
+    private static final ExecutorService BATCH_WRITER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-batch-writer-" + WRITER_IDS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tableName;
+    private final List<Table> shards;
+
+    private ShardedTable(String tableName, List<Table> shards) {
+        this.tableName = tableName;
+        this.shards = shards;
+    }
+
+    /**
+     * @param shards части таблицы по порядку номеров
+     */
+    public static Table initializeFromContext(String tableName, List<Table> shards) {
+        return new ShardedTable(tableName, List.copyOf(shards));
+    }
+
+    /**
+     * Создает директорию таблицы и в ней все части. Настройки таблицы сохраняются последними: пока их нет,
+     * директория не считается разбитой таблицей
+     */
+    public static Table create(String tableName, Path pathToDatabaseRoot, TableConfig config) throws DatabaseException {
+        File tableDir = new File(pathToDatabaseRoot.toString(), tableName);
+        if (tableDir.exists()) {
+            throw new DatabaseException("Table " + tableName + " already exists!");
+        }
+        if (!tableDir.mkdir()) {
+            throw new DatabaseException("Impossible to create " + tableName + " table.");
+        }
+        TableConfig shardConfig = config.forShard();
+        List<Table> shards = new ArrayList<>();
+        for (int shard = 0; shard < config.getShards(); shard++) {
+            String shardName = shardName(tableName, shard);
+            if (shardConfig.getEngine() == TableEngine.LSM) {
+                shards.add(LsmTableImpl.create(shardName, tableDir.toPath(), shardConfig));
+            } else {
+                shards.add(TableImpl.create(shardName, tableDir.toPath(),
+                        TableIndex.forTable(shardConfig), shardConfig));
+            }
+        }
+        config.store(tableDir.toPath());
+        return new ShardedTable(tableName, shards);
+    }
+
+    /**
+     * @return имя части таблицы и ее поддиректории
+     */
+    public static String shardName(String tableName, int shard) {
+        return tableName + "-" + shard;
+    }
+
+    @Override
+    public String getName() {
+        return tableName;
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        shardOf(objectKey).write(objectKey, objectValue);
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException {
+        shardOf(objectKey).write(objectKey, objectValue, expiresAt);
+    }
+
+    @Override
+    public void write(String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException {
+        shardOf(objectKey).write(objectKey, objectValue, expiresAt);
+    }
+
+    @Override
+    public long getExpiresAt(String objectKey) throws DatabaseException {
+        return shardOf(objectKey).getExpiresAt(objectKey);
+    }
+
+    @Override
+    public void close() {
+        for (Table shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+        return shardOf(objectKey).read(objectKey);
+    }
+
+    @Override
+    public Optional<StreamedValue> readStreamed(String objectKey) throws DatabaseException {
+        return shardOf(objectKey).readStreamed(objectKey);
+    }
+
+    @Override
+    public CompletableFuture<Optional<StreamedValue>> readAsync(String objectKey, Executor readers) {
+        return shardOf(objectKey).readAsync(objectKey, readers);
+    }
+
+    /**
+     * Пакет делится по частям с сохранением порядка записей. Части пишутся параллельно, так что сброс на диск
+     * одной части не ждет другую. Пакет из ключей одной части пишется в вызывающем потоке
+     */
+    @Override
+    public void writeBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        Map<Table, List<Map.Entry<String, byte[]>>> byShard = new LinkedHashMap<>();
+        for (var entry : entries) {
+            byShard.computeIfAbsent(shardOf(entry.getKey()), shard -> new ArrayList<>()).add(entry);
+        }
+        if (byShard.size() <= 1) {
+            for (var shardEntries : byShard.entrySet()) {
+                shardEntries.getKey().writeBatch(shardEntries.getValue());
+            }
+            return;
+        }
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (var shardEntries : byShard.entrySet()) {
+            writes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    shardEntries.getKey().writeBatch(shardEntries.getValue());
+                } catch (DatabaseException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, BATCH_WRITER));
+        }
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof DatabaseException) {
+                throw (DatabaseException) ex.getCause();
+            }
+            throw new DatabaseException("Error while writing batch into table " + tableName + ".", ex.getCause());
+        }
+    }
+
+    /**
+     * Каждая часть отдает свою страницу диапазона. Часть, не дошедшая до конца диапазона, просмотрела ключи
+     * только до своего ключа продолжения, поэтому из объединения берутся ключи не дальше наименьшего из них,
+     * а из этих - первые limit
+     */
+    @Override
+    public ScanPage scan(String fromKey, boolean fromInclusive, String toKey, int limit) throws DatabaseException {
+        List<Map.Entry<String, byte[]>> merged = new ArrayList<>();
+        String bound = null;
+        for (Table shard : shards) {
+            ScanPage page = shard.scan(fromKey, fromInclusive, toKey, limit);
+            merged.addAll(page.getEntries());
+            if (page.getResumeKey() != null && (bound == null || page.getResumeKey().compareTo(bound) < 0)) {
+                bound = page.getResumeKey();
+            }
+        }
+        if (bound != null) {
+            String last = bound;
+            merged.removeIf(entry -> entry.getKey().compareTo(last) > 0);
+        }
+        merged.sort(Map.Entry.comparingByKey());
+        if (merged.size() >= limit) {
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>(merged.subList(0, limit));
+            return new ScanPage(entries, entries.get(limit - 1).getKey());
+        }
+        return new ScanPage(merged, bound);
+    }
+
+    @Override
+    public void delete(String objectKey) throws DatabaseException {
+        shardOf(objectKey).delete(objectKey);
+    }
+
+    /**
+     * Часть выбирается по {@link String#hashCode()}: он одинаков во всех запусках JVM. Старшие биты хеша
+     * подмешиваются к младшим, как в {@link java.util.HashMap}
+     */
+    private Table shardOf(String objectKey) {
+        int hash = objectKey.hashCode();
+        return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.impl.SegmentIndex;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import com.itmo.java.basics.logic.io.SegmentHints;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Пишет отсортированный по ключу read-only сегмент. Записи идут во временный файл, который после сброса на диск
+ * атомарно становится файлом сегмента. Ключи передаются по возрастанию, каждый не больше одного раза
+ */
+final class SortedSegmentWriter implements AutoCloseable {
+    private final String segmentName;
+    private final Path segmentPath;
+    private final Path tmpPath;
+    private final TableConfig config;
+    private final FileChannel channel;
+    private final DatabaseOutputStream outStream;
+    private final SegmentIndex index;
+    private long size = 0;
+    private boolean finished = false;
+
+    SortedSegmentWriter(String segmentName, Path segmentPath, TableConfig config) throws IOException {
+        this.segmentName = segmentName;
+        this.segmentPath = segmentPath;
+        this.tmpPath = segmentPath.resolveSibling(segmentName + ".tmp");
+        this.config = config;
+        this.channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.outStream = new DatabaseOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)),
+                config.isChecksums());
+        this.index = new SegmentIndex(config.getDatabaseConfig().getSegmentIndexType());
+    }
+
+    void append(String key, WritableDatabaseRecord record) throws IOException {
+        long recordSize = outStream.write(record);
+        index.onIndexedEntityUpdated(key, new SegmentOffsetInfoImpl(size, recordSize,
+                DatabaseOutputStream.valueOffset(size, record.getKeySize()), !record.isValuePresented(),
+                record.getExpiresAt()));
+        size += recordSize;
+    }
+
+    /**
+     * Сбрасывает файл на диск, переименовывает его в файл сегмента и открывает сегмент
+     *
+     * @return сегмент, или пустой Optional, если не было записано ни одной записи
+     * @throws IOException       если произошла ошибка ввода-вывода
+     * @throws DatabaseException если сегмент не удалось открыть
+     */
+    Optional<SegmentImpl> finish() throws IOException, DatabaseException {
+        outStream.flush();
+        channel.force(true);
+        outStream.close();
+        finished = true;
+        if (size == 0) {
+            Files.delete(tmpPath);
+            return Optional.empty();
+        }
+        SegmentHints.delete(segmentPath);
+        BloomFilterFile.delete(segmentPath);
+        Files.move(tmpPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SegmentHints.write(segmentPath, size, index);
+        return Optional.of(SegmentImpl.openCompacted(segmentName, segmentPath, index, size, config));
+    }
+
+    /**
+     * Удаляет временный файл, если сегмент так и не был дописан
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            outStream.close();
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+}
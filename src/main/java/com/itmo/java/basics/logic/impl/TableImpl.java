@@ -1,42 +1,175 @@
 package com.itmo.java.basics.logic.impl;
 
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
 import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.IndexLookup;
 import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.index.impl.TableIndexEntry;
 import com.itmo.java.basics.initialization.TableInitializationContext;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.ScanPage;
 import com.itmo.java.basics.logic.Segment;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.basics.logic.Table;
+import com.itmo.java.basics.logic.io.TableManifest;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Таблица пишет в текущий сегмент, пока он не станет read-only. Для каждого ключа {@link TableIndex} хранит
+ * сегмент, смещение и размер последней записи, поэтому чтение - один поиск по индексу и одно чтение записи.
+ * Read-only сегменты, в которых перекрыта большая часть записей, сжимаются в фоне (см {@link #startCompaction()},
+ * {@link SegmentCompactor}).
+ * <p>
+ * Истекшие значения (см {@link KeyExpiry}) не читаются сразу, а раз в
+ * {@link DatabaseConfig#getExpirationInterval()} фоновый поток дописывает для них удаления. Сроки ключей
+ * лежат в очереди по времени истечения, поэтому за проход просматриваются только уже истекшие ключи.
+ * <p>
+ * Блокировку таблицы берут только пишущие: запись в текущий сегмент, переход к следующему сегменту и подмена
+ * сегментов после сжатия. Читающие ищут ключ в потокобезопасном {@link TableIndex} и читают запись без блокировки:
+ * меняется только текущий сегмент, а записи, на которые уже указывает индекс, в нем не меняются. Если сегмент
+ * успели подменить и закрыть (см {@link SegmentImpl#replaceWithSorted}, {@link SegmentCompactor#swap()}), чтение
+ * повторяется под блокировкой таблицы, когда индекс уже указывает на новый сегмент
+ */
 public class TableImpl implements Table {
+    /**
+     * Записывает одну запись в текущий сегмент
+     */
+    @FunctionalInterface
+    private interface RecordWriter {
+        Optional<SegmentOffsetInfo> write(Segment segment) throws IOException;
+    }
+
+    /**
+     * Читает запись, на которую указывает индекс таблицы
+     */
+    @FunctionalInterface
+    private interface EntryReader<T> {
+        Optional<T> read(IndexLookup entry) throws IOException;
+    }
+
+    /**
+     * Результаты поиска в индексе таблицы для синхронных чтений, по одному на поток
+     */
+    private static final ThreadLocal<IndexLookup> LOOKUPS = ThreadLocal.withInitial(IndexLookup::new);
+
+    /**
+     * Сколько ключей удаляется за одно взятие блокировки таблицы
+     */
+    private static final int EXPIRATION_BATCH = 1000;
+    /**
+     * Какая доля сегмента должна быть перекрытыми записями, чтобы сегмент попал в сжатие
+     */
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+    /**
+     * Сколько ключей без значения (удаленных или истекших) просматривает одна страница обхода диапазона,
+     * прежде чем вернуться неполной
+     */
+    static final int MAX_SCAN_SKIPPED = 10_000;
+    private static final ScheduledExecutorService EXPIRER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "key-expirer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String tableName;
     private final Path pathToDatabaseRoot;
     private final TableIndex tableIndex;
+    private final TableConfig config;
     private Segment currentSegment = null;
+    /**
+     * Read-only сегменты от старых к новым
+     */
+    private final List<Segment> sealedSegments = new ArrayList<>();
+    /**
+     * Имена сжатых сегментов, файлы которых еще не удалены
+     */
+    private final List<String> obsoleteSegments = new ArrayList<>();
+    /**
+     * Имена новых сегментов сжатия, которые еще не подменили сжимаемые
+     */
+    private final List<String> pendingSegments = new ArrayList<>();
+    private long nextSegmentId = 1;
+    private boolean compacting = false;
+    /**
+     * Сколько закрытых сегментов еще доводится до конца в потоке сжатия
+     */
+    private int sealing = 0;
+    /**
+     * Время истечения и ключ. Перезаписанные ключи остаются в очереди и пропускаются, когда до них доходит очередь
+     */
+    private final PriorityQueue<Map.Entry<Long, String>> expirations = new PriorityQueue<>(Map.Entry.comparingByKey());
+    /**
+     * Задача удаления истекших ключей. Запускается первым ключом со временем истечения и снимается,
+     * когда очередь истечений опустела, {@code null} - задачи нет
+     */
+    private ScheduledFuture<?> expirationTask = null;
 
-    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex) {
+    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex, TableConfig config) {
         this.tableName = tableName;
         this.pathToDatabaseRoot = pathToDatabaseRoot;
         this.tableIndex = tableIndex;
+        this.config = config;
     }
 
-    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex, Segment currentSegment) {
+    private TableImpl(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex, Segment currentSegment,
+                      TableConfig config) {
         this.tableName = tableName;
         this.pathToDatabaseRoot = pathToDatabaseRoot;
         this.tableIndex = tableIndex;
         this.currentSegment = currentSegment;
+        this.config = config;
     }
 
     public static Table initializeFromContext(TableInitializationContext context) {
-        return new CachingTable(new TableImpl(context.getTableName(), context.getTablePath().getParent(),
-                context.getTableIndex(), context.getCurrentSegment()));
+        var table = new TableImpl(context.getTableName(), context.getTablePath().getParent(),
+                context.getTableIndex(), context.getCurrentSegment(), context.getTableConfig());
+        table.nextSegmentId = context.getNextSegmentId();
+        for (Segment segment : context.getSegments()) {
+            if (segment != context.getCurrentSegment()) {
+                table.sealedSegments.add(segment);
+            }
+        }
+        table.tableIndex.forEach((key, entry) -> {
+            if (!entry.isRemoved() && entry.getExpiresAt() != KeyExpiry.NEVER) {
+                table.expirations.add(Map.entry(entry.getExpiresAt(), key));
+            }
+        });
+        if (!table.expirations.isEmpty()) {
+            table.scheduleExpiration();
+        }
+        return new CachingTable(table, table.config.getCacheBytes());
     }
 
 
     public static Table create(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex) throws DatabaseException {
+        return create(tableName, pathToDatabaseRoot, tableIndex, TableConfig.defaults(new DatabaseConfig()));
+    }
+
+    /**
+     * Создает директорию таблицы и сохраняет в нее настройки таблицы
+     */
+    public static Table create(String tableName, Path pathToDatabaseRoot, TableIndex tableIndex,
+                               TableConfig config) throws DatabaseException {
         File tableDir = new File (pathToDatabaseRoot.toString(), tableName);
         if (tableDir.exists()) {
             throw new DatabaseException("Table " + tableName + " already exists!");
@@ -44,7 +177,9 @@ public class TableImpl implements Table {
         if (!tableDir.mkdir()) {
             throw new DatabaseException("Impossible to create " + tableName + " table.");
         }
-        return new CachingTable(new TableImpl(tableName, pathToDatabaseRoot, tableIndex));
+        config.store(tableDir.toPath());
+        var table = new TableImpl(tableName, pathToDatabaseRoot, tableIndex, config);
+        return new CachingTable(table, table.config.getCacheBytes());
     }
 
     @Override
@@ -52,55 +187,551 @@ public class TableImpl implements Table {
         return tableName;
     }
 
+    /**
+     * Сброса на диск (см {@link Segment#awaitDurable()}) команда ждет уже без блокировки таблицы,
+     * поэтому одновременные команды успевают дописать свои записи и ждут одного общего сброса
+     */
     @Override
     public void write(String objectKey, byte[] objectValue) throws DatabaseException {
+        write(objectKey, objectValue, KeyExpiry.NEVER);
+    }
+
+    @Override
+    public void write(String objectKey, byte[] objectValue, long expiresAt) throws DatabaseException {
+        awaitDurable(writeToCurrentSegment(objectKey,
+                segment -> segment.writeRecord(objectKey, objectValue, expiresAt)));
+    }
+
+    /**
+     * Значение переписывается в сегмент частями под блокировкой таблицы
+     */
+    @Override
+    public void write(String objectKey, StreamedValue objectValue, long expiresAt) throws DatabaseException {
+        awaitDurable(writeToCurrentSegment(objectKey,
+                segment -> segment.writeRecord(objectKey, objectValue, expiresAt)));
+    }
+
+    private synchronized Segment writeToCurrentSegment(String objectKey, RecordWriter writer)
+            throws DatabaseException {
         if (currentSegment == null) {
-            currentSegment =  SegmentImpl.create(SegmentImpl.createSegmentName(tableName),
-                    Path.of(pathToDatabaseRoot.toString(), tableName));
+            startSegment();
         }
         try {
             if (currentSegment.isReadOnly()) {
-                currentSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName),
-                        Path.of(pathToDatabaseRoot.toString(), tableName));
+                rollOver();
+            }
+            var offsetInfo = writer.write(currentSegment);
+            if (offsetInfo.isEmpty()) {
+                throw new DatabaseException("Segment " + currentSegment.getName() + " is read-only.");
+            }
+            onRecordWritten(objectKey, new TableIndexEntry(currentSegment, offsetInfo.get()));
+            if (offsetInfo.get().getExpiresAt() != KeyExpiry.NEVER) {
+                expirations.add(Map.entry(offsetInfo.get().getExpiresAt(), objectKey));
+                if (expirationTask == null) {
+                    scheduleExpiration();
+                }
             }
-            currentSegment.write(objectKey, objectValue);
-            tableIndex.onIndexedEntityUpdated(objectKey, currentSegment);
         } catch (IOException ex) {
             throw new DatabaseException("Error while writing data into segment.", ex);
         }
+        return currentSegment;
     }
 
+    /**
+     * Пакет пишется под одной блокировкой таблицы: в каждый затронутый сегмент одним обращением к файлу.
+     * Сброса на диск команда ждет один раз на сегмент, уже без блокировки
+     */
     @Override
-    public Optional<byte[]> read(String objectKey) throws DatabaseException {
-        var segment = tableIndex.searchForKey(objectKey);
-        if (segment.isEmpty()) {
-            return Optional.empty();
+    public void writeBatch(List<Map.Entry<String, byte[]>> entries) throws DatabaseException {
+        for (Segment segment : writeBatchToCurrentSegment(entries)) {
+            awaitDurable(segment);
         }
+    }
+
+    private synchronized List<Segment> writeBatchToCurrentSegment(List<Map.Entry<String, byte[]>> entries)
+            throws DatabaseException {
+        List<Segment> written = new ArrayList<>();
+        int next = 0;
+        try {
+            while (next < entries.size()) {
+                if (currentSegment == null) {
+                    startSegment();
+                }
+                if (currentSegment.isReadOnly()) {
+                    rollOver();
+                }
+                var offsets = currentSegment.writeRecords(entries.subList(next, entries.size()));
+                if (offsets.isEmpty()) {
+                    throw new DatabaseException("Segment " + currentSegment.getName() + " is read-only.");
+                }
+                for (var offsetInfo : offsets) {
+                    onRecordWritten(entries.get(next++).getKey(), new TableIndexEntry(currentSegment, offsetInfo));
+                }
+                written.add(currentSegment);
+            }
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing data into segment.", ex);
+        }
+        return written;
+    }
+
+    /**
+     * Удаленный ключ находится в индексе, но его значение не читается. Истекшее значение тоже не читается
+     * (см {@link Segment#readRecord(com.itmo.java.basics.index.SegmentOffsetInfo)})
+     */
+    @Override
+    public Optional<byte[]> read(String objectKey) throws DatabaseException {
+        return readLatest(objectKey, entry -> entry.getSegment().readRecord(entry));
+    }
+
+    /**
+     * Значения больше {@link StreamedValue#TRANSFER_THRESHOLD} открываются для чтения прямо из файла сегмента
+     */
+    @Override
+    public Optional<StreamedValue> readStreamed(String objectKey) throws DatabaseException {
+        return readLatest(objectKey, entry -> entry.getSize() <= StreamedValue.TRANSFER_THRESHOLD
+                ? entry.getSegment().readRecord(entry).map(StreamedValue::of)
+                : entry.getSegment().readStreamed(entry));
+    }
+
+    /**
+     * Читает последнюю запись ключа без блокировки таблицы. Если сегмент записи к этому времени подменили и закрыли,
+     * запись читается еще раз под блокировкой: подмена сегментов идет под ней же, поэтому индекс уже указывает
+     * на новый сегмент
+     */
+    private <T> Optional<T> readLatest(String objectKey, EntryReader<T> reader) throws DatabaseException {
+        IndexLookup entry = LOOKUPS.get();
         try {
-            return segment.get().read(objectKey);
+            if (!tableIndex.searchForKey(objectKey, entry) || entry.isRemoved()) {
+                return Optional.empty();
+            }
+            return reader.read(entry);
+        } catch (ClosedChannelException | NoSuchFileException ex) {
+            synchronized (this) {
+                try {
+                    if (!tableIndex.searchForKey(objectKey, entry) || entry.isRemoved()) {
+                        return Optional.empty();
+                    }
+                    return reader.read(entry);
+                } catch (IOException retryEx) {
+                    throw new DatabaseException("Error while reading a segment.", retryEx);
+                }
+            }
         } catch (IOException ex) {
             throw new DatabaseException("Error while reading a segment.", ex);
         }
     }
 
+    /**
+     * Ключ ищется в индексе без блокировки таблицы. Если до чтения сегмент переписали или сжали и его файл закрылся,
+     * ключ ищется заново под блокировкой - индекс к этому времени указывает на новый сегмент
+     */
+    @Override
+    public CompletableFuture<Optional<StreamedValue>> readAsync(String objectKey, Executor readers) {
+        CompletableFuture<Optional<StreamedValue>> read;
+        try {
+            read = startRead(objectKey, readers);
+        } catch (DatabaseException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        return SegmentImpl.retryIfClosed(read, () -> {
+            synchronized (this) {
+                return readAsync(objectKey, readers);
+            }
+        });
+    }
+
+    private CompletableFuture<Optional<StreamedValue>> startRead(String objectKey, Executor readers)
+            throws DatabaseException {
+        var entry = tableIndex.searchForKey(objectKey);
+        if (entry.isEmpty() || entry.get().isRemoved()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        if (entry.get().getSize() > StreamedValue.TRANSFER_THRESHOLD) {
+            try {
+                return CompletableFuture.completedFuture(entry.get().getSegment().readStreamed(entry.get()));
+            } catch (ClosedChannelException | NoSuchFileException ex) {
+                return CompletableFuture.failedFuture(ex);
+            } catch (IOException ex) {
+                throw new DatabaseException("Error while reading a segment.", ex);
+            }
+        }
+        return entry.get().getSegment().readRecordAsync(entry.get(), readers).thenApply(value -> value.map(StreamedValue::of));
+    }
+
+    /**
+     * Значение каждого ключа читается одним чтением записи (см {@link #read(String)}). Блокировка таблицы
+     * не берется, поэтому страница не обязана быть снимком таблицы на один момент: записи, сделанные во время обхода,
+     * могут попасть в нее, а могут и не попасть.
+     * <p>
+     * Ключи упорядоченной таблицы (см {@link TableConfig#isOrdered()}) берутся из индекса сразу с начала диапазона.
+     * Иначе каждая страница просматривает весь индекс и отбирает limit наименьших ключей диапазона
+     * (см {@link #scanUnordered(String, boolean, String, int)})
+     */
+    @Override
+    public ScanPage scan(String fromKey, boolean fromInclusive, String toKey, int limit) throws DatabaseException {
+        if (!tableIndex.isOrdered()) {
+            return scanUnordered(fromKey, fromInclusive, toKey, limit);
+        }
+        List<Map.Entry<String, byte[]>> page = new ArrayList<>();
+        int skipped = 0;
+        for (String key : tableIndex.keysFrom(fromKey, fromInclusive)) {
+            if (toKey != null && key.compareTo(toKey) >= 0) {
+                break;
+            }
+            Optional<byte[]> value = read(key);
+            if (value.isPresent()) {
+                page.add(Map.entry(key, value.get()));
+                if (page.size() >= limit) {
+                    return new ScanPage(page, key);
+                }
+            } else if (++skipped >= MAX_SCAN_SKIPPED) {
+                return new ScanPage(page, key);
+            }
+        }
+        return new ScanPage(page, null);
+    }
+
+    /**
+     * Обходит весь индекс и оставляет в куче limit наименьших живых ключей диапазона, затем читает их значения.
+     * Если кандидатов набралось limit, следующая страница начинается после наибольшего из них
+     */
+    private ScanPage scanUnordered(String fromKey, boolean fromInclusive, String toKey, int limit)
+            throws DatabaseException {
+        long now = System.currentTimeMillis();
+        PriorityQueue<String> candidates = new PriorityQueue<>(Comparator.reverseOrder());
+        tableIndex.forEach((key, entry) -> {
+            if (entry.isRemoved() || KeyExpiry.isExpired(entry.getExpiresAt(), now)) {
+                return;
+            }
+            if (fromKey != null) {
+                int cmp = key.compareTo(fromKey);
+                if (cmp < 0 || (cmp == 0 && !fromInclusive)) {
+                    return;
+                }
+            }
+            if (toKey != null && key.compareTo(toKey) >= 0) {
+                return;
+            }
+            if (candidates.size() < limit) {
+                candidates.add(key);
+            } else if (key.compareTo(candidates.peek()) < 0) {
+                candidates.poll();
+                candidates.add(key);
+            }
+        });
+        String resumeKey = candidates.size() >= limit ? candidates.peek() : null;
+        List<String> keys = new ArrayList<>(candidates);
+        keys.sort(Comparator.naturalOrder());
+        List<Map.Entry<String, byte[]>> page = new ArrayList<>();
+        for (String key : keys) {
+            read(key).ifPresent(bytes -> page.add(Map.entry(key, bytes)));
+        }
+        return new ScanPage(page, resumeKey);
+    }
+
+    @Override
+    public long getExpiresAt(String objectKey) {
+        IndexLookup entry = LOOKUPS.get();
+        return tableIndex.searchForKey(objectKey, entry) && !entry.isRemoved() ? entry.getExpiresAt() : KeyExpiry.NEVER;
+    }
+
     @Override
     public void delete(String objectKey) throws DatabaseException {
+        awaitDurable(deleteFromCurrentSegment(objectKey));
+    }
+
+    private synchronized Segment deleteFromCurrentSegment(String objectKey) throws DatabaseException {
         if(currentSegment == null) {
             throw new DatabaseException("There was no keys created in the table - " + tableName + ".");
         }
-        var segment = tableIndex.searchForKey(objectKey);
-        if (segment.isEmpty()) {
+        if (!tableIndex.searchForKey(objectKey, LOOKUPS.get())) {
             throw new DatabaseException("Table - " + tableName + ". No such a key " + objectKey + ".");
         }
         try {
             if (currentSegment.isReadOnly()) {
-                currentSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName),
-                        Path.of(pathToDatabaseRoot.toString(), tableName));
+                rollOver();
+            }
+            var offsetInfo = currentSegment.deleteRecord(objectKey);
+            if (offsetInfo.isEmpty()) {
+                throw new DatabaseException("Segment " + currentSegment.getName() + " is read-only.");
             }
-            currentSegment.delete(objectKey);
-            tableIndex.onIndexedEntityUpdated(objectKey, currentSegment);
+            onRecordWritten(objectKey, new TableIndexEntry(currentSegment, offsetInfo.get()));
         } catch (IOException ex) {
             throw new DatabaseException("Error while writing data into segment.", ex);
         }
+        return currentSegment;
+    }
+
+    /**
+     * Переводит индекс на новую запись ключа. Предыдущая запись, в каком бы сегменте она ни была, становится устаревшей
+     */
+    private void onRecordWritten(String objectKey, TableIndexEntry entry) {
+        IndexLookup superseded = LOOKUPS.get();
+        if (tableIndex.searchForKey(objectKey, superseded)) {
+            superseded.getSegment().onRecordSuperseded(superseded.getSize());
+        }
+        tableIndex.onIndexedEntityUpdated(objectKey, entry);
+    }
+
+    /**
+     * Вызывается под блокировкой таблицы, как и {@link #cancelExpiration()}
+     */
+    private void scheduleExpiration() {
+        long interval = config.getDatabaseConfig().getExpirationInterval();
+        expirationTask = EXPIRER.scheduleWithFixedDelay(this::expireKeys, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelExpiration() {
+        if (expirationTask != null) {
+            expirationTask.cancel(false);
+            expirationTask = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        cancelExpiration();
+    }
+
+    /**
+     * Выполняется в потоке удаления истекших ключей. Блокировка таблицы берется на {@link #EXPIRATION_BATCH} ключей,
+     * сброса удалений на диск поток не ждет: не дошедшее до диска удаление не страшно, значение уже истекло
+     */
+    private void expireKeys() {
+        try {
+            while (expireBatch()) {
+                Thread.yield();
+            }
+        } catch (DatabaseException ex) {
+            BackgroundErrors.report("Error while expiring keys of table " + tableName, ex);
+        }
+    }
+
+    /**
+     * Если ключей со временем истечения не осталось, снимает задачу (см {@link #expirationTask})
+     *
+     * @return остались ли еще истекшие ключи
+     */
+    private synchronized boolean expireBatch() throws DatabaseException {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < EXPIRATION_BATCH; i++) {
+            var next = expirations.peek();
+            if (next == null) {
+                cancelExpiration();
+                return false;
+            }
+            if (!KeyExpiry.isExpired(next.getKey(), now)) {
+                return false;
+            }
+            expirations.poll();
+            String key = next.getValue();
+            var entry = tableIndex.searchForKey(key);
+            if (entry.isEmpty() || entry.get().isRemoved() || entry.get().getExpiresAt() != next.getKey()) {
+                continue;
+            }
+            try {
+                if (currentSegment == null) {
+                    startSegment();
+                } else if (currentSegment.isReadOnly()) {
+                    rollOver();
+                }
+                var offsetInfo = currentSegment.deleteRecord(key);
+                if (offsetInfo.isEmpty()) {
+                    throw new DatabaseException("Segment " + currentSegment.getName() + " is read-only.");
+                }
+                onRecordWritten(key, new TableIndexEntry(currentSegment, offsetInfo.get()));
+            } catch (IOException ex) {
+                throw new DatabaseException("Error while writing data into segment.", ex);
+            }
+        }
+        return true;
+    }
+
+    private void awaitDurable(Segment segment) throws DatabaseException {
+        try {
+            segment.awaitDurable();
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while syncing segment " + segment.getName() + " to disk.", ex);
+        }
+    }
+
+    /**
+     * Переводит таблицу на новый текущий сегмент. Закрытый сегмент доводится до конца (сброс на диск, сортировка,
+     * подсказки) в потоке сжатия (см {@link #finishSealing(SegmentImpl)}), чтобы пишущие не ждали этого
+     * под блокировкой таблицы
+     */
+    private void rollOver() throws DatabaseException {
+        Segment sealed = currentSegment;
+        sealedSegments.add(sealed);
+        startSegment();
+        if (sealed instanceof SegmentImpl) {
+            sealing++;
+            SegmentCompactor.submit(() -> finishSealing((SegmentImpl) sealed));
+        }
+        startCompaction();
+    }
+
+    /**
+     * Выполняется в потоке сжатия. Без блокировки таблицы сегмент сбрасывается на диск или переписывается
+     * отсортированным во временный файл. Под блокировкой подменяются только файл и ссылки индекса таблицы
+     * на записи сегмента (см {@link SegmentImpl#replaceWithSorted}), подсказки нового сегмента пишутся снова без нее.
+     * Записи копии, которые успели перезаписать, сразу считаются перекрытыми
+     */
+    private void finishSealing(SegmentImpl segment) {
+        try {
+            var copy = segment.finishSealing();
+            if (copy.isEmpty()) {
+                return;
+            }
+            Optional<SegmentImpl> sorted;
+            synchronized (this) {
+                sorted = segment.replaceWithSorted(copy.get(), (key, replacement, offsetInfo) -> {
+                    var entry = tableIndex.searchForKey(key);
+                    if (entry.isPresent() && entry.get().getSegment() == segment) {
+                        tableIndex.onIndexedEntityUpdated(key, new TableIndexEntry(replacement, offsetInfo));
+                    } else {
+                        replacement.onRecordSuperseded(offsetInfo.getSize());
+                    }
+                });
+                sorted.ifPresent(replacement -> sealedSegments.set(sealedSegments.indexOf(segment), replacement));
+            }
+            if (sorted.isPresent()) {
+                segment.retire(sorted.get());
+            }
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while sealing segment " + segment.getName(), ex);
+        } finally {
+            synchronized (this) {
+                sealing--;
+                startCompaction();
+            }
+        }
+    }
+
+    /**
+     * Запускает сжатие сегментов, в которых перекрыто не меньше {@link #COMPACTION_DEAD_RATIO} записей, если в них
+     * накопилось {@link com.itmo.java.basics.config.DatabaseConfig#getCompactionThreshold()} байт перекрытых записей.
+     * Вместе с ними сжимаются сегменты меньше половины {@link TableConfig#getSegmentSize()}, например последние
+     * сегменты прошлых сжатий. Сегменты, где перекрытых записей мало, не переписываются, поэтому объем
+     * сжатия зависит от количества мусора, а не от размера таблицы.
+     * Не запускается, пока сегменты еще доводятся до конца (см {@link #finishSealing(SegmentImpl)}):
+     * сжатие должно читать уже подмененные сегменты
+     */
+    private void startCompaction() {
+        if (compacting || sealing > 0) {
+            return;
+        }
+        long deadBytes = 0;
+        List<SegmentImpl> inputs = new ArrayList<>();
+        int completePrefix = 0;
+        for (Segment segment : sealedSegments) {
+            long size = segment.getSize();
+            boolean selected = segment instanceof SegmentImpl && (segment.getDeadBytes() >= size * COMPACTION_DEAD_RATIO
+                    || size - segment.getDeadBytes() < config.getSegmentSize() / 2);
+            if (selected) {
+                deadBytes += segment.getDeadBytes();
+                inputs.add((SegmentImpl) segment);
+                if (completePrefix == inputs.size() - 1 && sealedSegments.get(completePrefix) == segment) {
+                    completePrefix++;
+                }
+            }
+        }
+        if (deadBytes < config.getDatabaseConfig().getCompactionThreshold()) {
+            return;
+        }
+        compacting = true;
+        var compactor = new SegmentCompactor(inputs, completePrefix, tableIndex, config, this::reserveOutput);
+        SegmentCompactor.submit(() -> compact(compactor));
+    }
+
+    /**
+     * Создает новый текущий сегмент со следующим номером и сохраняет манифест. Если процесс упадет до сохранения
+     * манифеста, пустой файл сегмента будет переиспользован под тем же номером
+     */
+    private void startSegment() throws DatabaseException {
+        currentSegment = SegmentImpl.create(SegmentImpl.createSegmentName(tableName, nextSegmentId),
+                Path.of(pathToDatabaseRoot.toString(), tableName), config);
+        nextSegmentId++;
+        storeManifest();
+    }
+
+    /**
+     * Сохраняет список сегментов таблицы (см {@link TableManifest}). Вызывается под блокировкой таблицы
+     */
+    private void storeManifest() throws DatabaseException {
+        List<TableManifest.Entry> entries = new ArrayList<>();
+        for (String segmentName : obsoleteSegments) {
+            entries.add(TableManifest.Entry.obsolete(segmentName));
+        }
+        for (String segmentName : pendingSegments) {
+            entries.add(TableManifest.Entry.pending(segmentName));
+        }
+        for (Segment segment : sealedSegments) {
+            entries.add(TableManifest.Entry.of(segment));
+        }
+        if (currentSegment != null) {
+            entries.add(TableManifest.Entry.of(currentSegment));
+        }
+        try {
+            new TableManifest(nextSegmentId, entries).write(Path.of(pathToDatabaseRoot.toString(), tableName));
+        } catch (IOException ex) {
+            throw new DatabaseException("Error while writing manifest of table " + tableName + ".", ex);
+        }
+    }
+
+    /**
+     * Записывает в манифест имя нового сегмента сжатия до создания его файла: если процесс упадет до подмены,
+     * при запуске файл удалится по имени (см {@link TableManifest.State#PENDING}).
+     * Вызывается в потоке сжатия
+     */
+    private synchronized void reserveOutput(String segmentName) throws DatabaseException {
+        pendingSegments.add(segmentName);
+        storeManifest();
+    }
+
+    /**
+     * Выполняется в потоке сжатия. Блокировка таблицы берется только на время подмены сегментов.
+     * Файлы сжатых сегментов удаляются только после того, как манифест перестал на них ссылаться
+     */
+    private void compact(SegmentCompactor compactor) {
+        List<String> obsolete = new ArrayList<>();
+        try {
+            compactor.merge();
+            synchronized (this) {
+                List<Segment> outputs = compactor.swap();
+                List<SegmentImpl> inputs = compactor.getInputs();
+                int position = sealedSegments.indexOf(inputs.get(inputs.size() - 1)) - (inputs.size() - 1);
+                sealedSegments.removeAll(inputs);
+                sealedSegments.addAll(position, outputs);
+                for (Segment input : inputs) {
+                    obsolete.add(input.getName());
+                }
+                pendingSegments.removeAll(compactor.getOutputNames());
+                obsoleteSegments.addAll(obsolete);
+                storeManifest();
+            }
+            compactor.writeHints();
+            compactor.deleteInputs();
+            synchronized (this) {
+                obsoleteSegments.removeAll(obsolete);
+                storeManifest();
+            }
+        } catch (DatabaseException ex) {
+            BackgroundErrors.report("Error while compacting segments of table " + tableName, ex);
+            synchronized (this) {
+                if (pendingSegments.removeAll(compactor.getOutputNames())) {
+                    try {
+                        storeManifest();
+                    } catch (DatabaseException suppressed) {
+                        BackgroundErrors.report("Error while compacting segments of table " + tableName, suppressed);
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
     }
-}
\ No newline at end of file
+}
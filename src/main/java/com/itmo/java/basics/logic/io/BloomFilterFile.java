@@ -0,0 +1,100 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.impl.BloomFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Фильтр Блума read-only сегмента, сохраненный рядом с ним.
+ * <p>
+ * Формат: MAGIC, размер сегмента (long), фильтр (см {@link BloomFilter#writeTo}), CRC32C всего предыдущего (int).
+ * Фильтр считается недействительным, если размер сегмента не совпадает или не сошлась контрольная сумма
+ */
+public final class BloomFilterFile {
+    public static final String SUFFIX = ".bloom";
+    private static final int MAGIC = 0x4B564246;
+
+    private BloomFilterFile() {
+    }
+
+    public static Path bloomPath(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Сохраняет фильтр сегмента. Файл подменяется атомарно
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param segmentSize размер сегмента
+     * @param filter      фильтр по ключам сегмента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void write(Path segmentPath, long segmentSize, BloomFilter filter) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeLong(segmentSize);
+            filter.writeTo(output);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        bytes.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) crc.getValue()).array());
+        Path bloomPath = bloomPath(segmentPath);
+        Path tmpPath = bloomPath.resolveSibling(bloomPath.getFileName() + ".tmp");
+        Files.write(tmpPath, bytes.toByteArray());
+        Files.move(tmpPath, bloomPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает фильтр сегмента
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param segmentSize текущий размер файла сегмента
+     * @return фильтр, или пустой Optional, если файла нет или он поврежден
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static Optional<BloomFilter> read(Path segmentPath, long segmentSize) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(bloomPath(segmentPath));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        }
+        if (bytes.length < Integer.BYTES * 2) {
+            return Optional.empty();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - Integer.BYTES);
+        if (ByteBuffer.wrap(bytes).getInt(bytes.length - Integer.BYTES) != (int) crc.getValue()) {
+            return Optional.empty();
+        }
+        try (var input = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Integer.BYTES))) {
+            if (input.readInt() != MAGIC || input.readLong() != segmentSize) {
+                return Optional.empty();
+            }
+            return Optional.of(BloomFilter.readFrom(input));
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Удаляет фильтр сегмента, если он есть
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(bloomPath(segmentPath));
+    }
+}
@@ -0,0 +1,30 @@
+package com.itmo.java.basics.logic.io;
+
+import java.io.IOException;
+
+/**
+ * Запись в файле сегмента повреждена: не сошлась контрольная сумма, размеры выходят за пределы файла
+ * или запись оборвана
+ */
+public class CorruptedRecordException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    public CorruptedRecordException(String message, long offset) {
+        super(message);
+        this.offset = offset;
+    }
+
+    public CorruptedRecordException(String message, long offset, Throwable cause) {
+        super(message, cause);
+        this.offset = offset;
+    }
+
+    /**
+     * @return смещение поврежденной записи в файле
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,201 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Класс, отвечающий за чтение записей БД по произвольному смещению (см {@link DatabaseOutputStream#write})
+ * <p>
+ * Использует позиционное чтение {@link FileChannel#read(ByteBuffer, long)}, поэтому не меняет позицию канала
+ * и может одновременно использоваться несколькими потоками.
+ */
+public class DatabaseChannelReader implements DatabaseRecordReader {
+    private static final int REMOVED_OBJECT_SIZE = -1;
+    /**
+     * Сколько байт {@link #readDbUnit(long)} читает первым вызовом в буфер из общего пула.
+     * Запись, которая сюда влезает, читается за один pread без копирования через временный буфер JDK
+     */
+    private static final int HEAD_SIZE = 1024;
+    /**
+     * Записи не больше этого размера {@link #readValue(SegmentOffsetInfo)} читает в буфер из общего пула, а не в новый
+     */
+    private static final int POOLED_SIZE = 64 * 1024;
+    /**
+     * Сколько буферов хранит пул. Буферы не привязаны к потокам, поэтому их число не растет с числом потоков чтения:
+     * буфер, который не влез в пул, отдается сборщику мусора
+     */
+    private static final int POOLED_BUFFERS = 32;
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    private final FileChannel channel;
+    private final boolean checksums;
+
+    public DatabaseChannelReader(FileChannel channel) {
+        this(channel, false);
+    }
+
+    /**
+     * @param checksums хранится ли после каждой записи контрольная сумма (см {@link DatabaseOutputStream})
+     */
+    public DatabaseChannelReader(FileChannel channel, boolean checksums) {
+        this.channel = channel;
+        this.checksums = checksums;
+    }
+
+    @Override
+    public Optional<DatabaseRecord> readDbUnit(long offset) throws IOException {
+        ByteBuffer head = acquire();
+        try {
+            if (readFully(head.limit(HEAD_SIZE), offset) == 0) {
+                return Optional.empty();
+            }
+            return Optional.of(readRecord(head.flip(), offset));
+        } finally {
+            release(head);
+        }
+    }
+
+    /**
+     * Разбирает запись из буфера с ее началом. Ключ и значение копируются в массивы, поэтому после возврата
+     * буфер можно переиспользовать. Часть записи, не влезшая в буфер, дочитывается прямо в массивы
+     */
+    private DatabaseRecord readRecord(ByteBuffer head, long offset) throws IOException {
+        try {
+            int keySize = readInt(head, offset, 0);
+            if (keySize <= 0) {
+                throw new DatabaseException("Key size is <= 0 while reading data.");
+            }
+            byte[] key = new byte[keySize];
+            readBytes(head, offset, Integer.BYTES, key);
+            int valSizeField = readInt(head, offset, Integer.BYTES + keySize);
+            int valSize = DatabaseOutputStream.valueSize(valSizeField);
+            long expiresAt = KeyExpiry.NEVER;
+            DatabaseRecord record;
+            if (valSize == REMOVED_OBJECT_SIZE) {
+                record = new RemoveDatabaseRecord(key);
+            } else if (valSize < 0) {
+                throw new DatabaseException("Value size is < -1 while reading data.");
+            } else {
+                byte[] value = new byte[valSize];
+                readBytes(head, offset, Integer.BYTES * 2 + keySize, value);
+                if (DatabaseOutputStream.isExpiring(valSizeField)) {
+                    byte[] expiry = new byte[Long.BYTES];
+                    readBytes(head, offset, Integer.BYTES * 2 + keySize + valSize, expiry);
+                    expiresAt = ByteBuffer.wrap(expiry).getLong();
+                }
+                record = new SetDatabaseRecord(key, value, expiresAt);
+            }
+            if (checksums && readInt(head, offset, Math.toIntExact(record.size()))
+                    != RecordChecksum.of(key, valSizeField, record.getValue(), expiresAt)) {
+                throw new CorruptedRecordException("Checksum mismatch at offset " + offset + ".", offset);
+            }
+            return record;
+        } catch (DatabaseException ex) {
+            throw new IOException("Error while converting data into record.", ex);
+        }
+    }
+
+    @Override
+    public Optional<byte[]> readValue(SegmentOffsetInfo offsetInfo) throws IOException {
+        int size = Math.toIntExact(offsetInfo.getSize());
+        if (size > POOLED_SIZE) {
+            return readValue(ByteBuffer.allocate(size), offsetInfo);
+        }
+        ByteBuffer pooled = acquire();
+        try {
+            return readValue(pooled.limit(size), offsetInfo);
+        } finally {
+            release(pooled);
+        }
+    }
+
+    /**
+     * @return очищенный прямой буфер размера {@link #POOLED_SIZE}: из пула или новый, если пул пуст
+     */
+    private static ByteBuffer acquire() {
+        ByteBuffer pooled = POOL.poll();
+        return pooled == null ? ByteBuffer.allocateDirect(POOLED_SIZE) : pooled.clear();
+    }
+
+    private static void release(ByteBuffer pooled) {
+        POOL.offer(pooled);
+    }
+
+    /**
+     * Значение копируется из буфера, поэтому после возврата буфер можно переиспользовать
+     */
+    private Optional<byte[]> readValue(ByteBuffer record, SegmentOffsetInfo offsetInfo) throws IOException {
+        if (readFully(record, offsetInfo.getOffset()) < record.limit()) {
+            throw new IOException("Record at offset " + offsetInfo.getOffset() + " is truncated.");
+        }
+        return RecordValues.valueOf(record.flip(), offsetInfo, checksums);
+    }
+
+    @Override
+    public byte[] readBytes(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        if (readFully(ByteBuffer.wrap(bytes), offset) < length) {
+            throw new IOException("Block at offset " + offset + " is truncated.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Читает int, начинающийся с {@code shift} байта записи. Берет его из уже прочитанного буфера, если возможно
+     */
+    private int readInt(ByteBuffer head, long offset, int shift) throws IOException {
+        if (shift + Integer.BYTES <= head.limit()) {
+            return head.getInt(shift);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        if (readFully(buffer, offset + shift) < Integer.BYTES) {
+            throw new IOException("Record at offset " + offset + " is truncated.");
+        }
+        return buffer.getInt(0);
+    }
+
+    /**
+     * Заполняет массив байтами, начиная с {@code shift} байта записи:
+     * сначала из прочитанного буфера, остаток - одним pread прямо в массив
+     */
+    private void readBytes(ByteBuffer head, long offset, int shift, byte[] dst) throws IOException {
+        int fromHead = Math.max(0, Math.min(dst.length, head.limit() - shift));
+        if (fromHead > 0) {
+            ByteBuffer slice = head.duplicate();
+            slice.position(shift);
+            slice.get(dst, 0, fromHead);
+        }
+        int rest = dst.length - fromHead;
+        if (rest > 0 && readFully(ByteBuffer.wrap(dst, fromHead, rest), offset + shift + fromHead) < rest) {
+            throw new IOException("Record at offset " + offset + " is truncated.");
+        }
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -2,6 +2,8 @@ package com.itmo.java.basics.logic.io;
 
 import com.itmo.java.basics.exceptions.DatabaseException;
 import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
 import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
@@ -11,6 +13,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import java.util.zip.CRC32C;
 
 /**
  * Класс, отвечающий за чтение данных из БД
@@ -18,38 +21,137 @@ import java.util.Optional;
 public class DatabaseInputStream extends DataInputStream {
     private static final int REMOVED_OBJECT_SIZE = -1;
 
+    private final boolean checksums;
+    private final long length;
+    private long position = 0;
+    /**
+     * Значение последней записи, прочитанной {@link #readNext(boolean)} вместе со значением
+     */
+    private byte[] value;
+
     public DatabaseInputStream(InputStream inputStream) {
+        this(inputStream, false, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param checksums хранится ли после каждой записи контрольная сумма (см {@link DatabaseOutputStream})
+     * @param length    длина читаемого файла. Записи, размеры которых выходят за нее, считаются поврежденными
+     */
+    public DatabaseInputStream(InputStream inputStream, boolean checksums, long length) {
         super(inputStream);
+        this.checksums = checksums;
+        this.length = length;
     }
 
     /**
      * Читает следующую запись (см {@link DatabaseOutputStream#write(WritableDatabaseRecord)})
      * @return следующую запись, если она существует. {@link Optional#empty()} - если конец файла достигнут
+     * или начался заранее выделенный и еще не записанный (нулевой) хвост сегмента
+     * @throws CorruptedRecordException если запись оборвана, ее размеры некорректны или не сошлась контрольная сумма.
+     * Позиция потока после этого не определена, а {@link #getPosition()} указывает на начало поврежденной записи
      */
     public Optional<DatabaseRecord> readDbUnit() throws IOException {
-        DatabaseRecord record;
+        Optional<RecordHeader> header = readNext(true);
+        if (header.isEmpty()) {
+            return Optional.empty();
+        }
+        byte[] key = header.get().getKey();
+        try {
+            return Optional.of(header.get().getValueSize() == REMOVED_OBJECT_SIZE
+                    ? new RemoveDatabaseRecord(key)
+                    : new SetDatabaseRecord(key, value, header.get().getExpiresAt()));
+        } catch (DatabaseException ex) {
+            throw new IOException("Error while converting data into record.", ex);
+        } finally {
+            value = null;
+        }
+    }
+
+    /**
+     * Читает заголовок следующей записи, а ее значение пропускает частями, не читая в память.
+     * Контрольная сумма при этом все равно проверяется. Конец файла и повреждения - как у {@link #readDbUnit()}
+     */
+    public Optional<RecordHeader> readHeader() throws IOException {
+        return readNext(false);
+    }
+
+    private Optional<RecordHeader> readNext(boolean loadValue) throws IOException {
+        int keySize;
         try {
-            int keySize = readInt();
-            if (keySize <= 0) {
-                throw new DatabaseException("Key size is <= 0 while reading data.");
+            keySize = readInt();
+        } catch (EOFException ex) {
+            return Optional.empty();
+        }
+        if (keySize == 0) {
+            return Optional.empty();
+        }
+        RecordHeader header;
+        long size;
+        try {
+            long remaining = length - position - Integer.BYTES * 2;
+            if (keySize < 0 || keySize > remaining) {
+                throw new CorruptedRecordException("Key size " + keySize + " is out of file bounds.", position);
             }
             byte[] key = new byte [keySize];
-            read(key);
-            int valSize = readInt();
+            readFully(key);
+            int valSizeField = readInt();
+            int valSize = DatabaseOutputStream.valueSize(valSizeField);
+            boolean expiring = DatabaseOutputStream.isExpiring(valSizeField);
+            long expiresAt = KeyExpiry.NEVER;
+            CRC32C checksum = checksums ? RecordChecksum.start(key, valSizeField) : null;
             if (valSize != REMOVED_OBJECT_SIZE) {
-                byte[] value = new byte[valSize];
-                read(value);
-                record = new SetDatabaseRecord(key, value);
+                if (valSize < 0 || valSize > remaining - keySize - (expiring ? Long.BYTES : 0)) {
+                    throw new CorruptedRecordException("Value size " + valSize + " is out of file bounds.", position);
+                }
+                if (loadValue) {
+                    value = new byte[valSize];
+                    readFully(value);
+                    if (checksums) {
+                        checksum.update(value);
+                    }
+                } else {
+                    skipValue(valSize, checksum);
+                }
+                if (expiring) {
+                    expiresAt = readLong();
+                }
             }
-            else
-                record = new RemoveDatabaseRecord(key);
+            if (checksums && readInt() != RecordChecksum.finish(checksum, valSizeField, expiresAt)) {
+                throw new CorruptedRecordException("Checksum mismatch.", position);
+            }
+            header = new RecordHeader(key, valSize, expiresAt);
+            size = Integer.BYTES * 2L + keySize + Math.max(valSize, 0) + (expiring ? Long.BYTES : 0);
         } catch (EOFException ex) {
-            return Optional.empty();
+            throw new CorruptedRecordException("Record is truncated.", position, ex);
+        } catch (CorruptedRecordException ex) {
+            throw ex;
         } catch (IOException ex) {
             throw new IOException("Error while reading data.", ex);
-        } catch (DatabaseException ex) {
-            throw new IOException("Error while converting data into record.", ex);
         }
-        return Optional.of(record);
+        position += size + (checksums ? RecordChecksum.SIZE : 0);
+        return Optional.of(header);
+    }
+
+    /**
+     * Пропускает значение частями по {@link StreamedValue#CHUNK_SIZE} байт, добавляя его в контрольную сумму
+     */
+    private void skipValue(int valSize, CRC32C checksum) throws IOException {
+        byte[] chunk = new byte[Math.min(StreamedValue.CHUNK_SIZE, valSize)];
+        int remaining = valSize;
+        while (remaining > 0) {
+            int size = Math.min(chunk.length, remaining);
+            readFully(chunk, 0, size);
+            if (checksums) {
+                checksum.update(chunk, 0, size);
+            }
+            remaining -= size;
+        }
+    }
+
+    /**
+     * @return смещение конца последней прочитанной записи
+     */
+    public long getPosition() {
+        return position;
     }
 }
@@ -1,18 +1,39 @@
 package com.itmo.java.basics.logic.io;
 
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.StreamedValue;
 import com.itmo.java.basics.logic.WritableDatabaseRecord;
 
 import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32C;
 
 /**
  * Записывает данные в БД
  */
 public class DatabaseOutputStream extends DataOutputStream {
+    private static final int EXPIRING_VALUE_SIZE = -2;
+    /**
+     * Наибольший буфер, в который собирается пакет записей (см {@link #write(List)})
+     */
+    static final int BATCH_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private final boolean checksums;
 
     public DatabaseOutputStream(OutputStream outputStream) {
+        this(outputStream, false);
+    }
+
+    /**
+     * @param checksums дописывать ли после каждой записи ее контрольную сумму CRC32C
+     */
+    public DatabaseOutputStream(OutputStream outputStream, boolean checksums) {
         super(outputStream);
+        this.checksums = checksums;
     }
 
     /**
@@ -21,26 +42,190 @@ public class DatabaseOutputStream extends DataOutputStream {
      * - Ключ
      * - Размер записи в байтах {@link WritableDatabaseRecord#getValueSize()}
      * - Запись
+     * - Время истечения записи (long), если оно задано. Тогда размер записи хранится как {@code -2 - размер},
+     * а {@code -1} по-прежнему означает удаление (см {@link #valueSizeField(int, long)})
+     * - Контрольная сумма CRC32C всего предыдущего, если поток создан с контрольными суммами
      * Например при использовании UTF_8,
      * "key" : "value"
      * 3key5value
      * Метод вернет 10
+     * <p>
+     * Запись сначала собирается в один буфер и передается в поток одним вызовом
      *
      * @param databaseRecord запись
-     * @return размер записи
+     * @return размер записи в файле
      * @throws IOException если запись не удалась
      */
     public long write(WritableDatabaseRecord databaseRecord) throws IOException {
         try {
-            writeInt(databaseRecord.getKeySize());
-            write(databaseRecord.getKey());
-            writeInt(databaseRecord.getValueSize());
-            if (databaseRecord.getValueSize() != -1) {
-                write(databaseRecord.getValue());
+            byte[] encoded = encode(databaseRecord);
+            write(encoded, 0, encoded.length);
+        } catch (IOException ex) {
+            throw new IOException("Could not write data into the file.", ex);
+        }
+        return sizeOf(databaseRecord);
+    }
+
+    /**
+     * Записывает несколько записей в формате {@link #write(WritableDatabaseRecord)}, собирая их в буферы
+     * не больше {@link #BATCH_BUFFER_SIZE}. Запись больше буфера передается в поток отдельным вызовом
+     *
+     * @param databaseRecords записи
+     * @return размер каждой записи в файле
+     * @throws IOException если запись не удалась
+     */
+    public long[] write(List<? extends WritableDatabaseRecord> databaseRecords) throws IOException {
+        long[] sizes = new long[databaseRecords.size()];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeOf(databaseRecords.get(i));
+            total += sizes[i];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(total, BATCH_BUFFER_SIZE));
+        try {
+            for (int i = 0; i < sizes.length; i++) {
+                if (sizes[i] > buffer.remaining()) {
+                    write(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+                if (sizes[i] > buffer.capacity()) {
+                    byte[] encoded = encode(databaseRecords.get(i));
+                    write(encoded, 0, encoded.length);
+                } else {
+                    encode(databaseRecords.get(i), buffer);
+                }
             }
+            write(buffer.array(), 0, buffer.position());
         } catch (IOException ex) {
             throw new IOException("Could not write data into the file.", ex);
         }
-        return databaseRecord.size();
+        return sizes;
+    }
+
+    /**
+     * Записывает запись со значением, которое передается частями (см {@link StreamedValue}), в формате
+     * {@link #write(WritableDatabaseRecord)}. В памяти не собирается ни значение, ни запись целиком,
+     * контрольная сумма считается по ходу записи
+     *
+     * @param key       ключ
+     * @param value     значение
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     * @return размер записи в файле
+     * @throws IOException если запись не удалась или значение оказалось не того размера, что заявлен
+     */
+    public long write(byte[] key, StreamedValue value, long expiresAt) throws IOException {
+        if (value.getSize() > Integer.MAX_VALUE + (long) EXPIRING_VALUE_SIZE) {
+            throw new IOException("Value of " + value.getSize() + " bytes is too large to be written.");
+        }
+        int valueSize = (int) value.getSize();
+        int valueSizeField = valueSizeField(valueSize, expiresAt);
+        var sink = new ChecksumOutputStream(out);
+        try {
+            var header = ByteBuffer.allocate(Integer.BYTES * 2 + key.length);
+            header.putInt(key.length).put(key).putInt(valueSizeField);
+            sink.write(header.array(), 0, header.capacity());
+            value.transferTo(sink);
+            if (sink.count != header.capacity() + (long) valueSize) {
+                throw new IOException("Value was declared to be " + valueSize + " bytes long, but "
+                        + (sink.count - header.capacity()) + " bytes were transferred.");
+            }
+            if (isExpiring(valueSizeField)) {
+                sink.write(ByteBuffer.allocate(Long.BYTES).putLong(expiresAt).array(), 0, Long.BYTES);
+            }
+            if (checksums) {
+                out.write(ByteBuffer.allocate(RecordChecksum.SIZE).putInt((int) sink.crc.getValue()).array());
+            }
+        } catch (IOException ex) {
+            throw new IOException("Could not write data into the file.", ex);
+        }
+        return sink.count + (checksums ? RecordChecksum.SIZE : 0);
+    }
+
+    /**
+     * @return сколько байт займет запись в файле
+     */
+    public long sizeOf(WritableDatabaseRecord databaseRecord) {
+        return databaseRecord.size() + (checksums ? RecordChecksum.SIZE : 0);
+    }
+
+    /**
+     * @param recordOffset смещение записи в файле
+     * @param keySize      размер ключа в байтах
+     * @return смещение значения записи (см формат в {@link #write(WritableDatabaseRecord)})
+     */
+    public static long valueOffset(long recordOffset, int keySize) {
+        return recordOffset + Integer.BYTES * 2L + keySize;
+    }
+
+    /**
+     * @param valueSize размер значения, {@code -1} - удаление
+     * @param expiresAt время истечения значения (см {@link com.itmo.java.basics.logic.KeyExpiry})
+     * @return размер значения в том виде, в котором он пишется в файл
+     */
+    public static int valueSizeField(int valueSize, long expiresAt) {
+        return valueSize < 0 || expiresAt == KeyExpiry.NEVER ? valueSize : EXPIRING_VALUE_SIZE - valueSize;
+    }
+
+    /**
+     * @return хранится ли после значения время истечения
+     */
+    public static boolean isExpiring(int valueSizeField) {
+        return valueSizeField <= EXPIRING_VALUE_SIZE;
+    }
+
+    /**
+     * @return размер значения по записанному в файл полю, {@code -1} - удаление
+     */
+    public static int valueSize(int valueSizeField) {
+        return isExpiring(valueSizeField) ? EXPIRING_VALUE_SIZE - valueSizeField : valueSizeField;
+    }
+
+    private byte[] encode(WritableDatabaseRecord databaseRecord) {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(sizeOf(databaseRecord)));
+        encode(databaseRecord, buffer);
+        return buffer.array();
+    }
+
+    private void encode(WritableDatabaseRecord databaseRecord, ByteBuffer buffer) {
+        int valueSizeField = valueSizeField(databaseRecord.getValueSize(), databaseRecord.getExpiresAt());
+        buffer.putInt(databaseRecord.getKeySize());
+        buffer.put(databaseRecord.getKey());
+        buffer.putInt(valueSizeField);
+        if (databaseRecord.getValueSize() != -1) {
+            buffer.put(databaseRecord.getValue());
+        }
+        if (isExpiring(valueSizeField)) {
+            buffer.putLong(databaseRecord.getExpiresAt());
+        }
+        if (checksums) {
+            buffer.putInt(RecordChecksum.of(databaseRecord.getKey(), valueSizeField, databaseRecord.getValue(),
+                    databaseRecord.getExpiresAt()));
+        }
+    }
+
+    /**
+     * Передает байты дальше, считая их количество и контрольную сумму
+     */
+    private static final class ChecksumOutputStream extends FilterOutputStream {
+        private final CRC32C crc = new CRC32C();
+        private long count = 0;
+
+        private ChecksumOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            crc.update(b, off, len);
+            count += len;
+        }
     }
-}
\ No newline at end of file
+}
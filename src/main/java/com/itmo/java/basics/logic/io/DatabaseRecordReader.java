@@ -0,0 +1,43 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.DatabaseRecord;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Читает записи БД по смещению в файле сегмента (см {@link DatabaseOutputStream#write})
+ */
+public interface DatabaseRecordReader extends AutoCloseable {
+    /**
+     * Читает запись, которая начинается с переданного смещения
+     *
+     * @param offset смещение записи в файле
+     * @return запись, если она существует. {@link Optional#empty()} - если смещение указывает на конец файла
+     * @throws IOException если запись повреждена или произошла ошибка ввода-вывода
+     */
+    Optional<DatabaseRecord> readDbUnit(long offset) throws IOException;
+
+    /**
+     * Читает запись ровно по ее положению из индекса - одним чтением {@link SegmentOffsetInfo#getSize()} байт -
+     * и возвращает только значение. Ключ не разбирается и не копируется
+     *
+     * @param offsetInfo положение записи
+     * @return значение, или {@link Optional#empty()}, если запись является удалением
+     * @throws IOException если запись не совпадает с индексом, повреждена или произошла ошибка ввода-вывода
+     */
+    Optional<byte[]> readValue(SegmentOffsetInfo offsetInfo) throws IOException;
+
+    /**
+     * Читает подряд {@code length} байт файла, например блок записей отсортированного сегмента
+     *
+     * @param offset смещение первого байта
+     * @param length сколько байт прочитать
+     * @throws IOException если файл короче или произошла ошибка ввода-вывода
+     */
+    byte[] readBytes(long offset, int length) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,87 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.StreamedValue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Значение записи, которое читается прямо из файла сегмента: в поток частями по {@link StreamedValue#CHUNK_SIZE} байт,
+ * в канал - без копирования в память.
+ * Файл открывается отдельным каналом, поэтому значение можно дочитать и после того, как сегмент переписан
+ * или удален сжатием
+ */
+public final class FileRegionValue implements StreamedValue {
+    private final FileChannel channel;
+    private final long position;
+    private final long size;
+
+    private FileRegionValue(FileChannel channel, long position, long size) {
+        this.channel = channel;
+        this.position = position;
+        this.size = size;
+    }
+
+    /**
+     * @param path     путь до файла сегмента
+     * @param position смещение значения в файле
+     * @param size     размер значения в байтах
+     * @throws IOException если файл не удалось открыть
+     */
+    public static FileRegionValue open(Path path, long position, long size) throws IOException {
+        return new FileRegionValue(FileChannel.open(path, StandardOpenOption.READ), position, size);
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public Optional<byte[]> inMemory() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void transferTo(OutputStream out) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, size));
+        long done = 0;
+        while (done < size) {
+            chunk.clear().limit((int) Math.min(chunk.capacity(), size - done));
+            int read = channel.read(chunk, position + done);
+            if (read < 0) {
+                throw new EOFException("Value at offset " + position + " is truncated.");
+            }
+            out.write(chunk.array(), 0, read);
+            done += read;
+        }
+    }
+
+    /**
+     * Передает значение через {@link FileChannel#transferTo(long, long, WritableByteChannel)}: в сокет байты идут
+     * из кэша страниц файла, не попадая в память процесса
+     */
+    @Override
+    public void transferTo(WritableByteChannel target) throws IOException {
+        long done = 0;
+        while (done < size) {
+            long transferred = channel.transferTo(position + done, size - done, target);
+            if (transferred <= 0 && position + done >= channel.size()) {
+                throw new EOFException("Value at offset " + position + " is truncated.");
+            }
+            done += transferred;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,227 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Читает записи неизменяемого сегмента из отображенного в память файла - без системных вызовов и
+ * промежуточных буферов.
+ * <p>
+ * Суммарный размер всех отображений в процессе ограничивается, см {@link #map(FileChannel, long, long, boolean)}.
+ * {@link #close()} ждет начатых чтений и сразу освобождает отображение, после этого чтения завершаются
+ * с {@link ClosedChannelException}. Если JVM не дает освободить отображение явно, его освобождает сборщик мусора,
+ * и лимит становится мягким: закрытые, но еще не собранные отображения в нем уже не учитываются
+ */
+public class MappedDatabaseReader implements DatabaseRecordReader {
+    private static final int REMOVED_OBJECT_SIZE = -1;
+    private static final AtomicLong mappedBytes = new AtomicLong();
+    /**
+     * {@code sun.misc.Unsafe#invokeCleaner(ByteBuffer)}, или null, если JVM его не предоставляет
+     */
+    private static final MethodHandle UNMAPPER = findUnmapper();
+
+    private final MappedByteBuffer buffer;
+    private final long size;
+    private final boolean checksums;
+    /**
+     * Чтения берут блокировку на чтение, закрытие - на запись, чтобы не освободить отображение под читателем
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed = false;
+
+    private MappedDatabaseReader(MappedByteBuffer buffer, long size, boolean checksums) {
+        this.buffer = buffer;
+        this.size = size;
+        this.checksums = checksums;
+    }
+
+    /**
+     * Отображает первые {@code size} байт файла в память, если это не превысит лимит
+     *
+     * @param channel        канал файла сегмента, открытый на чтение
+     * @param size           размер сегмента
+     * @param maxMappedBytes сколько байт суммарно может быть отображено всеми сегментами
+     * @param checksums      хранится ли после каждой записи контрольная сумма (см {@link DatabaseOutputStream})
+     * @return читателя или {@link Optional#empty()}, если лимит исчерпан или файл слишком велик для одного отображения
+     * @throws IOException если отобразить файл не удалось
+     */
+    public static Optional<MappedDatabaseReader> map(FileChannel channel, long size, long maxMappedBytes,
+                                                     boolean checksums) throws IOException {
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+        long current;
+        do {
+            current = mappedBytes.get();
+            if (current + size > maxMappedBytes) {
+                return Optional.empty();
+            }
+        } while (!mappedBytes.compareAndSet(current, current + size));
+        try {
+            return Optional.of(new MappedDatabaseReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), size, checksums));
+        } catch (IOException | RuntimeException ex) {
+            mappedBytes.addAndGet(-size);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return сколько байт сейчас отображено всеми читателями процесса
+     */
+    static long getMappedBytes() {
+        return mappedBytes.get();
+    }
+
+    @Override
+    public Optional<DatabaseRecord> readDbUnit(long offset) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return readDbUnitLocked(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Optional<DatabaseRecord> readDbUnitLocked(long offset) throws IOException {
+        if (offset >= size) {
+            return Optional.empty();
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position((int) offset);
+        try {
+            int keySize = record.getInt();
+            if (keySize <= 0) {
+                throw new DatabaseException("Key size is <= 0 while reading data.");
+            }
+            byte[] key = new byte[keySize];
+            record.get(key);
+            int valSizeField = record.getInt();
+            int valSize = DatabaseOutputStream.valueSize(valSizeField);
+            long expiresAt = KeyExpiry.NEVER;
+            DatabaseRecord result;
+            if (valSize == REMOVED_OBJECT_SIZE) {
+                result = new RemoveDatabaseRecord(key);
+            } else if (valSize < 0) {
+                throw new DatabaseException("Value size is < -1 while reading data.");
+            } else {
+                byte[] value = new byte[valSize];
+                record.get(value);
+                if (DatabaseOutputStream.isExpiring(valSizeField)) {
+                    expiresAt = record.getLong();
+                }
+                result = new SetDatabaseRecord(key, value, expiresAt);
+            }
+            if (checksums && record.getInt() != RecordChecksum.of(key, valSizeField, result.getValue(), expiresAt)) {
+                throw new CorruptedRecordException("Checksum mismatch at offset " + offset + ".", offset);
+            }
+            return Optional.of(result);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Record at offset " + offset + " is truncated.", ex);
+        } catch (DatabaseException ex) {
+            throw new IOException("Error while converting data into record.", ex);
+        }
+    }
+
+    /**
+     * Запись не копируется: значение берется прямо из отображения
+     */
+    @Override
+    public Optional<byte[]> readValue(SegmentOffsetInfo offsetInfo) throws IOException {
+        long offset = offsetInfo.getOffset();
+        if (offset + offsetInfo.getSize() > size) {
+            throw new IOException("Record at offset " + offset + " is truncated.");
+        }
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            ByteBuffer record = buffer.duplicate().position((int) offset).limit((int) (offset + offsetInfo.getSize())).slice();
+            return RecordValues.valueOf(record, offsetInfo, checksums);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public byte[] readBytes(long offset, int length) throws IOException {
+        if (offset + length > size) {
+            throw new IOException("Block at offset " + offset + " is truncated.");
+        }
+        byte[] bytes = new byte[length];
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            buffer.duplicate().position((int) offset).get(bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bytes;
+    }
+
+    /**
+     * Освобождает отображение и возвращает его байты в общий лимит
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unmap();
+            mappedBytes.addAndGet(-size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void unmap() {
+        if (UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable ex) {
+            // отображение освободит сборщик мусора
+        }
+    }
+
+    private static MethodHandle findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.itmo.java.basics.logic.io;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Контрольная сумма записи БД. Считается по всем байтам записи (размер ключа, ключ, размер значения, значение,
+ * время истечения, если оно есть) и хранится сразу после записи в {@link #SIZE} байтах
+ */
+final class RecordChecksum {
+    static final int SIZE = Integer.BYTES;
+
+    private RecordChecksum() {
+    }
+
+    /**
+     * @param valueSizeField размер значения в том виде, в котором он записан в файл
+     *                       (см {@link DatabaseOutputStream#valueSizeField(int, long)})
+     */
+    static int of(byte[] key, int valueSizeField, byte[] value, long expiresAt) {
+        CRC32C crc = start(key, valueSizeField);
+        if (value != null) {
+            crc.update(value);
+        }
+        return finish(crc, valueSizeField, expiresAt);
+    }
+
+    /**
+     * Начинает считать сумму записи, значение которой передается частями: значение добавляется вызывающим
+     */
+    static CRC32C start(byte[] key, int valueSizeField) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer size = ByteBuffer.allocate(Integer.BYTES);
+        crc.update(size.putInt(0, key.length).array());
+        crc.update(key);
+        crc.update(size.putInt(0, valueSizeField).array());
+        return crc;
+    }
+
+    /**
+     * Заканчивает сумму, начатую {@link #start(byte[], int)}, после того как в нее добавлено значение
+     */
+    static int finish(CRC32C crc, int valueSizeField, long expiresAt) {
+        if (DatabaseOutputStream.isExpiring(valueSizeField)) {
+            crc.update(ByteBuffer.allocate(Long.BYTES).putLong(expiresAt).array());
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Считает сумму по уже закодированной записи - первым {@code length} байтам буфера
+     */
+    static int of(ByteBuffer record, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,48 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.KeyExpiry;
+
+/**
+ * Заголовок записи, прочитанный без ее значения (см {@link DatabaseInputStream#readHeader()}): ключ, размер значения
+ * и время истечения. Само значение нужно читать из файла по смещению записи
+ */
+public final class RecordHeader {
+    private final byte[] key;
+    private final int valueSize;
+    private final long expiresAt;
+
+    /**
+     * @param valueSize размер значения в байтах, {@code -1} - запись является удалением
+     * @param expiresAt время истечения значения (см {@link KeyExpiry})
+     */
+    RecordHeader(byte[] key, int valueSize, long expiresAt) {
+        this.key = key;
+        this.valueSize = valueSize;
+        this.expiresAt = isValuePresented() ? expiresAt : KeyExpiry.NEVER;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    /**
+     * @return размер значения в байтах, {@code -1} - запись является удалением
+     */
+    public int getValueSize() {
+        return valueSize;
+    }
+
+    /**
+     * Пустое значение, как и у {@link com.itmo.java.basics.logic.impl.SetDatabaseRecord}, считается отсутствующим
+     */
+    public boolean isValuePresented() {
+        return valueSize > 0;
+    }
+
+    /**
+     * @return время истечения значения (см {@link KeyExpiry}), у удалений - {@link KeyExpiry#NEVER}
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,50 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Достает значение из записи, прочитанной целиком по ее положению из индекса, не разбирая и не копируя ключ
+ */
+final class RecordValues {
+    private static final int REMOVED_OBJECT_SIZE = -1;
+
+    private RecordValues() {
+    }
+
+    /**
+     * @param record     байты записи с позиции {@code 0} до {@link SegmentOffsetInfo#getSize()}
+     * @param offsetInfo положение записи
+     * @param checksums  хранится ли после записи контрольная сумма (см {@link DatabaseOutputStream})
+     * @return значение, или {@link Optional#empty()}, если запись является удалением
+     * @throws IOException если запись не совпадает с индексом или повреждена
+     */
+    static Optional<byte[]> valueOf(ByteBuffer record, SegmentOffsetInfo offsetInfo, boolean checksums)
+            throws IOException {
+        long offset = offsetInfo.getOffset();
+        int valueShift = Math.toIntExact(offsetInfo.getValueOffset() - offset);
+        int size = record.limit();
+        if (valueShift < Integer.BYTES * 2 || valueShift > size || record.getInt(0) != valueShift - Integer.BYTES * 2) {
+            throw new IOException("Record at offset " + offset + " does not match the index.");
+        }
+        int valSizeField = record.getInt(valueShift - Integer.BYTES);
+        int valSize = DatabaseOutputStream.valueSize(valSizeField);
+        int end = valueShift + Math.max(valSize, 0) + (DatabaseOutputStream.isExpiring(valSizeField) ? Long.BYTES : 0)
+                + (checksums ? RecordChecksum.SIZE : 0);
+        if (valSize < REMOVED_OBJECT_SIZE || end != size) {
+            throw new IOException("Record at offset " + offset + " does not match the index.");
+        }
+        if (checksums && record.getInt(size - RecordChecksum.SIZE) != RecordChecksum.of(record, size - RecordChecksum.SIZE)) {
+            throw new CorruptedRecordException("Checksum mismatch at offset " + offset + ".", offset);
+        }
+        if (valSize == REMOVED_OBJECT_SIZE) {
+            return Optional.empty();
+        }
+        byte[] value = new byte[valSize];
+        record.duplicate().position(valueShift).get(value);
+        return Optional.of(value);
+    }
+}
@@ -0,0 +1,139 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.KvsIndex;
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Файл подсказок read-only сегмента: для каждого ключа - смещение, размер, признак удаления и время истечения
+ * последней записи.
+ * Позволяет восстановить индекс сегмента при старте, не читая значений.
+ * <p>
+ * Формат: MAGIC, размер сегмента (long), число записей (int), записи вида
+ * {@code <размер ключа><ключ><смещение (long)><размер записи (long)><удаление (boolean)><время истечения (long)>}, CRC32C всего предыдущего (int).
+ * Подсказки считаются недействительными, если размер сегмента не совпадает или не сошлась контрольная сумма
+ */
+public final class SegmentHints {
+    public static final String SUFFIX = ".hint";
+    /**
+     * Подсказки прежнего формата, без времени истечения, не подходят и строятся заново по файлу сегмента
+     */
+    private static final int MAGIC = 0x4B565349;
+
+    private SegmentHints() {
+    }
+
+    public static Path hintPath(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Записывает подсказки для сегмента. Файл подменяется атомарно
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param segmentSize размер сегмента
+     * @param index       индекс сегмента
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void write(Path segmentPath, long segmentSize, KvsIndex<String, SegmentOffsetInfo> index) throws IOException {
+        Map<String, SegmentOffsetInfo> entries = new LinkedHashMap<>();
+        index.forEach(entries::put);
+        Path hintPath = hintPath(segmentPath);
+        Path tmpPath = hintPath.resolveSibling(hintPath.getFileName() + ".tmp");
+        var checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)), new CRC32C());
+        try (var output = new DataOutputStream(checked)) {
+            output.writeInt(MAGIC);
+            output.writeLong(segmentSize);
+            output.writeInt(entries.size());
+            for (var entry : entries.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(entry.getValue().getOffset());
+                output.writeLong(entry.getValue().getSize());
+                output.writeBoolean(entry.getValue().isRemoved());
+                output.writeLong(entry.getValue().getExpiresAt());
+            }
+            output.writeInt((int) checked.getChecksum().getValue());
+        }
+        Files.move(tmpPath, hintPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает подсказки сегмента
+     *
+     * @param segmentPath путь до файла сегмента
+     * @param segmentSize текущий размер файла сегмента
+     * @return записи индекса сегмента, или пустой Optional, если файла подсказок нет или он поврежден
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static Optional<Map<String, SegmentOffsetInfo>> read(Path segmentPath, long segmentSize) throws IOException {
+        CheckedInputStream checked;
+        try {
+            checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(hintPath(segmentPath))), new CRC32C());
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        }
+        try (var input = new DataInputStream(checked)) {
+            if (input.readInt() != MAGIC || input.readLong() != segmentSize) {
+                return Optional.empty();
+            }
+            int count = input.readInt();
+            if (count < 0) {
+                return Optional.empty();
+            }
+            Map<String, SegmentOffsetInfo> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int keySize = input.readInt();
+                if (keySize <= 0 || keySize > segmentSize) {
+                    return Optional.empty();
+                }
+                byte[] key = new byte[keySize];
+                input.readFully(key);
+                long offset = input.readLong();
+                long size = input.readLong();
+                boolean removed = input.readBoolean();
+                long expiresAt = input.readLong();
+                if (offset < 0 || size <= 0 || offset + size > segmentSize) {
+                    return Optional.empty();
+                }
+                entries.put(new String(key, StandardCharsets.UTF_8), new SegmentOffsetInfoImpl(offset, size,
+                        DatabaseOutputStream.valueOffset(offset, keySize), removed, expiresAt));
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (input.readInt() != expected || input.read() != -1) {
+                return Optional.empty();
+            }
+            return Optional.of(entries);
+        } catch (EOFException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Удаляет подсказки сегмента, если они есть
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void delete(Path segmentPath) throws IOException {
+        Files.deleteIfExists(hintPath(segmentPath));
+    }
+}
@@ -0,0 +1,148 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.config.Durability;
+import com.itmo.java.basics.exceptions.BackgroundErrors;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сбрасывает на диск данные, записанные в файл сегмента, согласно {@link Durability}.
+ * <p>
+ * В режиме {@link Durability#ALWAYS} работает групповая фиксация: поток, первым пришедший в {@link #awaitDurable()},
+ * сбрасывает все, что записано к этому моменту, а потоки, пришедшие во время сброса, ждут его и при необходимости
+ * делают один общий следующий сброс.
+ */
+public class SegmentSyncer implements AutoCloseable {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "segment-syncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final ScheduledFuture<?> periodicSync;
+    /**
+     * Сколько байт записано в файл
+     */
+    private long appended;
+    /**
+     * Сколько байт гарантированно на диске
+     */
+    private long synced;
+    private boolean syncing = false;
+    private boolean closed = false;
+
+    /**
+     * @param channel       канал, через который пишется файл сегмента
+     * @param position      сколько байт уже записано в файл
+     * @param durability    режим сброса на диск
+     * @param fsyncInterval период сброса в миллисекундах для {@link Durability#INTERVAL}
+     */
+    public SegmentSyncer(FileChannel channel, long position, Durability durability, long fsyncInterval) {
+        this.channel = channel;
+        this.durability = durability;
+        this.appended = position;
+        this.synced = position;
+        this.periodicSync = durability != Durability.INTERVAL ? null :
+                TIMER.scheduleWithFixedDelay(this::syncInBackground, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Оповещает о дописанных в файл данных
+     *
+     * @param position сколько байт теперь записано в файл
+     */
+    public synchronized void onAppended(long position) {
+        appended = position;
+    }
+
+    /**
+     * В режиме {@link Durability#ALWAYS} дожидается, пока все записанное к моменту вызова окажется на диске.
+     * В остальных режимах сразу возвращается
+     *
+     * @throws IOException если сброс на диск не удался
+     */
+    public void awaitDurable() throws IOException {
+        if (durability != Durability.ALWAYS) {
+            return;
+        }
+        long position;
+        synchronized (this) {
+            position = appended;
+        }
+        syncUpTo(position);
+    }
+
+    /**
+     * Сбрасывает все записанное на диск и прекращает фоновый сброс. Вызывается до закрытия канала
+     *
+     * @throws IOException если сброс на диск не удался
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (periodicSync != null) {
+            periodicSync.cancel(false);
+        }
+        awaitSyncing();
+        closed = true;
+        if (durability != Durability.NONE && synced < appended) {
+            channel.force(false);
+        }
+        synced = appended;
+        notifyAll();
+    }
+
+    private void syncUpTo(long position) throws IOException {
+        long target;
+        synchronized (this) {
+            awaitSyncing();
+            if (synced >= position || closed) {
+                return;
+            }
+            syncing = true;
+            target = appended;
+        }
+        boolean success = false;
+        try {
+            channel.force(false);
+            success = true;
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                if (success) {
+                    synced = Math.max(synced, target);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void awaitSyncing() throws IOException {
+        try {
+            while (syncing) {
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for segment sync.", ex);
+        }
+    }
+
+    private void syncInBackground() {
+        try {
+            long position;
+            synchronized (this) {
+                position = appended;
+            }
+            syncUpTo(position);
+        } catch (IOException ex) {
+            BackgroundErrors.report("Error while syncing segment", ex);
+        }
+    }
+}
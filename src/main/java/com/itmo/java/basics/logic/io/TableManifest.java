@@ -0,0 +1,198 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.Segment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Список сегментов таблицы от старых к новым и счетчик для имени следующего сегмента. При старте таблица читает
+ * его вместо просмотра своей директории.
+ * <p>
+ * Формат: MAGIC, номер следующего сегмента (long), число сегментов (int), сегменты вида
+ * {@code <имя (UTF)><состояние (byte)><размер (long)><байт актуальных записей (long)>}, CRC32C всего предыдущего (int).
+ * Файл всегда переписывается целиком и подменяется атомарно
+ */
+public final class TableManifest {
+    public static final String FILE_NAME = "segments.manifest";
+    private static final int MAGIC = 0x4B56534D;
+
+    public enum State {
+        /**
+         * Текущий сегмент, в который дописываются записи
+         */
+        ACTIVE,
+        SEALED,
+        /**
+         * Сжатый сегмент, файлы которого еще не удалены. При старте файлы удаляются
+         */
+        OBSOLETE,
+        /**
+         * Сегмент, который еще пишется сжатием или сбросом. Записывается в манифест до создания файла, поэтому
+         * при старте его недописанные файлы удаляются по имени, без просмотра директории
+         */
+        PENDING
+    }
+
+    public static final class Entry {
+        private final String segmentName;
+        private final State state;
+        private final long size;
+        private final long liveBytes;
+
+        public Entry(String segmentName, State state, long size, long liveBytes) {
+            this.segmentName = segmentName;
+            this.state = state;
+            this.size = size;
+            this.liveBytes = liveBytes;
+        }
+
+        public static Entry of(Segment segment) {
+            long size = segment.getSize();
+            return new Entry(segment.getName(), segment.isReadOnly() ? State.SEALED : State.ACTIVE, size,
+                    size - segment.getDeadBytes());
+        }
+
+        public static Entry obsolete(String segmentName) {
+            return new Entry(segmentName, State.OBSOLETE, 0, 0);
+        }
+
+        public static Entry pending(String segmentName) {
+            return new Entry(segmentName, State.PENDING, 0, 0);
+        }
+
+        public String getSegmentName() {
+            return segmentName;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return байт актуальных записей на момент сохранения манифеста
+         */
+        public long getLiveBytes() {
+            return liveBytes;
+        }
+    }
+
+    private final long nextSegmentId;
+    private final List<Entry> entries;
+
+    public TableManifest(long nextSegmentId, List<Entry> entries) {
+        this.nextSegmentId = nextSegmentId;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public static Path manifestPath(Path tablePath) {
+        return tablePath.resolve(FILE_NAME);
+    }
+
+    public long getNextSegmentId() {
+        return nextSegmentId;
+    }
+
+    /**
+     * @return сегменты таблицы от старых к новым
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Сохраняет манифест: пишет и сбрасывает на диск временный файл, затем атомарно подменяет им старый
+     *
+     * @param tablePath путь до директории таблицы
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public void write(Path tablePath) throws IOException {
+        Path manifestPath = manifestPath(tablePath);
+        Path tmpPath = manifestPath.resolveSibling(FILE_NAME + ".tmp");
+        try (var channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var checked = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)),
+                    new CRC32C());
+            var output = new DataOutputStream(checked);
+            output.writeInt(MAGIC);
+            output.writeLong(nextSegmentId);
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                output.writeUTF(entry.getSegmentName());
+                output.writeByte(entry.getState().ordinal());
+                output.writeLong(entry.getSize());
+                output.writeLong(entry.getLiveBytes());
+            }
+            output.writeInt((int) checked.getChecksum().getValue());
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(tmpPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает манифест таблицы
+     *
+     * @param tablePath путь до директории таблицы
+     * @return манифест, или пустой Optional, если файла нет или он поврежден
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static Optional<TableManifest> read(Path tablePath) throws IOException {
+        CheckedInputStream checked;
+        try {
+            checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(manifestPath(tablePath))),
+                    new CRC32C());
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        }
+        try (var input = new DataInputStream(checked)) {
+            if (input.readInt() != MAGIC) {
+                return Optional.empty();
+            }
+            long nextSegmentId = input.readLong();
+            int count = input.readInt();
+            if (count < 0) {
+                return Optional.empty();
+            }
+            List<Entry> entries = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String segmentName = input.readUTF();
+                int state = input.readByte();
+                if (state < 0 || state >= State.values().length) {
+                    return Optional.empty();
+                }
+                entries.add(new Entry(segmentName, State.values()[state], input.readLong(), input.readLong()));
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (input.readInt() != expected || input.read() != -1) {
+                return Optional.empty();
+            }
+            return Optional.of(new TableManifest(nextSegmentId, entries));
+        } catch (EOFException | UTFDataFormatException ex) {
+            return Optional.empty();
+        }
+    }
+}
@@ -2,17 +2,32 @@ package com.itmo.java.client.client;
 
 import com.itmo.java.client.exception.DatabaseExecutionException;
 
+import java.util.List;
+
 /**
  * Клиент для доступа к БД
  */
 public interface KvsClient {
     String createDatabase() throws DatabaseExecutionException;
 
-    String createTable(String tableName) throws DatabaseExecutionException;
+    String createTable(String tableName, String... tableOptions) throws DatabaseExecutionException;
 
     String get(String tableName, String key) throws DatabaseExecutionException;
 
     String set(String tableName, String key, String value) throws DatabaseExecutionException;
 
+    /**
+     * Записывает значение, которое удаляется через ttl миллисекунд
+     */
+    String set(String tableName, String key, String value, long ttl) throws DatabaseExecutionException;
+
     String delete(String tableName, String key) throws DatabaseExecutionException;
+
+    /**
+     * Читает одну страницу ключей таблицы по возрастанию
+     *
+     * @param scanOptions опции обхода вида "имя=значение": start, end или prefix, cursor, limit
+     * @return курсор следующей страницы (null, если страниц больше нет), затем ключи и значения вперемешку
+     */
+    List<String> scan(String tableName, String... scanOptions) throws DatabaseExecutionException;
 }
@@ -4,9 +4,12 @@ import com.itmo.java.client.command.*;
 import com.itmo.java.client.connection.KvsConnection;
 import com.itmo.java.client.exception.ConnectionException;
 import com.itmo.java.client.exception.DatabaseExecutionException;
+import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespObject;
 
+import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class SimpleKvsClient implements KvsClient {
 
@@ -41,8 +44,8 @@ public class SimpleKvsClient implements KvsClient {
     }
 
     @Override
-    public String createTable(String tableName) throws DatabaseExecutionException {
-        var cmd = new CreateTableKvsCommand(databaseName, tableName);
+    public String createTable(String tableName, String... tableOptions) throws DatabaseExecutionException {
+        var cmd = new CreateTableKvsCommand(databaseName, tableName, tableOptions);
         RespObject res;
         try {
             res = connectionSupplier.get().send(cmd.getCommandId(), cmd.serialize());
@@ -74,7 +77,12 @@ public class SimpleKvsClient implements KvsClient {
 
     @Override
     public String set(String tableName, String key, String value) throws DatabaseExecutionException {
-        var cmd = new SetKvsCommand(databaseName, tableName, key, value);
+        return set(tableName, key, value, 0);
+    }
+
+    @Override
+    public String set(String tableName, String key, String value, long ttl) throws DatabaseExecutionException {
+        var cmd = new SetKvsCommand(databaseName, tableName, key, value, ttl);
         RespObject res;
         try {
             res = connectionSupplier.get().send(cmd.getCommandId(), cmd.serialize());
@@ -103,4 +111,23 @@ public class SimpleKvsClient implements KvsClient {
         }
         return res.asString();
     }
+
+    @Override
+    public List<String> scan(String tableName, String... scanOptions) throws DatabaseExecutionException {
+        var cmd = new ScanKvsCommand(databaseName, tableName, scanOptions);
+        RespObject res;
+        try {
+            res = connectionSupplier.get().send(cmd.getCommandId(), cmd.serialize());
+        }
+        catch (ConnectionException ex) {
+            throw new DatabaseExecutionException ("Error while creating a cmd to scan a table in client.", ex);
+        }
+        if (res.isError()) {
+            throw new DatabaseExecutionException("Executed scan cmd was failed. " + res.asString());
+        }
+        if (!(res instanceof RespArray)) {
+            throw new DatabaseExecutionException("Executed scan cmd returned not an array. " + res.asString());
+        }
+        return ((RespArray) res).getObjects().stream().map(RespObject::asString).collect(Collectors.toList());
+    }
 }
@@ -3,6 +3,10 @@ package com.itmo.java.client.command;
 import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespBulkString;
 import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Команда для создания таблицы
@@ -12,10 +16,15 @@ public class CreateTableKvsCommand implements KvsCommand {
     private final int id;
     private final String databaseName;
     private final String tableName;
+    private final String[] tableOptions;
 
-    public CreateTableKvsCommand(String databaseName, String tableName) {
+    /**
+     * @param tableOptions опции таблицы вида "имя=значение", например "segmentSize=1048576"
+     */
+    public CreateTableKvsCommand(String databaseName, String tableName, String... tableOptions) {
         this.databaseName = databaseName;
         this.tableName = tableName;
+        this.tableOptions = tableOptions;
         id = idGen.getAndIncrement();
     }
 
@@ -26,12 +35,16 @@ public class CreateTableKvsCommand implements KvsCommand {
      */
     @Override
     public RespArray serialize() {
-        return new RespArray(
+        List<RespObject> objects = new ArrayList<>(List.of(
                 new RespCommandId(id),
                 new RespBulkString(COMMAND_NAME.getBytes()),
                 new RespBulkString(databaseName.getBytes()),
                 new RespBulkString(tableName.getBytes())
-        );
+        ));
+        for (String option : tableOptions) {
+            objects.add(new RespBulkString(option.getBytes()));
+        }
+        return new RespArray(objects.toArray(new RespObject[0]));
     }
 
     @Override
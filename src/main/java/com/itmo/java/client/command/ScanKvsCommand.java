@@ -0,0 +1,55 @@
+package com.itmo.java.client.command;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Команда для постраничного обхода ключей таблицы
+ */
+public class ScanKvsCommand implements KvsCommand {
+    private static final String COMMAND_NAME = "SCAN";
+    private final int id;
+    private final String databaseName;
+    private final String tableName;
+    private final String[] scanOptions;
+
+    /**
+     * @param scanOptions опции обхода вида "имя=значение", например "prefix=user:" или "cursor=user:42"
+     */
+    public ScanKvsCommand(String databaseName, String tableName, String... scanOptions) {
+        this.databaseName = databaseName;
+        this.tableName = tableName;
+        this.scanOptions = scanOptions;
+        id = idGen.getAndIncrement();
+    }
+
+    /**
+     * Возвращает RESP объект. {@link RespArray} с {@link RespCommandId}, именем команды, аргументами в виде {@link RespBulkString}
+     *
+     * @return объект
+     */
+    @Override
+    public RespArray serialize() {
+        List<RespObject> objects = new ArrayList<>(List.of(
+                new RespCommandId(id),
+                new RespBulkString(COMMAND_NAME.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(databaseName.getBytes(StandardCharsets.UTF_8)),
+                new RespBulkString(tableName.getBytes(StandardCharsets.UTF_8))
+        ));
+        for (String option : scanOptions) {
+            objects.add(new RespBulkString(option.getBytes(StandardCharsets.UTF_8)));
+        }
+        return new RespArray(objects.toArray(new RespObject[0]));
+    }
+
+    @Override
+    public int getCommandId() {
+        return id;
+    }
+}
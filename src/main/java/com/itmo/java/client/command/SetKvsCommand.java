@@ -3,6 +3,10 @@ package com.itmo.java.client.command;
 import com.itmo.java.protocol.model.RespArray;
 import com.itmo.java.protocol.model.RespBulkString;
 import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class SetKvsCommand implements KvsCommand {
 
@@ -12,12 +16,21 @@ public class SetKvsCommand implements KvsCommand {
     private final String tableName;
     private final String key;
     private final String value;
+    private final long ttl;
 
     public SetKvsCommand(String databaseName, String tableName, String key, String value) {
+        this(databaseName, tableName, key, value, 0);
+    }
+
+    /**
+     * @param ttl время жизни значения в миллисекундах, 0 - бессрочно
+     */
+    public SetKvsCommand(String databaseName, String tableName, String key, String value, long ttl) {
         this.databaseName = databaseName;
         this.tableName = tableName;
         this.key = key;
         this.value = value;
+        this.ttl = ttl;
         id = idGen.getAndIncrement();
     }
 
@@ -28,15 +41,18 @@ public class SetKvsCommand implements KvsCommand {
      */
     @Override
     public RespArray serialize() {
-        return new RespArray(
+        List<RespObject> objects = new ArrayList<>(List.of(
                 new RespCommandId(id),
                 new RespBulkString(COMMAND_NAME.getBytes()),
                 new RespBulkString(databaseName.getBytes()),
                 new RespBulkString(tableName.getBytes()),
                 new RespBulkString(key.getBytes()),
                 new RespBulkString(value.getBytes())
-        );
-
+        ));
+        if (ttl > 0) {
+            objects.add(new RespBulkString(String.valueOf(ttl).getBytes()));
+        }
+        return new RespArray(objects.toArray(new RespObject[0]));
     }
 
     @Override
@@ -5,6 +5,7 @@ import com.itmo.java.protocol.model.RespBulkString;
 import com.itmo.java.protocol.model.RespCommandId;
 import com.itmo.java.protocol.model.RespError;
 import com.itmo.java.protocol.model.RespObject;
+import com.itmo.java.protocol.model.RespStreamedBulkString;
 
 import java.io.*;
 import java.nio.ByteBuffer;
@@ -44,7 +45,7 @@ public class RespReader implements AutoCloseable {
             case RespError.CODE:
                 return readError();
             case RespBulkString.CODE:
-                return readBulkString();
+                return readBulk();
             case RespArray.CODE:
                 return readArray();
             case RespCommandId.CODE:
@@ -72,15 +73,41 @@ public class RespReader implements AutoCloseable {
      * @throws IOException  при ошибке чтения
      */
     public RespBulkString readBulkString() throws IOException {
+        return readBulkString(Integer.parseInt(readLine()));
+    }
+
+    /**
+     * Читает bulk строку. Строки больше {@link RespStreamedBulkString#SPOOL_THRESHOLD} не собираются в массив,
+     * а частями переписываются во временный файл
+     */
+    private RespObject readBulk() throws IOException {
         int size = Integer.parseInt(readLine());
+        if (size <= RespStreamedBulkString.SPOOL_THRESHOLD) {
+            return readBulkString(size);
+        }
+        RespStreamedBulkString string = RespStreamedBulkString.spool(reader, size);
+        try {
+            readBulkStringEnd();
+        } catch (IOException ex) {
+            string.close();
+            throw ex;
+        }
+        return string;
+    }
+
+    private RespBulkString readBulkString(int size) throws IOException {
         if (size == -1)
             return RespBulkString.NULL_STRING;
         byte[] data = reader.readNBytes(size);
+        readBulkStringEnd();
+        return new RespBulkString(data);
+    }
+
+    private void readBulkStringEnd() throws IOException {
         String end = readLine();
         if (!end.isEmpty()) {
             throw new IOException("Error while reading readBulkString: string is not of a given size.");
         }
-        return new RespBulkString(data);
     }
 
     /**
@@ -4,14 +4,25 @@ import com.itmo.java.protocol.model.RespObject;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 public class RespWriter implements AutoCloseable{
 
 
     private final OutputStream os;
+    private final WritableByteChannel channel;
 
     public RespWriter(OutputStream os) {
+        this(os, null);
+    }
+
+    /**
+     * @param channel канал, в который пишет {@code os}. Через него большие строки передаются без копирования
+     *                в память (см {@link RespObject#write(OutputStream, WritableByteChannel)}), {@code null} - если канала нет
+     */
+    public RespWriter(OutputStream os, WritableByteChannel channel) {
         this.os = os;
+        this.channel = channel;
     }
 
     /**
@@ -19,7 +30,11 @@ public class RespWriter implements AutoCloseable{
      */
     public void write(RespObject object) throws IOException {
         try {
-            object.write(os);
+            if (channel != null) {
+                object.write(os, channel);
+            } else {
+                object.write(os);
+            }
             os.flush();
         } catch (Exception ex) {
             throw new IOException("Error while writing RespObject.", ex);
@@ -34,12 +34,13 @@ public class RespArray implements RespObject {
      * Строковое представление
      *
      * @return результаты метода {@link RespObject#asString()} для всех хранимых объектов, разделенные пробелом
+     * (null для {@link RespBulkString#NULL_STRING})
      */
     @Override
     public String asString() {
         int capacity = 0;
         for (RespObject obj : objects) {
-            capacity += obj.asString().length() + 1;
+            capacity += String.valueOf(obj.asString()).length() + 1;
         }
         var strBuilder = new StringBuilder(capacity);
         for (RespObject obj : objects) {
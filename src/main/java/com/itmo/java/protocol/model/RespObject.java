@@ -2,6 +2,7 @@ package com.itmo.java.protocol.model;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -29,4 +30,15 @@ public interface RespObject {
      * Сериализует данный объект в RESP и записывает байты в переданный OutputStream.
      */
     void write(OutputStream os) throws IOException;
+
+    /**
+     * Сериализует объект так же, как {@link #write(OutputStream)}, но может передать часть байт прямо в канал,
+     * на котором построен поток. По умолчанию канал не используется
+     *
+     * @param os      поток
+     * @param channel канал, в который пишет поток
+     */
+    default void write(OutputStream os, WritableByteChannel channel) throws IOException {
+        write(os);
+    }
 }
\ No newline at end of file
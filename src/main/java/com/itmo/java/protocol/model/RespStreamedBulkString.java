@@ -0,0 +1,193 @@
+package com.itmo.java.protocol.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Bulk строка, содержимое которой не хранится в памяти целиком, а передается частями по {@link #CHUNK_SIZE} байт.
+ * Содержимое можно прочитать один раз: после {@link #write(OutputStream)} или {@link #asString()} строка закрывается
+ */
+public class RespStreamedBulkString implements RespObject, Closeable {
+    /**
+     * Размер части, которой передается содержимое
+     */
+    public static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * Bulk строки больше этого размера {@link com.itmo.java.protocol.RespReader} не собирает в массив,
+     * а переписывает во временный файл (см {@link #spool(InputStream, int)})
+     */
+    public static final int SPOOL_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Записывает содержимое строки в поток
+     */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream os) throws IOException;
+
+        /**
+         * Записывает содержимое прямо в канал. По умолчанию - через поток поверх канала
+         */
+        default void writeTo(WritableByteChannel channel) throws IOException {
+            writeTo(Channels.newOutputStream(channel));
+        }
+    }
+
+    private final long size;
+    private final Content content;
+    private final Closeable resource;
+    private boolean closed = false;
+
+    /**
+     * @param size     размер содержимого в байтах
+     * @param content  содержимое
+     * @param resource что закрыть, когда содержимое прочитано
+     */
+    public RespStreamedBulkString(long size, Content content, Closeable resource) {
+        this.size = size;
+        this.content = content;
+        this.resource = resource;
+    }
+
+    /**
+     * Переписывает {@code size} байт из потока во временный файл частями по {@link #CHUNK_SIZE} байт.
+     * Файл удаляется сразу после создания, место на диске освобождается при закрытии строки
+     *
+     * @throws EOFException если поток закончился раньше
+     * @throws IOException  при ошибке чтения или записи
+     */
+    public static RespStreamedBulkString spool(InputStream is, int size) throws IOException {
+        Path path = Files.createTempFile("kvs-bulk-", ".tmp");
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            try {
+                Files.delete(path);
+            } catch (IOException ex) {
+                path.toFile().deleteOnExit();
+            }
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int remaining = size;
+            while (remaining > 0) {
+                int read = is.read(chunk, 0, Math.min(chunk.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Error while spooling bulk string: stream ended " + remaining
+                            + " bytes early.");
+                }
+                file.write(chunk, 0, read);
+                remaining -= read;
+            }
+        } catch (IOException ex) {
+            file.close();
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+        return new RespStreamedBulkString(size, os -> copy(file, size, os), () -> {
+            file.close();
+            Files.deleteIfExists(path);
+        });
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Ошибка ли это? Ответ - нет
+     *
+     * @return false
+     */
+    @Override
+    public boolean isError() {
+        return false;
+    }
+
+    /**
+     * Собирает содержимое в одну строку. Нужно только там, где значение все равно нужно целиком
+     */
+    @Override
+    public String asString() {
+        var os = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE - 8));
+        try {
+            writeContent(os);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error while reading streamed bulk string.", ex);
+        }
+        return os.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        try {
+            writeHeader(os);
+            writeContent(os);
+            os.write(CRLF);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Код и размер строки пишутся в поток, а содержимое - прямо в канал (см {@link Content#writeTo(WritableByteChannel)})
+     */
+    @Override
+    public void write(OutputStream os, WritableByteChannel channel) throws IOException {
+        try {
+            writeHeader(os);
+            os.flush();
+            content.writeTo(channel);
+            os.write(CRLF);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Записывает только содержимое строки, без кода и размера, и закрывает строку
+     */
+    public void writeContent(OutputStream os) throws IOException {
+        try {
+            content.writeTo(os);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            resource.close();
+        }
+    }
+
+    private void writeHeader(OutputStream os) throws IOException {
+        os.write(RespBulkString.CODE);
+        os.write(String.valueOf(size).getBytes());
+        os.write(CRLF);
+    }
+
+    private static void copy(RandomAccessFile file, int size, OutputStream os) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        file.seek(0);
+        int remaining = size;
+        while (remaining > 0) {
+            int read = file.read(chunk, 0, Math.min(chunk.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Error while reading spooled bulk string: file is truncated.");
+            }
+            os.write(chunk, 0, read);
+            remaining -= read;
+        }
+    }
+}
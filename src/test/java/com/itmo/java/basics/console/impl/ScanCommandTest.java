@@ -0,0 +1,174 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.impl.DatabaseImpl;
+import com.itmo.java.client.command.ScanKvsCommand;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScanCommandTest {
+    private static final List<String> KEYS = new ArrayList<>();
+
+    static {
+        for (int i = 0; i < 250; i++) {
+            KEYS.add("user:" + i);
+        }
+        KEYS.addAll(List.of("a", "b1", "b2", "c", "d", "user", "user;", "usera", "ключ1", "ключ2", "ключа"));
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutionEnvironmentImpl env;
+
+    @Before
+    public void setUp() throws Exception {
+        var config = DatabaseConfig.builder().workingPath(folder.getRoot().toString()).build();
+        env = new ExecutionEnvironmentImpl(config);
+        Database database = DatabaseImpl.create("db", Path.of(config.getWorkingPath()), config);
+        database.createTableIfNotExists("t", TableConfig.fromOptions(List.of("ordered=true"), config));
+        for (String key : KEYS) {
+            database.write("t", key, utf8("v" + key));
+        }
+        env.addDatabase(database);
+    }
+
+    /**
+     * Страницы с курсором предыдущей вместе дают все ключи с префиксом по возрастанию, и только их
+     */
+    @Test
+    public void prefixIsScannedInPages() {
+        assertEquals(matching(key -> key.startsWith("user:")), scanAll("prefix=user:", "limit=30"));
+        assertEquals(List.of("ключ1", "ключ2", "ключа"), scanAll("prefix=ключ"));
+    }
+
+    @Test
+    public void rangeIncludesStartAndExcludesEnd() {
+        assertEquals(List.of("b1", "b2", "c"), scanAll("start=b1", "end=d", "limit=1"));
+        assertEquals(matching(key -> key.compareTo("user;") >= 0), scanAll("start=user;"));
+        assertEquals(matching(key -> key.compareTo("b2") < 0), scanAll("end=b2"));
+    }
+
+    /**
+     * Курсор левее начала диапазона не расширяет его, курсор внутри продолжает обход после себя
+     */
+    @Test
+    public void cursorContinuesAfterItself() {
+        assertEquals(List.of("b2", "c"), keys(execute("start=b1", "end=d", "cursor=b1")));
+        assertEquals(List.of("b1", "b2", "c"), keys(execute("start=b1", "end=d", "cursor=a")));
+        assertEquals(List.of("user:99", "user;"), keys(execute("start=user:98", "end=usera", "cursor=user:98")));
+    }
+
+    @Test
+    public void defaultLimitIsUsed() {
+        RespArray page = (RespArray) execute().serialize();
+        assertEquals(1 + 2 * ScanCommand.DEFAULT_LIMIT, page.getObjects().size());
+        assertNotNull(page.getObjects().get(0).asString());
+        assertNull(((RespArray) execute("start=ключ1").serialize()).getObjects().get(0).asString());
+    }
+
+    @Test
+    public void invalidOptionsAreRejected() {
+        for (String[] options : new String[][]{{"limit=0"}, {"limit=-1"}, {"limit=abc"},
+                {"limit=" + (ScanCommand.MAX_LIMIT + 1)}, {"count=1"}, {"prefix"}, {"=user"},
+                {"prefix=user:", "start=a"}, {"prefix=user:", "end=z"}}) {
+            DatabaseCommandResult result = execute(options);
+            assertFalse(String.join(" ", options), result.isSuccess());
+            assertTrue(result.serialize().isError());
+        }
+        assertTrue(execute("limit=" + ScanCommand.MAX_LIMIT).isSuccess());
+    }
+
+    @Test
+    public void missingDatabaseOrTableIsReported() {
+        assertFalse(new ScanCommand(env, new ScanKvsCommand("missing", "t").serialize().getObjects())
+                .execute().isSuccess());
+        assertFalse(new ScanCommand(env, new ScanKvsCommand("db", "missing").serialize().getObjects())
+                .execute().isSuccess());
+        try {
+            new ScanCommand(env, new ScanKvsCommand("db", "t").serialize().getObjects().subList(0, 3));
+            fail("scan without table must not be created");
+        } catch (IllegalArgumentException ex) {
+            // ожидаемо
+        }
+    }
+
+    private List<String> scanAll(String... options) {
+        List<String> keys = new ArrayList<>();
+        String cursor = null;
+        do {
+            List<String> args = new ArrayList<>(List.of(options));
+            if (cursor != null) {
+                args.add(ScanCommand.CURSOR + "=" + cursor);
+            }
+            RespArray page = (RespArray) execute(args.toArray(new String[0])).serialize();
+            keys.addAll(keys(page));
+            cursor = page.getObjects().get(0).asString();
+        } while (cursor != null);
+        return keys;
+    }
+
+    private DatabaseCommandResult execute(String... options) {
+        DatabaseCommandResult result = new ScanCommand(env, new ScanKvsCommand("db", "t", options).serialize().getObjects())
+                .execute();
+        if (result.isSuccess()) {
+            assertEquals(ScanDatabaseCommandResult.class, result.getClass());
+        }
+        return result;
+    }
+
+    private static List<String> keys(DatabaseCommandResult result) {
+        assertTrue(result.getPayLoad(), result.isSuccess());
+        return keys((RespArray) result.serialize());
+    }
+
+    /**
+     * Ключи страницы, заодно проверяет, что каждому ключу досталось его значение
+     */
+    private static List<String> keys(RespArray page) {
+        List<RespObject> objects = page.getObjects();
+        List<String> keys = new ArrayList<>();
+        for (int i = 1; i < objects.size(); i += 2) {
+            String key = objects.get(i).asString();
+            assertEquals("v" + key, objects.get(i + 1).asString());
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Ключи в порядке сервера: он сравнивает ключи по их байтам в UTF-8
+     */
+    private static List<String> matching(Predicate<String> filter) {
+        var sorted = new TreeSet<String>((a, b) -> Arrays.compareUnsigned(utf8(a), utf8(b)));
+        sorted.addAll(KEYS);
+        return sorted.stream().filter(filter).collect(Collectors.toList());
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+package com.itmo.java.basics.console.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.console.DatabaseCommandResult;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.impl.DatabaseImpl;
+import com.itmo.java.client.command.GetKvsCommand;
+import com.itmo.java.protocol.RespReader;
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+import com.itmo.java.protocol.model.RespStreamedBulkString;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SetKeyCommandTest {
+    /**
+     * Значения больше кэша таблицы читаются из сегмента
+     */
+    private static final long CACHE_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutionEnvironmentImpl env;
+
+    @Before
+    public void setUp() throws Exception {
+        var config = DatabaseConfig.builder()
+                .workingPath(folder.getRoot().toString())
+                .cacheBytes(CACHE_BYTES)
+                .build();
+        env = new ExecutionEnvironmentImpl(config);
+        Database database = DatabaseImpl.create("db", Path.of(config.getWorkingPath()), config);
+        database.createTableIfNotExists("t", TableConfig.fromOptions(List.of("segmentSize=1048576"), config));
+        env.addDatabase(database);
+    }
+
+    /**
+     * Значение больше порога чтения в память проходит сокет - временный файл - сегмент - сокет частями
+     * и возвращается байт в байт, в том числе как предыдущее значение следующего SET
+     */
+    @Test
+    public void largeValueIsStreamedThroughSetAndGet() throws Exception {
+        byte[] first = random(RespStreamedBulkString.SPOOL_THRESHOLD * 3);
+        byte[] second = random(RespStreamedBulkString.SPOOL_THRESHOLD + 1);
+
+        assertNull(bytes(set("k", first)));
+        assertArrayEquals(first, bytes(get("k")));
+        assertArrayEquals(first, bytes(set("k", second)));
+        assertArrayEquals(second, bytes(get("k")));
+    }
+
+    /**
+     * Значение меньше порога приходит обычной bulk строкой, а отдается из файла сегмента, так как не влезает в кэш
+     */
+    @Test
+    public void mediumValueIsStreamedFromSegment() throws Exception {
+        byte[] value = utf8("значение".repeat(20_000));
+        set("k", value);
+        DatabaseCommandResult result = new GetKeyCommand(env, new GetKvsCommand("db", "t", "k").serialize().getObjects())
+                .execute();
+        assertTrue(result instanceof StreamedDatabaseCommandResult);
+        assertArrayEquals(value, bytes(result.serialize()));
+    }
+
+    private RespObject set(String key, byte[] value) throws IOException {
+        RespArray command = (RespArray) transfer(new RespArray(new RespCommandId(1),
+                new RespBulkString(utf8("SET_KEY")), new RespBulkString(utf8("db")), new RespBulkString(utf8("t")),
+                new RespBulkString(utf8(key)), new RespBulkString(value)));
+        DatabaseCommandResult result = new SetKeyCommand(env, command.getObjects()).execute();
+        assertTrue(result.isSuccess());
+        return result.serialize();
+    }
+
+    private RespObject get(String key) {
+        DatabaseCommandResult result = new GetKeyCommand(env, new GetKvsCommand("db", "t", key).serialize().getObjects())
+                .execute();
+        assertTrue(result.isSuccess());
+        return result.serialize();
+    }
+
+    /**
+     * Пишет объект в поток и читает его обратно, как сервер или клиент на другой стороне сокета
+     */
+    private static RespObject transfer(RespObject object) throws IOException {
+        var out = new ByteArrayOutputStream();
+        object.write(out);
+        return new RespReader(new ByteArrayInputStream(out.toByteArray())).readObject();
+    }
+
+    /**
+     * Передает значение из ответа как по сокету и достает его байты
+     */
+    private static byte[] bytes(RespObject value) throws IOException {
+        RespObject received = transfer(value);
+        var out = new ByteArrayOutputStream();
+        if (received instanceof RespStreamedBulkString) {
+            ((RespStreamedBulkString) received).writeContent(out);
+            return out.toByteArray();
+        }
+        if (received.asString() == null) {
+            return null;
+        }
+        received.write(out);
+        byte[] encoded = out.toByteArray();
+        int header = 0;
+        while (encoded[header++] != '\n') {
+        }
+        return Arrays.copyOfRange(encoded, header, encoded.length - 2);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.KvsIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск ключа в индексе таблицы: {@link OpenAddressingTableIndex} (с объектом результата и без него,
+ * см {@link TableIndex#searchForKey(String, IndexLookup)}) против {@link MapBasedKvsIndex}.
+ * Ключи для поиска - новые строки, как после разбора команды, поэтому их хеш не закэширован.
+ * <p>
+ * {@link #main(String[])} печатает, сколько кучи занимает индекс каждого вида на заданном числе ключей.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=OpenAddressingIndexBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class OpenAddressingIndexBenchmark {
+    private static final int LOOKUPS_MASK = (1 << 16) - 1;
+
+    @Param({"1000000"})
+    public int keys;
+
+    private KvsIndex<String, TableIndexEntry> openAddressing;
+    private KvsIndex<String, TableIndexEntry> hashMap;
+    private char[][] lookups;
+    private final IndexLookup lookup = new IndexLookup();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        openAddressing = fill(new OpenAddressingTableIndex(), keys);
+        hashMap = fill(new MapBasedKvsIndex<>(), keys);
+        Random random = new Random(1);
+        lookups = new char[LOOKUPS_MASK + 1][];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = key(random.nextInt(keys)).toCharArray();
+        }
+    }
+
+    @Benchmark
+    public boolean openAddressingInPlace() {
+        return ((OpenAddressingTableIndex) openAddressing).searchForKey(nextKey(), lookup) && lookup.getSize() > 0;
+    }
+
+    @Benchmark
+    public Optional<TableIndexEntry> openAddressing() {
+        return openAddressing.searchForKey(nextKey());
+    }
+
+    @Benchmark
+    public Optional<TableIndexEntry> hashMap() {
+        return hashMap.searchForKey(nextKey());
+    }
+
+    private String nextKey() {
+        return new String(lookups[next++ & LOOKUPS_MASK]);
+    }
+
+    /**
+     * Печатает занятую индексом кучу после сборки мусора. Запускать с {@code -Xmx} больше ожидаемого размера:
+     * {@code java -Xmx4g -cp ... com.itmo.java.basics.index.impl.OpenAddressingIndexBenchmark 10000000}
+     */
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        for (String type : new String[]{"open-addressing", "hash-map"}) {
+            long before = usedHeap();
+            KvsIndex<String, TableIndexEntry> index = fill(type.equals("hash-map")
+                    ? new MapBasedKvsIndex<>() : new OpenAddressingTableIndex(), keys);
+            long used = usedHeap() - before;
+            System.out.printf("%s: %d keys, %d MB, %d bytes per key%n", type, keys, used >> 20, used / keys);
+            if (index.searchForKey(key(keys - 1)).isEmpty()) {
+                throw new IllegalStateException("Index lost a key");
+            }
+        }
+    }
+
+    private static KvsIndex<String, TableIndexEntry> fill(KvsIndex<String, TableIndexEntry> index, int keys) {
+        for (int i = 0; i < keys; i++) {
+            index.onIndexedEntityUpdated(key(i), new TableIndexEntry(null, i * 64L, 64, i * 64L + 20, false, 0));
+        }
+        return index;
+    }
+
+    private static String key(int i) {
+        return "user:" + i;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,185 @@
+package com.itmo.java.basics.index.impl;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.logic.io.DatabaseOutputStream;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OpenAddressingIndexTest {
+    @Test
+    public void collidingKeysAreProbed() {
+        var index = new OpenAddressingSegmentIndex();
+        List<String> keys = collidingKeys(6);
+        for (int i = 0; i < keys.size(); i++) {
+            index.onIndexedEntityUpdated(keys.get(i), info(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            assertFound(index, keys.get(i), i);
+        }
+        assertFalse(index.searchForKey("AaAaAaAaAaAb").isPresent());
+        index.onIndexedEntityUpdated(keys.get(5), info(100));
+        assertFound(index, keys.get(5), 100);
+    }
+
+    @Test
+    public void keysAreComparedAsUtf8() {
+        var index = new OpenAddressingSegmentIndex();
+        String[] keys = {"key", "ключ", "été", "中文", "smile😀", "lone\uD800", "", "x"};
+        for (int i = 0; i < keys.length; i++) {
+            index.onIndexedEntityUpdated(keys[i], info(i));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertFound(index, keys[i], i);
+        }
+        for (String missing : new String[]{"ключи", "клю", "smile😁", "ét", "xx"}) {
+            assertFalse(missing, index.searchForKey(missing).isPresent());
+        }
+        Map<String, Long> visited = new HashMap<>();
+        index.forEach((key, info) -> visited.put(key, info.getOffset()));
+        assertEquals(keys.length, visited.size());
+        assertEquals(Long.valueOf(4), visited.get("smile😀"));
+    }
+
+    /**
+     * Удаление сдвигает назад ячейки той же цепочки пробирования: остальные ключи должны находиться
+     */
+    @Test
+    public void removalKeepsProbeChains() {
+        var index = new OpenAddressingSegmentIndex();
+        List<String> keys = collidingKeys(5);
+        for (int i = 0; i < keys.size(); i++) {
+            index.onIndexedEntityUpdated(keys.get(i), info(i));
+        }
+        for (int i = 0; i < keys.size(); i += 3) {
+            index.onIndexedEntityRemoved(keys.get(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (i % 3 == 0) {
+                assertFalse(index.searchForKey(keys.get(i)).isPresent());
+            } else {
+                assertFound(index, keys.get(i), i);
+            }
+        }
+        index.onIndexedEntityUpdated(keys.get(0), info(1000));
+        assertFound(index, keys.get(0), 1000);
+    }
+
+    @Test
+    public void randomUpdatesAndRemovalsMatchMap() {
+        var index = new OpenAddressingSegmentIndex();
+        Map<String, Integer> expected = new HashMap<>();
+        List<String> keys = new ArrayList<>(collidingKeys(7));
+        for (int i = 0; i < 3000; i++) {
+            keys.add("key" + i);
+        }
+        Random random = new Random(1);
+        for (int op = 0; op < 100_000; op++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                index.onIndexedEntityRemoved(key);
+                expected.remove(key);
+            } else {
+                index.onIndexedEntityUpdated(key, info(op));
+                expected.put(key, op);
+            }
+        }
+        for (String key : keys) {
+            Optional<SegmentOffsetInfo> found = index.searchForKey(key);
+            assertEquals(key, expected.containsKey(key), found.isPresent());
+            found.ifPresent(info -> assertEquals(key, (long) expected.get(key), info.getOffset()));
+        }
+        Map<String, Integer> visited = new HashMap<>();
+        index.forEach((key, info) -> visited.put(key, (int) info.getOffset()));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void pagesAreCompactedAfterRemovals() {
+        var index = new OpenAddressingSegmentIndex();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(i + "_" + "k".repeat(2000));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            index.onIndexedEntityUpdated(keys.get(i), info(i));
+        }
+        int pages = index.getPageCount();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i % 4 != 0) {
+                index.onIndexedEntityRemoved(keys.get(i));
+            }
+        }
+        assertTrue(index.getPageCount() < pages);
+        for (int i = 0; i < keys.size(); i++) {
+            if (i % 4 == 0) {
+                assertFound(index, keys.get(i), i);
+            } else {
+                assertFalse(index.searchForKey(keys.get(i)).isPresent());
+            }
+        }
+        int[] visited = {0};
+        index.forEach((key, info) -> {
+            assertEquals(keys.get((int) info.getOffset()), key);
+            visited[0]++;
+        });
+        assertEquals(keys.size() / 4, visited[0]);
+    }
+
+    @Test
+    public void lookupIsFilledInPlace() {
+        var index = new OpenAddressingTableIndex();
+        index.onIndexedEntityUpdated("key", new TableIndexEntry(null, 40, 20, 51, false, 7));
+        index.onIndexedEntityUpdated("removed", new TableIndexEntry(null, 60, 11, 75, true, 0));
+        IndexLookup lookup = new IndexLookup();
+        assertTrue(index.searchForKey("key", lookup));
+        assertEquals(40, lookup.getOffset());
+        assertEquals(20, lookup.getSize());
+        assertEquals(DatabaseOutputStream.valueOffset(40, 3), lookup.getValueOffset());
+        assertFalse(lookup.isRemoved());
+        assertEquals(7, lookup.getExpiresAt());
+        assertTrue(index.searchForKey("removed", lookup));
+        assertTrue(lookup.isRemoved());
+        assertEquals(11, lookup.getSize());
+        assertFalse(index.searchForKey("missing", lookup));
+    }
+
+    /**
+     * Строки из "Aa" и "BB" с одинаковым {@link String#hashCode()}: все попадают в одну ячейку
+     */
+    private static List<String> collidingKeys(int parts) {
+        List<String> keys = new ArrayList<>();
+        keys.add("");
+        for (int part = 0; part < parts; part++) {
+            List<String> longer = new ArrayList<>();
+            for (String key : keys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            keys = longer;
+        }
+        return keys;
+    }
+
+    private static SegmentOffsetInfo info(int offset) {
+        return new SegmentOffsetInfoImpl(offset, 10, offset + 5, false, 0);
+    }
+
+    private static void assertFound(OpenAddressingSegmentIndex index, String key, long offset) {
+        Optional<SegmentOffsetInfo> found = index.searchForKey(key);
+        assertTrue(key, found.isPresent());
+        assertEquals(key, offset, found.get().getOffset());
+        assertEquals(key, DatabaseOutputStream.valueOffset(offset, key.getBytes(StandardCharsets.UTF_8).length),
+                found.get().getValueOffset());
+    }
+}
@@ -0,0 +1,355 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.exceptions.DatabaseException;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.StreamedValue;
+import com.itmo.java.basics.logic.impl.DatabaseImpl;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import com.itmo.java.basics.logic.io.TableManifest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DatabaseServerInitializerTest {
+    private static final int KEYS = 5000;
+    private static final long AWAIT_MILLIS = 30_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path workingPath;
+    private Path tablePath;
+
+    @Before
+    public void setUp() {
+        workingPath = folder.getRoot().toPath();
+        tablePath = workingPath.resolve("db").resolve("t");
+    }
+
+    @Test
+    public void tableIsRestoredFromHints() throws Exception {
+        fill(create(config(0), "segmentSize=8192"));
+        awaitHints();
+        assertTrue(sealedSegments().size() > 10);
+        check(restart(config(0)));
+    }
+
+    @Test
+    public void tableIsRestoredWithoutHints() throws Exception {
+        fill(create(config(0), "segmentSize=8192"));
+        awaitHints();
+        List<Path> sealed = sealedSegments();
+        for (int i = 0; i < sealed.size(); i++) {
+            Path hints = SegmentHints.hintPath(sealed.get(i));
+            if (i % 2 == 0) {
+                Files.delete(hints);
+            } else {
+                byte[] bytes = Files.readAllBytes(hints);
+                bytes[bytes.length / 2] ^= 1;
+                Files.write(hints, bytes);
+            }
+        }
+        check(restart(config(0)));
+    }
+
+    @Test
+    public void tornTailIsTruncated() throws Exception {
+        checkTornTail("segmentSize=8192");
+    }
+
+    @Test
+    public void tornTailIsTruncatedWithChecksums() throws Exception {
+        checkTornTail("segmentSize=8192,checksums=true");
+    }
+
+    @Test
+    public void damagedLastRecordIsDropped() throws Exception {
+        Database database = create(config(0), "segmentSize=8192,checksums=true");
+        fill(database);
+        database.write("t", "last", utf8("value"));
+        awaitHints();
+        try (var channel = FileChannel.open(activeSegment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 6);
+            last.put(0, (byte) (last.get(0) ^ 1)).rewind();
+            channel.write(last, channel.size() - 6);
+        }
+        database = restart(config(0));
+        check(database);
+        assertNull(string(database.read("t", "last")));
+    }
+
+    @Test
+    public void compactedTableIsRestored() throws Exception {
+        Database database = create(config(1), "segmentSize=8192");
+        fill(database);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < KEYS; i += 3) {
+                if (i % 7 != 1) {
+                    database.write("t", "k" + i, utf8("w" + i));
+                }
+            }
+        }
+        awaitCompaction();
+        check(database);
+        check(restart(config(1)));
+        Files.delete(tablePath.resolve("segments.manifest"));
+        check(restart(config(1)));
+    }
+
+    @Test
+    public void pendingCompactionOutputIsDeletedOnRestart() throws Exception {
+        fill(create(config(0), "segmentSize=8192"));
+        awaitHints();
+        TableManifest manifest = TableManifest.read(tablePath).orElseThrow();
+        String pending = sealedSegments().get(0).getFileName() + "_c";
+        List<TableManifest.Entry> entries = new ArrayList<>(manifest.getEntries());
+        entries.add(0, TableManifest.Entry.pending(pending));
+        new TableManifest(manifest.getNextSegmentId(), entries).write(tablePath);
+        Files.write(tablePath.resolve(pending), new byte[]{0, 0, 0, 1, 'k'});
+        Files.write(tablePath.resolve(pending + ".tmp"), new byte[]{0, 0, 0, 1, 'k'});
+        check(restart(config(0)));
+        assertFalse(Files.exists(tablePath.resolve(pending)));
+        assertFalse(Files.exists(tablePath.resolve(pending + ".tmp")));
+        assertTrue(TableManifest.read(tablePath).orElseThrow().getEntries().stream()
+                .noneMatch(entry -> entry.getSegmentName().equals(pending)));
+    }
+
+    @Test
+    public void expiringValuesSurviveRestart() throws Exception {
+        Database database = create(config(0), "segmentSize=8192");
+        fill(database);
+        long expiresAt = System.currentTimeMillis() + 1500;
+        for (int i = 0; i < 200; i++) {
+            database.write("t", "e" + i, utf8("short" + i), expiresAt);
+        }
+        awaitHints();
+        database = restart(config(0));
+        if (System.currentTimeMillis() < expiresAt) {
+            assertEquals("short7", string(database.read("t", "e7")));
+        }
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 100);
+        for (int i = 0; i < 200; i++) {
+            assertNull(string(database.read("t", "e" + i)));
+        }
+        check(database);
+        database = restart(config(0));
+        assertFalse(database.read("t", "e7").isPresent());
+        check(database);
+    }
+
+    /**
+     * Запись, которую не удалось дописать, стирается: следующий за ней пакет восстанавливается целиком
+     */
+    @Test
+    public void batchAfterFailedWriteIsRestored() throws Exception {
+        for (String options : new String[]{"segmentSize=65536", "segmentSize=65536,checksums=true"}) {
+            workingPath = folder.newFolder().toPath();
+            tablePath = workingPath.resolve("db").resolve("t");
+            Database database = create(config(0), options);
+            database.write("t", "before", utf8("value"));
+            try {
+                database.write("t", "broken", failingValue(40_000), KeyExpiry.NEVER);
+                fail("failed value must not be written");
+            } catch (DatabaseException ex) {
+                // ожидаемо
+            }
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                entries.add(Map.entry("b" + i, utf8("batch" + i + "_" + "x".repeat(100))));
+            }
+            database.writeBatch("t", entries);
+            assertTrue(options, sealedSegments().size() >= 1);
+            for (Database opened : List.of(database, restart(config(0)))) {
+                assertFalse(options, opened.read("t", "broken").isPresent());
+                assertEquals(options, "value", string(opened.read("t", "before")));
+                for (var entry : entries) {
+                    assertEquals(options, new String(entry.getValue(), StandardCharsets.UTF_8),
+                            string(opened.read("t", entry.getKey())));
+                }
+            }
+        }
+    }
+
+    private void checkTornTail(String options) throws Exception {
+        fill(create(config(0), options));
+        awaitHints();
+        try (var channel = FileChannel.open(activeSegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 5, 'a', 'b', 'c', 0, 0, 0, 9, 'x'}), channel.size());
+        }
+        Database database = restart(config(0));
+        check(database);
+        database.write("t", "after", utf8("restart"));
+        assertEquals("restart", string(restart(config(0)).read("t", "after")));
+    }
+
+    private DatabaseConfig config(long compactionThreshold) {
+        return DatabaseConfig.builder()
+                .workingPath(workingPath.toString())
+                .compactionThreshold(compactionThreshold)
+                .build();
+    }
+
+    private Database create(DatabaseConfig config, String options) throws Exception {
+        Database database = DatabaseImpl.create("db", workingPath, config);
+        database.createTableIfNotExists("t", TableConfig.fromOptions(Arrays.asList(options.split(",")), config));
+        return database;
+    }
+
+    /**
+     * Читает рабочую директорию заново, как при старте сервера
+     */
+    private Database restart(DatabaseConfig config) throws Exception {
+        var env = new ExecutionEnvironmentImpl(config);
+        new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer())))
+                .perform(InitializationContextImpl.builder().executionEnvironment(env).build());
+        return env.getDatabase("db").orElseThrow();
+    }
+
+    private static void fill(Database database) throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            database.write("t", "k" + i, utf8("v" + i + "_" + "x".repeat(i % 50)));
+        }
+        for (int i = 0; i < KEYS; i += 3) {
+            database.write("t", "k" + i, utf8("w" + i));
+        }
+        for (int i = 1; i < KEYS; i += 7) {
+            database.delete("t", "k" + i);
+        }
+    }
+
+    private static void check(Database database) throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            String expected = i % 7 == 1 ? null : i % 3 == 0 ? "w" + i : "v" + i + "_" + "x".repeat(i % 50);
+            assertEquals("k" + i, expected, string(database.read("t", "k" + i)));
+        }
+    }
+
+    /**
+     * Подсказки закрытых сегментов пишутся в фоне
+     */
+    private void awaitHints() throws Exception {
+        await(() -> sealedSegments().stream().allMatch(segment -> Files.exists(SegmentHints.hintPath(segment))));
+    }
+
+    /**
+     * Ждет, пока сжатие заменит сегменты и допишет подсказки, а содержимое директории перестанет меняться
+     */
+    private void awaitCompaction() throws Exception {
+        List<String> previous = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (true) {
+            List<String> files = files().map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+            boolean compacted = files.stream().anyMatch(name -> name.matches("t_\\d+_c\\d*"));
+            boolean pending = files.stream().anyMatch(name -> name.endsWith(".tmp"));
+            if (compacted && !pending && files.equals(previous)
+                    && sealedSegments().stream().allMatch(segment -> Files.exists(SegmentHints.hintPath(segment)))) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("compaction did not finish: " + files);
+            }
+            previous = files;
+            Thread.sleep(500);
+        }
+    }
+
+    private List<Path> sealedSegments() throws Exception {
+        Path active = activeSegment();
+        return segments().filter(segment -> !segment.equals(active)).collect(Collectors.toList());
+    }
+
+    private Path activeSegment() throws Exception {
+        return segments().filter(segment -> segment.getFileName().toString().matches("t_\\d+"))
+                .max(Comparator.comparingLong(segment -> Long.parseLong(segment.getFileName().toString().substring(2))))
+                .orElseThrow();
+    }
+
+    private Stream<Path> segments() throws Exception {
+        return files().filter(path -> path.getFileName().toString().matches("t_\\d+(_c\\d*)?"));
+    }
+
+    private Stream<Path> files() throws Exception {
+        try (var files = Files.list(tablePath)) {
+            return files.collect(Collectors.toList()).stream();
+        }
+    }
+
+    /**
+     * Значение заявленного размера, передача которого обрывается на середине
+     */
+    private static StreamedValue failingValue(int size) {
+        return new StreamedValue() {
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+            @Override
+            public Optional<byte[]> inMemory() {
+                return Optional.empty();
+            }
+
+            @Override
+            public void transferTo(OutputStream out) throws IOException {
+                out.write(new byte[size / 2]);
+                throw new IOException("Client disconnected");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static void await(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition is not met in " + AWAIT_MILLIS + " ms");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+
+    private static String string(Optional<byte[]> value) {
+        return value.map(bytes -> new String(bytes, StandardCharsets.UTF_8)).orElse(null);
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.exceptions.DatabaseException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InitializationTasksTest {
+    private static final long AWAIT_SECONDS = 10;
+
+    /**
+     * Задачи ждут друг друга на барьере: тест завершается, только если они действительно выполняются одновременно
+     */
+    @Test
+    public void tasksRunInParallel() throws Exception {
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        Set<String> workers = ConcurrentHashMap.newKeySet();
+        List<InitializationTasks.Task> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                workers.add(Thread.currentThread().getName());
+                try {
+                    barrier.await(AWAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (Exception ex) {
+                    throw new DatabaseException("tasks are not run in parallel", ex);
+                }
+            });
+        }
+        InitializationTasks.runInPool(threads, () -> InitializationTasks.invokeAll(tasks));
+        assertEquals(threads, workers.size());
+    }
+
+    /**
+     * Вложенные шаги (таблицы внутри баз) выполняются в том же пуле и все доходят до конца
+     */
+    @Test
+    public void nestedTasksRunInSamePool() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        Set<String> workers = ConcurrentHashMap.newKeySet();
+        List<InitializationTasks.Task> databases = new ArrayList<>();
+        for (int db = 0; db < 5; db++) {
+            databases.add(() -> {
+                List<InitializationTasks.Task> tables = new ArrayList<>();
+                for (int table = 0; table < 20; table++) {
+                    tables.add(() -> {
+                        workers.add(Thread.currentThread().getName());
+                        done.incrementAndGet();
+                    });
+                }
+                InitializationTasks.invokeAll(tables);
+            });
+        }
+        String caller = Thread.currentThread().getName();
+        InitializationTasks.runInPool(2, () -> InitializationTasks.invokeAll(databases));
+        assertEquals(100, done.get());
+        assertTrue(workers.size() <= 2);
+        assertTrue(!workers.contains(caller));
+    }
+
+    @Test
+    public void firstErrorIsRethrown() throws Exception {
+        DatabaseException failure = new DatabaseException("broken table");
+        AtomicInteger done = new AtomicInteger();
+        List<InitializationTasks.Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int id = i;
+            tasks.add(() -> {
+                if (id == 3) {
+                    throw failure;
+                }
+                done.incrementAndGet();
+            });
+        }
+        try {
+            InitializationTasks.runInPool(4, () -> InitializationTasks.invokeAll(tasks));
+            fail("task error must be rethrown");
+        } catch (DatabaseException ex) {
+            assertSame(failure, ex);
+        }
+    }
+
+    @Test
+    public void runtimeErrorIsWrapped() {
+        IllegalStateException failure = new IllegalStateException("bug");
+        try {
+            InitializationTasks.runInPool(2, () -> InitializationTasks.invokeAll(List.of(() -> {
+                throw failure;
+            })));
+            fail("task error must be rethrown");
+        } catch (DatabaseException ex) {
+            Throwable cause = ex.getCause();
+            while (cause != null && cause != failure) {
+                cause = cause.getCause();
+            }
+            assertSame(failure, cause);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.itmo.java.basics.initialization.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.console.ExecutionEnvironment;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.impl.DatabaseImpl;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Время старта сервера на рабочей директории в несколько гигабайт с файлами подсказок и без них.
+ * Директория создается при первом запуске в {@code java.io.tmpdir} и переиспользуется следующими запусками.
+ * Чтобы чтение сегментов шло с диска, а не из кэша страниц, объем данных стоит брать больше оперативной памяти.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=StartupBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StartupBenchmark {
+    private static final String DATABASE = "db";
+    private static final String TABLE = "t";
+    private static final int BATCH = 256;
+    private static final long AWAIT_MILLIS = 600_000;
+
+    @Param({"8"})
+    public int gigabytes;
+
+    @Param({"4000"})
+    public int valueBytes;
+
+    @Param({"16777216"})
+    public long segmentSize;
+
+    @Param({"true", "false"})
+    public boolean hints;
+
+    private Path workingPath;
+    private Path tablePath;
+    private Path savedHints;
+    private DatabaseConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String name = "startup-benchmark-" + gigabytes + "g-" + valueBytes + "-" + segmentSize;
+        workingPath = Path.of(System.getProperty("java.io.tmpdir"), name);
+        tablePath = workingPath.resolve(DATABASE).resolve(TABLE);
+        savedHints = Path.of(System.getProperty("java.io.tmpdir"), name + "-hints");
+        config = DatabaseConfig.builder()
+                .workingPath(workingPath.toString())
+                .compactionThreshold(Long.MAX_VALUE)
+                .build();
+        if (!Files.isDirectory(savedHints)) {
+            fill();
+        }
+    }
+
+    /**
+     * Возвращает подсказки к исходному виду: фоновая запись подсказок прошлым стартом могла их пересоздать
+     */
+    @Setup(Level.Iteration)
+    public void resetHints() throws Exception {
+        awaitStableHints();
+        for (Path hint : hintFiles(tablePath)) {
+            Files.delete(hint);
+        }
+        if (hints) {
+            for (Path hint : hintFiles(savedHints)) {
+                Files.copy(hint, tablePath.resolve(hint.getFileName()));
+            }
+        }
+    }
+
+    @Benchmark
+    public ExecutionEnvironment startup() throws Exception {
+        var env = new ExecutionEnvironmentImpl(config);
+        new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer())))
+                .perform(InitializationContextImpl.builder().executionEnvironment(env).build());
+        return env;
+    }
+
+    /**
+     * Пишет таблицу нужного объема, дожидается подсказок закрытых сегментов и сохраняет их копию
+     */
+    private void fill() throws Exception {
+        if (Files.exists(workingPath)) {
+            try (var files = Files.walk(workingPath)) {
+                for (Path path : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(workingPath);
+        Database database = DatabaseImpl.create(DATABASE, workingPath, config);
+        database.createTableIfNotExists(TABLE,
+                TableConfig.fromOptions(List.of(TableConfig.SEGMENT_SIZE + "=" + segmentSize), config));
+        Random random = new Random(1);
+        byte[] value = new byte[valueBytes];
+        long records = ((long) gigabytes << 30) / valueBytes;
+        for (long batch = 0; batch < records; batch += BATCH) {
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+            for (long i = batch; i < Math.min(records, batch + BATCH); i++) {
+                random.nextBytes(value);
+                entries.add(Map.entry("key" + i, value.clone()));
+            }
+            database.writeBatch(TABLE, entries);
+        }
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (hintFiles(tablePath).size() < segmentFiles().size() - 1) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Hints are not written in " + AWAIT_MILLIS + " ms");
+            }
+            Thread.sleep(100);
+        }
+        Path saving = savedHints.resolveSibling(savedHints.getFileName() + ".tmp");
+        Files.createDirectories(saving);
+        for (Path hint : hintFiles(tablePath)) {
+            Files.copy(hint, saving.resolve(hint.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(saving, savedHints, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitStableHints() throws Exception {
+        int previous = -1;
+        int current = hintFiles(tablePath).size();
+        while (current != previous) {
+            Thread.sleep(1000);
+            previous = current;
+            current = hintFiles(tablePath).size();
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var files = Files.list(tablePath)) {
+            return files.filter(path -> path.getFileName().toString().matches(TABLE + "_\\d+"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> hintFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SegmentHints.SUFFIX))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.itmo.java.basics.logic.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Попадания в кэш из нескольких потоков сразу: все потоки читают одни и те же горячие ключи.
+ * Попадание не должно писать в общую структуру, поэтому пропускная способность растет с числом потоков,
+ * пока их хватает ядер.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=DatabaseCacheBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseCacheBenchmark {
+    @Param({"16", "10000"})
+    public int keys;
+
+    @Param({"100"})
+    public int valueBytes;
+
+    private DatabaseCacheImpl cache;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new DatabaseCacheImpl();
+        names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = "key" + i;
+            cache.set(names[i], new byte[valueBytes]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] hit() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] contendedHit() {
+        return get();
+    }
+
+    private byte[] get() {
+        byte[] value = cache.get(names[ThreadLocalRandom.current().nextInt(keys)]);
+        if (value == null) {
+            throw new IllegalStateException("Cache lost a key");
+        }
+        return value;
+    }
+}
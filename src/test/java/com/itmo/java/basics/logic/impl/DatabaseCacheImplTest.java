@@ -0,0 +1,166 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.index.impl.TableIndex;
+import com.itmo.java.basics.logic.KeyExpiry;
+import com.itmo.java.basics.logic.StreamedValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseCacheImplTest {
+    private static final byte[] VALUE = new byte[100];
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cacheIsBoundedByBytes() {
+        long weight = DatabaseCacheImpl.weight("k00", VALUE);
+        var cache = new DatabaseCacheImpl(10 * weight);
+        for (int i = 0; i < 30; i++) {
+            cache.set(String.format("k%02d", i), VALUE);
+        }
+        assertEquals(10, cached(cache, 30));
+        for (int i = 20; i < 30; i++) {
+            assertNotNull(cache.get(String.format("k%02d", i)));
+        }
+    }
+
+    /**
+     * Большое значение вытесняет столько записей, сколько байт оно занимает
+     */
+    @Test
+    public void largeValueEvictsSeveralEntries() {
+        long weight = DatabaseCacheImpl.weight("k00", VALUE);
+        var cache = new DatabaseCacheImpl(10 * weight);
+        for (int i = 0; i < 10; i++) {
+            cache.set(String.format("k%02d", i), VALUE);
+        }
+        byte[] large = new byte[(int) (4 * weight)];
+        cache.set("large", large);
+        assertArrayEquals(large, cache.get("large"));
+        assertTrue(cached(cache, 10) <= 5);
+    }
+
+    @Test
+    public void valueLargerThanCacheReplacesOldValue() {
+        var cache = new DatabaseCacheImpl(DatabaseCacheImpl.weight("k", VALUE));
+        cache.set("k", VALUE);
+        assertNotNull(cache.get("k"));
+        cache.set("k", new byte[VALUE.length + 1]);
+        assertNull(cache.get("k"));
+    }
+
+    /**
+     * Прочитанная запись получает второй шанс: вытесняется следующая за ней непрочитанная
+     */
+    @Test
+    public void referencedEntryGetsSecondChance() {
+        var cache = new DatabaseCacheImpl(3 * DatabaseCacheImpl.weight("a", VALUE));
+        cache.set("a", VALUE);
+        cache.set("b", VALUE);
+        cache.set("c", VALUE);
+        assertNotNull(cache.get("a"));
+        cache.set("d", VALUE);
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+    }
+
+    /**
+     * Если прочитаны все записи, первой вытесняется новая непрочитанная, а после снятия отметок - самая старая
+     */
+    @Test
+    public void unreadEntryIsEvictedBeforeReadOnes() {
+        var cache = new DatabaseCacheImpl(3 * DatabaseCacheImpl.weight("a", VALUE));
+        cache.set("a", VALUE);
+        cache.set("b", VALUE);
+        cache.set("c", VALUE);
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+        cache.set("d", VALUE);
+        cache.set("e", VALUE);
+        assertNull(cache.get("d"));
+        assertNull(cache.get("a"));
+        assertEquals(3, cached(cache, "b", "c", "e"));
+    }
+
+    @Test
+    public void expiredValueIsNotReturned() throws Exception {
+        var cache = new DatabaseCacheImpl();
+        cache.set("k", VALUE, System.currentTimeMillis() + 50);
+        cache.set("forever", VALUE, KeyExpiry.NEVER);
+        assertNotNull(cache.get("k"));
+        Thread.sleep(100);
+        assertNull(cache.get("k"));
+        assertNotNull(cache.get("forever"));
+    }
+
+    @Test
+    public void writesInvalidateCachedValues() throws Exception {
+        var config = new DatabaseConfig(folder.getRoot().toString());
+        var table = (CachingTable) TableImpl.create("t", folder.getRoot().toPath(),
+                TableIndex.forTable(TableConfig.defaults(config)), TableConfig.defaults(config));
+        table.write("k", utf8("v1"));
+        assertEquals("v1", string(table.cache.get("k")));
+
+        table.write("k", utf8("v2"));
+        assertEquals("v2", string(table.cache.get("k")));
+        assertEquals("v2", string(table.read("k").orElseThrow()));
+
+        table.delete("k");
+        assertNull(table.cache.get("k"));
+        assertFalse(table.read("k").isPresent());
+
+        table.write("k", utf8("v3"));
+        table.writeBatch(List.of(Map.entry("k", utf8("batch"))));
+        assertNull(table.cache.get("k"));
+        assertEquals("batch", string(table.read("k").orElseThrow()));
+        assertEquals("batch", string(table.cache.get("k")));
+
+        table.write("k", StreamedValue.of(utf8("streamed")), KeyExpiry.NEVER);
+        assertNull(table.cache.get("k"));
+        assertEquals("streamed", string(table.read("k").orElseThrow()));
+    }
+
+    private static int cached(DatabaseCacheImpl cache, int keys) {
+        String[] names = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            names[i] = String.format("k%02d", i);
+        }
+        return cached(cache, names);
+    }
+
+    private static int cached(DatabaseCacheImpl cache, String... keys) {
+        int cached = 0;
+        for (String key : keys) {
+            if (cache.get(key) != null) {
+                cached++;
+            }
+        }
+        return cached;
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.console.impl.ExecutionEnvironmentImpl;
+import com.itmo.java.basics.initialization.impl.DatabaseInitializer;
+import com.itmo.java.basics.initialization.impl.DatabaseServerInitializer;
+import com.itmo.java.basics.initialization.impl.InitializationContextImpl;
+import com.itmo.java.basics.initialization.impl.SegmentInitializer;
+import com.itmo.java.basics.initialization.impl.TableInitializer;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.StreamedValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Асинхронные GET вперемешку: горячие ключи отдаются из кэша таблицы, холодные читаются с диска
+ * пулом потоков чтения базы (см {@link DatabaseConfig#getReaderThreads()}). Показывает, не ждут ли горячие
+ * чтения холодных и сколько холодных чтений пул выполняет одновременно.
+ * <p>
+ * Директория создается при первом запуске в {@code java.io.tmpdir} и переиспользуется следующими запусками.
+ * Перед каждой итерацией кэш страниц сбрасывается, если процесс может писать в {@code /proc/sys/vm/drop_caches}.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MixedReadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class MixedReadBenchmark {
+    private static final String DATABASE = "db";
+    private static final String TABLE = "t";
+    private static final int BATCH = 256;
+    private static final Path DROP_CACHES = Path.of("/proc/sys/vm/drop_caches");
+
+    @Param({"4", "16", "64"})
+    public int readerThreads;
+
+    @Param({"60000"})
+    public int keys;
+
+    @Param({"100"})
+    public int hotKeys;
+
+    @Param({"4096"})
+    public int valueBytes;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path workingPath = Path.of(System.getProperty("java.io.tmpdir"),
+                "mixed-read-benchmark-" + keys + "-" + valueBytes);
+        if (!Files.isDirectory(workingPath.resolve(DATABASE).resolve(TABLE))) {
+            fill(workingPath);
+        }
+        var config = DatabaseConfig.builder()
+                .workingPath(workingPath.toString())
+                .readerThreads(readerThreads)
+                .build();
+        var env = new ExecutionEnvironmentImpl(config);
+        new DatabaseServerInitializer(new DatabaseInitializer(new TableInitializer(new SegmentInitializer())))
+                .perform(InitializationContextImpl.builder().executionEnvironment(env).build());
+        database = env.getDatabase(DATABASE).orElseThrow();
+    }
+
+    /**
+     * Горячие ключи читаются заранее, чтобы попасть в кэш таблицы, а кэш страниц сбрасывается
+     */
+    @Setup(Level.Iteration)
+    public void dropCaches() throws Exception {
+        for (int i = 0; i < hotKeys; i++) {
+            read("key" + i);
+        }
+        if (Files.isWritable(DROP_CACHES)) {
+            new ProcessBuilder("sync").start().waitFor();
+            Files.write(DROP_CACHES, new byte[]{'3'});
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public long hot() throws Exception {
+        return read("key" + ThreadLocalRandom.current().nextInt(hotKeys));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public long cold() throws Exception {
+        return read("key" + (hotKeys + ThreadLocalRandom.current().nextInt(keys - hotKeys)));
+    }
+
+    private long read(String key) throws Exception {
+        Optional<StreamedValue> value = database.readAsync(TABLE, key).get();
+        if (value.isEmpty()) {
+            throw new IllegalStateException("Key " + key + " is lost");
+        }
+        try (StreamedValue streamed = value.get()) {
+            return streamed.readAllBytes().length;
+        }
+    }
+
+    private void fill(Path workingPath) throws Exception {
+        if (Files.exists(workingPath)) {
+            try (var files = Files.walk(workingPath)) {
+                for (Path path : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.createDirectories(workingPath);
+        var config = DatabaseConfig.builder().workingPath(workingPath.toString()).build();
+        Database filling = DatabaseImpl.create(DATABASE, workingPath, config);
+        filling.createTableIfNotExists(TABLE, TableConfig.defaults(config));
+        byte[] value = new byte[valueBytes];
+        Arrays.fill(value, (byte) 'v');
+        for (int batch = 0; batch < keys; batch += BATCH) {
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+            for (int i = batch; i < Math.min(keys, batch + BATCH); i++) {
+                entries.add(Map.entry("key" + i, value));
+            }
+            filling.writeBatch(TABLE, entries);
+        }
+        awaitBackgroundWrites(workingPath.resolve(DATABASE).resolve(TABLE));
+    }
+
+    /**
+     * Подсказки и фильтры закрытых сегментов пишутся в фоне: база открывается заново, когда они дописаны
+     */
+    private static void awaitBackgroundWrites(Path tablePath) throws Exception {
+        List<Path> previous = List.of();
+        while (true) {
+            Thread.sleep(1000);
+            try (var files = Files.list(tablePath)) {
+                List<Path> current = files.sorted().collect(Collectors.toList());
+                if (current.equals(previous) && current.stream().noneMatch(path -> path.toString().endsWith(".tmp"))) {
+                    return;
+                }
+                previous = current;
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.itmo.java.basics.logic.impl;
+
+import com.itmo.java.basics.config.DatabaseConfig;
+import com.itmo.java.basics.config.SegmentIndexType;
+import com.itmo.java.basics.config.StorageMode;
+import com.itmo.java.basics.config.TableConfig;
+import com.itmo.java.basics.logic.Database;
+import com.itmo.java.basics.logic.ScanPage;
+import com.itmo.java.basics.logic.io.BloomFilterFile;
+import com.itmo.java.basics.logic.io.SegmentHints;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TableImplTest {
+    private static final int KEYS = 3000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void valuesAreReadBackAcrossSegments() throws Exception {
+        for (StorageMode mode : StorageMode.values()) {
+            for (String options : new String[]{"segmentSize=4096", "segmentSize=4096,checksums=true",
+                    "segmentSize=4096,sorted=true", "engine=lsm,segmentSize=4096", "shards=3,segmentSize=4096"}) {
+                Database database = database(mode, options);
+                for (int i = 0; i < KEYS; i++) {
+                    database.write("t", "k" + i, utf8("v" + i));
+                }
+                for (int i = 0; i < KEYS; i += 3) {
+                    database.write("t", "k" + i, utf8("w" + i));
+                }
+                for (int i = 1; i < KEYS; i += 7) {
+                    database.delete("t", "k" + i);
+                }
+                for (int i = 0; i < KEYS; i++) {
+                    assertEquals(mode + " " + options + " k" + i, expected(i), string(database.read("t", "k" + i)));
+                }
+                assertFalse(database.read("t", "missing").isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void valuesAreReadBackWithOpenAddressingIndex() throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.newFolder().toString())
+                .segmentIndexType(SegmentIndexType.OPEN_ADDRESSING)
+                .build();
+        Database database = DatabaseImpl.create("db", Path.of(config.getWorkingPath()), config);
+        database.createTableIfNotExists("t", TableConfig.fromOptions(List.of("segmentSize=4096"), config));
+        for (int i = 0; i < KEYS; i++) {
+            database.write("t", "ключ" + i, utf8("v" + i));
+        }
+        for (int i = 0; i < KEYS; i += 3) {
+            database.write("t", "ключ" + i, utf8("w" + i));
+        }
+        for (int i = 1; i < KEYS; i += 7) {
+            database.delete("t", "ключ" + i);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals("ключ" + i, expected(i), string(database.read("t", "ключ" + i)));
+        }
+        assertFalse(database.read("t", "ключ").isPresent());
+    }
+
+    @Test
+    public void largeValuesAreReadWhole() throws Exception {
+        for (StorageMode mode : StorageMode.values()) {
+            Database database = database(mode, "segmentSize=65536,checksums=true");
+            Random random = new Random(1);
+            List<byte[]> values = new ArrayList<>();
+            for (int size : new int[]{4090, 4096, 5000, 100 * 1024, 3 * 1024 * 1024}) {
+                byte[] value = new byte[size];
+                random.nextBytes(value);
+                values.add(value);
+                database.write("t", "large" + size, value);
+                database.write("t", "small" + size, utf8("after " + size));
+            }
+            int i = 0;
+            for (int size : new int[]{4090, 4096, 5000, 100 * 1024, 3 * 1024 * 1024}) {
+                assertArrayEquals(values.get(i++), database.read("t", "large" + size).orElseThrow());
+                assertEquals("after " + size, string(database.read("t", "small" + size)));
+            }
+        }
+    }
+
+    @Test
+    public void batchIsReadBack() throws Exception {
+        Database database = database(StorageMode.CHANNEL, "segmentSize=8192,shards=2");
+        for (int batch = 0; batch < KEYS; batch += 97) {
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+            for (int i = batch; i < Math.min(KEYS, batch + 97); i++) {
+                entries.add(Map.entry("k" + i, utf8("v" + i)));
+            }
+            entries.add(Map.entry("k" + batch, utf8("last" + batch)));
+            database.writeBatch("t", entries);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals((i % 97 == 0 ? "last" : "v") + i, string(database.read("t", "k" + i)));
+        }
+    }
+
+    @Test
+    public void scanReturnsRangeInPages() throws Exception {
+        for (String options : new String[]{"ordered=true,segmentSize=4096", "engine=lsm,segmentSize=4096",
+                "ordered=true,shards=3"}) {
+            Database database = database(StorageMode.CHANNEL, options);
+            for (int i = 0; i < 1000; i++) {
+                database.write("t", String.format("k%04d", i), utf8("v" + i));
+            }
+            for (int i = 0; i < 1000; i += 5) {
+                database.delete("t", String.format("k%04d", i));
+            }
+            List<String> keys = new ArrayList<>();
+            String from = "k0100";
+            boolean inclusive = true;
+            int pages = 0;
+            do {
+                ScanPage page = database.scan("t", from, inclusive, "k0300", 7);
+                for (var entry : page.getEntries()) {
+                    keys.add(entry.getKey());
+                    assertEquals(expectedScanned(entry.getKey()), new String(entry.getValue(), StandardCharsets.UTF_8));
+                }
+                from = page.getResumeKey();
+                inclusive = false;
+                pages++;
+            } while (from != null);
+            List<String> expected = new ArrayList<>();
+            for (int i = 100; i < 300; i++) {
+                if (i % 5 != 0) {
+                    expected.add(String.format("k%04d", i));
+                }
+            }
+            assertEquals(options, expected, keys);
+            assertTrue(options, pages > 1);
+        }
+    }
+
+    @Test
+    public void expiredValuesAreNotRead() throws Exception {
+        for (String options : new String[]{"segmentSize=4096", "engine=lsm,segmentSize=4096"}) {
+            Database database = database(StorageMode.CHANNEL, options);
+            long expiresAt = System.currentTimeMillis() + 500;
+            for (int i = 0; i < 200; i++) {
+                database.write("t", "e" + i, utf8("short" + i), expiresAt);
+                database.write("t", "k" + i, utf8("long" + i));
+            }
+            assertEquals(options, "short7", string(database.read("t", "e7")));
+            Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 100);
+            for (int i = 0; i < 200; i++) {
+                assertNull(options, string(database.read("t", "e" + i)));
+                assertEquals(options, "long" + i, string(database.read("t", "k" + i)));
+            }
+            database.write("t", "e7", utf8("again"));
+            assertEquals(options, "again", string(database.read("t", "e7")));
+        }
+    }
+
+    /**
+     * Таблица LOG ищет ключи в своем индексе, поэтому фильтры Блума строятся только для сегментов LSM
+     */
+    @Test
+    public void bloomFiltersAreBuiltOnlyForLsmTables() throws Exception {
+        // Сначала LOG: фильтры LSM в той же временной директории не должны попасть в проверку
+        for (String options : new String[]{"segmentSize=4096", "engine=lsm,segmentSize=4096"}) {
+            Database database = database(StorageMode.CHANNEL, options);
+            for (int i = 0; i < KEYS; i++) {
+                database.write("t", "k" + i, utf8("v" + i));
+            }
+            boolean lsm = options.startsWith("engine=lsm");
+            Path tablePath = folder.getRoot().toPath();
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (count(tablePath, lsm ? BloomFilterFile.SUFFIX : SegmentHints.SUFFIX) < 2) {
+                assertTrue(options, System.currentTimeMillis() < deadline);
+                Thread.sleep(50);
+            }
+            if (!lsm) {
+                assertEquals(options, 0, count(tablePath, BloomFilterFile.SUFFIX));
+            }
+            assertEquals(options, "v7", string(database.read("t", "k7")));
+            assertFalse(options, database.read("t", "missing").isPresent());
+        }
+    }
+
+    /**
+     * Временные файлы фоновой записи могут исчезнуть во время обхода, тогда обход повторяется
+     */
+    private static long count(Path directory, String suffix) throws Exception {
+        while (true) {
+            try (var files = Files.walk(directory)) {
+                return files.filter(path -> path.getFileName().toString().endsWith(suffix)).count();
+            } catch (UncheckedIOException | NoSuchFileException ex) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private Database database(StorageMode mode, String options) throws Exception {
+        DatabaseConfig config = DatabaseConfig.builder()
+                .workingPath(folder.newFolder().toString())
+                .storageMode(mode)
+                .build();
+        Database database = DatabaseImpl.create("db", Path.of(config.getWorkingPath()), config);
+        database.createTableIfNotExists("t", TableConfig.fromOptions(Arrays.asList(options.split(",")), config));
+        return database;
+    }
+
+    private static String expected(int i) {
+        return i % 7 == 1 ? null : (i % 3 == 0 ? "w" : "v") + i;
+    }
+
+    private static String expectedScanned(String key) {
+        return "v" + Integer.parseInt(key.substring(1));
+    }
+
+    private static String string(Optional<byte[]> value) {
+        return value.map(bytes -> new String(bytes, StandardCharsets.UTF_8)).orElse(null);
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
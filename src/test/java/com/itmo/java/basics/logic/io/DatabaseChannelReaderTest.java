@@ -0,0 +1,190 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class DatabaseChannelReaderTest {
+    /**
+     * Размеры значений вокруг первого чтения записи (1 КБ) и буферов пула (64 КБ)
+     */
+    private static final int[] VALUE_SIZES = {0, 10, 1000, 1020, 5000, 64 * 1024 - 20, 64 * 1024, 100_000};
+    private static final long EXPIRES_AT = 4_102_444_800_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsOfAllSizesAreRead() throws Exception {
+        for (boolean checksums : new boolean[]{false, true}) {
+            Path segment = folder.newFile().toPath();
+            List<WritableDatabaseRecord> records = records();
+            List<SegmentOffsetInfo> offsets = write(segment, records, checksums);
+            try (var reader = open(segment, checksums)) {
+                for (int i = 0; i < records.size(); i++) {
+                    WritableDatabaseRecord expected = records.get(i);
+                    DatabaseRecord record = reader.readDbUnit(offsets.get(i).getOffset()).orElseThrow();
+                    assertArrayEquals(expected.getKey(), record.getKey());
+                    assertArrayEquals(expected.getValue(), record.getValue());
+                    assertEquals(expected.getExpiresAt(), record.getExpiresAt());
+                    Optional<byte[]> value = reader.readValue(offsets.get(i));
+                    assertEquals(expected.isValuePresented(), value.isPresent());
+                    if (value.isPresent()) {
+                        assertArrayEquals(expected.getValue(), value.get());
+                    }
+                }
+                assertFalse(reader.readDbUnit(Files.size(segment)).isPresent());
+            }
+        }
+    }
+
+    /**
+     * Буферы пула общие для всех потоков: одновременные чтения не должны видеть чужие байты
+     */
+    @Test
+    public void concurrentReadsDoNotShareBuffers() throws Exception {
+        Path segment = folder.newFile().toPath();
+        List<WritableDatabaseRecord> records = records();
+        List<SegmentOffsetInfo> offsets = write(segment, records, true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (var reader = open(segment, true)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        int i = round % records.size();
+                        assertArrayEquals(records.get(i).getValue(), reader.readValue(offsets.get(i)).orElse(null));
+                        assertArrayEquals(records.get(i).getKey(),
+                                reader.readDbUnit(offsets.get(i).getOffset()).orElseThrow().getKey());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void damagedRecordIsDetected() throws Exception {
+        Path segment = folder.newFile().toPath();
+        List<WritableDatabaseRecord> records = records();
+        List<SegmentOffsetInfo> offsets = write(segment, records, true);
+        byte[] bytes = Files.readAllBytes(segment);
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i).isValuePresented() && records.get(i).getValue().length > 0) {
+                bytes[Math.toIntExact(offsets.get(i).getValueOffset())] ^= 1;
+            }
+        }
+        Files.write(segment, bytes);
+        try (var reader = open(segment, true)) {
+            for (int i = 1; i < records.size(); i++) {
+                if (!records.get(i).isValuePresented() || records.get(i).getValue().length == 0) {
+                    continue;
+                }
+                long offset = offsets.get(i).getOffset();
+                try {
+                    reader.readValue(offsets.get(i));
+                    fail("damaged value must not be returned");
+                } catch (CorruptedRecordException ex) {
+                    assertEquals(offset, ex.getOffset());
+                }
+                try {
+                    reader.readDbUnit(offset);
+                    fail("damaged record must not be returned");
+                } catch (CorruptedRecordException ex) {
+                    assertEquals(offset, ex.getOffset());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recordNotMatchingIndexIsRejected() throws Exception {
+        Path segment = folder.newFile().toPath();
+        List<SegmentOffsetInfo> offsets = write(segment, records(), false);
+        SegmentOffsetInfo info = offsets.get(1);
+        try (var reader = open(segment, false)) {
+            expectIoError(reader, new SegmentOffsetInfoImpl(info.getOffset(), info.getSize() - 1,
+                    info.getValueOffset(), false));
+            expectIoError(reader, new SegmentOffsetInfoImpl(info.getOffset(), info.getSize(),
+                    info.getValueOffset() + 1, false));
+            expectIoError(reader, new SegmentOffsetInfoImpl(Files.size(segment) - 4, info.getSize(),
+                    Files.size(segment) + 4, false));
+        }
+    }
+
+    private static void expectIoError(DatabaseChannelReader reader, SegmentOffsetInfo info) {
+        try {
+            reader.readValue(info);
+            fail("record at " + info.getOffset() + " must not match the index");
+        } catch (IOException ignored) {
+            // ожидаемо
+        }
+    }
+
+    private static DatabaseChannelReader open(Path segment, boolean checksums) throws IOException {
+        return new DatabaseChannelReader(FileChannel.open(segment, StandardOpenOption.READ), checksums);
+    }
+
+    private static List<WritableDatabaseRecord> records() throws Exception {
+        List<WritableDatabaseRecord> records = new ArrayList<>();
+        records.add(new RemoveDatabaseRecord(utf8("removed")));
+        for (int size : VALUE_SIZES) {
+            byte[] value = new byte[size];
+            for (int i = 0; i < size; i++) {
+                value[i] = (byte) (i * 31 + size);
+            }
+            records.add(new SetDatabaseRecord(utf8("key" + size), value));
+            records.add(new SetDatabaseRecord(utf8("expiring" + size), value, EXPIRES_AT));
+        }
+        records.add(new RemoveDatabaseRecord(utf8("ключ")));
+        return records;
+    }
+
+    private static List<SegmentOffsetInfo> write(Path segment, List<WritableDatabaseRecord> records, boolean checksums)
+            throws IOException {
+        List<SegmentOffsetInfo> offsets = new ArrayList<>();
+        long offset = 0;
+        try (var out = new DatabaseOutputStream(Files.newOutputStream(segment), checksums)) {
+            for (WritableDatabaseRecord record : records) {
+                long size = out.write(record);
+                offsets.add(new SegmentOffsetInfoImpl(offset, size,
+                        DatabaseOutputStream.valueOffset(offset, record.getKey().length), !record.isValuePresented()));
+                offset += size;
+            }
+        }
+        return offsets;
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
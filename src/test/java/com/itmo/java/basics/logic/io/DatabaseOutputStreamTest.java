@@ -0,0 +1,140 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.WritableDatabaseRecord;
+import com.itmo.java.basics.logic.impl.RemoveDatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DatabaseOutputStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void batchIsEncodedAsSingleRecords() throws Exception {
+        for (boolean checksums : new boolean[]{false, true}) {
+            List<WritableDatabaseRecord> records = records();
+            ByteArrayOutputStream single = new ByteArrayOutputStream();
+            long[] singleSizes = new long[records.size()];
+            try (var out = new DatabaseOutputStream(single, checksums)) {
+                for (int i = 0; i < records.size(); i++) {
+                    singleSizes[i] = out.write(records.get(i));
+                }
+            }
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            long[] batchSizes;
+            try (var out = new DatabaseOutputStream(batch, checksums)) {
+                batchSizes = out.write(records);
+            }
+            assertArrayEquals(singleSizes, batchSizes);
+            assertArrayEquals(single.toByteArray(), batch.toByteArray());
+            assertEquals(Arrays.stream(singleSizes).sum(), single.size());
+        }
+    }
+
+    @Test
+    public void recordsAreReadFromStreamAndAtOffsets() throws Exception {
+        for (boolean checksums : new boolean[]{false, true}) {
+            List<WritableDatabaseRecord> records = records();
+            Path segment = folder.newFile().toPath();
+            long[] sizes;
+            try (var out = new DatabaseOutputStream(Files.newOutputStream(segment), checksums)) {
+                sizes = out.write(records);
+            }
+            byte[] bytes = Files.readAllBytes(segment);
+            try (var in = new DatabaseInputStream(new ByteArrayInputStream(bytes), checksums, bytes.length);
+                 var reader = new DatabaseChannelReader(FileChannel.open(segment, StandardOpenOption.READ), checksums)) {
+                long offset = 0;
+                for (int i = 0; i < records.size(); i++) {
+                    assertEquals(offset, in.getPosition());
+                    assertSameRecord(records.get(i), in.readDbUnit());
+                    assertSameRecord(records.get(i), reader.readDbUnit(offset));
+                    offset += sizes[i];
+                }
+                assertFalse(in.readDbUnit().isPresent());
+                assertFalse(reader.readDbUnit(offset).isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void damagedRecordIsReported() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long firstSize;
+        try (var out = new DatabaseOutputStream(bytes, true)) {
+            firstSize = out.write(new SetDatabaseRecord(utf8("first"), utf8("value")));
+            out.write(new SetDatabaseRecord(utf8("second"), utf8("value")));
+        }
+        byte[] damaged = bytes.toByteArray();
+        damaged[damaged.length - 6] ^= 1;
+        try (var in = new DatabaseInputStream(new ByteArrayInputStream(damaged), true, damaged.length)) {
+            assertTrue(in.readDbUnit().isPresent());
+            in.readDbUnit();
+            fail("checksum mismatch must be reported");
+        } catch (CorruptedRecordException ex) {
+            // ожидаемо
+        }
+        byte[] torn = Arrays.copyOf(bytes.toByteArray(), (int) firstSize + 5);
+        try (var in = new DatabaseInputStream(new ByteArrayInputStream(torn), true, torn.length)) {
+            assertTrue(in.readDbUnit().isPresent());
+            in.readDbUnit();
+            fail("torn record must be reported");
+        } catch (CorruptedRecordException ex) {
+            assertEquals(firstSize, ex.getOffset());
+        }
+    }
+
+    /**
+     * Обычные, удаляющие и истекающие записи, в том числе значение больше буфера пакета
+     */
+    private static List<WritableDatabaseRecord> records() throws Exception {
+        List<WritableDatabaseRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            records.add(new SetDatabaseRecord(utf8("key" + i), utf8("value" + i)));
+        }
+        records.add(new RemoveDatabaseRecord(utf8("key7")));
+        records.add(new SetDatabaseRecord(utf8("ключ"), utf8("значение"), 4_102_444_800_000L));
+        byte[] large = new byte[DatabaseOutputStream.BATCH_BUFFER_SIZE + 1];
+        Arrays.fill(large, (byte) 'x');
+        records.add(new SetDatabaseRecord(utf8("large"), large));
+        records.add(new SetDatabaseRecord(utf8("after-large"), new byte[0]));
+        return records;
+    }
+
+    private static void assertSameRecord(WritableDatabaseRecord expected, Optional<DatabaseRecord> actual) {
+        assertTrue(actual.isPresent());
+        assertArrayEquals(expected.getKey(), actual.get().getKey());
+        assertEquals(expected.isValuePresented(), actual.get().isValuePresented());
+        if (expected.isValuePresented()) {
+            assertArrayEquals(expected.getValue(), actual.get().getValue());
+        } else {
+            assertNull(actual.get().getValue());
+        }
+        assertEquals(expected.getExpiresAt(), actual.get().getExpiresAt());
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.StreamedValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class FileRegionValueTest {
+    private static final int PREFIX = 1000;
+    private static final int SIZE = 3 * StreamedValue.CHUNK_SIZE + 123;
+    private static final long AWAIT_SECONDS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void regionIsTransferredToStream() throws Exception {
+        byte[] file = random(PREFIX + SIZE + 1000);
+        Path path = write(file);
+        var out = new ByteArrayOutputStream();
+        try (var value = FileRegionValue.open(path, PREFIX, SIZE)) {
+            assertEquals(SIZE, value.getSize());
+            assertFalse(value.inMemory().isPresent());
+            value.transferTo(out);
+        }
+        assertArrayEquals(Arrays.copyOfRange(file, PREFIX, PREFIX + SIZE), out.toByteArray());
+    }
+
+    /**
+     * Канал, который за вызов принимает не больше нескольких байт, получает значение целиком
+     */
+    @Test
+    public void regionIsTransferredToSlowChannel() throws Exception {
+        byte[] file = random(PREFIX + SIZE + 1000);
+        Path path = write(file);
+        var out = new ByteArrayOutputStream();
+        try (var value = FileRegionValue.open(path, PREFIX, SIZE)) {
+            value.transferTo(new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) {
+                    int written = Math.min(src.remaining(), 1000);
+                    byte[] bytes = new byte[written];
+                    src.get(bytes);
+                    out.write(bytes, 0, written);
+                    return written;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+        assertArrayEquals(Arrays.copyOfRange(file, PREFIX, PREFIX + SIZE), out.toByteArray());
+    }
+
+    /**
+     * Значение передается в сокет, как в ответ на GET, даже если файл сегмента уже удален сжатием
+     */
+    @Test
+    public void regionIsTransferredToSocketAfterFileDeleted() throws Exception {
+        byte[] file = random(PREFIX + SIZE);
+        Path path = write(file);
+        try (var server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             var client = SocketChannel.open(server.getLocalAddress());
+             var accepted = server.accept();
+             var value = FileRegionValue.open(path, PREFIX, SIZE)) {
+            Files.delete(path);
+            CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+                ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+                try {
+                    while (buffer.hasRemaining() && accepted.read(buffer) >= 0) {
+                    }
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+                return buffer.array();
+            });
+            value.transferTo(client);
+            assertArrayEquals(Arrays.copyOfRange(file, PREFIX, PREFIX + SIZE),
+                    received.get(AWAIT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void truncatedRegionFails() throws Exception {
+        Path path = write(random(PREFIX + SIZE - 1));
+        try (var value = FileRegionValue.open(path, PREFIX, SIZE)) {
+            value.transferTo(new ByteArrayOutputStream());
+            fail("truncated value must not be transferred");
+        } catch (EOFException ex) {
+            // ожидаемо
+        }
+        try (var value = FileRegionValue.open(path, PREFIX, SIZE)) {
+            var out = new ByteArrayOutputStream();
+            value.transferTo(Channels.newChannel(out));
+            fail("truncated value must not be transferred");
+        } catch (EOFException ex) {
+            // ожидаемо
+        }
+    }
+
+    private Path write(byte[] bytes) throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+        return path;
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedDatabaseReaderTest {
+    private static final Path PROC_MAPS = Path.of("/proc/self/maps");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsAreReadFromMapping() throws Exception {
+        Path segment = folder.newFile().toPath();
+        List<Long> offsets = write(segment, 100);
+        long size = Files.size(segment);
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedDatabaseReader reader = MappedDatabaseReader.map(channel, size, Long.MAX_VALUE, true).orElseThrow();
+            try {
+                for (int i = 0; i < offsets.size(); i++) {
+                    var record = reader.readDbUnit(offsets.get(i)).orElseThrow();
+                    assertArrayEquals(utf8("key" + i), record.getKey());
+                    assertArrayEquals(utf8("value" + i), record.getValue());
+                    long recordSize = (i + 1 < offsets.size() ? offsets.get(i + 1) : size) - offsets.get(i);
+                    Optional<byte[]> value = reader.readValue(new SegmentOffsetInfoImpl(offsets.get(i), recordSize,
+                            DatabaseOutputStream.valueOffset(offsets.get(i), record.getKey().length), false));
+                    assertArrayEquals(utf8("value" + i), value.orElseThrow());
+                }
+                assertFalse(reader.readDbUnit(size).isPresent());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Лимит общий для всех отображений процесса: закрытие читателя возвращает его байты в лимит
+     */
+    @Test
+    public void mappedBytesAreCapped() throws Exception {
+        Path segment = folder.newFile().toPath();
+        write(segment, 100);
+        long size = Files.size(segment);
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long limit = MappedDatabaseReader.getMappedBytes() + 2 * size;
+            var first = MappedDatabaseReader.map(channel, size, limit, false);
+            var second = MappedDatabaseReader.map(channel, size, limit, false);
+            assertTrue(first.isPresent());
+            assertTrue(second.isPresent());
+            assertFalse(MappedDatabaseReader.map(channel, size, limit, false).isPresent());
+
+            first.get().close();
+            first.get().close();
+            var third = MappedDatabaseReader.map(channel, size, limit, false);
+            assertTrue(third.isPresent());
+            assertFalse(MappedDatabaseReader.map(channel, size, limit, false).isPresent());
+            second.get().close();
+            third.get().close();
+            assertEquals(limit - 2 * size, MappedDatabaseReader.getMappedBytes());
+        }
+    }
+
+    @Test
+    public void closedReaderIsUnmapped() throws Exception {
+        Path segment = folder.newFile().toPath();
+        write(segment, 10);
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            var reader = MappedDatabaseReader.map(channel, Files.size(segment), Long.MAX_VALUE, false).orElseThrow();
+            assertTrue(reader.readDbUnit(0).isPresent());
+            boolean procMaps = Files.isReadable(PROC_MAPS);
+            if (procMaps) {
+                assertTrue(isMapped(segment));
+            }
+            reader.close();
+            try {
+                reader.readDbUnit(0);
+                fail("closed reader must not read");
+            } catch (ClosedChannelException ex) {
+                // ожидаемо
+            }
+            Assume.assumeTrue(procMaps);
+            assertFalse(isMapped(segment));
+        }
+    }
+
+    private static boolean isMapped(Path segment) throws Exception {
+        String path = segment.toRealPath().toString();
+        return Files.readAllLines(PROC_MAPS).stream().anyMatch(line -> line.endsWith(path));
+    }
+
+    private static List<Long> write(Path segment, int records) throws Exception {
+        List<Long> offsets = new ArrayList<>();
+        long offset = 0;
+        try (var out = new DatabaseOutputStream(Files.newOutputStream(segment), true)) {
+            for (int i = 0; i < records; i++) {
+                offsets.add(offset);
+                offset += out.write(new SetDatabaseRecord(utf8("key" + i), utf8("value" + i)));
+            }
+        }
+        return offsets;
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.index.SegmentOffsetInfo;
+import com.itmo.java.basics.index.impl.MapBasedKvsIndex;
+import com.itmo.java.basics.index.impl.SegmentOffsetInfoImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentHintsTest {
+    private static final long SEGMENT_SIZE = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hintsAreReadBack() throws Exception {
+        Path segment = folder.getRoot().toPath().resolve("t_0");
+        SegmentHints.write(segment, SEGMENT_SIZE, index());
+        Map<String, SegmentOffsetInfo> hints = SegmentHints.read(segment, SEGMENT_SIZE).orElseThrow();
+        assertEquals(3, hints.size());
+        SegmentOffsetInfo key = hints.get("key");
+        assertEquals(0, key.getOffset());
+        assertEquals(20, key.getSize());
+        assertEquals(DatabaseOutputStream.valueOffset(0, 3), key.getValueOffset());
+        assertFalse(key.isRemoved());
+        SegmentOffsetInfo removed = hints.get("ключ");
+        assertTrue(removed.isRemoved());
+        assertEquals(DatabaseOutputStream.valueOffset(20, "ключ".getBytes(StandardCharsets.UTF_8).length),
+                removed.getValueOffset());
+        assertEquals(4_102_444_800_000L, hints.get("expiring").getExpiresAt());
+        assertFalse(Files.exists(segment.resolveSibling("t_0" + SegmentHints.SUFFIX + ".tmp")));
+    }
+
+    @Test
+    public void missingHintsAreEmpty() throws Exception {
+        assertFalse(SegmentHints.read(folder.getRoot().toPath().resolve("t_0"), SEGMENT_SIZE).isPresent());
+    }
+
+    /**
+     * Подсказки к сегменту другого размера (например, дописанному после записи подсказок) не используются
+     */
+    @Test
+    public void hintsOfOtherSegmentSizeAreIgnored() throws Exception {
+        Path segment = folder.getRoot().toPath().resolve("t_0");
+        SegmentHints.write(segment, SEGMENT_SIZE, index());
+        assertFalse(SegmentHints.read(segment, SEGMENT_SIZE + 1).isPresent());
+    }
+
+    @Test
+    public void damagedHintsAreIgnored() throws Exception {
+        Path segment = folder.getRoot().toPath().resolve("t_0");
+        SegmentHints.write(segment, SEGMENT_SIZE, index());
+        Path hints = SegmentHints.hintPath(segment);
+        byte[] bytes = Files.readAllBytes(hints);
+        for (int position : new int[]{bytes.length / 2, bytes.length - 1}) {
+            byte[] damaged = bytes.clone();
+            damaged[position] ^= 1;
+            Files.write(hints, damaged);
+            assertFalse(SegmentHints.read(segment, SEGMENT_SIZE).isPresent());
+        }
+        Files.write(hints, Arrays.copyOf(bytes, bytes.length - 3));
+        assertFalse(SegmentHints.read(segment, SEGMENT_SIZE).isPresent());
+        Files.write(hints, Arrays.copyOf(bytes, bytes.length + 1));
+        assertFalse(SegmentHints.read(segment, SEGMENT_SIZE).isPresent());
+        SegmentHints.delete(segment);
+        assertFalse(Files.exists(hints));
+    }
+
+    private static MapBasedKvsIndex<String, SegmentOffsetInfo> index() {
+        var index = new MapBasedKvsIndex<String, SegmentOffsetInfo>();
+        index.onIndexedEntityUpdated("key", new SegmentOffsetInfoImpl(0, 20, 0, false));
+        index.onIndexedEntityUpdated("ключ", new SegmentOffsetInfoImpl(20, 16, 0, true));
+        index.onIndexedEntityUpdated("expiring", new SegmentOffsetInfoImpl(36, 40, 0, false, 4_102_444_800_000L));
+        return index;
+    }
+}
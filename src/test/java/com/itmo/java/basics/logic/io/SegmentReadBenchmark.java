@@ -0,0 +1,112 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.logic.DatabaseRecord;
+import com.itmo.java.basics.logic.impl.SetDatabaseRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение случайной записи сегмента по смещению из индекса: позиционное чтение {@link DatabaseChannelReader}
+ * против прежнего пути, где общий {@link DatabaseInputStream} над {@link BufferedInputStream} делал mark, skip и reset.
+ * Прежний путь быстрее только потому, что mark на весь файл заставляет {@link BufferedInputStream} держать
+ * прочитанный файл в куче: после первого прохода он не обращается к диску, а сегмент занимает память целиком.
+ * <p>
+ * Запуск: {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SegmentReadBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentReadBenchmark {
+    private static final int OFFSETS_MASK = (1 << 16) - 1;
+
+    /**
+     * Размер сегмента: 100 KB - прежний размер по умолчанию, остальные - сегменты в несколько мегабайт
+     */
+    @Param({"102400", "8388608", "67108864"})
+    public int segmentBytes;
+
+    @Param({"100"})
+    public int valueBytes;
+
+    private Path segment;
+    private long[] offsets;
+    private int next = 0;
+    private DatabaseChannelReader reader;
+    private DatabaseInputStream stream;
+
+    @Setup
+    public void setUp() throws Exception {
+        segment = Files.createTempFile("segment", "");
+        List<Long> written = new ArrayList<>();
+        byte[] value = new byte[valueBytes];
+        long size = 0;
+        try (var out = new DatabaseOutputStream(new BufferedOutputStream(Files.newOutputStream(segment)))) {
+            for (int i = 0; size < segmentBytes; i++) {
+                written.add(size);
+                size += out.write(new SetDatabaseRecord(("key" + i).getBytes(StandardCharsets.UTF_8), value));
+            }
+        }
+        Random random = new Random(1);
+        offsets = new long[OFFSETS_MASK + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = written.get(random.nextInt(written.size()));
+        }
+        reader = new DatabaseChannelReader(FileChannel.open(segment, StandardOpenOption.READ));
+        stream = new DatabaseInputStream(new BufferedInputStream(new FileInputStream(segment.toFile())));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        stream.close();
+        Files.deleteIfExists(segment);
+    }
+
+    @Benchmark
+    public Optional<DatabaseRecord> positional() throws IOException {
+        return reader.readDbUnit(offsets[next++ & OFFSETS_MASK]);
+    }
+
+    /**
+     * Прежний SegmentImpl.read
+     */
+    @Benchmark
+    public Optional<DatabaseRecord> markSkipReset() throws IOException {
+        long offset = offsets[next++ & OFFSETS_MASK];
+        stream.mark(Integer.MAX_VALUE);
+        if (stream.skipBytes((int) offset) < offset) {
+            throw new IOException("Could not get to the position in the file.");
+        }
+        Optional<DatabaseRecord> record = stream.readDbUnit();
+        stream.reset();
+        return record;
+    }
+}
@@ -0,0 +1,240 @@
+package com.itmo.java.basics.logic.io;
+
+import com.itmo.java.basics.config.Durability;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SegmentSyncerTest {
+    private static final long AWAIT_SECONDS = 10;
+
+    @Test
+    public void noneModeNeverForces() throws Exception {
+        var channel = new ForceCountingChannel();
+        var syncer = new SegmentSyncer(channel, 0, Durability.NONE, 0);
+        syncer.onAppended(100);
+        syncer.awaitDurable();
+        syncer.close();
+        assertEquals(0, channel.forces.get());
+    }
+
+    @Test
+    public void alwaysModeForcesOnlyNewData() throws Exception {
+        var channel = new ForceCountingChannel();
+        var syncer = new SegmentSyncer(channel, 10, Durability.ALWAYS, 0);
+        syncer.awaitDurable();
+        assertEquals(0, channel.forces.get());
+
+        syncer.onAppended(100);
+        syncer.awaitDurable();
+        assertEquals(1, channel.forces.get());
+        syncer.awaitDurable();
+        assertEquals(1, channel.forces.get());
+
+        syncer.close();
+        assertEquals(1, channel.forces.get());
+    }
+
+    /**
+     * Потоки, пришедшие во время сброса, дожидаются его и делают один общий следующий сброс
+     */
+    @Test
+    public void concurrentWritersShareOneForce() throws Exception {
+        var channel = new ForceCountingChannel();
+        var syncer = new SegmentSyncer(channel, 0, Durability.ALWAYS, 0);
+        channel.blocked = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        syncer.onAppended(10);
+        Thread first = start(syncer, failure);
+        assertTrue(channel.forcing.await(AWAIT_SECONDS, TimeUnit.SECONDS));
+
+        List<Thread> waiting = new ArrayList<>();
+        for (int i = 2; i <= 4; i++) {
+            syncer.onAppended(10 * i);
+            waiting.add(start(syncer, failure));
+        }
+        for (Thread thread : waiting) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        channel.blocked.countDown();
+
+        first.join();
+        for (Thread thread : waiting) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(2, channel.forces.get());
+    }
+
+    @Test
+    public void failedForceIsRetried() throws Exception {
+        var channel = new ForceCountingChannel();
+        var syncer = new SegmentSyncer(channel, 0, Durability.ALWAYS, 0);
+        syncer.onAppended(100);
+        channel.failing = true;
+        try {
+            syncer.awaitDurable();
+            fail("force error must be rethrown");
+        } catch (IOException ignored) {
+        }
+        channel.failing = false;
+        syncer.awaitDurable();
+        assertEquals(2, channel.forces.get());
+    }
+
+    @Test
+    public void intervalModeForcesInBackground() throws Exception {
+        var channel = new ForceCountingChannel();
+        var syncer = new SegmentSyncer(channel, 0, Durability.INTERVAL, 10);
+        syncer.onAppended(100);
+        syncer.awaitDurable();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(AWAIT_SECONDS);
+        while (channel.forces.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, channel.forces.get());
+
+        syncer.close();
+        syncer.onAppended(200);
+        Thread.sleep(50);
+        assertEquals(1, channel.forces.get());
+    }
+
+    private static Thread start(SegmentSyncer syncer, AtomicReference<Throwable> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                syncer.awaitDurable();
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Канал, который только считает вызовы {@link #force(boolean)} и может задерживать или ронять их
+     */
+    private static class ForceCountingChannel extends FileChannel {
+        private final AtomicInteger forces = new AtomicInteger();
+        private final CountDownLatch forcing = new CountDownLatch(1);
+        private volatile CountDownLatch blocked;
+        private volatile boolean failing;
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            forces.incrementAndGet();
+            forcing.countDown();
+            if (failing) {
+                throw new IOException("Disk is gone");
+            }
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                try {
+                    latch.await(AWAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long size() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() {
+        }
+    }
+}
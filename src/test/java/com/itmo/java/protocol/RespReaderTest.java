@@ -0,0 +1,110 @@
+package com.itmo.java.protocol;
+
+import com.itmo.java.protocol.model.RespArray;
+import com.itmo.java.protocol.model.RespBulkString;
+import com.itmo.java.protocol.model.RespCommandId;
+import com.itmo.java.protocol.model.RespObject;
+import com.itmo.java.protocol.model.RespStreamedBulkString;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RespReaderTest {
+    private static final int LARGE = RespStreamedBulkString.SPOOL_THRESHOLD + 100_000;
+
+    /**
+     * Большая строка читается частями во временный файл, а следующие за ней объекты читаются как обычно
+     */
+    @Test
+    public void largeBulkStringIsSpooled() throws Exception {
+        byte[] large = random(LARGE);
+        byte[] small = random(RespStreamedBulkString.SPOOL_THRESHOLD);
+        byte[] encoded = encode(new RespArray(new RespCommandId(7), new RespBulkString(utf8("SET_KEY")),
+                new RespBulkString(large), new RespBulkString(small), RespBulkString.NULL_STRING,
+                new RespBulkString(utf8("tail"))));
+
+        List<RespObject> objects = ((RespArray) read(encoded)).getObjects();
+        assertTrue(objects.get(2) instanceof RespStreamedBulkString);
+        assertEquals(RespBulkString.class, objects.get(3).getClass());
+        assertEquals(RespBulkString.NULL_STRING.asString(), objects.get(4).asString());
+        assertEquals("tail", objects.get(5).asString());
+
+        var streamed = (RespStreamedBulkString) objects.get(2);
+        assertEquals(LARGE, streamed.getSize());
+        var content = new ByteArrayOutputStream();
+        streamed.writeContent(content);
+        assertArrayEquals(large, content.toByteArray());
+        assertArrayEquals(encoded, encode(read(encoded)));
+    }
+
+    /**
+     * Через канал идет только содержимое, а код и размер - через поток: в сумме байты те же, что и без канала
+     */
+    @Test
+    public void streamedStringIsWrittenThroughChannel() throws Exception {
+        byte[] value = random(LARGE);
+        AtomicInteger closed = new AtomicInteger();
+        var out = new ByteArrayOutputStream();
+        var string = new RespStreamedBulkString(value.length, os -> os.write(value), closed::incrementAndGet);
+        new RespWriter(out, Channels.newChannel(out)).write(string);
+        assertArrayEquals(encode(new RespBulkString(value)), out.toByteArray());
+        string.close();
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void truncatedLargeBulkStringFails() throws Exception {
+        byte[] encoded = encode(new RespBulkString(random(LARGE)));
+        for (int length : new int[]{encoded.length / 2, encoded.length - 2}) {
+            try {
+                read(Arrays.copyOf(encoded, length));
+                fail("truncated bulk string must not be read");
+            } catch (EOFException ex) {
+                // ожидаемо
+            }
+        }
+        encoded[encoded.length - 2] = 'x';
+        try {
+            read(encoded);
+            fail("bulk string of other size must not be read");
+        } catch (IOException ex) {
+            // ожидаемо
+        }
+    }
+
+    private static RespObject read(byte[] bytes) throws IOException {
+        try (var reader = new RespReader(new ByteArrayInputStream(bytes))) {
+            return reader.readObject();
+        }
+    }
+
+    private static byte[] encode(RespObject object) throws IOException {
+        var out = new ByteArrayOutputStream();
+        object.write(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] utf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}